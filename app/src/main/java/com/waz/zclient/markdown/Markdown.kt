@@ -23,9 +23,12 @@ import org.commonmark.parser.Parser
 
 class Markdown {
     companion object {
+        // the parser is thread safe, so one instance is shared by all the renderings
+        private val parser: Parser = Parser.builder().build()
+
         @JvmStatic
         fun parse(input: String, style: StyleSheet? = null): SpannableString {
-            val document = Parser.builder().build().parse(input)
+            val document = parser.parse(input)
             val renderer = SpanRenderer(style ?: StyleSheet())
             document.accept(renderer)
             return renderer.spannableString
@@ -23,6 +23,8 @@ import android.text.SpannableString;
 import android.util.AttributeSet;
 
 import com.waz.model.AccentColor;
+import com.waz.model.MessageId;
+import com.waz.model.RemoteInstant;
 import com.waz.zclient.BaseActivity;
 import com.waz.zclient.R;
 import com.waz.zclient.ViewHelper;
@@ -53,6 +55,7 @@ public class MarkdownTextView extends TypefaceTextView implements ViewHelper {
     }
 
     private StyleSheet mStyleSheet;
+    private MarkdownRenderer mRenderer;
 
     @Override
     public void setTextSize(int unit, float size) {
@@ -144,12 +147,49 @@ public class MarkdownTextView extends TypefaceTextView implements ViewHelper {
         applyMarkdown();
     }
 
+    /**
+     * Mark down the text currently in the buffer, which is the text of the given message.
+     * The result is taken from the MarkdownRenderer's cache if it's there.
+     */
+    public void markdown(MessageId messageId, RemoteInstant editTime) {
+        if (mStyleSheet == null) { configureStyleSheet(); }
+        MarkdownRenderer renderer = getRenderer();
+        // the messages loaded next are rendered ahead with the style sheet of the message texts
+        if (renderer != null) { renderer.setTextStyleSheet(mStyleSheet); }
+        applyMarkdown(messageId, editTime);
+    }
+
+    public void markdownQuotes(MessageId messageId, RemoteInstant editTime) {
+        if (mStyleSheet == null) { configureQuoteStyleSheet(); }
+        applyMarkdown(messageId, editTime);
+    }
+
     private void applyMarkdown() {
         String text = getText().toString();
         SpannableString result = Markdown.parse(text, mStyleSheet);
         setText(result);
     }
 
+    private void applyMarkdown(MessageId messageId, RemoteInstant editTime) {
+        MarkdownRenderer renderer = getRenderer();
+        if (renderer == null) {
+            applyMarkdown();
+        } else {
+            String text = getText().toString();
+            setText(renderer.render(messageId, editTime, text, mStyleSheet));
+            // the cached links may have been rendered with another view's link handler
+            refreshLinks();
+        }
+    }
+
+    private MarkdownRenderer getRenderer() {
+        if (mRenderer == null) {
+            BaseActivity activity = getActivity();
+            if (activity != null) { mRenderer = activity.injectJava(MarkdownRenderer.class); }
+        }
+        return mRenderer;
+    }
+
     /**
      * Re-applies all LinkSpan and ImageSpan objects. Call this method after Linkifying the text
      * preserve existing markdown links, or after changing the link color in the stylesheet.
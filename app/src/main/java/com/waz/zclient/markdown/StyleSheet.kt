@@ -142,6 +142,14 @@ public class StyleSheet {
      */
     val listItemContentMargin: Int get() = 3 * maxDigitWidth.toInt() + listPrefixGapWidth
 
+    /**
+     * The values which affect the rendered spans, to tell apart the renderings of the same text
+     * with different style sheets.
+     */
+    val styleKey: List<Int> get() = listOf(
+        baseFontSize, baseFontColor, quoteColor, quoteStripeColor, listPrefixColor, codeColor, linkColor
+    )
+
     val screenDensity: Float
     val maxDigitWidth: Float
 
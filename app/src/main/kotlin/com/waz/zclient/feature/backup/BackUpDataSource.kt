@@ -5,23 +5,18 @@ import com.waz.zclient.core.functional.Either
 import com.waz.zclient.core.functional.map
 import com.waz.zclient.feature.backup.io.BatchReader
 import java.io.File
+import java.util.zip.ZipOutputStream
 
 abstract class BackUpDataSource<T, E> : BackUpRepository<List<File>> {
     abstract val databaseLocalDataSource: BackUpIOHandler<E, Unit>
-    abstract val backUpLocalDataSource: BackUpIOHandler<T, File>
+    abstract val backUpLocalDataSource: BackUpStreamWriter<T>
     abstract val mapper: BackUpDataMapper<T, E>
 
-    override suspend fun saveBackup(): Either<Failure, List<File>> {
-        val readIterator = databaseLocalDataSource.readIterator()
-        val writeIterator: BatchReader<List<T>> = object : BatchReader<List<T>> {
-            override suspend fun readNext(): Either<Failure, List<T>> = readIterator.readNext().map { entities ->
-                entities.map { mapper.fromEntity(it) }
-            }
+    override suspend fun saveBackup(): Either<Failure, List<File>> =
+        backUpLocalDataSource.write(modelsReader())
 
-            override suspend fun hasNext(): Boolean = readIterator.hasNext()
-        }
-        return backUpLocalDataSource.write(writeIterator)
-    }
+    override suspend fun saveBackup(zip: ZipOutputStream): Either<Failure, Unit> =
+        backUpLocalDataSource.write(modelsReader(), zip)
 
     override suspend fun restoreBackup(): Either<Failure, Unit> {
         val readIterator = backUpLocalDataSource.readIterator()
@@ -34,4 +29,15 @@ abstract class BackUpDataSource<T, E> : BackUpRepository<List<File>> {
         }
         return databaseLocalDataSource.write(writeIterator).map { Unit }
     }
+
+    private fun modelsReader(): BatchReader<List<T>> {
+        val readIterator = databaseLocalDataSource.readIterator()
+        return object : BatchReader<List<T>> {
+            override suspend fun readNext(): Either<Failure, List<T>> = readIterator.readNext().map { entities ->
+                entities.map { mapper.fromEntity(it) }
+            }
+
+            override suspend fun hasNext(): Boolean = readIterator.hasNext()
+        }
+    }
 }
@@ -2,9 +2,12 @@ package com.waz.zclient.feature.backup
 
 import com.waz.zclient.core.exception.Failure
 import com.waz.zclient.core.functional.Either
+import java.util.zip.ZipOutputStream
 
 interface BackUpRepository<R> {
     suspend fun saveBackup(): Either<Failure, R>
 
+    suspend fun saveBackup(zip: ZipOutputStream): Either<Failure, Unit>
+
     suspend fun restoreBackup(): Either<Failure, Unit>
 }
@@ -3,11 +3,21 @@ package com.waz.zclient.feature.backup
 import com.waz.zclient.core.exception.Failure
 import com.waz.zclient.core.functional.Either
 import com.waz.zclient.feature.backup.io.BatchReader
+import java.io.File
+import java.util.zip.ZipOutputStream
+
 interface BackUpIOHandler<T, R> {
     suspend fun write(iterator: BatchReader<List<T>>): Either<Failure, List<R>>
     fun readIterator(): BatchReader<List<T>>
 }
 
+/**
+ * Writes the batches to files, or straight into entries of the backup zip named as those files.
+ */
+interface BackUpStreamWriter<T> : BackUpIOHandler<T, File> {
+    suspend fun write(iterator: BatchReader<List<T>>, zip: ZipOutputStream): Either<Failure, Unit>
+}
+
 interface BackUpDataMapper<T, E> {
     fun fromEntity(entity: E): T
     fun toEntity(model: T): E
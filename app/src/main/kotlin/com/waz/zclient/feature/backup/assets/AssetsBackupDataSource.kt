@@ -4,9 +4,9 @@ import com.waz.zclient.core.extension.empty
 import com.waz.zclient.feature.backup.BackUpDataMapper
 import com.waz.zclient.feature.backup.BackUpDataSource
 import com.waz.zclient.feature.backup.BackUpIOHandler
+import com.waz.zclient.feature.backup.BackUpStreamWriter
 import com.waz.zclient.storage.db.assets.AssetsEntity
 import kotlinx.serialization.Serializable
-import java.io.File
 
 @Serializable
 data class AssetsBackUpModel(
@@ -25,7 +25,7 @@ data class AssetsBackUpModel(
 
 class AssetsBackupDataSource(
     override val databaseLocalDataSource: BackUpIOHandler<AssetsEntity, Unit>,
-    override val backUpLocalDataSource: BackUpIOHandler<AssetsBackUpModel, File>,
+    override val backUpLocalDataSource: BackUpStreamWriter<AssetsBackUpModel>,
     override val mapper: BackUpDataMapper<AssetsBackUpModel, AssetsEntity>
 ) : BackUpDataSource<AssetsBackUpModel, AssetsEntity>()
 
@@ -4,9 +4,9 @@ import com.waz.zclient.core.extension.empty
 import com.waz.zclient.feature.backup.BackUpDataMapper
 import com.waz.zclient.feature.backup.BackUpDataSource
 import com.waz.zclient.feature.backup.BackUpIOHandler
+import com.waz.zclient.feature.backup.BackUpStreamWriter
 import com.waz.zclient.storage.db.buttons.ButtonsEntity
 import kotlinx.serialization.Serializable
-import java.io.File
 
 @Serializable
 data class ButtonsBackUpModel(
@@ -37,6 +37,6 @@ class ButtonsBackupMapper : BackUpDataMapper<ButtonsBackUpModel, ButtonsEntity>
 
 class ButtonsBackupDataSource(
     override val databaseLocalDataSource: BackUpIOHandler<ButtonsEntity, Unit>,
-    override val backUpLocalDataSource: BackUpIOHandler<ButtonsBackUpModel, File>,
+    override val backUpLocalDataSource: BackUpStreamWriter<ButtonsBackUpModel>,
     override val mapper: BackUpDataMapper<ButtonsBackUpModel, ButtonsEntity>
 ) : BackUpDataSource<ButtonsBackUpModel, ButtonsEntity>()
@@ -3,9 +3,9 @@ package com.waz.zclient.feature.backup.conversations
 import com.waz.zclient.feature.backup.BackUpDataMapper
 import com.waz.zclient.feature.backup.BackUpDataSource
 import com.waz.zclient.feature.backup.BackUpIOHandler
+import com.waz.zclient.feature.backup.BackUpStreamWriter
 import com.waz.zclient.storage.db.conversations.ConversationFoldersEntity
 import kotlinx.serialization.Serializable
-import java.io.File
 
 @Serializable
 data class ConversationFoldersBackUpModel(
@@ -27,6 +27,6 @@ class ConversationFoldersBackupMapper : BackUpDataMapper<ConversationFoldersBack
 
 class ConversationFoldersBackupDataSource(
     override val databaseLocalDataSource: BackUpIOHandler<ConversationFoldersEntity, Unit>,
-    override val backUpLocalDataSource: BackUpIOHandler<ConversationFoldersBackUpModel, File>,
+    override val backUpLocalDataSource: BackUpStreamWriter<ConversationFoldersBackUpModel>,
     override val mapper: BackUpDataMapper<ConversationFoldersBackUpModel, ConversationFoldersEntity>
 ) : BackUpDataSource<ConversationFoldersBackUpModel, ConversationFoldersEntity>()
@@ -4,9 +4,9 @@ import com.waz.zclient.core.extension.empty
 import com.waz.zclient.feature.backup.BackUpDataMapper
 import com.waz.zclient.feature.backup.BackUpDataSource
 import com.waz.zclient.feature.backup.BackUpIOHandler
+import com.waz.zclient.feature.backup.BackUpStreamWriter
 import com.waz.zclient.storage.db.conversations.ConversationMembersEntity
 import kotlinx.serialization.Serializable
-import java.io.File
 
 @Serializable
 data class ConversationMembersBackUpModel(
@@ -31,6 +31,6 @@ class ConversationMembersBackupMapper : BackUpDataMapper<ConversationMembersBack
 
 class ConversationMembersBackupDataSource(
     override val databaseLocalDataSource: BackUpIOHandler<ConversationMembersEntity, Unit>,
-    override val backUpLocalDataSource: BackUpIOHandler<ConversationMembersBackUpModel, File>,
+    override val backUpLocalDataSource: BackUpStreamWriter<ConversationMembersBackUpModel>,
     override val mapper: BackUpDataMapper<ConversationMembersBackUpModel, ConversationMembersEntity>
 ) : BackUpDataSource<ConversationMembersBackUpModel, ConversationMembersEntity>()
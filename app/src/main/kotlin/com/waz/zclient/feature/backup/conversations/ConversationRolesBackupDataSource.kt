@@ -4,9 +4,9 @@ import com.waz.zclient.core.extension.empty
 import com.waz.zclient.feature.backup.BackUpDataMapper
 import com.waz.zclient.feature.backup.BackUpDataSource
 import com.waz.zclient.feature.backup.BackUpIOHandler
+import com.waz.zclient.feature.backup.BackUpStreamWriter
 import com.waz.zclient.storage.db.conversations.ConversationRoleActionEntity
 import kotlinx.serialization.Serializable
-import java.io.File
 
 @Serializable
 data class ConversationRoleActionBackUpModel(
@@ -25,6 +25,6 @@ class ConversationRoleBackupMapper : BackUpDataMapper<ConversationRoleActionBack
 
 class ConversationRolesBackupDataSource(
     override val databaseLocalDataSource: BackUpIOHandler<ConversationRoleActionEntity, Unit>,
-    override val backUpLocalDataSource: BackUpIOHandler<ConversationRoleActionBackUpModel, File>,
+    override val backUpLocalDataSource: BackUpStreamWriter<ConversationRoleActionBackUpModel>,
     override val mapper: BackUpDataMapper<ConversationRoleActionBackUpModel, ConversationRoleActionEntity>
 ) : BackUpDataSource<ConversationRoleActionBackUpModel, ConversationRoleActionEntity>()
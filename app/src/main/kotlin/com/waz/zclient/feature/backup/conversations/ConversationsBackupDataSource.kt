@@ -4,9 +4,9 @@ import com.waz.zclient.core.extension.empty
 import com.waz.zclient.feature.backup.BackUpDataMapper
 import com.waz.zclient.feature.backup.BackUpDataSource
 import com.waz.zclient.feature.backup.BackUpIOHandler
+import com.waz.zclient.feature.backup.BackUpStreamWriter
 import com.waz.zclient.storage.db.conversations.ConversationsEntity
 import kotlinx.serialization.Serializable
-import java.io.File
 
 @Serializable
 data class ConversationsBackUpModel(
@@ -127,6 +127,6 @@ class ConversationsBackupMapper : BackUpDataMapper<ConversationsBackUpModel, Con
 
 class ConversationsBackupDataSource(
     override val databaseLocalDataSource: BackUpIOHandler<ConversationsEntity, Unit>,
-    override val backUpLocalDataSource: BackUpIOHandler<ConversationsBackUpModel, File>,
+    override val backUpLocalDataSource: BackUpStreamWriter<ConversationsBackUpModel>,
     override val mapper: BackUpDataMapper<ConversationsBackUpModel, ConversationsEntity>
 ) : BackUpDataSource<ConversationsBackUpModel, ConversationsEntity>()
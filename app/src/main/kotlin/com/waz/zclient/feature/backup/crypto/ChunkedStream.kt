@@ -0,0 +1,39 @@
+package com.waz.zclient.feature.backup.crypto
+
+import com.waz.zclient.core.exception.Failure
+import java.io.IOException
+
+/**
+ * Backups written by the streaming exporter are encrypted in chunks of [CHUNK_SIZE] plain bytes,
+ * each sealed with its own tag, so neither side has to keep the whole archive in memory.
+ *
+ * Every chunk is encrypted with the header nonce, with the chunk index xored into bytes 15-22 and
+ * the last byte flipped for the final chunk. Chunks can't be reordered or dropped, and a truncated
+ * backup fails to decrypt because its final chunk is missing. The final chunk is always shorter than
+ * [CHUNK_SIZE], so the reader knows where the stream ends (it is empty when the content size is a
+ * multiple of [CHUNK_SIZE]).
+ */
+const val CHUNK_SIZE = 64 * 1024
+
+private const val COUNTER_OFFSET = 15
+private const val COUNTER_BYTES = 8
+private const val BITS_PER_BYTE = 8
+private const val BYTE_MASK = 0xFF
+private const val LAST_CHUNK_FLAG = 0x01
+
+internal fun chunkNonce(nonce: ByteArray, index: Long, last: Boolean): ByteArray =
+    nonce.copyOf().also { chunkNonce ->
+        for (i in 0 until COUNTER_BYTES) {
+            val byte = (index ushr (BITS_PER_BYTE * i)).toInt() and BYTE_MASK
+            chunkNonce[COUNTER_OFFSET + i] = (chunkNonce[COUNTER_OFFSET + i].toInt() xor byte).toByte()
+        }
+        if (last) {
+            chunkNonce[chunkNonce.size - 1] = (chunkNonce[chunkNonce.size - 1].toInt() xor LAST_CHUNK_FLAG).toByte()
+        }
+    }
+
+/**
+ * Thrown by the encrypting and decrypting streams, so that the failure can pass through the code
+ * which only expects [IOException]s and be reported as it is.
+ */
+class CryptoStreamException(val failure: Failure) : IOException(failure.toString())
@@ -0,0 +1,79 @@
+package com.waz.zclient.feature.backup.crypto.decryption
+
+import com.waz.zclient.feature.backup.crypto.CHUNK_SIZE
+import com.waz.zclient.feature.backup.crypto.Crypto
+import com.waz.zclient.feature.backup.crypto.CryptoStreamException
+import com.waz.zclient.feature.backup.crypto.chunkNonce
+import com.waz.zclient.feature.backup.crypto.encryption.error.DecryptionFailed
+import java.io.InputStream
+
+/**
+ * Reads the cipher text written by [com.waz.zclient.feature.backup.crypto.encryption.EncryptingOutputStream]
+ * from [input] and decrypts it chunk by chunk. A stream which ends before its final chunk fails to decrypt.
+ */
+class DecryptingInputStream(
+    private val input: InputStream,
+    private val crypto: Crypto,
+    private val key: ByteArray,
+    private val nonce: ByteArray,
+    private val chunkSize: Int = CHUNK_SIZE
+) : InputStream() {
+
+    private val cipherText = ByteArray(chunkSize + crypto.aBytesLength())
+    private var plainText = ByteArray(0)
+    private var position = 0
+    private var index = 0L
+    private var finished = false
+
+    override fun read(): Int =
+        if (!ensureAvailable()) -1 else plainText[position++].toInt() and BYTE_MASK
+
+    override fun read(bytes: ByteArray, offset: Int, length: Int): Int =
+        when {
+            length == 0 -> 0
+            !ensureAvailable() -> -1
+            else -> minOf(length, plainText.size - position).also { count ->
+                System.arraycopy(plainText, position, bytes, offset, count)
+                position += count
+            }
+        }
+
+    override fun available(): Int = plainText.size - position
+
+    override fun close() = input.close()
+
+    private fun ensureAvailable(): Boolean {
+        while (position == plainText.size && !finished) readChunk()
+        return position < plainText.size
+    }
+
+    private fun readChunk() {
+        val length = readFully()
+        if (length < crypto.aBytesLength()) throw CryptoStreamException(DecryptionFailed)
+
+        val last = length < cipherText.size
+        val chunk = if (last) cipherText.copyOf(length) else cipherText
+        val decrypted = ByteArray(length - crypto.aBytesLength())
+        if (crypto.decrypt(decrypted, chunk, key, chunkNonce(nonce, index, last)) != 0) {
+            throw CryptoStreamException(DecryptionFailed)
+        }
+        plainText = decrypted
+        position = 0
+        finished = last
+        ++index
+    }
+
+    private fun readFully(): Int {
+        var length = 0
+        while (length < cipherText.size) {
+            val read = input.read(cipherText, length, cipherText.size - length)
+            if (read < 0) break
+            length += read
+        }
+        return length
+    }
+
+    companion object {
+        private const val BYTE_MASK = 0xFF
+    }
+}
@@ -10,22 +10,42 @@ import com.waz.zclient.feature.backup.crypto.Crypto
 import com.waz.zclient.feature.backup.crypto.encryption.error.DecryptionFailed
 import com.waz.zclient.feature.backup.crypto.encryption.error.HashesDoNotMatch
 import com.waz.zclient.feature.backup.crypto.header.CryptoHeaderMetaData
+import com.waz.zclient.feature.backup.crypto.header.STREAMING_VERSION
 import com.waz.zclient.feature.backup.crypto.header.TOTAL_HEADER_LENGTH
 import java.io.File
 import java.io.IOException
+import java.io.InputStream
 
 class DecryptionHandler(
     private val crypto: Crypto,
     private val cryptoHeaderMetaData: CryptoHeaderMetaData
 ) {
-    fun decryptBackup(backupFile: File, userId: String, password: String): Either<Failure, File> =
+    /**
+     * Opens a stream of the decrypted content of the backup. Backups written by the streaming exporter
+     * are decrypted chunk by chunk while the stream is read, the older ones are decrypted to a temporary file first.
+     */
+    fun decryptBackupStream(backupFile: File, userId: String, password: String): Either<Failure, InputStream> =
         loadCryptoLibrary().flatMap {
             cryptoHeaderMetaData.readMetadata(backupFile)
         }.flatMap { metaData ->
             crypto.hashWithMessagePart(userId, metaData.salt).flatMap { hash ->
-                when (hash.contentEquals(metaData.uuidHash)) {
-                    true -> decryptBackupFile(password, backupFile, metaData.salt, metaData.nonce)
-                    false -> Either.Left(HashesDoNotMatch)
+                when {
+                    !hash.contentEquals(metaData.uuidHash) -> Either.Left(HashesDoNotMatch)
+                    metaData.version == STREAMING_VERSION -> openDecryptingStream(password, backupFile, metaData.salt, metaData.nonce)
+                    else -> decryptBackupFile(password, backupFile, metaData.salt, metaData.nonce).map { it.inputStream() }
+                }
+            }
+        }
+
+    private fun openDecryptingStream(password: String, backupFile: File, salt: ByteArray, nonce: ByteArray): Either<Failure, InputStream> =
+        crypto.hashWithMessagePart(password, salt).flatMap { key ->
+            crypto.checkExpectedKeySize(key.size, crypto.decryptExpectedKeyBytes()).flatMap {
+                try {
+                    val input = backupFile.inputStream().buffered().apply { skip(TOTAL_HEADER_LENGTH.toLong()) }
+                    Either.Right(DecryptingInputStream(input, crypto, key, nonce))
+                } catch (ex: IOException) {
+                    error(TAG, "IO error when reading the backup file: ${ex.message}")
+                    Either.Left(IOFailure(ex))
                 }
             }
         }
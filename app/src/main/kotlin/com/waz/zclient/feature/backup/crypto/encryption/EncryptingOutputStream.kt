@@ -0,0 +1,73 @@
+package com.waz.zclient.feature.backup.crypto.encryption
+
+import com.waz.zclient.feature.backup.crypto.CHUNK_SIZE
+import com.waz.zclient.feature.backup.crypto.Crypto
+import com.waz.zclient.feature.backup.crypto.CryptoStreamException
+import com.waz.zclient.feature.backup.crypto.chunkNonce
+import com.waz.zclient.feature.backup.crypto.encryption.error.EncryptionFailed
+import java.io.OutputStream
+
+/**
+ * Encrypts everything written to it chunk by chunk, as described in [com.waz.zclient.feature.backup.crypto.CHUNK_SIZE],
+ * and writes the cipher text to [out]. The final chunk is written on [close].
+ */
+class EncryptingOutputStream(
+    private val out: OutputStream,
+    private val crypto: Crypto,
+    private val key: ByteArray,
+    private val nonce: ByteArray,
+    private val chunkSize: Int = CHUNK_SIZE
+) : OutputStream() {
+
+    private val buffer = ByteArray(chunkSize)
+    private var position = 0
+    private var index = 0L
+    private var closed = false
+
+    override fun write(b: Int) {
+        buffer[position++] = b.toByte()
+        if (position == chunkSize) writeChunk(last = false)
+    }
+
+    override fun write(bytes: ByteArray, offset: Int, length: Int) {
+        var written = 0
+        while (written < length) {
+            val count = minOf(length - written, chunkSize - position)
+            System.arraycopy(bytes, offset + written, buffer, position, count)
+            position += count
+            written += count
+            if (position == chunkSize) writeChunk(last = false)
+        }
+    }
+
+    /**
+     * Writes the bytes as they are, e.g. the header which has to precede the cipher text.
+     */
+    fun writeUnencrypted(bytes: ByteArray) {
+        check(index == 0L && position == 0) { "The unencrypted bytes have to be written before the content" }
+        out.write(bytes)
+    }
+
+    override fun flush() = out.flush()
+
+    override fun close() {
+        if (!closed) {
+            closed = true
+            out.use {
+                writeChunk(last = true)
+                it.flush()
+            }
+        }
+    }
+
+    private fun writeChunk(last: Boolean) {
+        val plainText = if (position == chunkSize) buffer else buffer.copyOf(position)
+        val cipherText = ByteArray(position + crypto.aBytesLength())
+        if (crypto.encrypt(cipherText, plainText, key, chunkNonce(nonce, index, last)) != 0) {
+            throw CryptoStreamException(EncryptionFailed)
+        }
+        out.write(cipherText)
+        position = 0
+        ++index
+    }
+}
@@ -6,62 +6,64 @@ import com.waz.zclient.core.functional.Either
 import com.waz.zclient.core.functional.flatMap
 import com.waz.zclient.core.functional.map
 import com.waz.zclient.feature.backup.crypto.Crypto
-import com.waz.zclient.feature.backup.crypto.encryption.error.EncryptionFailed
 import com.waz.zclient.feature.backup.crypto.header.CryptoHeaderMetaData
+import com.waz.zclient.feature.backup.crypto.CryptoStreamException
 import java.io.File
 import java.io.IOException
+import java.io.OutputStream
 
 class EncryptionHandler(
     private val crypto: Crypto,
     private val cryptoHeaderMetaData: CryptoHeaderMetaData
 ) {
-    fun encryptBackup(backupFile: File, userId: String, password: String, targetFileName: String): Either<Failure, File> =
-        try {
+    /**
+     * Writes the header to [targetFile] and then everything [writeContent] writes to the given stream,
+     * encrypted chunk by chunk as it is written, without keeping the content in memory or on disk.
+     */
+    suspend fun encryptBackupStream(
+        targetFile: File,
+        userId: String,
+        password: String,
+        writeContent: suspend (OutputStream) -> Either<Failure, Unit>
+    ): Either<Failure, File> {
+        val result = try {
             loadCryptoLibrary()
-            encryptBackupFile(backupFile, userId, password).map {
-                val meta = it.first
-                val encryptedBytes = it.second
-                File(backupFile.parentFile, targetFileName).apply {
-                    writeBytes(meta)
-                    appendBytes(encryptedBytes)
+            when (val header = createStreamingHeader(userId, password)) {
+                is Either.Left -> header
+                is Either.Right -> {
+                    val (meta, key, nonce) = header.b
+                    val encryptingStream = EncryptingOutputStream(targetFile.outputStream().buffered(), crypto, key, nonce)
+                    val written = try {
+                        encryptingStream.writeUnencrypted(meta)
+                        writeContent(encryptingStream)
+                    } finally {
+                        encryptingStream.close()
+                    }
+                    written.map { targetFile }
                 }
             }
+        } catch (ex: CryptoStreamException) {
+            Either.Left(ex.failure)
         } catch (ex: IOException) {
             Either.Left(IOFailure(ex))
         }
+        if (result.isLeft) targetFile.delete()
+        return result
+    }
 
-    private fun encryptBackupFile(backupFile: File, userId: String, password: String) =
+    private fun createStreamingHeader(userId: String, password: String): Either<Failure, Triple<ByteArray, ByteArray, ByteArray>> =
         crypto.generateSalt().flatMap { salt ->
             crypto.generateNonce().flatMap { nonce ->
-                createMetaData(salt, nonce, userId).flatMap { meta ->
-                    val backupBytes = backupFile.readBytes()
-                    encryptWithHash(backupBytes, password, salt, nonce).map { encryptedBytes -> Pair(meta, encryptedBytes) }
+                crypto.hashWithMessagePart(userId, salt).flatMap { userIdHash ->
+                    cryptoHeaderMetaData.createStreamingMetaData(salt, userIdHash, nonce)
+                }.flatMap { meta ->
+                    crypto.hashWithMessagePart(password, salt).flatMap { key ->
+                        crypto.checkExpectedKeySize(key.size, crypto.encryptExpectedKeyBytes()).map { Triple(meta, key, nonce) }
+                    }
                 }
             }
         }
 
-    private fun encryptWithHash(backupBytes: ByteArray, password: String, salt: ByteArray, nonce: ByteArray): Either<Failure, ByteArray> =
-        crypto.hashWithMessagePart(password, salt).flatMap { hash ->
-            crypto.checkExpectedKeySize(hash.size, crypto.encryptExpectedKeyBytes()).flatMap {
-                encrypt(backupBytes, hash, nonce)
-            }
-        }
-
-    private fun encrypt(backupBytes: ByteArray, hash: ByteArray, nonce: ByteArray): Either<Failure, ByteArray> {
-        val cipherText = ByteArray(backupBytes.size + crypto.aBytesLength())
-        return when (crypto.encrypt(cipherText, backupBytes, hash, nonce)) {
-            0 -> Either.Right(cipherText)
-            else -> Either.Left(EncryptionFailed)
-        }
-    }
-
-    // This method returns the metadata in the format described here:
-    // https://wearezeta.atlassian.net/wiki/spaces/PROD/pages/59965445/Exporting+history+v1
-    private fun createMetaData(salt: ByteArray, nonce: ByteArray, userId: String): Either<Failure, ByteArray> =
-        crypto.hashWithMessagePart(userId, salt).flatMap { key ->
-            cryptoHeaderMetaData.createMetaData(salt, key, nonce)
-        }
-
     private fun loadCryptoLibrary() = crypto.loadLibrary
 
     companion object {
@@ -15,6 +15,8 @@ private const val NONCE_LENGTH = 24
 private const val ANDROID_MAGIC_NUMBER_LENGTH = 4
 private const val TAG = "EncryptionHeader"
 internal const val CURRENT_VERSION: Short = 1
+// the content of the backups with this version is encrypted in chunks, see [com.waz.zclient.feature.backup.crypto.CHUNK_SIZE]
+internal const val STREAMING_VERSION: Short = 2
 
 const val UUID_HASH_LENGTH = 32
 // TODO: Discuss with iOS one common format for the header
@@ -37,8 +39,14 @@ class CryptoHeaderMetaData(
         }
 
     fun createMetaData(salt: ByteArray, key: ByteArray, nonce: ByteArray): Either<Failure, ByteArray> =
+        createMetaData(CURRENT_VERSION, salt, key, nonce)
+
+    fun createStreamingMetaData(salt: ByteArray, key: ByteArray, nonce: ByteArray): Either<Failure, ByteArray> =
+        createMetaData(STREAMING_VERSION, salt, key, nonce)
+
+    private fun createMetaData(version: Short, salt: ByteArray, key: ByteArray, nonce: ByteArray): Either<Failure, ByteArray> =
         key.size.takeIf { it == UUID_HASH_LENGTH }?.let {
-            val header = EncryptedBackupHeader(CURRENT_VERSION, salt, key, crypto.opsLimit(), crypto.memLimit(), nonce)
+            val header = EncryptedBackupHeader(version, salt, key, crypto.opsLimit(), crypto.memLimit(), nonce)
             Either.Right(encryptionHeaderMapper.toByteArray(header))
         } ?: Either.Left(HashInvalid)
 }
@@ -65,7 +73,7 @@ class EncryptionHeaderMapper {
             if (magicNumber.contentEquals(ANDROID_MAGIC_NUMBER)) {
                 buffer.get() //skip null byte
                 val version = buffer.short
-                if (version == CURRENT_VERSION) {
+                if (version == CURRENT_VERSION || version == STREAMING_VERSION) {
                     val salt = ByteArray(SALT_LENGTH)
                     buffer.get(salt)
                     val uuidHash = ByteArray(UUID_HASH_LENGTH)
@@ -74,9 +82,9 @@ class EncryptionHeaderMapper {
                     val memlimit = buffer.int
                     val nonce = ByteArray(NONCE_LENGTH)
                     buffer.get(nonce)
-                    EncryptedBackupHeader(CURRENT_VERSION, salt, uuidHash, opslimit, memlimit, nonce)
+                    EncryptedBackupHeader(version, salt, uuidHash, opslimit, memlimit, nonce)
                 } else {
-                    error(TAG, "Unsupported backup version: $version (should be $CURRENT_VERSION)")
+                    error(TAG, "Unsupported backup version: $version (should be $CURRENT_VERSION or $STREAMING_VERSION)")
                     null
                 }
             } else {
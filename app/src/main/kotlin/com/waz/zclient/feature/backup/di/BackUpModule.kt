@@ -100,13 +100,13 @@ val backUpModule = module {
     factory { CryptoHeaderMetaData(get(), get()) }
     factory { EncryptionHeaderMapper() }
 
-    factory { CreateBackUpUseCase(getAll(), get(), get(), get(), BACKUP_VERSION) } //this resolves all instances of type BackUpRepository
+    factory { CreateBackUpUseCase(getAll(), get(), get(), get(), get(), BACKUP_VERSION) } //this resolves all instances of type BackUpRepository
     factory { RestoreBackUpUseCase(getAll(), get(), get(), get(), BACKUP_VERSION) }
     viewModel { BackUpViewModel(get(), get()) }
 
     // MetaData
     factory(named(METADATA + JSON)) { JsonConverter(BackupMetaData.serializer()) }
-    factory { MetaDataHandler(get(named(METADATA + JSON)), get()) }
+    factory { MetaDataHandler(get(named(METADATA + JSON))) }
 
     // KeyValues
     factory(named(KEY_VALUES + JSON)) { JsonConverter(KeyValuesBackUpModel.serializer()) }
@@ -4,9 +4,9 @@ import com.waz.zclient.core.extension.empty
 import com.waz.zclient.feature.backup.BackUpDataMapper
 import com.waz.zclient.feature.backup.BackUpDataSource
 import com.waz.zclient.feature.backup.BackUpIOHandler
+import com.waz.zclient.feature.backup.BackUpStreamWriter
 import com.waz.zclient.storage.db.folders.FoldersEntity
 import kotlinx.serialization.Serializable
-import java.io.File
 
 @Serializable
 data class FoldersBackUpModel(
@@ -25,6 +25,6 @@ class FoldersBackupMapper : BackUpDataMapper<FoldersBackUpModel, FoldersEntity>
 
 class FoldersBackupDataSource(
     override val databaseLocalDataSource: BackUpIOHandler<FoldersEntity, Unit>,
-    override val backUpLocalDataSource: BackUpIOHandler<FoldersBackUpModel, File>,
+    override val backUpLocalDataSource: BackUpStreamWriter<FoldersBackUpModel>,
     override val mapper: BackUpDataMapper<FoldersBackUpModel, FoldersEntity>
 ) : BackUpDataSource<FoldersBackUpModel, FoldersEntity>()
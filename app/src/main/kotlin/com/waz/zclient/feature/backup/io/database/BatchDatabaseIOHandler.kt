@@ -10,6 +10,7 @@ import com.waz.zclient.feature.backup.BackUpIOHandler
 import com.waz.zclient.feature.backup.io.BatchReader
 import com.waz.zclient.feature.backup.io.mapRight
 import com.waz.zclient.storage.db.BatchDao
+import com.waz.zclient.storage.db.FIRST_BATCH_KEY
 
 class BatchDatabaseIOHandler<E>(
     private val batchDao: BatchDao<E>,
@@ -22,26 +23,34 @@ class BatchDatabaseIOHandler<E>(
         }
 
     override fun readIterator(): BatchReader<List<E>> = object : BatchReader<List<E>> {
-        private var daoCount: Int? = null
-
-        private suspend fun batchDaoCount(): Int =
-                daoCount ?: requestDatabase { batchDao.count().also { daoCount = it } }.getOrElse(0)
-
-        private var count = 0
-
-        override suspend fun readNext(): Either<Failure, List<E>> = requestDatabase {
-            val batch = batchDao.nextBatch(count, Math.min(batchDaoCount() - count, batchSize)) ?: emptyList()
-            count += batch.size
-            batch
-        }.flatMap {
-            if (it.isEmpty()) {
-                Either.Left(NoDataToReadFailure)
-            } else {
-                Either.Right(it)
+        private var lastKey = FIRST_BATCH_KEY
+        private var endKey: Long? = null
+        private var endKeyRead = false
+
+        private suspend fun nextEndKey(): Long? {
+            if (!endKeyRead) {
+                endKey = requestDatabase { batchDao.nextBatchEndKey(lastKey, batchSize) }.getOrElse(null)
+                endKeyRead = true
             }
+            return endKey
         }
 
-        override suspend fun hasNext(): Boolean = batchDaoCount() > count
+        override suspend fun readNext(): Either<Failure, List<E>> {
+            val end = nextEndKey() ?: return Either.Left(NoDataToReadFailure)
+            return requestDatabase {
+                batchDao.nextBatchAfter(lastKey, end) ?: emptyList()
+            }.flatMap {
+                lastKey = end
+                endKeyRead = false
+                if (it.isEmpty()) {
+                    Either.Left(NoDataToReadFailure)
+                } else {
+                    Either.Right(it)
+                }
+            }
+        }
+
+        override suspend fun hasNext(): Boolean = nextEndKey() != null
     }
 
     companion object {
@@ -5,20 +5,24 @@ import com.waz.zclient.core.exception.FeatureFailure
 import com.waz.zclient.core.exception.IOFailure
 import com.waz.zclient.core.functional.Either
 import com.waz.zclient.core.utilities.converters.JsonConverter
-import com.waz.zclient.feature.backup.BackUpIOHandler
+import com.waz.zclient.feature.backup.BackUpStreamWriter
+import com.waz.zclient.feature.backup.crypto.CryptoStreamException
 import com.waz.zclient.feature.backup.io.BatchReader
+import com.waz.zclient.feature.backup.io.forEach
 import com.waz.zclient.feature.backup.io.mapRight
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
 import kotlinx.serialization.SerializationException
 import java.io.File
 import java.io.IOException
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
 
 class BackUpFileIOHandler<T>(
     private val fileNamePrefix: String,
     private val jsonConverter: JsonConverter<T>,
     private val targetDir: File
-) : BackUpIOHandler<T, File> {
+) : BackUpStreamWriter<T> {
     override suspend fun write(iterator: BatchReader<List<T>>) = withContext(Dispatchers.IO) {
         var index = 0
 
@@ -41,6 +45,27 @@ class BackUpFileIOHandler<T>(
         }
     }
 
+    override suspend fun write(iterator: BatchReader<List<T>>, zip: ZipOutputStream) = withContext(Dispatchers.IO) {
+        var index = 0
+
+        iterator.forEach {
+            try {
+                val jsonStr = jsonConverter.toJsonList(it)
+                zip.putNextEntry(ZipEntry(getFile(index).name))
+                zip.write(jsonStr.toByteArray())
+                zip.closeEntry()
+                ++index
+                Either.Right(Unit)
+            } catch (ex: CryptoStreamException) {
+                Either.Left(ex.failure)
+            } catch (ex: IOException) {
+                Either.Left(IOFailure(ex))
+            } catch (ex: SerializationException) {
+                Either.Left(SerializationFailure(ex))
+            }
+        }
+    }
+
     override fun readIterator() = object : BatchReader<List<T>> {
         private var index = 0
 
@@ -4,13 +4,13 @@ import com.waz.zclient.core.extension.empty
 import com.waz.zclient.feature.backup.BackUpDataMapper
 import com.waz.zclient.feature.backup.BackUpDataSource
 import com.waz.zclient.feature.backup.BackUpIOHandler
+import com.waz.zclient.feature.backup.BackUpStreamWriter
 import com.waz.zclient.storage.db.property.KeyValuesEntity
 import kotlinx.serialization.Serializable
-import java.io.File
 
 class KeyValuesBackUpDataSource(
     override val databaseLocalDataSource: BackUpIOHandler<KeyValuesEntity, Unit>,
-    override val backUpLocalDataSource: BackUpIOHandler<KeyValuesBackUpModel, File>,
+    override val backUpLocalDataSource: BackUpStreamWriter<KeyValuesBackUpModel>,
     override val mapper: BackUpDataMapper<KeyValuesBackUpModel, KeyValuesEntity>
 ) : BackUpDataSource<KeyValuesBackUpModel, KeyValuesEntity>()
 
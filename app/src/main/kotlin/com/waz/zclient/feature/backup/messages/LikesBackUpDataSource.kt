@@ -4,9 +4,9 @@ import com.waz.zclient.core.extension.empty
 import com.waz.zclient.feature.backup.BackUpDataMapper
 import com.waz.zclient.feature.backup.BackUpDataSource
 import com.waz.zclient.feature.backup.BackUpIOHandler
+import com.waz.zclient.feature.backup.BackUpStreamWriter
 import com.waz.zclient.storage.db.messages.LikesEntity
 import kotlinx.serialization.Serializable
-import java.io.File
 
 @Serializable
 data class LikesBackUpModel(
@@ -34,6 +34,6 @@ class LikesBackupMapper : BackUpDataMapper<LikesBackUpModel, LikesEntity> {
 
 class LikesBackupDataSource(
     override val databaseLocalDataSource: BackUpIOHandler<LikesEntity, Unit>,
-    override val backUpLocalDataSource: BackUpIOHandler<LikesBackUpModel, File>,
+    override val backUpLocalDataSource: BackUpStreamWriter<LikesBackUpModel>,
     override val mapper: BackUpDataMapper<LikesBackUpModel, LikesEntity>
 ) : BackUpDataSource<LikesBackUpModel, LikesEntity>()
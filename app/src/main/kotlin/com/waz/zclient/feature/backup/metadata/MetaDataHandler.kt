@@ -8,21 +8,17 @@ import com.waz.zclient.feature.backup.io.file.SerializationFailure
 import kotlinx.serialization.SerializationException
 import java.io.File
 import java.io.IOException
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
 
-class MetaDataHandler(
-    private val jsonConverter: JsonConverter<BackupMetaData>,
-    private val targetDir: File
-) {
-    fun generateMetaDataFile(metaData: BackupMetaData): Either<Failure, File> =
+class MetaDataHandler(private val jsonConverter: JsonConverter<BackupMetaData>) {
+    fun writeMetaData(metaData: BackupMetaData, zip: ZipOutputStream): Either<Failure, Unit> =
         try {
             val jsonStr = jsonConverter.toJson(metaData)
-            val file = File(targetDir, FILE_NAME).apply {
-                delete()
-                createNewFile()
-                deleteOnExit()
-                writeText(jsonStr)
-            }
-            Either.Right(file)
+            zip.putNextEntry(ZipEntry(FILE_NAME))
+            zip.write(jsonStr.toByteArray())
+            zip.closeEntry()
+            Either.Right(Unit)
         } catch (ex: IOException) {
             Either.Left(IOFailure(ex))
         } catch (ex: SerializationException) {
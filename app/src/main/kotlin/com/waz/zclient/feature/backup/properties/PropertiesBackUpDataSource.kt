@@ -4,13 +4,13 @@ import com.waz.zclient.core.extension.empty
 import com.waz.zclient.feature.backup.BackUpDataMapper
 import com.waz.zclient.feature.backup.BackUpDataSource
 import com.waz.zclient.feature.backup.BackUpIOHandler
+import com.waz.zclient.feature.backup.BackUpStreamWriter
 import com.waz.zclient.storage.db.property.PropertiesEntity
 import kotlinx.serialization.Serializable
-import java.io.File
 
 class PropertiesBackUpDataSource(
     override val databaseLocalDataSource: BackUpIOHandler<PropertiesEntity, Unit>,
-    override val backUpLocalDataSource: BackUpIOHandler<PropertiesBackUpModel, File>,
+    override val backUpLocalDataSource: BackUpStreamWriter<PropertiesBackUpModel>,
     override val mapper: BackUpDataMapper<PropertiesBackUpModel, PropertiesEntity>
 ) : BackUpDataSource<PropertiesBackUpModel, PropertiesEntity>()
 
@@ -4,9 +4,9 @@ import com.waz.zclient.core.extension.empty
 import com.waz.zclient.feature.backup.BackUpDataMapper
 import com.waz.zclient.feature.backup.BackUpDataSource
 import com.waz.zclient.feature.backup.BackUpIOHandler
+import com.waz.zclient.feature.backup.BackUpStreamWriter
 import com.waz.zclient.storage.db.receipts.ReadReceiptsEntity
 import kotlinx.serialization.Serializable
-import java.io.File
 
 @Serializable
 data class ReadReceiptsBackUpModel(
@@ -31,6 +31,6 @@ class ReadReceiptsBackupMapper : BackUpDataMapper<ReadReceiptsBackUpModel, ReadR
 
 class ReadReceiptsBackupDataSource(
     override val databaseLocalDataSource: BackUpIOHandler<ReadReceiptsEntity, Unit>,
-    override val backUpLocalDataSource: BackUpIOHandler<ReadReceiptsBackUpModel, File>,
+    override val backUpLocalDataSource: BackUpStreamWriter<ReadReceiptsBackUpModel>,
     override val mapper: BackUpDataMapper<ReadReceiptsBackUpModel, ReadReceiptsEntity>
 ) : BackUpDataSource<ReadReceiptsBackUpModel, ReadReceiptsEntity>()
@@ -2,8 +2,6 @@ package com.waz.zclient.feature.backup.usecase
 
 import com.waz.zclient.core.exception.Failure
 import com.waz.zclient.core.functional.Either
-import com.waz.zclient.core.functional.flatMap
-import com.waz.zclient.core.functional.map
 import com.waz.zclient.core.usecase.UseCase
 import com.waz.zclient.core.utilities.DateAndTimeUtils.instantToString
 import com.waz.zclient.core.utilities.DatePattern
@@ -12,63 +10,54 @@ import com.waz.zclient.feature.backup.crypto.encryption.EncryptionHandler
 import com.waz.zclient.feature.backup.metadata.BackupMetaData
 import com.waz.zclient.feature.backup.metadata.MetaDataHandler
 import com.waz.zclient.feature.backup.zip.ZipHandler
-import kotlinx.coroutines.CoroutineScope
-import kotlinx.coroutines.Dispatchers
-import kotlinx.coroutines.SupervisorJob
-import kotlinx.coroutines.async
-import kotlinx.coroutines.awaitAll
 import java.io.File
+import java.util.zip.ZipOutputStream
 
+/**
+ * Streams the rows of all the back up repositories as JSON straight into the zip entries, and the zip through
+ * the encryption into the backup file, so neither the intermediate files nor the whole archive in memory are needed.
+ */
 class CreateBackUpUseCase(
     private val backUpRepositories: List<BackUpRepository<List<File>>>,
     private val zipHandler: ZipHandler,
     private val encryptionHandler: EncryptionHandler,
     private val metaDataHandler: MetaDataHandler,
-    private val backUpVersion: Int,
-    private val coroutineScope: CoroutineScope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+    private val targetDir: File,
+    private val backUpVersion: Int
 ) : UseCase<File, CreateBackUpUseCaseParams> {
 
-    override suspend fun run(params: CreateBackUpUseCaseParams): Either<Failure, File> =
-        backUpOrFail()
-            .flatMap { files ->
-                val metaData = BackupMetaData(
-                    userId = params.userId,
-                    clientId = params.clientId,
-                    userHandle = params.userHandle,
-                    backUpVersion = backUpVersion
-                )
-                metaDataHandler.generateMetaDataFile(metaData).map { files + it }
-            }
-            .flatMap { files ->
-                zipHandler.zip(backupFileName(params.userHandle) + ".zip", files)
-            }
-            .flatMap { file ->
-                encryptionHandler.encryptBackup(file, params.userId, params.password, backupFileName(params.userHandle))
+    override suspend fun run(params: CreateBackUpUseCaseParams): Either<Failure, File> {
+        val metaData = BackupMetaData(
+            userId = params.userId,
+            clientId = params.clientId,
+            userHandle = params.userHandle,
+            backUpVersion = backUpVersion
+        )
+        val backupFile = File(targetDir, backupFileName(params.userHandle))
+
+        return encryptionHandler.encryptBackupStream(backupFile, params.userId, params.password) { output ->
+            zipHandler.zipStream(output) { zip ->
+                when (val backUp = backUpOrFail(zip)) {
+                    is Either.Left -> backUp
+                    is Either.Right -> metaDataHandler.writeMetaData(metaData, zip)
+                }
             }
+        }
+    }
 
-    private suspend fun backUpOrFail(): Either<Failure, List<File>> = extractFiles(
-        backUpRepositories
-            .map { coroutineScope.async(Dispatchers.IO) { it.saveBackup() } }
-            .awaitAll()
-    )
+    // the repositories write to the same zip stream, so they have to do it one after another
+    private suspend fun backUpOrFail(zip: ZipOutputStream): Either<Failure, Unit> {
+        backUpRepositories.forEach { repository ->
+            val result = repository.saveBackup(zip)
+            if (result is Either.Left) return result
+        }
+        return Either.Right(Unit)
+    }
 
     private fun backupFileName(userHandle: String): String {
         val timestamp = instantToString(pattern = DatePattern.DATE_SHORT)
         return "Wire-$userHandle-Backup_$timestamp.android_wbu"
     }
-
-    private fun extractFiles(filesOrFailure: List<Either<Failure, List<File>>>): Either<Failure, List<File>> {
-        val files = mutableListOf<File>()
-
-        filesOrFailure.forEach {
-            when (it) {
-                is Either.Right -> files.addAll(it.b)
-                is Either.Left -> return Either.Left(it.a)
-            }
-        }
-
-        return Either.Right(files.toList())
-    }
 }
 
 data class CreateBackUpUseCaseParams(val userId: String, val clientId: String, val userHandle: String, val password: String)
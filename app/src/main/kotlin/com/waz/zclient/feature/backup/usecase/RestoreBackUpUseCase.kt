@@ -18,6 +18,11 @@ import kotlinx.coroutines.awaitAll
 import kotlinx.coroutines.runBlocking
 import java.io.File
 
+/**
+ * Decrypts the backup and unzips it as a stream, without a decrypted copy of the archive. The entries are still
+ * extracted to files before anything is restored: the metadata is the last entry of the zip, and the user and the
+ * version of the backup have to be checked before the repositories write to the database.
+ */
 class RestoreBackUpUseCase(
     private val backUpRepositories: List<BackUpRepository<List<File>>>,
     private val zipHandler: ZipHandler,
@@ -28,8 +33,8 @@ class RestoreBackUpUseCase(
 ) : UseCase<Unit, RestoreBackUpUseCaseParams> {
 
     override suspend fun run(params: RestoreBackUpUseCaseParams): Either<Failure, Unit> =
-        decryptionHandler.decryptBackup(params.file, params.userId, params.password).flatMap { file ->
-            zipHandler.unzip(file)
+        decryptionHandler.decryptBackupStream(params.file, params.userId, params.password).flatMap { input ->
+            zipHandler.unzipStream(input)
         }.flatMap { files ->
             val metaDataFile = files.find { it.name == MetaDataHandler.FILE_NAME }
             if (metaDataFile == null) Either.Left(NoMetaDataFileFailure)
@@ -1,55 +1,48 @@
 package com.waz.zclient.feature.backup.zip
 
 import com.waz.zclient.core.exception.Failure
-import com.waz.zclient.core.exception.FeatureFailure
 import com.waz.zclient.core.exception.IOFailure
 import com.waz.zclient.core.functional.Either
-import java.io.BufferedOutputStream
+import com.waz.zclient.feature.backup.crypto.CryptoStreamException
 import java.io.File
-import java.io.FileOutputStream
-import java.io.FileInputStream
 import java.io.IOException
-import java.util.zip.ZipEntry
-import java.util.zip.ZipException
-import java.util.zip.ZipFile
+import java.io.InputStream
+import java.io.OutputStream
+import java.util.zip.ZipInputStream
 import java.util.zip.ZipOutputStream
 
 class ZipHandler(private val storageDir: File) {
-    fun zip(zipFileName: String, files: List<File>): Either<Failure, File> =
-            if (files.isEmpty()) {
-                Either.Left(NoFilesToZipFailure)
-            } else {
-                try {
-                    val zipFile = createFile(zipFileName).apply {
-                        writeZipEntries(this, files)
-                    }
-                    Either.Right(zipFile)
-                } catch (ex: IOException) {
-                    Either.Left(IOFailure(ex))
-                }
-            }
-
-    fun unzip(zipFile: File): Either<Failure, List<File>> {
-        val unzippedFiles = mutableListOf<File>()
-
+    /**
+     * Zips the entries written by [writeEntries] straight into [output], which is closed afterwards.
+     */
+    suspend fun zipStream(output: OutputStream, writeEntries: suspend (ZipOutputStream) -> Either<Failure, Unit>): Either<Failure, Unit> =
         try {
-            ZipFile(zipFile).use { zip ->
-                zip.entries().asSequence().forEach { entry ->
-                    unzippedFiles.add(readZipEntry(zip, entry))
-                }
-            }
-        } catch (ex: ZipException) {
-            return Either.Left(IOFailure(ex))
+            ZipOutputStream(output).use { writeEntries(it) }
+        } catch (ex: CryptoStreamException) {
+            Either.Left(ex.failure)
+        } catch (ex: IOException) {
+            Either.Left(IOFailure(ex))
         }
-        return Either.Right(unzippedFiles.toList())
-    }
 
-    private fun writeZipEntries(zipFile: File, files: List<File>): Unit =
-            ZipOutputStream(BufferedOutputStream(FileOutputStream(zipFile))).use { zip ->
-                files.forEach {
-                    writeZipEntry(zip, it)
-                }
+    /**
+     * Extracts the entries of the zip read from [input] to the storage directory, without copying the zip itself to a file.
+     */
+    fun unzipStream(input: InputStream): Either<Failure, List<File>> =
+        try {
+            ZipInputStream(input).use { zip ->
+                Either.Right(
+                    generateSequence { zip.nextEntry }.map { entry ->
+                        createFile(File(entry.name).name).also { outputFile ->
+                            outputFile.outputStream().use { output -> zip.copyTo(output) }
+                        }
+                    }.toList()
+                )
             }
+        } catch (ex: CryptoStreamException) {
+            Either.Left(ex.failure)
+        } catch (ex: IOException) {
+            Either.Left(IOFailure(ex))
+        }
 
     private fun createFile(name: String) =
             File(storageDir, name).apply {
@@ -57,20 +50,4 @@ class ZipHandler(private val storageDir: File) {
                 createNewFile()
                 deleteOnExit()
             }
-
-    private fun writeZipEntry(zip: ZipOutputStream, file: File) =
-            FileInputStream(file).use { inStream ->
-                zip.putNextEntry(ZipEntry(file.name))
-                inStream.copyTo(zip)
-                zip.closeEntry()
-            }
-
-    private fun readZipEntry(zip: ZipFile, entry: ZipEntry): File =
-            createFile(entry.name).also { outputFile ->
-                zip.getInputStream(entry).use { input ->
-                    outputFile.outputStream().use { output -> input.copyTo(output) }
-                }
-            }
 }
-
-object NoFilesToZipFailure : FeatureFailure()
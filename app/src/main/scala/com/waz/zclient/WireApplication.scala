@@ -78,6 +78,7 @@ import com.waz.zclient.cursor.CursorController
 import com.waz.zclient.deeplinks.DeepLinkService
 import com.waz.zclient.legalhold.{LegalHoldApprovalHandler, LegalHoldController, LegalHoldStatusChangeListener}
 import com.waz.zclient.log.LogUI._
+import com.waz.zclient.markdown.MarkdownRenderer
 import com.waz.zclient.messages.controllers.{MessageActionsController, NavigationController}
 import com.waz.zclient.messages.{LikesController, MessagePagedListController, MessageViewFactory, MessagesController, UsersController}
 import com.waz.zclient.notifications.controllers.AndroidNotificationsManager
@@ -280,6 +281,7 @@ object WireApplication extends DerivedLogTag {
     bind [DraftMap] to new DraftMap()
 
     bind [MessagesController]        to new MessagesController()
+    bind [MarkdownRenderer]          to new MarkdownRenderer()
 
     bind [ClipboardUtils]       to new ClipboardUtils(ctx)
     bind [ExternalFileSharing]  to new ExternalFileSharing(ctx)
@@ -358,8 +358,8 @@ class ConversationController(implicit injector: Injector, context: Context)
 
   def setCurrentConversationToNext(requester: ConversationChangeRequester): Future[Unit] = {
     def nextConversation(convId: ConvId): Future[Option[ConvId]] =
-      convListController.regularConversationListData.head.map { regular =>
-        val r = regular.map(_.conv)
+      convListController.regularConversationList.head.map { regular =>
+        val r = regular.toSeq
         r.lift(r.indexWhere(_.id == convId) + 1).map(_.id)
       } (Threading.Background)
 
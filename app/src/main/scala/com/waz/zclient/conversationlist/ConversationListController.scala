@@ -17,6 +17,8 @@
  */
 package com.waz.zclient.conversationlist
 
+import java.util.concurrent.ConcurrentHashMap
+
 import com.waz.api.Message
 import com.waz.content.ConversationStorage
 import com.waz.log.BasicLogging.LogTag.DerivedLogTag
@@ -27,6 +29,7 @@ import com.waz.service.ZMessaging
 import com.waz.service.conversation.{ConversationsContentUpdater, ConversationsService, FoldersService}
 import com.waz.service.teams.TeamsService
 import com.waz.threading.Threading
+import com.waz.utils.ContentChange.{Added, Removed, Updated}
 import com.waz.utils._
 import com.wire.signals.{AggregatingSignal, EventContext, EventStream, Signal}
 import com.waz.zclient.common.controllers.UserAccountsController
@@ -74,7 +77,17 @@ class ConversationListController(implicit inj: Injector, ec: EventContext)
     otherUser.fold[Availability](Availability.None)(_.availability)
   }
 
-  def conversationName(conv: ConvId): Signal[Name] = convController.conversationName(conv)
+  private val cachedNames = new ConcurrentHashMap[ConvId, Name]()
+
+  def conversationName(conv: ConvId): Signal[Name] =
+    convController.conversationName(conv).map(returning(_)(cachedNames.put(conv, _)))
+
+  /**
+    * The name of the conversation as it was last resolved, or the name set in the conversation data until then,
+    * so that a row can show the conversation before its name signal fires.
+    */
+  def cachedName(conv: ConversationData): Name =
+    Option(cachedNames.get(conv.id)).getOrElse(conv.name.getOrElse(Name.Empty))
 
   private def userData(id: Option[UserId]) = id.fold2(Signal.const(Option.empty[UserData]), uid => UserSignal(uid).map(Option(_)))
 
@@ -83,22 +96,34 @@ class ConversationListController(implicit inj: Injector, ec: EventContext)
     convs      <- z.convsStorage.contents.throttle(ConvListUpdateThrottling)
   } yield convs.values.filter(EstablishedListFilter)
 
-  lazy val regularConversationListData: Signal[Seq[NamedConversation]] = conversationData(Normal)
-  lazy val archiveConversationListData: Signal[Seq[NamedConversation]] = conversationData(Archive)
+  lazy val regularConversationList: Signal[SortedConversationList] = sortedConversations(Normal)
+  lazy val archiveConversationList: Signal[SortedConversationList] = sortedConversations(Archive)
 
   lazy val hasConversationsAndArchive = for {
     convsStorage <- inject[Signal[ConversationStorage]]
     convs        <- convsStorage.contents.map(_.values.filterNot(c => c.hidden || ignoredConvTypes.contains(c.convType)))
   } yield (convs.exists(!_.archived), convs.exists(_.archived))
 
-  private def conversationData(listMode: ListMode): Signal[Seq[NamedConversation]] =
-    for {
-      convsStorage   <- inject[Signal[ConversationStorage]]
-      conversations  <- convsStorage.contents
-      convs          =  conversations.values.filter(listMode.filter).toSeq.sorted(listMode.sort)
-      namedConvs     <- Signal.sequence(convs.map(c => convController.conversationName(c.id).map(n => NamedConversation(c, n))): _*)
-    } yield
-      namedConvs
+  /**
+    * The conversations of the list, kept sorted by applying the changes of the storage one by one.
+    */
+  private def sortedConversations(listMode: ListMode): Signal[SortedConversationList] =
+    inject[Signal[ConversationStorage]].flatMap { convsStorage =>
+      val changesStream = EventStream.zip[Seq[ContentChange[ConvId, ConversationData]]](
+        convsStorage.onAdded.map(_.map(c => Added(c.id, c))),
+        convsStorage.onUpdated.map(_.map { case (prv, curr) => Updated(prv.id, prv, curr) }),
+        convsStorage.onDeleted.map(_.map(Removed(_)))
+      )
+
+      new AggregatingSignal[Seq[ContentChange[ConvId, ConversationData]], SortedConversationList](
+        () => convsStorage.values.map(SortedConversationList(listMode.filter, listMode.sort, _)),
+        changesStream,
+        _ applied _
+      )
+    }
+
+  private def named(convs: Seq[ConversationData]): Seq[NamedConversation] =
+    convs.map(c => NamedConversation(c, cachedName(c)))
 
   lazy val incomingConversationListData: Signal[Seq[ConvId]] =
     for {
@@ -135,14 +160,14 @@ class ConversationListController(implicit inj: Injector, ec: EventContext)
   def folderConversations(folderId: FolderId): Signal[Seq[NamedConversation]] = for {
     fwc     <- foldersWithConvs
     convIds =  fwc.getOrElse(folderId, Set.empty)
-    convs   <- regularConversationListData
-  } yield convs.filter { c => convIds.contains(c.conv.id) }
+    convs   <- regularConversationList
+  } yield named(convs.toSeq.filter { c => convIds.contains(c.id) })
 
   private lazy val conversationsWithoutFolder: Signal[Seq[(NamedConversation, Boolean)]] = for {
     customFolders      <- customFoldersWithConvs
     folderConvIds      =  customFolders.values.flatten.toSet
-    convs              <- regularConversationListData
-    convsWithoutFolder =  convs.filterNot { c => folderConvIds.contains(c.conv.id) }
+    convs              <- regularConversationList
+    convsWithoutFolder =  named(convs.toSeq.filterNot { c => folderConvIds.contains(c.id) })
     convService        <- convService
     results            <- Signal.sequence(convsWithoutFolder.map { c =>
                             convService.groupConversation(c.conv.id).map(b => (c, b))
@@ -174,7 +174,7 @@ class ArchiveListFragment extends ConversationListFragment with OnBackPressedLis
 
   override protected def createAdapter(): ConversationListAdapter =
     returning(new ArchiveConversationListAdapter) { a =>
-      subs += convListController.archiveConversationListData.onUi { archive =>
+      subs += convListController.archiveConversationList.onUi { archive =>
         a.setData(archive)
       }
   }
@@ -299,7 +299,7 @@ class NormalConversationFragment extends ConversationListFragment {
   override protected def createAdapter(): ConversationListAdapter =
     returning(new NormalConversationListAdapter) { a =>
       val dataSource = for {
-        regular  <- convListController.regularConversationListData
+        regular  <- convListController.regularConversationList
         incoming <- convListController.incomingConversationListData
       } yield (regular, incoming)
 
@@ -0,0 +1,124 @@
+/**
+ * Wire
+ * Copyright (C) 2018 Wire Swiss GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.waz.zclient.conversationlist
+
+import com.waz.model.{ConvId, ConversationData}
+import com.waz.utils.ContentChange
+import com.waz.utils.ContentChange.{Added, Removed, Updated}
+import com.waz.zclient.conversationlist.ConversationListController.Filter
+import com.waz.zclient.conversationlist.SortedConversationList._
+
+import scala.collection.immutable.TreeSet
+
+/**
+  * An immutable list of the conversations which pass the filter, in the order of the list mode
+  * (the most recent first). The conversations are kept in a balanced tree, so that a change of a conversation
+  * is applied, and its position found, without sorting the whole list again.
+  *
+  * Each list applied from the previous one knows the positional changes between the two, so that an adapter
+  * showing the previous list can apply them directly instead of diffing the lists.
+  */
+final class SortedConversationList private (filter:     Filter,
+                                            byId:       Map[ConvId, ConversationData],
+                                            ordered:    TreeSet[ConversationData],
+                                            generation: AnyRef,
+                                            val version: Long,
+                                            val changes: Vector[ListChange]) {
+
+  def size: Int = ordered.size
+
+  def isEmpty: Boolean = ordered.isEmpty
+
+  def apply(position: Int): ConversationData = ordered.drop(position).head
+
+  def indexOf(id: ConvId): Int = byId.get(id).fold(-1)(ordered.until(_).size)
+
+  def toSeq: Seq[ConversationData] = ordered.toVector
+
+  /**
+    * True if this list was applied directly to the given one, so that `changes` turn the given one into this one.
+    */
+  def follows(previous: SortedConversationList): Boolean =
+    (generation eq previous.generation) && version == previous.version + 1
+
+  def applied(contentChanges: Seq[ContentChange[ConvId, ConversationData]]): SortedConversationList = {
+    var convs = byId
+    var tree = ordered
+    val listChanges = Vector.newBuilder[ListChange]
+
+    def remove(conv: ConversationData): Int = {
+      val pos = tree.until(conv).size
+      convs -= conv.id
+      tree -= conv
+      pos
+    }
+
+    def insert(conv: ConversationData): Int = {
+      convs = convs.updated(conv.id, conv)
+      tree += conv
+      tree.until(conv).size
+    }
+
+    def update(id: ConvId, conv: Option[ConversationData]): Unit =
+      (convs.get(id), conv.filter(filter)) match {
+        case (Some(old), Some(current)) =>
+          val from = remove(old)
+          val to = insert(current)
+          if (from != to) listChanges += Moved(from, to)
+          listChanges += Changed(to, current)
+        case (Some(old), None) =>
+          listChanges += Deleted(remove(old))
+        case (None, Some(current)) =>
+          listChanges += Inserted(insert(current), current)
+        case (None, None) =>
+      }
+
+    contentChanges.foreach {
+      case Added(id, conv)      => update(id, Some(conv))
+      case Updated(id, _, conv) => update(id, Some(conv))
+      case Removed(id)          => update(id, None)
+    }
+
+    new SortedConversationList(filter, convs, tree, generation, version + 1, listChanges.result())
+  }
+}
+
+object SortedConversationList {
+
+  sealed trait ListChange
+  final case class Inserted(position: Int, conv: ConversationData) extends ListChange
+  final case class Deleted(position: Int) extends ListChange
+  final case class Moved(from: Int, to: Int) extends ListChange
+  final case class Changed(position: Int, conv: ConversationData) extends ListChange
+
+  /**
+    * @param ordering has to be a total ordering which tells conversations apart by their ids only,
+    *                 like `ConversationDataOrdering`, so that an updated conversation replaces its old version
+    */
+  def apply(filter: Filter, ordering: Ordering[ConversationData], convs: Iterable[ConversationData]): SortedConversationList = {
+    val included = convs.filter(filter)
+    new SortedConversationList(
+      filter,
+      included.map(c => c.id -> c).toMap,
+      TreeSet(included.toSeq: _*)(ordering),
+      new AnyRef,
+      version = 0,
+      changes = Vector.empty
+    )
+  }
+}
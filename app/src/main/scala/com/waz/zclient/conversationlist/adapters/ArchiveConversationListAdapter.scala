@@ -20,12 +20,12 @@ package com.waz.zclient.conversationlist.adapters
 import android.content.Context
 import com.wire.signals.EventContext
 import com.waz.zclient.Injector
-import com.waz.zclient.conversationlist.ConversationListController.NamedConversation
+import com.waz.zclient.conversationlist.SortedConversationList
 import com.waz.zclient.conversationlist.adapters.ConversationListAdapter._
 
 class ArchiveConversationListAdapter(implicit context: Context, eventContext: EventContext, injector: Injector)
   extends ConversationListAdapter {
 
-  def setData(convs: Seq[NamedConversation]): Unit =
-    updateList(convs.map(Item.Conversation(_)).toList)
+  def setData(convs: SortedConversationList): Unit =
+    updateList(Nil, convs)
 }
@@ -25,6 +25,8 @@ import com.waz.model.{ConvId, ConversationData, FolderId, Name}
 import com.wire.signals.{EventContext, EventStream, SourceStream}
 import com.waz.utils.returning
 import com.waz.zclient.conversationlist.ConversationListController.NamedConversation
+import com.waz.zclient.conversationlist.{ConversationListController, SortedConversationList}
+import com.waz.zclient.conversationlist.SortedConversationList.{Changed, Deleted, Inserted, Moved}
 import com.waz.zclient.conversationlist.adapters.ConversationListAdapter.{ConversationRowViewHolder, _}
 import com.waz.zclient.conversationlist.views.{ConversationFolderListRow, ConversationListRow, IncomingConversationListRow, NormalConversationListRow}
 import com.waz.zclient.log.LogUI._
@@ -45,6 +47,8 @@ abstract class ConversationListAdapter (implicit context: Context, eventContext:
   val onConversationClick: SourceStream[ConvId] = EventStream[ConvId]()
   val onConversationLongClick: SourceStream[ConversationData] = EventStream[ConversationData]()
 
+  private lazy val convListController = inject[ConversationListController]
+
   protected val items = mutable.ListBuffer[Item]()
   protected var maxAlpha = 1.0f
 
@@ -62,6 +66,45 @@ abstract class ConversationListAdapter (implicit context: Context, eventContext:
     DiffUtil.calculateDiff(new DiffCallback(items, newItems), false).dispatchUpdatesTo(this)
     items.clear()
     items.appendAll(newItems)
+    shownConversations = None
+  }
+
+  private var shownConversations = Option.empty[SortedConversationList]
+  private var shownOffset = 0
+
+  /**
+    * Shows the given items followed by the conversations of the sorted list. If the list follows the one shown
+    * and the items are the same, only the changes of the list are applied, without diffing the whole list.
+    *
+    * @param header the items above the conversations.
+    * @param convs the conversations.
+    */
+  protected def updateList(header: List[Item], convs: SortedConversationList): Unit = {
+    val offset = header.size
+    def item(conv: ConversationData) = Item.Conversation(conv, convListController.cachedName(conv), None)
+    shownConversations match {
+      case Some(shown) if convs.follows(shown) && items.take(offset) == header =>
+        convs.changes.foreach {
+          case Inserted(pos, conv) =>
+            items.insert(offset + pos, item(conv))
+            notifyItemInserted(offset + pos)
+          case Deleted(pos) =>
+            items.remove(offset + pos)
+            notifyItemRemoved(offset + pos)
+          case Moved(from, to) =>
+            items.insert(offset + to, items.remove(offset + from))
+            notifyItemMoved(offset + from, offset + to)
+          case Changed(pos, conv) =>
+            items.update(offset + pos, item(conv))
+            notifyItemChanged(offset + pos)
+        }
+      case Some(shown) if shown eq convs =>
+        updateList(header ++ items.drop(shownOffset).toList)
+      case _ =>
+        updateList(header ++ convs.toSeq.map(item))
+    }
+    shownConversations = Some(convs)
+    shownOffset = offset
   }
 
   override def getItemCount: Int = items.size
@@ -137,10 +180,7 @@ object ConversationListAdapter {
     }
 
     case class Conversation(conv: ConversationData, name: Name, sectionTitle: Option[String]) extends Item {
-      override val contentDescription: String = {
-        val prefix = sectionTitle.map { t => s"$t: "}.getOrElse("")
-        prefix + name.str
-      }
+      override val contentDescription: String = Conversation.contentDescription(name, sectionTitle)
     }
 
     object Conversation {
@@ -149,6 +189,11 @@ object ConversationListAdapter {
 
       def apply(namedConversation: NamedConversation, title: String): Conversation =
         Conversation(namedConversation.conv, namedConversation.name, Some(title))
+
+      def contentDescription(name: Name, sectionTitle: Option[String]): String = {
+        val prefix = sectionTitle.map { t => s"$t: "}.getOrElse("")
+        prefix + name.str
+      }
     }
 
     case class IncomingRequests(first: ConvId, numberOfRequests: Int) extends Item {
@@ -172,8 +217,7 @@ object ConversationListAdapter {
     extends ConversationRowViewHolder(row, listener) {
 
     def bind(item: Item.Conversation): Unit = {
-      row.setConversation(item.conv, item.name)
-      row.setContentDescription(item.contentDescription)
+      row.setConversation(item.conv, item.name, item.sectionTitle)
     }
   }
 
@@ -21,18 +21,18 @@ import android.content.Context
 import com.waz.model.ConvId
 import com.wire.signals.EventContext
 import com.waz.zclient.Injector
-import com.waz.zclient.conversationlist.ConversationListController.NamedConversation
+import com.waz.zclient.conversationlist.SortedConversationList
 import com.waz.zclient.conversationlist.adapters.ConversationListAdapter._
 
 class NormalConversationListAdapter(implicit context: Context, eventContext: EventContext, injector: Injector)
   extends ConversationListAdapter {
 
-  def setData(convs: Seq[NamedConversation], incoming: Seq[ConvId]): Unit =
+  def setData(convs: SortedConversationList, incoming: Seq[ConvId]): Unit =
     updateList(
-      (if (incoming.nonEmpty)
+      if (incoming.nonEmpty)
         List(Item.IncomingRequests(incoming.head, incoming.size))
-       else
-        Nil
-      ) ++ convs.map(Item.Conversation(_))
+      else
+        Nil,
+      convs
     )
 }
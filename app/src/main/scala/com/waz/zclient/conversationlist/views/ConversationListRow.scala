@@ -38,6 +38,7 @@ import com.wire.signals.Signal
 import com.waz.zclient.calling.CallingActivity
 import com.waz.zclient.calling.controllers.CallStartController
 import com.waz.zclient.conversationlist.ConversationListController
+import com.waz.zclient.conversationlist.adapters.ConversationListAdapter.Item
 import com.waz.zclient.conversationlist.views.ConversationBadge.OngoingCall
 import com.waz.zclient.conversationlist.views.ConversationListRow._
 import com.waz.zclient.log.LogUI._
@@ -85,6 +86,7 @@ class NormalConversationListRow(context: Context, attrs: AttributeSet, style: In
   } yield conv
 
   var conversationData = Option.empty[ConversationData]
+  private var sectionTitle = Option.empty[String]
 
   private lazy val members = conversationId.flatMap {
     case Some(cId) => controller.members(cId)
@@ -205,7 +207,10 @@ class NormalConversationListRow(context: Context, attrs: AttributeSet, style: In
   (for {
     Some(cId) <- conversationId
     name      <- controller.conversationName(cId)
-  } yield name).onUi(name => title.setText(name.str))
+  } yield name).onUi { name =>
+    title.setText(name.str)
+    setContentDescription(Item.Conversation.contentDescription(name, sectionTitle))
+  }
 
   avatarInfo.onUi {
     case (convId, isGroup, members, _, selfTeam) if conversationData.forall(_.id == convId) =>
@@ -242,7 +247,8 @@ class NormalConversationListRow(context: Context, attrs: AttributeSet, style: In
   private var maxOffset: Float = .0f
   private var moveToAnimator: ObjectAnimator = _
 
-  def setConversation(conversationData: ConversationData, conversationName: Name): Unit =
+  def setConversation(conversationData: ConversationData, conversationName: Name, sectionTitle: Option[String]): Unit = {
+    this.sectionTitle = sectionTitle
     if (this.conversationData.forall(_.id != conversationData.id)) {
       this.conversationData = Some(conversationData)
       title.setText(conversationName.str)
@@ -254,6 +260,9 @@ class NormalConversationListRow(context: Context, attrs: AttributeSet, style: In
       conversationId.publish(Option(conversationData.id), Threading.Ui)
       closeImmediate()
     }
+    // the title of the same conversation is kept up to date by the name signal
+    setContentDescription(Item.Conversation.contentDescription(Name(title.getText.toString), sectionTitle))
+  }
 
   menuIndicatorView.setClickable(false)
   menuIndicatorView.setMaxOffset(menuOpenOffset)
@@ -0,0 +1,114 @@
+/**
+ * Wire
+ * Copyright (C) 2018 Wire Swiss GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.waz.zclient.markdown
+
+import java.util
+
+import android.text.SpannableString
+import com.waz.api.Message
+import com.waz.log.BasicLogging.LogTag.DerivedLogTag
+import com.waz.model.{MessageData, MessageId, RemoteInstant}
+import com.waz.utils.returning
+import com.waz.zclient.log.LogUI._
+import com.waz.zclient.markdown.MarkdownRenderer._
+import com.wire.signals.{CancellableFuture, DispatchQueue, SerialDispatchQueue}
+
+import scala.util.control.NonFatal
+
+/**
+  * Caches the rendered markdown of the messages, by message id, edit time and style sheet, so that binding a message
+  * view is a cache lookup instead of parsing and rendering the text on the UI thread.
+  *
+  * The text messages are rendered ahead, on a background queue, as they are loaded for the message list, with the
+  * style sheet of the message texts. A cached result is only used for the same text, so the views which change
+  * the text before marking it down (e.g. to replace mentions) render it themselves.
+  */
+class MarkdownRenderer extends DerivedLogTag {
+
+  private implicit val dispatcher: DispatchQueue = SerialDispatchQueue(name = "MarkdownRenderer")
+
+  private val cache = new RenderCache[StyleSheet, SpannableString](CacheSize)(_.getStyleKey, (text, styleSheet) => Markdown.parse(text, styleSheet))
+
+  @volatile private var _textStyleSheet = Option.empty[StyleSheet]
+
+  /**
+    * The style sheet of the message texts, as configured by the last view which marked down a message text
+    * (not a quote). The loaded messages are pre-rendered with it.
+    */
+  def textStyleSheet: Option[StyleSheet] = _textStyleSheet
+
+  def setTextStyleSheet(styleSheet: StyleSheet): Unit = _textStyleSheet = Option(styleSheet)
+
+  /**
+    * Returns the rendered markdown of the text of the message, from the cache if it's there.
+    * The result is a copy, so the caller can change its spans.
+    */
+  def render(messageId: MessageId, editTime: RemoteInstant, text: String, styleSheet: StyleSheet): SpannableString =
+    new SpannableString(cache(messageId, editTime, text, styleSheet))
+
+  /**
+    * Renders the text messages which aren't in the cache yet with the given style sheet, in the background.
+    */
+  def preRender(messages: Seq[MessageData], styleSheet: StyleSheet): CancellableFuture[Unit] =
+    dispatcher {
+      messages.iterator.filter(isPreRendered).foreach { msg =>
+        try cache.preRender(msg.id, msg.editTime, msg.contentString, styleSheet)
+        catch { case NonFatal(e) => warn(l"Failed to render the markdown of ${msg.id}", e) }
+      }
+    }
+}
+
+object MarkdownRenderer {
+  val CacheSize = 256
+
+  final case class Key(messageId: MessageId, editTime: RemoteInstant, style: AnyRef)
+  final case class Rendered[R](text: String, result: R)
+
+  // the messages whose text is marked down as it is, see TextPartView
+  def isPreRendered(msg: MessageData): Boolean =
+    msg.msgType == Message.Type.TEXT && msg.mentions.isEmpty && !msg.isEphemeral
+
+  /**
+    * An LRU of the renderings of the message texts, with `S` the style sheet and `R` the rendering.
+    * The renderings of a message with style sheets of different `styleKey`s are cached apart.
+    */
+  final class RenderCache[S, R](size: Int)(styleKey: S => AnyRef, render: (String, S) => R) {
+
+    private val entries = new util.LinkedHashMap[Key, Rendered[R]](16, 0.75f, true) {
+      override def removeEldestEntry(eldest: util.Map.Entry[Key, Rendered[R]]): Boolean = size > RenderCache.this.size
+    }
+
+    def apply(messageId: MessageId, editTime: RemoteInstant, text: String, style: S): R = {
+      val key = Key(messageId, editTime, styleKey(style))
+      cached(key, text).getOrElse {
+        returning(render(text, style))(r => synchronized(entries.put(key, Rendered(text, r))))
+      }
+    }
+
+    def preRender(messageId: MessageId, editTime: RemoteInstant, text: String, style: S): Unit = {
+      val key = Key(messageId, editTime, styleKey(style))
+      if (cached(key, text).isEmpty) {
+        val r = render(text, style)
+        synchronized(entries.put(key, Rendered(text, r)))
+      }
+    }
+
+    private def cached(key: Key, text: String): Option[R] =
+      synchronized(Option(entries.get(key))).filter(_.text == text).map(_.result)
+  }
+}
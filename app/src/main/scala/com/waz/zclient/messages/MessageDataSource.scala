@@ -29,6 +29,7 @@ import com.waz.threading.Threading.Implicits.Background
 import com.wire.signals.{EventContext, Signal}
 import com.waz.utils.wrappers.DBCursor
 import com.waz.zclient.log.LogUI._
+import com.waz.zclient.markdown.MarkdownRenderer
 import com.waz.zclient.messages.MessageDataSource.{MessageEntry, MessageEntryReader}
 import com.waz.zclient.{Injectable, Injector}
 
@@ -43,6 +44,7 @@ class MessageDataSource(val cursor: Option[DBCursor])(implicit inj: Injector, ec
     with DerivedLogTag {
 
   private val messageAndLikesStorage = inject[Signal[MessageAndLikesStorage]]
+  private lazy val markdownRenderer = inject[MarkdownRenderer]
 
   private def load(start: Int, count: Int): Future[Seq[MessageAndLikes]] = cursor match {
     case Some(c) if !c.isClosed =>
@@ -57,6 +59,7 @@ class MessageDataSource(val cursor: Option[DBCursor])(implicit inj: Injector, ec
             Nil
         }
       }
+      markdownRenderer.textStyleSheet.foreach(markdownRenderer.preRender(msgData, _))
       messageAndLikesStorage.head.flatMap(_.combineWithLikes(msgData))
     case _ => Future.successful(Nil)
   }
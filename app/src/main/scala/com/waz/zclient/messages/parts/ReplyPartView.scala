@@ -164,7 +164,8 @@ class TextReplyPartView(context: Context, attrs: AttributeSet, style: Int) exten
 
     if (mentions.isEmpty) {
       textView.setTransformedText(text)
-      textView.markdownQuotes()
+      if (message.isEphemeral) textView.markdownQuotes()
+      else textView.markdownQuotes(message.id, message.editTime)
     } else {
       val (replaced, mentionHolders) = TextPartView.replaceMentions(text, mentions, offset)
 
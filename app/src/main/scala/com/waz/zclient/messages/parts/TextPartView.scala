@@ -90,7 +90,8 @@ class TextPartView(context: Context, attrs: AttributeSet, style: Int)
 
   searchResultText.onUi { textView.setText }
 
-  private def setText(text: String): Unit = { // TODO: remove try/catch blocks when the bug is fixed
+  // with the message, the rendered markdown is cached for it, see MarkdownRenderer
+  private def setText(text: String, cachedFor: Option[MessageData] = None): Unit = { // TODO: remove try/catch blocks when the bug is fixed
     try {
       textView.setTransformedText(text)
     } catch {
@@ -105,7 +106,7 @@ class TextPartView(context: Context, attrs: AttributeSet, style: Int)
     }
 
     try {
-      textView.markdown()
+      cachedFor.fold(textView.markdown())(msg => textView.markdown(msg.id, msg.editTime))
     } catch {
       case ex: Exception =>
         warn(l"""
@@ -123,13 +124,14 @@ class TextPartView(context: Context, attrs: AttributeSet, style: Int)
     stopHighlight()
     super.set(msg, part, opts)
 
-    textView.setTextSize(TypedValue.COMPLEX_UNIT_PX, if (isEmojiOnly(msg.message, part)) textSizeEmoji else textSizeRegular)
+    val emojiOnly = isEmojiOnly(msg.message, part)
+    textView.setTextSize(TypedValue.COMPLEX_UNIT_PX, if (emojiOnly) textSizeEmoji else textSizeRegular)
 
     val contentString = msg.message.contentString
     val (text, offset) = part.fold(contentString, 0)(ct => (ct.content, contentString.indexOf(ct.content)))
     val mentions = msg.message.content.flatMap(_.mentions)
 
-    if (mentions.isEmpty) setText(text)
+    if (mentions.isEmpty) setText(text, Some(msg.message).filter(m => !emojiOnly && !m.isEphemeral))
     else {
       // https://github.com/wearezeta/documentation/blob/master/topics/mentions/use-cases/002-receive-and-display-message.md#step-2-replace-mention-in-message
       val (replaced, mentionHolders) = TextPartView.replaceMentions(text, mentions, offset)
@@ -17,11 +17,6 @@ fun uniqueTextFileName(): String {
     return "ZipHandlerTest_${System.currentTimeMillis()}.txt"
 }
 
-fun uniqueZipFileName(): String {
-    Thread.sleep(1)
-    return "ZipHandlerTest_${System.currentTimeMillis()}.zip"
-}
-
 fun createTextFile(dir: File, length: Int = 100): File =
     File(dir, uniqueTextFileName()).apply {
         bufferedWriter().use { it.write(generateText(length)) }
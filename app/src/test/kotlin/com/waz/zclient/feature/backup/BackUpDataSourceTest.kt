@@ -2,6 +2,7 @@ package com.waz.zclient.feature.backup
 
 import com.waz.zclient.UnitTest
 import com.waz.zclient.capture
+import com.waz.zclient.eq
 import com.waz.zclient.core.functional.Either
 import com.waz.zclient.feature.backup.io.BatchReader
 import kotlinx.coroutines.runBlocking
@@ -13,12 +14,13 @@ import org.mockito.Captor
 import org.mockito.Mock
 import org.mockito.Mockito.`when`
 import org.mockito.Mockito.verify
-import java.io.File
+import java.io.ByteArrayOutputStream
+import java.util.zip.ZipOutputStream
 
 class BackUpDataSourceTest : UnitTest() {
 
     @Mock
-    private lateinit var backUpLocalDataSource: BackUpIOHandler<String, File>
+    private lateinit var backUpLocalDataSource: BackUpStreamWriter<String>
 
     @Mock
     private lateinit var databaseLocalDataSource: BackUpIOHandler<Int, Unit>
@@ -46,7 +48,7 @@ class BackUpDataSourceTest : UnitTest() {
             override val databaseLocalDataSource: BackUpIOHandler<Int, Unit> =
                 this@BackUpDataSourceTest.databaseLocalDataSource
 
-            override val backUpLocalDataSource: BackUpIOHandler<String, File> =
+            override val backUpLocalDataSource: BackUpStreamWriter<String> =
                 this@BackUpDataSourceTest.backUpLocalDataSource
 
             override val mapper: BackUpDataMapper<String, Int> =
@@ -75,6 +77,28 @@ class BackUpDataSourceTest : UnitTest() {
         }
     }
 
+    @Test
+    fun `given data sources and mapper, when backUp to a zip is called, then read from databaseLocalDataSource, create writeIterator, and write to the zip through backUpLocalDataSource`() {
+        runBlocking {
+            databaseBatchReader.mockNextItems(entitiesList)
+            `when`(databaseLocalDataSource.readIterator()).thenReturn(databaseBatchReader)
+            entitiesList.first().forEachIndexed { index, i ->
+                `when`(mapper.fromEntity(i)).thenReturn(modelsList.first()[index])
+            }
+            val zip = ZipOutputStream(ByteArrayOutputStream())
+
+            backUpDataSource.saveBackup(zip)
+
+            verify(databaseLocalDataSource).readIterator()
+
+            verify(backUpLocalDataSource).write(capture(backUpWriteIterator), eq(zip))
+            backUpWriteIterator.value.assertItems(modelsList)
+            entitiesList.first().forEach {
+                verify(mapper).fromEntity(it)
+            }
+        }
+    }
+
     @Test
     fun `given data sources and mapper, when restore is called, then reads from backUpLocalDataSource, creates writeIterator, and writes to databaseLocalDataSource`() {
         runBlocking {
@@ -1,71 +1,62 @@
 package com.waz.zclient.feature.backup
 
 import com.waz.zclient.UnitTest
+import com.waz.zclient.core.exception.Failure
+import com.waz.zclient.core.exception.IOFailure
 import com.waz.zclient.core.functional.Either
 import com.waz.zclient.core.functional.onFailure
 import com.waz.zclient.core.functional.onSuccess
-import com.waz.zclient.feature.backup.zip.NoFilesToZipFailure
 import com.waz.zclient.feature.backup.zip.ZipHandler
 import com.waz.zclient.feature.createTextFile
-import com.waz.zclient.feature.uniqueZipFileName
+import kotlinx.coroutines.runBlocking
 import org.amshove.kluent.`should be greater than`
 import org.amshove.kluent.shouldEqual
-import org.junit.Assert.assertTrue
 import org.junit.Assert.fail
 import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
 import java.io.File
+import java.io.IOException
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
 
 class ZipHandlerTest : UnitTest() {
 
     @Test
-    fun `given a non-empty input text file, when zipped, then return a zipped non-empty file`() {
+    fun `given a non-empty input text file, when zipped to a stream, then write a non-empty zip`() {
         val tempDir = createTempDir()
         val textFile = createTextFile(tempDir)
         textFile.length() `should be greater than` 0
+        val output = ByteArrayOutputStream()
 
         val zipHandler = ZipHandler(tempDir)
 
-        zipHandler.zip(uniqueZipFileName(), listOf(textFile))
-            .onSuccess { it.length() `should be greater than` 0 }
+        runBlocking { zipHandler.zipStream(output) { zip -> writeEntries(zip, listOf(textFile)) } }
+            .onSuccess { output.size() `should be greater than` 0 }
             .onFailure { fail(it.toString()) }
     }
 
     @Test
-    fun `given no input files, when zipped, then return a zip failure`() {
+    fun `given the entries fail to be written, when zipped to a stream, then return the failure`() {
         val tempDir = createTempDir()
+        val failure = IOFailure(IOException("no entry"))
 
         val zipHandler = ZipHandler(tempDir)
 
-        zipHandler.zip(uniqueZipFileName(), emptyList())
-            .onSuccess { fail("The test should fail with ZipFailure") }
-            .onFailure { assertTrue(it is NoFilesToZipFailure) }
+        runBlocking { zipHandler.zipStream(ByteArrayOutputStream()) { Either.Left(failure) } }
+            .onSuccess { fail("The test should fail with the failure of the entries") }
+            .onFailure { it shouldEqual failure }
     }
 
     @Test
-    fun `given a list of non-empty input text files, when zipped, then return a zipped non-empty file`() {
-        val tempDir = createTempDir()
-        val fileList = listOf(createTextFile(tempDir), createTextFile(tempDir), createTextFile(tempDir))
-
-        val zipHandler = ZipHandler(tempDir)
-
-        zipHandler.zip(uniqueZipFileName(), fileList)
-            .onSuccess { it.length() `should be greater than` 0 }
-            .onFailure { fail(it.toString()) }
-    }
-
-    @Test
-    fun `given a non-empty input text file, when zipped and unzipped, then return a file with the same contents`() {
+    fun `given a non-empty input text file, when zipped and unzipped as streams, then return a file with the same contents`() {
         val tempDir = createTempDir()
         val originalFile = createTextFile(tempDir)
         val originalContents = originalFile.readText()
 
-        val zipHandler = ZipHandler(tempDir)
+        val zipped = zip(tempDir, listOf(originalFile))
 
-        val zipped = zipHandler.zip(uniqueZipFileName(), listOf(originalFile))
-        assert(zipped.isRight)
-        val zipFile = (zipped as Either.Right<File>).b
-
-        zipHandler.unzip(zipFile)
+        ZipHandler(createTempDir()).unzipStream(ByteArrayInputStream(zipped))
             .onSuccess {
                 it.size shouldEqual 1
                 val unzippedContents = it.first().readText()
@@ -75,31 +66,38 @@ class ZipHandlerTest : UnitTest() {
     }
 
     @Test
-    fun `given a list of non-empty input text files, when zipped and unzipped, then return files with the same contents`() {
+    fun `given a list of non-empty input text files, when zipped and unzipped as streams, then return files with the same contents`() {
         val tempDir = createTempDir()
         val originalFile1 = createTextFile(tempDir)
-        val originalContents1 = originalFile1.readText()
         val originalFile2 = createTextFile(tempDir)
-        val originalContents2 = originalFile2.readText()
         val originalContents = mapOf(
-            originalFile1.name to originalContents1,
-            originalFile2.name to originalContents2
+            originalFile1.name to originalFile1.readText(),
+            originalFile2.name to originalFile2.readText()
         )
 
-        val zipHandler = ZipHandler(tempDir)
+        val zipped = zip(tempDir, listOf(originalFile1, originalFile2))
 
-        val zipped = zipHandler.zip(uniqueZipFileName(), listOf(originalFile1, originalFile2))
-        assert(zipped.isRight)
-        val zipFile = (zipped as Either.Right<File>).b
-
-        zipHandler.unzip(zipFile)
+        ZipHandler(createTempDir()).unzipStream(ByteArrayInputStream(zipped))
             .onSuccess {
                 it.size shouldEqual 2
-                val unzippedContents1 = it.first().readText()
-                unzippedContents1 shouldEqual originalContents[it.first().name]
-                val unzippedContents2 = it[1].readText()
-                unzippedContents2 shouldEqual originalContents[it[1].name]
+                it.forEach { file -> file.readText() shouldEqual originalContents[file.name] }
             }
             .onFailure { fail(it.toString()) }
     }
+
+    private fun zip(tempDir: File, files: List<File>): ByteArray {
+        val output = ByteArrayOutputStream()
+        val zipped = runBlocking { ZipHandler(tempDir).zipStream(output) { zip -> writeEntries(zip, files) } }
+        assert(zipped.isRight)
+        return output.toByteArray()
+    }
+
+    private fun writeEntries(zip: ZipOutputStream, files: List<File>): Either<Failure, Unit> {
+        files.forEach { file ->
+            zip.putNextEntry(ZipEntry(file.name))
+            file.inputStream().use { it.copyTo(zip) }
+            zip.closeEntry()
+        }
+        return Either.Right(Unit)
+    }
 }
@@ -0,0 +1,85 @@
+package com.waz.zclient.feature.backup.crypto
+
+import com.waz.zclient.UnitTest
+import com.waz.zclient.feature.backup.crypto.decryption.DecryptingInputStream
+import com.waz.zclient.feature.backup.crypto.encryption.EncryptingOutputStream
+import com.waz.zclient.feature.backup.crypto.encryption.error.DecryptionFailed
+import org.amshove.kluent.shouldEqual
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.fail
+import org.junit.Before
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import kotlin.random.Random
+
+class ChunkedStreamTest : UnitTest() {
+
+    private lateinit var crypto: Crypto
+
+    @Before
+    fun setup() {
+        crypto = fakeCrypto()
+    }
+
+    @Test
+    fun `given content of any size, when it is encrypted and decrypted in chunks, then the same content is read back`() {
+        listOf(0, 1, CHUNK - 1, CHUNK, CHUNK + 1, CHUNK * 3, CHUNK * 3 + 5).forEach { size ->
+            val content = Random.nextBytes(size)
+            assertArrayEquals("content of size $size", content, decrypt(encrypt(content)))
+        }
+    }
+
+    @Test
+    fun `given content written byte by byte, when it is decrypted, then the same content is read back`() {
+        val content = Random.nextBytes(CHUNK * 2 + 3)
+        val output = ByteArrayOutputStream()
+        EncryptingOutputStream(output, crypto, KEY, NONCE, CHUNK).use { stream -> content.forEach { stream.write(it.toInt()) } }
+
+        val input = DecryptingInputStream(ByteArrayInputStream(output.toByteArray()), crypto, KEY, NONCE, CHUNK)
+        val decrypted = generateSequence { input.read().takeIf { it >= 0 }?.toByte() }.toList().toByteArray()
+
+        assertArrayEquals(content, decrypted)
+    }
+
+    @Test
+    fun `given encrypted content, when its final chunk is missing, then decryption fails`() {
+        val encrypted = encrypt(Random.nextBytes(CHUNK * 2 + 3))
+        val truncated = encrypted.copyOf(encrypted.size - (3 + FAKE_TAG_BYTES))
+
+        assertDecryptionFails(truncated)
+    }
+
+    @Test
+    fun `given encrypted content, when its chunks are reordered, then decryption fails`() {
+        val encrypted = encrypt(Random.nextBytes(CHUNK * 2 + 3))
+        val fullChunk = CHUNK + FAKE_TAG_BYTES
+        val reordered = encrypted.copyOfRange(fullChunk, 2 * fullChunk) +
+            encrypted.copyOfRange(0, fullChunk) +
+            encrypted.copyOfRange(2 * fullChunk, encrypted.size)
+
+        assertDecryptionFails(reordered)
+    }
+
+    private fun encrypt(content: ByteArray): ByteArray =
+        ByteArrayOutputStream().also { output ->
+            EncryptingOutputStream(output, crypto, KEY, NONCE, CHUNK).use { it.write(content) }
+        }.toByteArray()
+
+    private fun decrypt(encrypted: ByteArray): ByteArray =
+        DecryptingInputStream(ByteArrayInputStream(encrypted), crypto, KEY, NONCE, CHUNK).use { it.readBytes() }
+
+    private fun assertDecryptionFails(encrypted: ByteArray) =
+        try {
+            decrypt(encrypted)
+            fail("Decryption should fail")
+        } catch (ex: CryptoStreamException) {
+            ex.failure shouldEqual DecryptionFailed
+        }
+
+    companion object {
+        private const val CHUNK = 16
+        private val KEY = Random.nextBytes(FAKE_KEY_BYTES)
+        private val NONCE = Random.nextBytes(FAKE_NONCE_BYTES)
+    }
+}
@@ -0,0 +1,49 @@
+package com.waz.zclient.feature.backup.crypto
+
+import com.waz.zclient.any
+import com.waz.zclient.core.functional.Either
+import org.mockito.Mockito.`when`
+import org.mockito.Mockito.anyBoolean
+import org.mockito.Mockito.anyInt
+import org.mockito.Mockito.mock
+import org.mockito.Mockito.withSettings
+
+const val FAKE_KEY_BYTES = 32
+const val FAKE_NONCE_BYTES = 24
+const val FAKE_TAG_BYTES = 16
+private const val FAKE_SALT_BYTES = 16
+
+/**
+ * A [Crypto] which doesn't need the native library. It xors the content with the nonce and appends
+ * the last bytes of the nonce as the tag, so the content decrypts only with the nonce it was encrypted with.
+ */
+fun fakeCrypto(): Crypto = mock(Crypto::class.java, withSettings().lenient()).also { crypto ->
+    `when`(crypto.loadLibrary).thenReturn(Either.Right(Unit))
+    `when`(crypto.generateSalt()).thenReturn(Either.Right(ByteArray(FAKE_SALT_BYTES)))
+    `when`(crypto.generateNonce()).thenReturn(Either.Right(ByteArray(FAKE_NONCE_BYTES) { it.toByte() }))
+    `when`(crypto.hashWithMessagePart(any(), any())).thenReturn(Either.Right(ByteArray(FAKE_KEY_BYTES)))
+    `when`(crypto.encryptExpectedKeyBytes()).thenReturn(FAKE_KEY_BYTES)
+    `when`(crypto.decryptExpectedKeyBytes()).thenReturn(FAKE_KEY_BYTES)
+    `when`(crypto.checkExpectedKeySize(anyInt(), anyInt(), anyBoolean())).thenReturn(Either.Right(Unit))
+    `when`(crypto.aBytesLength()).thenReturn(FAKE_TAG_BYTES)
+    `when`(crypto.encrypt(any(), any(), any(), any())).thenAnswer { invocation ->
+        val cipherText = invocation.getArgument<ByteArray>(0)
+        val msg = invocation.getArgument<ByteArray>(1)
+        val nonce = invocation.getArgument<ByteArray>(3)
+        msg.forEachIndexed { i, b -> cipherText[i] = (b.toInt() xor nonce[i % nonce.size].toInt()).toByte() }
+        fakeTag(nonce).copyInto(cipherText, msg.size)
+        0
+    }
+    `when`(crypto.decrypt(any(), any(), any(), any())).thenAnswer { invocation ->
+        val decrypted = invocation.getArgument<ByteArray>(0)
+        val cipherText = invocation.getArgument<ByteArray>(1)
+        val nonce = invocation.getArgument<ByteArray>(3)
+        if (!cipherText.copyOfRange(decrypted.size, cipherText.size).contentEquals(fakeTag(nonce))) -1
+        else {
+            decrypted.indices.forEach { i -> decrypted[i] = (cipherText[i].toInt() xor nonce[i % nonce.size].toInt()).toByte() }
+            0
+        }
+    }
+}
+
+private fun fakeTag(nonce: ByteArray) = nonce.copyOfRange(nonce.size - FAKE_TAG_BYTES, nonce.size)
@@ -48,7 +48,7 @@ class DecryptionHandlerTest : UnitTest() {
         `when`(headerMetaData.readMetadata(backupFile)).thenReturn(Either.Right(EncryptedBackupHeader.EMPTY))
         `when`(crypto.hashWithMessagePart(any(), any())).thenReturn(Either.Right(byteArrayOf(2)))
 
-        val res = decryptionHandler.decryptBackup(backupFile, userId, password)
+        val res = decryptionHandler.decryptBackupStream(backupFile, userId, password)
 
         res.assertLeft {
             assertEquals(it, HashesDoNotMatch)
@@ -69,7 +69,7 @@ class DecryptionHandlerTest : UnitTest() {
         `when`(headerMetaData.readMetadata(backupFile)).thenReturn(Either.Right(EncryptedBackupHeader.EMPTY))
         `when`(crypto.hashWithMessagePart(any(), any())).thenReturn(Either.Right(hash))
 
-        val res = decryptionHandler.decryptBackup(backupFile, userId, password)
+        val res = decryptionHandler.decryptBackupStream(backupFile, userId, password)
 
         res.assertLeft {
             assertEquals(it, HashesDoNotMatch)
@@ -96,7 +96,7 @@ class DecryptionHandlerTest : UnitTest() {
 
         `when`(crypto.decrypt(any(), any(), any(), any())).thenReturn(-1)
 
-        val res = decryptionHandler.decryptBackup(backupFile, userId, password)
+        val res = decryptionHandler.decryptBackupStream(backupFile, userId, password)
 
         res.assertLeft {
             assertEquals(it, DecryptionFailed)
@@ -11,6 +11,7 @@ import com.waz.zclient.feature.backup.crypto.encryption.error.HashWrongSize
 import com.waz.zclient.feature.backup.crypto.encryption.error.HashingFailed
 import com.waz.zclient.feature.backup.crypto.header.CryptoHeaderMetaData
 import com.waz.zclient.framework.functional.assertLeft
+import kotlinx.coroutines.runBlocking
 import org.amshove.kluent.shouldEqual
 import org.junit.Before
 import org.junit.Test
@@ -49,13 +50,13 @@ class EncryptionHandlerTest : UnitTest() {
         `when`(crypto.generateSalt()).thenReturn(Either.Right(salt))
         `when`(crypto.generateNonce()).thenReturn(Either.Right(nonce))
         `when`(crypto.hashWithMessagePart(any(), any())).thenReturn(Either.Right(hash))
-        `when`(headerMetaData.createMetaData(any(), any(), any())).thenReturn(Either.Right(byteArrayOf()))
+        `when`(headerMetaData.createStreamingMetaData(any(), any(), any())).thenReturn(Either.Right(byteArrayOf()))
         `when`(crypto.encryptExpectedKeyBytes()).thenReturn(ENCRYPTION_HASH_BYTES)
         `when`(crypto.checkExpectedKeySize(ENCRYPTION_HASH_BYTES, ENCRYPTION_HASH_BYTES)).thenReturn(Either.Right(Unit))
 
-        encryptionHandler.encryptBackup(backupFile, userId, password, backupFile.name + "_encrypted")
+        runBlocking { encryptionHandler.encryptBackupStream(backupFile, userId, password) { Either.Right(Unit) } }
 
-        verify(headerMetaData).createMetaData(eq(salt), eq(hash), eq(nonce))
+        verify(headerMetaData).createStreamingMetaData(eq(salt), eq(hash), eq(nonce))
     }
 
     @Test
@@ -67,8 +68,8 @@ class EncryptionHandlerTest : UnitTest() {
 
         `when`(crypto.generateSalt()).thenReturn(Either.Left(FakeSodiumLibError))
 
-         encryptionHandler.encryptBackup(backupFile, userId, password, backupFile.name + "_encrypted")
-             .assertLeft { it shouldEqual FakeSodiumLibError }
+        runBlocking { encryptionHandler.encryptBackupStream(backupFile, userId, password) { Either.Right(Unit) } }
+            .assertLeft { it shouldEqual FakeSodiumLibError }
     }
 
     @Test
@@ -82,7 +83,7 @@ class EncryptionHandlerTest : UnitTest() {
         `when`(crypto.generateSalt()).thenReturn(Either.Right(salt))
         `when`(crypto.generateNonce()).thenReturn(Either.Left(FakeSodiumLibError))
 
-        encryptionHandler.encryptBackup(backupFile, userId, password, backupFile.name + "_encrypted")
+        runBlocking { encryptionHandler.encryptBackupStream(backupFile, userId, password) { Either.Right(Unit) } }
             .assertLeft { it shouldEqual FakeSodiumLibError }
     }
 
@@ -99,7 +100,7 @@ class EncryptionHandlerTest : UnitTest() {
         `when`(crypto.generateNonce()).thenReturn(Either.Right(nonce))
         `when`(crypto.hashWithMessagePart(any(), any())).thenReturn(Either.Left(HashingFailed))
 
-        encryptionHandler.encryptBackup(backupFile, userId, password, backupFile.name + "_encrypted")
+        runBlocking { encryptionHandler.encryptBackupStream(backupFile, userId, password) { Either.Right(Unit) } }
             .assertLeft { it shouldEqual HashingFailed }
     }
 
@@ -116,9 +117,9 @@ class EncryptionHandlerTest : UnitTest() {
         `when`(crypto.generateSalt()).thenReturn(Either.Right(salt))
         `when`(crypto.generateNonce()).thenReturn(Either.Right(nonce))
         `when`(crypto.hashWithMessagePart(any(), any())).thenReturn(Either.Right(hash))
-        `when`(headerMetaData.createMetaData(salt, hash, nonce)).thenReturn(Either.Left(HashInvalid))
+        `when`(headerMetaData.createStreamingMetaData(salt, hash, nonce)).thenReturn(Either.Left(HashInvalid))
 
-        encryptionHandler.encryptBackup(backupFile, userId, password, backupFile.name + "_encrypted")
+        runBlocking { encryptionHandler.encryptBackupStream(backupFile, userId, password) { Either.Right(Unit) } }
             .assertLeft { it shouldEqual HashInvalid }
     }
 
@@ -136,11 +137,11 @@ class EncryptionHandlerTest : UnitTest() {
         `when`(crypto.generateSalt()).thenReturn(Either.Right(salt))
         `when`(crypto.generateNonce()).thenReturn(Either.Right(nonce))
         `when`(crypto.hashWithMessagePart(any(), any())).thenReturn(Either.Right(hash))
-        `when`(headerMetaData.createMetaData(any(), any(), any())).thenReturn(Either.Right(byteArrayOf()))
+        `when`(headerMetaData.createStreamingMetaData(any(), any(), any())).thenReturn(Either.Right(byteArrayOf()))
         `when`(crypto.encryptExpectedKeyBytes()).thenReturn(ENCRYPTION_HASH_BYTES)
         `when`(crypto.checkExpectedKeySize(wrongHashBytesSize, ENCRYPTION_HASH_BYTES)).thenReturn(Either.Left(HashWrongSize))
 
-        encryptionHandler.encryptBackup(backupFile, userId, password, backupFile.name + "_encrypted")
+        runBlocking { encryptionHandler.encryptBackupStream(backupFile, userId, password) { Either.Right(Unit) } }
             .assertLeft { it shouldEqual HashWrongSize }
     }
 
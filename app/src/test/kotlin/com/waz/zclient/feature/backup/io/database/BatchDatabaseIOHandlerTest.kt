@@ -3,20 +3,22 @@ package com.waz.zclient.feature.backup.io.database
 import com.waz.zclient.UnitTest
 import com.waz.zclient.any
 import com.waz.zclient.core.functional.Either
-import com.waz.zclient.eq
 import com.waz.zclient.feature.backup.assertItems
 import com.waz.zclient.feature.backup.io.BatchReader
 import com.waz.zclient.feature.backup.io.forEach
 import com.waz.zclient.feature.backup.mockNextItems
 import com.waz.zclient.storage.db.BatchDao
+import com.waz.zclient.storage.db.FIRST_BATCH_KEY
 import kotlinx.coroutines.runBlocking
 import org.junit.Test
 import org.mockito.ArgumentMatchers
 import org.mockito.Mock
 import org.mockito.Mockito.mock
+import org.mockito.Mockito.never
 import org.mockito.Mockito.spy
 import org.mockito.Mockito.times
 import org.mockito.Mockito.verify
+import java.util.SortedMap
 
 class BatchDatabaseIOHandlerTest : UnitTest() {
 
@@ -38,12 +40,12 @@ class BatchDatabaseIOHandlerTest : UnitTest() {
 
         runBlocking {
             batchDatabaseIOHandler.readIterator().assertItems(itemsInBatches)
-            verify(batchDao, times(4)).nextBatch(ArgumentMatchers.anyInt(), eq(batchSize))
+            verify(batchDao, times(4)).nextBatchAfter(ArgumentMatchers.anyLong(), ArgumentMatchers.anyLong())
         }
     }
 
     @Test
-    fun `given a readIterator(), when next() is called, does not request a batch with size more than the remaining count`() {
+    fun `given a readIterator(), when next() is called, reads the batch after the last key of the previous one`() {
         runBlocking {
             val allItems = listOf(1, 2, 3, 4, 5, 6, 7)
             val batchSize = 3
@@ -53,10 +55,23 @@ class BatchDatabaseIOHandlerTest : UnitTest() {
 
             batchDatabaseIOHandler.readIterator().forEach { Either.Right(Unit)/* just consume all */ }
 
-            //[1, 2, 3], [4, 5, 6]
-            verify(batchDao, times(2)).nextBatch(ArgumentMatchers.anyInt(), eq(batchSize))
-            //[7]
-            verify(batchDao).nextBatch(ArgumentMatchers.anyInt(), eq(1))
+            //[1, 2, 3], [4, 5, 6], [7]
+            verify(batchDao).nextBatchAfter(FIRST_BATCH_KEY, 3L)
+            verify(batchDao).nextBatchAfter(3L, 6L)
+            verify(batchDao).nextBatchAfter(6L, 7L)
+            verify(batchDao, never()).count()
+        }
+    }
+
+    @Test
+    fun `given a table with gaps in its keys, when readIterator() is called, returns full batches of the remaining rows`() {
+        runBlocking {
+            val rows = sortedMapOf(1L to 1, 2L to 2, 5L to 5, 6L to 6, 9L to 9)
+
+            batchDao = batchReadableDaoOf(rows)
+            batchDatabaseIOHandler = BatchDatabaseIOHandler(batchDao, 2)
+
+            batchDatabaseIOHandler.readIterator().assertItems(listOf(listOf(1, 2), listOf(5, 6), listOf(9)))
         }
     }
 
@@ -79,11 +94,17 @@ class BatchDatabaseIOHandlerTest : UnitTest() {
     }
 
     companion object {
-        private fun batchReadableDaoOf(list: List<Int>) = object : BatchDao<Int> {
-            override suspend fun count(): Int = list.size
+        private fun batchReadableDaoOf(list: List<Int>) =
+            batchReadableDaoOf(list.withIndex().associateTo(sortedMapOf<Long, Int>()) { (index, item) -> index + 1L to item })
+
+        private fun batchReadableDaoOf(rows: SortedMap<Long, Int>) = object : BatchDao<Int> {
+            override suspend fun count(): Int = rows.size
+
+            override suspend fun nextBatchEndKey(lastKey: Long, batchSize: Int): Long? =
+                rows.tailMap(lastKey + 1).keys.take(batchSize).lastOrNull()
 
-            override suspend fun nextBatch(start: Int, batchSize: Int): List<Int>? =
-                if (start < list.size) list.subList(start, (start + batchSize)) else null
+            override suspend fun nextBatchAfter(lastKey: Long, endKey: Long): List<Int>? =
+                rows.subMap(lastKey + 1, endKey + 1).values.toList()
 
             override suspend fun insert(item: Int) { /*not needed*/ }
 
@@ -11,7 +11,11 @@ import org.junit.Assert.fail
 import org.junit.Test
 import org.mockito.Mock
 import org.mockito.Mockito.`when`
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
 import java.util.UUID
+import java.util.zip.ZipInputStream
+import java.util.zip.ZipOutputStream
 
 class MetaDataHandlerTest : UnitTest() {
 
@@ -19,16 +23,18 @@ class MetaDataHandlerTest : UnitTest() {
     private lateinit var jsonConverter: JsonConverter<BackupMetaData>
 
     @Test
-    fun `given the user's and app's data, when the metadata json file is created, then it consists of correct json string`() {
-        val tempDir = createTempDir()
-        val metaDataHandler = MetaDataHandler(jsonConverter, tempDir)
+    fun `given the user's and app's data, when the metadata is written to the zip, then its entry consists of correct json string`() {
+        val metaDataHandler = MetaDataHandler(jsonConverter)
+        val output = ByteArrayOutputStream()
 
         `when`(jsonConverter.toJson(metaData)).thenReturn(metaDataJson)
 
-        metaDataHandler.generateMetaDataFile(metaData)
+        ZipOutputStream(output).use { metaDataHandler.writeMetaData(metaData, it) }
             .assertRight {
-                val contents = it.readText()
-                assertEquals(metaDataJson, contents)
+                ZipInputStream(ByteArrayInputStream(output.toByteArray())).use { zip ->
+                    assertEquals(MetaDataHandler.FILE_NAME, zip.nextEntry?.name)
+                    assertEquals(metaDataJson, zip.reader().readText())
+                }
             }
     }
 
@@ -37,7 +43,7 @@ class MetaDataHandlerTest : UnitTest() {
         val tempDir = createTempDir()
         val metadataFile = createTempFile("metadata", ".json", tempDir)
         metadataFile.writeText(metaDataJson)
-        val metaDataHandler = MetaDataHandler(jsonConverter, tempDir)
+        val metaDataHandler = MetaDataHandler(jsonConverter)
 
         `when`(jsonConverter.fromJson(metaDataJson)).thenReturn(metaData)
 
@@ -61,7 +67,7 @@ class MetaDataHandlerTest : UnitTest() {
         val metadataFile = createTempFile("metadata", ".json", tempDir)
         metadataFile.writeText(invalidJson)
 
-        val metaDataHandler = MetaDataHandler(jsonConverter, tempDir)
+        val metaDataHandler = MetaDataHandler(jsonConverter)
 
         `when`(jsonConverter.fromJson(invalidJson)).thenThrow(serializationException)
 
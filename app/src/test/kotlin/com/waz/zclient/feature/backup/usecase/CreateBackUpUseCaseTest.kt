@@ -1,226 +1,161 @@
 package com.waz.zclient.feature.backup.usecase
 
 import com.waz.zclient.UnitTest
-import com.waz.zclient.any
 import com.waz.zclient.core.exception.DatabaseError
+import com.waz.zclient.core.exception.Failure
 import com.waz.zclient.core.exception.FeatureFailure
 import com.waz.zclient.core.functional.Either
+import com.waz.zclient.core.functional.flatMap
+import com.waz.zclient.core.functional.onFailure
+import com.waz.zclient.core.functional.onSuccess
+import com.waz.zclient.core.utilities.converters.JsonConverter
 import com.waz.zclient.feature.backup.BackUpRepository
+import com.waz.zclient.feature.backup.crypto.Crypto
+import com.waz.zclient.feature.backup.crypto.decryption.DecryptionHandler
 import com.waz.zclient.feature.backup.crypto.encryption.EncryptionHandler
+import com.waz.zclient.feature.backup.crypto.fakeCrypto
+import com.waz.zclient.feature.backup.crypto.header.CryptoHeaderMetaData
+import com.waz.zclient.feature.backup.crypto.header.EncryptionHeaderMapper
+import com.waz.zclient.feature.backup.metadata.BackupMetaData
 import com.waz.zclient.feature.backup.metadata.MetaDataHandler
 import com.waz.zclient.feature.backup.zip.ZipHandler
-import kotlinx.coroutines.ExperimentalCoroutinesApi
+import com.waz.zclient.feature.createTempDir
 import kotlinx.coroutines.runBlocking
-import kotlinx.coroutines.test.TestCoroutineScope
+import org.amshove.kluent.shouldEqual
 import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
 import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Before
 import org.junit.Test
 import org.mockito.Mockito.`when`
-import org.mockito.Mockito.anyList
-import org.mockito.Mockito.anyString
-import org.mockito.Mockito.mock
-import org.mockito.Mockito.verify
-import org.mockito.Mockito.verifyNoInteractions
 import java.io.File
 import java.util.UUID
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
 
-@ExperimentalCoroutinesApi
 class CreateBackUpUseCaseTest : UnitTest() {
 
     private lateinit var createBackUpUseCase: CreateBackUpUseCase
 
-    private val testCoroutineScope = TestCoroutineScope()
-
-    @Test
-    fun `given back up repositories and metadata, when all of them succeed, then zip, encrypt, and return success`() {
-        runBlocking {
-            val repo1 = mockBackUpRepo(true)
-            val repo2 = mockBackUpRepo(true)
-            val repo3 = mockBackUpRepo(true)
-            val zipHandler = mockZipHandler(true)
-            val encryptionHandler = mockEncryptionHandler(true)
-            val metaDataHandler = mockMetaDataHandler(true)
-
-            createBackUpUseCase = CreateBackUpUseCase(
-                listOf(repo1, repo2, repo3),
-                zipHandler,
-                encryptionHandler,
-                metaDataHandler,
-                backUpVersion,
-                testCoroutineScope
-            )
-
-            val result = createBackUpUseCase.run(params)
-
-            verify(repo1).saveBackup()
-            verify(repo2).saveBackup()
-            verify(repo3).saveBackup()
-            verify(metaDataHandler).generateMetaDataFile(any())
-            verify(zipHandler).zip(anyString(), anyList())
-            verify(encryptionHandler).encryptBackup(any(), any(), anyString(), anyString())
-
-            assertTrue(result.isRight)
-        }
+    private lateinit var tempDir: File
+    private lateinit var crypto: Crypto
+    private lateinit var cryptoHeaderMetaData: CryptoHeaderMetaData
+    private lateinit var metaDataHandler: MetaDataHandler
+
+    @Before
+    fun setup() {
+        tempDir = createTempDir()
+        crypto = fakeCrypto()
+        cryptoHeaderMetaData = CryptoHeaderMetaData(crypto, EncryptionHeaderMapper())
+        metaDataHandler = MetaDataHandler(JsonConverter(BackupMetaData.serializer()))
     }
 
     @Test
-    fun `given back up repositories, when one of them fails, then do not execute others and return a failure`() {
+    fun `given back up repositories and metadata, when all of them succeed, then zip, encrypt, and return success`() {
         runBlocking {
-            val repo1 = mockBackUpRepo(true)
-            val repo2 = mockBackUpRepo(false)
-            val repo3 = mockBackUpRepo(true)
-            val zipHandler = mockZipHandler(true)
-            val encryptionHandler = mockEncryptionHandler(true)
-            val metaDataHandler = mockMetaDataHandler(true)
+            val repo1 = FakeBackUpRepository("Repo1.json")
+            val repo2 = FakeBackUpRepository("Repo2.json")
+            val repo3 = FakeBackUpRepository("Repo3.json")
 
-            createBackUpUseCase = CreateBackUpUseCase(
-                listOf(repo1, repo2, repo3),
-                zipHandler,
-                encryptionHandler,
-                metaDataHandler,
-                backUpVersion,
-                testCoroutineScope
-            )
+            createBackUpUseCase = createUseCase(listOf(repo1, repo2, repo3))
 
             val result = createBackUpUseCase.run(params)
 
-            verify(repo1).saveBackup()
-            verify(repo2).saveBackup()
-            // backups are saved asynchronously so there might be some interactions with repo3
-            verifyNoInteractions(metaDataHandler)
-            verifyNoInteractions(zipHandler)
-            verifyNoInteractions(encryptionHandler)
-
-            assertEquals(Either.Left(DatabaseError), result)
+            assertTrue(repo1.saved)
+            assertTrue(repo2.saved)
+            assertTrue(repo3.saved)
+            result.onSuccess { assertTrue(it.exists()) }.onFailure { fail(it.toString()) }
         }
     }
 
     @Test
-    fun `given back up repositories and metadata, when they succeed but the zip handler fails, then return a failure`() {
+    fun `given a created back up, when it is decrypted and unzipped, then return the entries of all repositories and metadata`() {
         runBlocking {
-            val repo1 = mockBackUpRepo(true)
-            val repo2 = mockBackUpRepo(true)
-            val repo3 = mockBackUpRepo(true)
-            val zipHandler = mockZipHandler(false)
-            val encryptionHandler = mockEncryptionHandler(true)
-            val metaDataHandler = mockMetaDataHandler(true)
-
-            createBackUpUseCase = CreateBackUpUseCase(
-                listOf(repo1, repo2, repo3),
-                zipHandler,
-                encryptionHandler,
-                metaDataHandler,
-                backUpVersion,
-                testCoroutineScope
-            )
-
-            val result = createBackUpUseCase.run(params)
-
-            verify(repo1).saveBackup()
-            verify(repo2).saveBackup()
-            verify(repo3).saveBackup()
-            verify(metaDataHandler).generateMetaDataFile(any()) // metadata is generated before zipping
-            verify(zipHandler).zip(anyString(), anyList())
-            verifyNoInteractions(encryptionHandler)
-
-            assertEquals(Either.Left(FakeZipFailure), result)
+            val repositories = listOf(FakeBackUpRepository("Repo1.json"), FakeBackUpRepository("Repo2.json"))
+
+            createBackUpUseCase = createUseCase(repositories)
+
+            val restoreDir = createTempDir()
+            val result = createBackUpUseCase.run(params).flatMap { backupFile ->
+                DecryptionHandler(crypto, cryptoHeaderMetaData).decryptBackupStream(backupFile, userId, password)
+            }.flatMap { input ->
+                ZipHandler(restoreDir).unzipStream(input)
+            }
+
+            result.onSuccess { files ->
+                files.map { it.name }.toSet() shouldEqual setOf("Repo1.json", "Repo2.json", MetaDataHandler.FILE_NAME)
+                files.first { it.name == "Repo1.json" }.readText() shouldEqual "Repo1.json"
+                metaDataHandler.readMetaData(files.first { it.name == MetaDataHandler.FILE_NAME })
+                    .onSuccess { it.userId shouldEqual userId }
+                    .onFailure { fail(it.toString()) }
+            }.onFailure { fail(it.toString()) }
         }
     }
 
     @Test
-    fun `given back up repositories, when they succeed but the zip handler fails, then return a failure`() {
+    fun `given back up repositories, when one of them fails, then do not execute others, do not keep the file and return a failure`() {
         runBlocking {
-            val repo1 = mockBackUpRepo(true)
-            val repo2 = mockBackUpRepo(true)
-            val repo3 = mockBackUpRepo(true)
-            val zipHandler = mockZipHandler(false)
-            val encryptionHandler = mockEncryptionHandler(true)
-            val metaDataHandler = mockMetaDataHandler(true)
+            val repo1 = FakeBackUpRepository("Repo1.json")
+            val repo2 = FakeBackUpRepository("Repo2.json", success = false)
+            val repo3 = FakeBackUpRepository("Repo3.json")
 
-            createBackUpUseCase = CreateBackUpUseCase(
-                listOf(repo1, repo2, repo3),
-                zipHandler,
-                encryptionHandler,
-                metaDataHandler,
-                backUpVersion,
-                testCoroutineScope
-            )
+            createBackUpUseCase = createUseCase(listOf(repo1, repo2, repo3))
 
             val result = createBackUpUseCase.run(params)
 
-            verify(repo1).saveBackup()
-            verify(repo2).saveBackup()
-            verify(repo3).saveBackup()
-            verify(metaDataHandler).generateMetaDataFile(any()) // metadata is generated before zipping
-            verify(zipHandler).zip(anyString(), anyList())
-            verifyNoInteractions(encryptionHandler)
+            assertTrue(repo1.saved)
+            assertTrue(repo2.saved)
+            assertFalse(repo3.saved)
+            assertTrue(tempDir.listFiles().isNullOrEmpty())
 
-            assertEquals(Either.Left(FakeZipFailure), result)
+            assertEquals(Either.Left(DatabaseError), result)
         }
     }
 
     @Test
-    fun `given back up repositories and metadata, when they succeed but the encryption handler fails, then return a failure`() {
+    fun `given back up repositories, when the encryption can not be set up, then do not execute them and return a failure`() {
         runBlocking {
-            val repo1 = mockBackUpRepo(true)
-            val repo2 = mockBackUpRepo(true)
-            val repo3 = mockBackUpRepo(true)
-            val zipHandler = mockZipHandler(true)
-            val encryptionHandler = mockEncryptionHandler(false)
-            val metaDataHandler = mockMetaDataHandler(true)
+            val repo1 = FakeBackUpRepository("Repo1.json")
+            `when`(crypto.generateSalt()).thenReturn(Either.Left(FakeEncryptionFailure))
 
-            createBackUpUseCase = CreateBackUpUseCase(
-                listOf(repo1, repo2, repo3),
-                zipHandler,
-                encryptionHandler,
-                metaDataHandler,
-                backUpVersion,
-                testCoroutineScope
-            )
+            createBackUpUseCase = createUseCase(listOf(repo1))
 
             val result = createBackUpUseCase.run(params)
 
-            verify(repo1).saveBackup()
-            verify(repo2).saveBackup()
-            verify(repo3).saveBackup()
-            verify(metaDataHandler).generateMetaDataFile(any())
-            verify(zipHandler).zip(anyString(), anyList())
-            verify(encryptionHandler).encryptBackup(any(), any(), anyString(), anyString())
-
+            assertFalse(repo1.saved)
             assertEquals(Either.Left(FakeEncryptionFailure), result)
         }
     }
 
-    @Test
-    fun `given back up repositories and metadata, when metadata fails, then return a failure`() {
-        runBlocking {
-            val repo1 = mockBackUpRepo(true)
-            val repo2 = mockBackUpRepo(true)
-            val repo3 = mockBackUpRepo(true)
-            val zipHandler = mockZipHandler(true)
-            val encryptionHandler = mockEncryptionHandler(true)
-            val metaDataHandler = mockMetaDataHandler(false)
-
-            createBackUpUseCase = CreateBackUpUseCase(
-                    listOf(repo1, repo2, repo3),
-                    zipHandler,
-                    encryptionHandler,
-                    metaDataHandler,
-                    backUpVersion,
-                    testCoroutineScope
-            )
-
-            val result = createBackUpUseCase.run(params)
-
-            verify(repo1).saveBackup()
-            verify(repo2).saveBackup()
-            verify(repo3).saveBackup()
-            verify(metaDataHandler).generateMetaDataFile(any())
-            verifyNoInteractions(zipHandler)
-            verifyNoInteractions(encryptionHandler)
-
-            assertEquals(Either.Left(FakeMetaDataFailure), result)
+    private fun createUseCase(repositories: List<BackUpRepository<List<File>>>) =
+        CreateBackUpUseCase(
+            repositories,
+            ZipHandler(tempDir),
+            EncryptionHandler(crypto, cryptoHeaderMetaData),
+            metaDataHandler,
+            tempDir,
+            backUpVersion
+        )
+
+    private class FakeBackUpRepository(private val entryName: String, private val success: Boolean = true) : BackUpRepository<List<File>> {
+        var saved = false
+
+        override suspend fun saveBackup(): Either<Failure, List<File>> = Either.Right(emptyList())
+
+        override suspend fun saveBackup(zip: ZipOutputStream): Either<Failure, Unit> {
+            saved = true
+            return if (success) {
+                zip.putNextEntry(ZipEntry(entryName))
+                zip.write(entryName.toByteArray())
+                zip.closeEntry()
+                Either.Right(Unit)
+            } else {
+                Either.Left(DatabaseError)
+            }
         }
+
+        override suspend fun restoreBackup(): Either<Failure, Unit> = Either.Right(Unit)
     }
 
     companion object {
@@ -229,43 +164,10 @@ class CreateBackUpUseCaseTest : UnitTest() {
         private const val userHandle = "user"
         private const val password = "password"
         private const val backUpVersion = 0
-        private const val platform = "Android"
         private val clientId = UUID.randomUUID().toString()
-        private const val version = "3.54"
-        private const val creationTime = "2020-09-08T10:00:00.000Z"
 
         private val params = CreateBackUpUseCaseParams(userId, clientId, userHandle, password)
 
-        suspend fun mockBackUpRepo(backUpSuccess: Boolean = true): BackUpRepository<List<File>> = mock(BackUpRepository::class.java).also {
-            `when`(it.saveBackup()).thenReturn(
-                    if (backUpSuccess) Either.Right(listOf(createTempFile(suffix = ".json")))
-                    else Either.Left(DatabaseError)
-            )
-        } as BackUpRepository<List<File>>
-
-        fun mockZipHandler(zipSuccess: Boolean = true): ZipHandler = mock(ZipHandler::class.java).also {
-            `when`(it.zip(anyString(), anyList())).thenReturn(
-                if (zipSuccess) Either.Right(createTempFile(suffix = ".zip"))
-                else Either.Left(FakeZipFailure)
-            )
-        }
-
-        fun mockEncryptionHandler(encryptionSuccess: Boolean = true): EncryptionHandler = mock(EncryptionHandler::class.java).also {
-            `when`(it.encryptBackup(any(), any(), anyString(), anyString())).thenReturn(
-                if (encryptionSuccess) Either.Right(createTempFile(suffix = "_encrypted"))
-                else Either.Left(FakeEncryptionFailure)
-            )
-        }
-
-        fun mockMetaDataHandler(metaDataSuccess: Boolean = true): MetaDataHandler = mock(MetaDataHandler::class.java).also {
-            `when`(it.generateMetaDataFile(any())).thenReturn(
-                if (metaDataSuccess) Either.Right(createTempFile(suffix = ".json"))
-                else Either.Left(FakeMetaDataFailure)
-            )
-        }
-
-        object FakeZipFailure : FeatureFailure()
-        object FakeEncryptionFailure: FeatureFailure()
-        object FakeMetaDataFailure: FeatureFailure()
+        object FakeEncryptionFailure : FeatureFailure()
     }
 }
@@ -23,6 +23,7 @@ import org.mockito.Mockito.mock
 import org.mockito.Mockito.verify
 import org.mockito.Mockito.verifyNoInteractions
 import org.mockito.Mockito.anyString
+import java.io.ByteArrayInputStream
 import java.io.File
 import java.util.UUID
 
@@ -54,8 +55,8 @@ class RestoreBackUpUseCaseTest : UnitTest() {
 
             val result = restoreBackUpUseCase.run(RestoreBackUpUseCaseParams(encryptedFile, userId, password))
 
-            verify(decryptionHandler).decryptBackup(encryptedFile, userId, password)
-            verify(zipHandler).unzip(zipFile)
+            verify(decryptionHandler).decryptBackupStream(encryptedFile, userId, password)
+            verify(zipHandler).unzipStream(zipStream)
             verify(repo1).restoreBackup()
             verify(repo2).restoreBackup()
             verify(repo3).restoreBackup()
@@ -85,7 +86,7 @@ class RestoreBackUpUseCaseTest : UnitTest() {
 
             val result = restoreBackUpUseCase.run(RestoreBackUpUseCaseParams(encryptedFile, userId, password))
 
-            verify(decryptionHandler).decryptBackup(encryptedFile, userId, password)
+            verify(decryptionHandler).decryptBackupStream(encryptedFile, userId, password)
             verifyNoInteractions(zipHandler)
             verifyNoInteractions(metaDataHandler)
             verifyNoInteractions(repo1)
@@ -118,7 +119,7 @@ class RestoreBackUpUseCaseTest : UnitTest() {
             val result = restoreBackUpUseCase.run(RestoreBackUpUseCaseParams(zipFile, userId, password))
 
             // verify(encryptionHandler).decrypt(encryptedFile, userId, password)
-            verify(zipHandler).unzip(zipFile)
+            verify(zipHandler).unzipStream(zipStream)
             verifyNoInteractions(metaDataHandler)
             verifyNoInteractions(repo1)
             verifyNoInteractions(repo2)
@@ -149,7 +150,7 @@ class RestoreBackUpUseCaseTest : UnitTest() {
 
             val result = restoreBackUpUseCase.run(RestoreBackUpUseCaseParams(zipFile, userId, password))
 
-            verify(zipHandler).unzip(zipFile)
+            verify(zipHandler).unzipStream(zipStream)
             verifyNoInteractions(metaDataHandler)
             verifyNoInteractions(repo1)
             verifyNoInteractions(repo2)
@@ -180,8 +181,8 @@ class RestoreBackUpUseCaseTest : UnitTest() {
 
             val result = restoreBackUpUseCase.run(RestoreBackUpUseCaseParams(encryptedFile, userId, password))
 
-            verify(decryptionHandler).decryptBackup(encryptedFile, userId, password)
-            verify(zipHandler).unzip(zipFile)
+            verify(decryptionHandler).decryptBackupStream(encryptedFile, userId, password)
+            verify(zipHandler).unzipStream(zipStream)
             verify(metaDataHandler).readMetaData(metadataFile)
             verifyNoInteractions(repo1)
             verifyNoInteractions(repo2)
@@ -212,8 +213,8 @@ class RestoreBackUpUseCaseTest : UnitTest() {
 
             val result = restoreBackUpUseCase.run(RestoreBackUpUseCaseParams(encryptedFile, userId, password))
 
-            verify(decryptionHandler).decryptBackup(encryptedFile, userId, password)
-            verify(zipHandler).unzip(zipFile)
+            verify(decryptionHandler).decryptBackupStream(encryptedFile, userId, password)
+            verify(zipHandler).unzipStream(zipStream)
             verify(metaDataHandler).readMetaData(metadataFile)
             verify(repo1).restoreBackup()
             verify(repo2).restoreBackup()
@@ -294,6 +295,7 @@ class RestoreBackUpUseCaseTest : UnitTest() {
         private val metadataFile = File(MetaDataHandler.FILE_NAME) // a mock file, don't create it
         private val zipFile = File(FILE_NAME_ZIPPED)
         private val encryptedFile = File(FILE_NAME_ENCRYPTED)
+        private val zipStream = ByteArrayInputStream(ByteArray(0))
         private const val backUpVersion = 0
         private const val userHandle = "user"
 
@@ -312,7 +314,7 @@ class RestoreBackUpUseCaseTest : UnitTest() {
         } as BackUpRepository<List<File>>
 
         private fun mockZipHandler(unzipSuccess: Boolean = true, hasMetadata: Boolean = true): ZipHandler = mock(ZipHandler::class.java).also {
-            `when`(it.unzip(any())).thenReturn(
+            `when`(it.unzipStream(any())).thenReturn(
                     if (unzipSuccess) {
                         val files = (1..3).map { createTempFile(suffix = ".json") }
                         Either.Right(if (hasMetadata) files + File(MetaDataHandler.FILE_NAME) else files)
@@ -323,8 +325,8 @@ class RestoreBackUpUseCaseTest : UnitTest() {
         }
 
         private fun mockDecryptionHandler(decryptionSuccess: Boolean = true): DecryptionHandler = mock(DecryptionHandler::class.java).also {
-            `when`(it.decryptBackup(any(), any(), anyString())).thenReturn(
-                    if (decryptionSuccess) Either.Right(zipFile)
+            `when`(it.decryptBackupStream(any(), any(), anyString())).thenReturn(
+                    if (decryptionSuccess) Either.Right(zipStream)
                     else Either.Left(FakeDecryptionFailure)
             )
         }
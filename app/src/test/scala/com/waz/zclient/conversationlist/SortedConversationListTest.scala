@@ -0,0 +1,116 @@
+/**
+ * Wire
+ * Copyright (C) 2018 Wire Swiss GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.waz.zclient.conversationlist
+
+import com.waz.model.{ConvId, ConversationData, RemoteInstant}
+import com.waz.utils.ContentChange
+import com.waz.utils.ContentChange.{Added, Removed, Updated}
+import com.waz.zclient.conversationlist.SortedConversationList._
+import org.junit.Test
+import org.scalatest.junit.JUnitSuite
+
+import scala.collection.mutable
+import scala.util.Random
+
+class SortedConversationListTest extends JUnitSuite {
+
+  private val notArchived: ConversationData => Boolean = !_.archived
+
+  private def conv(time: Long, archived: Boolean = false) =
+    ConversationData(lastEventTime = RemoteInstant.ofEpochMilli(time), archived = archived)
+
+  private def sorted(convs: ConversationData*) =
+    SortedConversationList(notArchived, ConversationData.ConversationDataOrdering, convs)
+
+  // applies the changes the way the adapter does
+  private def applyChanges(shown: Seq[ConversationData], list: SortedConversationList): Seq[ConversationData] = {
+    val buffer = mutable.ListBuffer(shown: _*)
+    list.changes.foreach {
+      case Inserted(pos, c) => buffer.insert(pos, c)
+      case Deleted(pos)     => buffer.remove(pos)
+      case Moved(from, to)  => buffer.insert(to, buffer.remove(from))
+      case Changed(pos, c)  => buffer.update(pos, c)
+    }
+    buffer.toList
+  }
+
+  @Test
+  def keepTheMostRecentConversationsFirst(): Unit = {
+    val (a, b, c) = (conv(1), conv(2), conv(3, archived = true))
+    val list = sorted(a, b, c)
+
+    assert(list.toSeq == Seq(b, a))
+    assert(list.indexOf(a.id) == 1)
+    assert(list.indexOf(c.id) == -1)
+    assert(list(0) == b)
+  }
+
+  @Test
+  def moveAnUpdatedConversation(): Unit = {
+    val (a, b, c) = (conv(1), conv(2), conv(3))
+    val list = sorted(a, b, c)
+    val updatedA = a.copy(lastEventTime = RemoteInstant.ofEpochMilli(4))
+    val next = list.applied(Seq(Updated(a.id, a, updatedA)))
+
+    assert(next.toSeq == Seq(updatedA, c, b))
+    assert(next.changes == Vector(Moved(2, 0), Changed(0, updatedA)))
+    assert(next.follows(list))
+    assert(!list.follows(next))
+  }
+
+  @Test
+  def insertAndRemoveConversationsPassingTheFilter(): Unit = {
+    val (a, b) = (conv(1), conv(2))
+    val list = sorted(a, b)
+    val c = conv(3)
+    val next = list.applied(Seq(Added(c.id, c), Updated(a.id, a, a.copy(archived = true)), Removed(b.id)))
+
+    assert(next.toSeq == Seq(c))
+    assert(next.changes == Vector(Inserted(0, c), Deleted(2), Deleted(1)))
+  }
+
+  @Test
+  def applyRandomChangesLikeAFullSort(): Unit = {
+    val random = new Random(42)
+    val ids = Vector.fill(50)(ConvId())
+    var all = Map.empty[ConvId, ConversationData]
+    var list = sorted()
+    var shown = Seq.empty[ConversationData]
+
+    (1 to 500).foreach { _ =>
+      val changes: Seq[ContentChange[ConvId, ConversationData]] = Seq.fill(random.nextInt(5) + 1) {
+        val id = ids(random.nextInt(ids.size))
+        if (random.nextInt(5) == 0) {
+          all -= id
+          Removed(id)
+        } else {
+          val c = ConversationData(id, lastEventTime = RemoteInstant.ofEpochMilli(random.nextInt(100)), archived = random.nextInt(4) == 0)
+          val change = all.get(id).fold[ContentChange[ConvId, ConversationData]](Added(id, c))(Updated(id, _, c))
+          all += id -> c
+          change
+        }
+      }
+      list = list.applied(changes)
+      shown = applyChanges(shown, list)
+
+      val expected = all.values.filter(notArchived).toSeq.sorted(ConversationData.ConversationDataOrdering)
+      assert(list.toSeq == expected)
+      assert(shown == expected)
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/**
+ * Wire
+ * Copyright (C) 2018 Wire Swiss GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.waz.zclient.markdown
+
+import com.waz.model.{MessageId, RemoteInstant}
+import com.waz.zclient.markdown.MarkdownRenderer.RenderCache
+import org.junit.Test
+import org.scalatest.junit.JUnitSuite
+
+class RenderCacheTest extends JUnitSuite {
+
+  // a style sheet stand-in: the renderings only depend on its color
+  private case class Style(color: Int)
+
+  private val textStyle = Style(1)
+  private val quoteStyle = Style(2)
+
+  private var renderings = Vector.empty[(String, Style)]
+
+  private def cache(size: Int = 10) = new RenderCache[Style, String](size)(s => Int.box(s.color), { (text, style) =>
+    renderings :+= (text, style)
+    s"$text@${style.color}"
+  })
+
+  private val (msg1, msg2) = (MessageId("1"), MessageId("2"))
+  private val time = RemoteInstant.ofEpochMilli(1)
+
+  @Test
+  def renderAMessageOnce(): Unit = {
+    val c = cache()
+    assert(c(msg1, time, "*a*", textStyle) == "*a*@1")
+    assert(c(msg1, time, "*a*", textStyle) == "*a*@1")
+    assert(renderings == Vector(("*a*", textStyle)))
+  }
+
+  @Test
+  def useThePreRenderedMessageWithTheSameStyleSheet(): Unit = {
+    val c = cache()
+    c.preRender(msg1, time, "*a*", textStyle)
+    c.preRender(msg1, time, "*a*", textStyle)
+    assert(c(msg1, time, "*a*", textStyle) == "*a*@1")
+    assert(renderings == Vector(("*a*", textStyle)))
+  }
+
+  @Test
+  def keepTheRenderingsWithOtherStyleSheetsApart(): Unit = {
+    val c = cache()
+    c.preRender(msg1, time, "*a*", textStyle)
+    assert(c(msg1, time, "*a*", quoteStyle) == "*a*@2")
+    assert(c(msg1, time, "*a*", textStyle) == "*a*@1")
+    assert(renderings == Vector(("*a*", textStyle), ("*a*", quoteStyle)))
+  }
+
+  @Test
+  def renderAgainAnEditedOrChangedText(): Unit = {
+    val c = cache()
+    c(msg1, time, "*a*", textStyle)
+    assert(c(msg1, RemoteInstant.ofEpochMilli(2), "*b*", textStyle) == "*b*@1")
+    assert(c(msg1, time, "*c*", textStyle) == "*c*@1")
+    assert(renderings.map(_._1) == Vector("*a*", "*b*", "*c*"))
+  }
+
+  @Test
+  def evictTheLeastRecentlyUsedRendering(): Unit = {
+    val c = cache(size = 2)
+    val msg3 = MessageId("3")
+    c(msg1, time, "1", textStyle)
+    c(msg2, time, "2", textStyle)
+    c(msg1, time, "1", textStyle)
+    c(msg3, time, "3", textStyle)
+
+    renderings = Vector.empty
+    c(msg1, time, "1", textStyle)
+    c(msg2, time, "2", textStyle)
+    assert(renderings.map(_._1) == Vector("2"))
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Wire
+ * Copyright (C) 2016 Wire Swiss GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.waz.log
+
+import scala.reflect.macros.blackbox
+
+/**
+  * Expands the logging calls of `BasicLogging` (in zmessaging) into a level check guarding the call to `InternalLog`,
+  * so that the log, with its interpolated arguments, is only built if some output is going to write it:
+  * {{{
+  *   verbose(l"processing $events")
+  *   // expands to
+  *   if (InternalLog.isEnabled(LogLevel.Verbose)) InternalLog.log(l"processing $events", LogLevel.Verbose, tag)
+  * }}}
+  * The trees refer to zmessaging by their full names, as this module can't depend on it.
+  */
+private[log] object LogMacros {
+
+  def error(c: blackbox.Context)(log: c.Tree)(tag: c.Tree): c.Tree = logAt(c)("Error", log, None, tag)
+  def errorCause(c: blackbox.Context)(log: c.Tree, cause: c.Tree)(tag: c.Tree): c.Tree = logAt(c)("Error", log, Some(cause), tag)
+  def warn(c: blackbox.Context)(log: c.Tree)(tag: c.Tree): c.Tree = logAt(c)("Warn", log, None, tag)
+  def warnCause(c: blackbox.Context)(log: c.Tree, cause: c.Tree)(tag: c.Tree): c.Tree = logAt(c)("Warn", log, Some(cause), tag)
+  def info(c: blackbox.Context)(log: c.Tree)(tag: c.Tree): c.Tree = logAt(c)("Info", log, None, tag)
+  def debug(c: blackbox.Context)(log: c.Tree)(tag: c.Tree): c.Tree = logAt(c)("Debug", log, None, tag)
+  def verbose(c: blackbox.Context)(log: c.Tree)(tag: c.Tree): c.Tree = logAt(c)("Verbose", log, None, tag)
+
+  private def logAt(c: blackbox.Context)(levelName: String, log: c.Tree, cause: Option[c.Tree], tag: c.Tree): c.Tree = {
+    import c.universe._
+    val internalLog = q"_root_.com.waz.log.InternalLog"
+    val level = q"_root_.com.waz.log.InternalLog.LogLevel.${TermName(levelName)}"
+    cause match {
+      case Some(cause) => q"if ($internalLog.isEnabled($level)) $internalLog.log($log, $cause, $level, $tag)"
+      case None        => q"if ($internalLog.isEnabled($level)) $internalLog.log($log, $level, $tag)"
+    }
+  }
+}
@@ -3,6 +3,7 @@ package com.waz.zclient.storage.userdatabase.assets
 import androidx.room.Room
 import com.waz.zclient.framework.data.assets.AssetsTestDataProvider
 import com.waz.zclient.storage.IntegrationTest
+import com.waz.zclient.storage.db.FIRST_BATCH_KEY
 import com.waz.zclient.storage.db.UserDatabase
 import com.waz.zclient.storage.db.assets.AssetsDao
 import com.waz.zclient.storage.db.assets.AssetsEntity
@@ -46,20 +47,21 @@ class AssetsDaoTest : IntegrationTest() {
 
 
     @Test
-    fun givenAListOfEntries_whenGetBatchIsCalledAndOffsetIs0_thenAssert5ItemIsCollectedAndSizeIs5(): Unit = runBlocking {
+    fun givenAListOfEntries_whenGetBatchIsCalledForTheFirstBatch_thenAssert5ItemIsCollectedAndSizeIs5(): Unit = runBlocking {
         insertRandomItems(10)
 
-        val storedValues = assetsDao.nextBatch(0, 5)
+        val storedValues = assetsDao.nextBatchAfter(FIRST_BATCH_KEY, assetsDao.nextBatchEndKey(FIRST_BATCH_KEY, 5)!!)
 
         assertEquals(storedValues?.size, 5)
         assertEquals(assetsDao.count(), 10)
     }
 
     @Test
-    fun givenAListOfEntries_whenGetBatchIsCalledAndOffsetIs5_thenAssert5ItemIsCollectedAndSizeIs10(): Unit = runBlocking {
+    fun givenAListOfEntries_whenGetBatchIsCalledAfterTheFirstBatch_thenAssert5ItemIsCollectedAndSizeIs10(): Unit = runBlocking {
         insertRandomItems(10)
 
-        val storedValues = assetsDao.nextBatch(5, 5)
+        val lastKey = assetsDao.nextBatchEndKey(FIRST_BATCH_KEY, 5)!!
+        val storedValues = assetsDao.nextBatchAfter(lastKey, assetsDao.nextBatchEndKey(lastKey, 5)!!)
         assertEquals(storedValues?.size, 5)
         assertEquals(assetsDao.count(), 10)
     }
@@ -3,6 +3,7 @@ package com.waz.zclient.storage.userdatabase.buttons
 import androidx.room.Room
 import com.waz.zclient.framework.data.buttons.ButtonsTestDataProvider
 import com.waz.zclient.storage.IntegrationTest
+import com.waz.zclient.storage.db.FIRST_BATCH_KEY
 import com.waz.zclient.storage.db.UserDatabase
 import com.waz.zclient.storage.db.buttons.ButtonsDao
 import com.waz.zclient.storage.db.buttons.ButtonsEntity
@@ -53,20 +54,21 @@ class ButtonsDaoTest : IntegrationTest() {
     }
 
     @Test
-    fun givenAListOfEntries_whenGetBatchIsCalledAndOffsetIs0_thenAssert5ItemIsCollectedAndSizeIs5(): Unit = runBlocking {
+    fun givenAListOfEntries_whenGetBatchIsCalledForTheFirstBatch_thenAssert5ItemIsCollectedAndSizeIs5(): Unit = runBlocking {
         insertRandomItems(10)
 
-        val storedValues = buttonsDao.nextBatch(0, 5)
+        val storedValues = buttonsDao.nextBatchAfter(FIRST_BATCH_KEY, buttonsDao.nextBatchEndKey(FIRST_BATCH_KEY, 5)!!)
 
         assertEquals(storedValues?.size, 5)
         assertEquals(buttonsDao.count(), 10)
     }
 
     @Test
-    fun givenAListOfEntries_whenGetBatchIsCalledAndOffsetIs5_thenAssert5ItemIsCollectedAndSizeIs10(): Unit = runBlocking {
+    fun givenAListOfEntries_whenGetBatchIsCalledAfterTheFirstBatch_thenAssert5ItemIsCollectedAndSizeIs10(): Unit = runBlocking {
         insertRandomItems(10)
 
-        val storedValues = buttonsDao.nextBatch(5, 5)
+        val lastKey = buttonsDao.nextBatchEndKey(FIRST_BATCH_KEY, 5)!!
+        val storedValues = buttonsDao.nextBatchAfter(lastKey, buttonsDao.nextBatchEndKey(lastKey, 5)!!)
         assertEquals(storedValues?.size, 5)
         assertEquals(buttonsDao.count(), 10)
     }
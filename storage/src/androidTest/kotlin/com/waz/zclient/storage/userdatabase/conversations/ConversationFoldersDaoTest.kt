@@ -3,6 +3,7 @@ package com.waz.zclient.storage.userdatabase.conversations
 import androidx.room.Room
 import com.waz.zclient.framework.data.conversations.ConversationFoldersTestDataProvider
 import com.waz.zclient.storage.IntegrationTest
+import com.waz.zclient.storage.db.FIRST_BATCH_KEY
 import com.waz.zclient.storage.db.UserDatabase
 import com.waz.zclient.storage.db.conversations.ConversationFoldersDao
 import com.waz.zclient.storage.db.conversations.ConversationFoldersEntity
@@ -51,20 +52,21 @@ class ConversationFoldersDaoTest : IntegrationTest() {
 
 
     @Test
-    fun givenAListOfEntries_whenGetBatchIsCalledAndOffsetIs0_thenAssert5ItemIsCollectedAndSizeIs5(): Unit = runBlocking {
+    fun givenAListOfEntries_whenGetBatchIsCalledForTheFirstBatch_thenAssert5ItemIsCollectedAndSizeIs5(): Unit = runBlocking {
         insertRandomItems(10)
 
-        val storedValues = conversationFoldersDao.nextBatch(0, 5)
+        val storedValues = conversationFoldersDao.nextBatchAfter(FIRST_BATCH_KEY, conversationFoldersDao.nextBatchEndKey(FIRST_BATCH_KEY, 5)!!)
 
         assertEquals(storedValues?.size, 5)
         assertEquals(conversationFoldersDao.count(), 10)
     }
 
     @Test
-    fun givenAListOfEntries_whenGetBatchIsCalledAndOffsetIs5_thenAssert5ItemIsCollectedAndSizeIs10(): Unit = runBlocking {
+    fun givenAListOfEntries_whenGetBatchIsCalledAfterTheFirstBatch_thenAssert5ItemIsCollectedAndSizeIs10(): Unit = runBlocking {
         insertRandomItems(10)
 
-        val storedValues = conversationFoldersDao.nextBatch(5, 5)
+        val lastKey = conversationFoldersDao.nextBatchEndKey(FIRST_BATCH_KEY, 5)!!
+        val storedValues = conversationFoldersDao.nextBatchAfter(lastKey, conversationFoldersDao.nextBatchEndKey(lastKey, 5)!!)
         assertEquals(storedValues?.size, 5)
         assertEquals(conversationFoldersDao.count(), 10)
     }
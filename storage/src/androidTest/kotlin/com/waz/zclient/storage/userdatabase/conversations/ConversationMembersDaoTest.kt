@@ -4,6 +4,7 @@ package com.waz.zclient.storage.userdatabase.conversations
 import androidx.room.Room
 import com.waz.zclient.framework.data.conversations.ConversationFoldersTestDataProvider
 import com.waz.zclient.storage.IntegrationTest
+import com.waz.zclient.storage.db.FIRST_BATCH_KEY
 import com.waz.zclient.storage.db.UserDatabase
 import com.waz.zclient.storage.db.conversations.ConversationMembersEntity
 import com.waz.zclient.storage.db.conversations.ConversationMembersDao
@@ -52,20 +53,21 @@ class ConversationMembersDaoTest : IntegrationTest() {
     }
     
     @Test
-    fun givenAListOfEntries_whenGetBatchIsCalledAndOffsetIs0_thenAssert5ItemIsCollectedAndSizeIs5(): Unit = runBlocking {
+    fun givenAListOfEntries_whenGetBatchIsCalledForTheFirstBatch_thenAssert5ItemIsCollectedAndSizeIs5(): Unit = runBlocking {
         insertRandomItems(10)
 
-        val storedValues = conversationMembersDao.nextBatch(0, 5)
+        val storedValues = conversationMembersDao.nextBatchAfter(FIRST_BATCH_KEY, conversationMembersDao.nextBatchEndKey(FIRST_BATCH_KEY, 5)!!)
 
         assertEquals(storedValues?.size, 5)
         assertEquals(conversationMembersDao.count(), 10)
     }
 
     @Test
-    fun givenAListOfEntries_whenGetBatchIsCalledAndOffsetIs5_thenAssert5ItemIsCollectedAndSizeIs10(): Unit = runBlocking {
+    fun givenAListOfEntries_whenGetBatchIsCalledAfterTheFirstBatch_thenAssert5ItemIsCollectedAndSizeIs10(): Unit = runBlocking {
         insertRandomItems(10)
 
-        val storedValues = conversationMembersDao.nextBatch(5, 5)
+        val lastKey = conversationMembersDao.nextBatchEndKey(FIRST_BATCH_KEY, 5)!!
+        val storedValues = conversationMembersDao.nextBatchAfter(lastKey, conversationMembersDao.nextBatchEndKey(lastKey, 5)!!)
         assertEquals(storedValues?.size, 5)
         assertEquals(conversationMembersDao.count(), 10)
     }
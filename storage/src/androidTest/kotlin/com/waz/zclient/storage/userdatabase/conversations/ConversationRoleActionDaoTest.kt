@@ -3,6 +3,7 @@ package com.waz.zclient.storage.userdatabase.conversations
 import androidx.room.Room
 import com.waz.zclient.framework.data.conversations.ConversationRolesTestDataProvider
 import com.waz.zclient.storage.IntegrationTest
+import com.waz.zclient.storage.db.FIRST_BATCH_KEY
 import com.waz.zclient.storage.db.UserDatabase
 import com.waz.zclient.storage.db.conversations.ConversationRoleActionDao
 import com.waz.zclient.storage.db.conversations.ConversationRoleActionEntity
@@ -46,20 +47,21 @@ class ConversationRoleActionDaoTest : IntegrationTest() {
     }
 
     @Test
-    fun givenAListOfEntries_whenGetBatchIsCalledAndOffsetIs0_thenAssert5ItemIsCollectedAndSizeIs5(): Unit = runBlocking {
+    fun givenAListOfEntries_whenGetBatchIsCalledForTheFirstBatch_thenAssert5ItemIsCollectedAndSizeIs5(): Unit = runBlocking {
         insertRandomItems(10)
 
-        val storedRoles = convRoleActionDao.nextBatch(0, 5)
+        val storedRoles = convRoleActionDao.nextBatchAfter(FIRST_BATCH_KEY, convRoleActionDao.nextBatchEndKey(FIRST_BATCH_KEY, 5)!!)
 
         assertEquals(storedRoles?.size, 5)
         assertEquals(convRoleActionDao.count(), 10)
     }
 
     @Test
-    fun givenAListOfEntries_whenGetBatchIsCalledAndOffsetIs5_thenAssert5ItemIsCollectedAndSizeIs10(): Unit = runBlocking {
+    fun givenAListOfEntries_whenGetBatchIsCalledAfterTheFirstBatch_thenAssert5ItemIsCollectedAndSizeIs10(): Unit = runBlocking {
         insertRandomItems(10)
 
-        val storedRoles = convRoleActionDao.nextBatch(5, 5)
+        val lastKey = convRoleActionDao.nextBatchEndKey(FIRST_BATCH_KEY, 5)!!
+        val storedRoles = convRoleActionDao.nextBatchAfter(lastKey, convRoleActionDao.nextBatchEndKey(lastKey, 5)!!)
         assertEquals(storedRoles?.size, 5)
         assertEquals(convRoleActionDao.count(), 10)
     }
@@ -3,6 +3,7 @@ package com.waz.zclient.storage.userdatabase.conversations
 import androidx.room.Room
 import com.waz.zclient.framework.data.conversations.ConversationsTestDataProvider
 import com.waz.zclient.storage.IntegrationTest
+import com.waz.zclient.storage.db.FIRST_BATCH_KEY
 import com.waz.zclient.storage.db.UserDatabase
 import com.waz.zclient.storage.db.conversations.ConversationsDao
 import com.waz.zclient.storage.db.conversations.ConversationsEntity
@@ -86,20 +87,21 @@ class ConversationsDaoTest : IntegrationTest() {
 
 
     @Test
-    fun givenAListOfEntries_whenGetBatchIsCalledAndOffsetIs0_thenAssert5ItemIsCollectedAndSizeIs5(): Unit = runBlocking {
+    fun givenAListOfEntries_whenGetBatchIsCalledForTheFirstBatch_thenAssert5ItemIsCollectedAndSizeIs5(): Unit = runBlocking {
         insertRandomItems(10)
 
-        val storedValues = conversationsDao.nextBatch(0, 5)
+        val storedValues = conversationsDao.nextBatchAfter(FIRST_BATCH_KEY, conversationsDao.nextBatchEndKey(FIRST_BATCH_KEY, 5)!!)
 
         assertEquals(storedValues?.size, 5)
         assertEquals(conversationsDao.count(), 10)
     }
 
     @Test
-    fun givenAListOfEntries_whenGetBatchIsCalledAndOffsetIs5_thenAssert5ItemIsCollectedAndSizeIs10(): Unit = runBlocking {
+    fun givenAListOfEntries_whenGetBatchIsCalledAfterTheFirstBatch_thenAssert5ItemIsCollectedAndSizeIs10(): Unit = runBlocking {
         insertRandomItems(10)
 
-        val storedValues = conversationsDao.nextBatch(5, 5)
+        val lastKey = conversationsDao.nextBatchEndKey(FIRST_BATCH_KEY, 5)!!
+        val storedValues = conversationsDao.nextBatchAfter(lastKey, conversationsDao.nextBatchEndKey(lastKey, 5)!!)
         assertEquals(storedValues?.size, 5)
         assertEquals(conversationsDao.count(), 10)
     }
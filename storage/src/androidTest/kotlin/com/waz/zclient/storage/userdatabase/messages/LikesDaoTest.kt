@@ -3,6 +3,7 @@ package com.waz.zclient.storage.userdatabase.messages
 import androidx.room.Room
 import com.waz.zclient.framework.data.messages.LikesTestDataProvider
 import com.waz.zclient.storage.IntegrationTest
+import com.waz.zclient.storage.db.FIRST_BATCH_KEY
 import com.waz.zclient.storage.db.UserDatabase
 import com.waz.zclient.storage.db.messages.LikesDao
 import com.waz.zclient.storage.db.messages.LikesEntity
@@ -52,20 +53,21 @@ class LikesDaoTest : IntegrationTest() {
     }
 
     @Test
-    fun givenAListOfEntries_whenGetBatchIsCalledAndOffsetIs0_thenAssert5ItemIsCollectedAndSizeIs5(): Unit = runBlocking {
+    fun givenAListOfEntries_whenGetBatchIsCalledForTheFirstBatch_thenAssert5ItemIsCollectedAndSizeIs5(): Unit = runBlocking {
         insertRandomItems(10)
 
-        val storedValues = likesDao.nextBatch(0, 5)
+        val storedValues = likesDao.nextBatchAfter(FIRST_BATCH_KEY, likesDao.nextBatchEndKey(FIRST_BATCH_KEY, 5)!!)
 
         assertEquals(storedValues?.size, 5)
         assertEquals(likesDao.count(), 10)
     }
 
     @Test
-    fun givenAListOfEntries_whenGetBatchIsCalledAndOffsetIs5_thenAssert5ItemIsCollectedAndSizeIs10(): Unit = runBlocking {
+    fun givenAListOfEntries_whenGetBatchIsCalledAfterTheFirstBatch_thenAssert5ItemIsCollectedAndSizeIs10(): Unit = runBlocking {
         insertRandomItems(10)
 
-        val storedValues = likesDao.nextBatch(5, 5)
+        val lastKey = likesDao.nextBatchEndKey(FIRST_BATCH_KEY, 5)!!
+        val storedValues = likesDao.nextBatchAfter(lastKey, likesDao.nextBatchEndKey(lastKey, 5)!!)
         assertEquals(storedValues?.size, 5)
         assertEquals(likesDao.count(), 10)
     }
@@ -0,0 +1,123 @@
+package com.waz.zclient.storage.userdatabase.messages
+
+import android.util.Log
+import androidx.room.Room
+import com.waz.zclient.framework.data.messages.MessagesTestDataProvider
+import com.waz.zclient.storage.IntegrationTest
+import com.waz.zclient.storage.db.FIRST_BATCH_KEY
+import com.waz.zclient.storage.db.UserDatabase
+import com.waz.zclient.storage.db.messages.MessagesDao
+import com.waz.zclient.storage.db.messages.MessagesEntity
+import junit.framework.TestCase.assertEquals
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import java.util.UUID
+
+/**
+ * Compares the time of reading the whole Messages table in batches, as the backup export does,
+ * with LIMIT/OFFSET and with the keyset reads of [com.waz.zclient.storage.db.BatchDao].
+ * The results are logged under [TAG].
+ */
+class MessagesBatchReadBenchmarkTest : IntegrationTest() {
+
+    private lateinit var messagesDao: MessagesDao
+
+    private lateinit var userDatabase: UserDatabase
+
+    @Before
+    fun setup() {
+        userDatabase = Room.inMemoryDatabaseBuilder(
+            getApplicationContext(),
+            UserDatabase::class.java
+        ).build()
+        messagesDao = userDatabase.messagesDao()
+    }
+
+    @After
+    fun tearDown() {
+        userDatabase.close()
+    }
+
+    @Test
+    fun givenTablesOfGrowingSize_whenReadInBatches_thenKeysetReadsAllRowsAndLogsTheTimes(): Unit = runBlocking {
+        var inserted = 0
+        TABLE_SIZES.forEach { size ->
+            messagesDao.insertAll(List(size - inserted) { messagesEntity(UUID.randomUUID().toString()) })
+            inserted = size
+
+            val offsetStart = System.nanoTime()
+            val offsetRows = readWithOffset()
+            val offsetTime = System.nanoTime() - offsetStart
+
+            val keysetStart = System.nanoTime()
+            val keysetRows = readWithKeyset()
+            val keysetTime = System.nanoTime() - keysetStart
+
+            assertEquals(size, offsetRows)
+            assertEquals(size, keysetRows)
+            Log.i(TAG, "rows: $size, offset: ${offsetTime / NANOS_PER_MILLI} ms, keyset: ${keysetTime / NANOS_PER_MILLI} ms")
+        }
+    }
+
+    private fun readWithOffset(): Int {
+        var read = 0
+        do {
+            val batch = userDatabase.openHelper.readableDatabase
+                .query("SELECT * FROM Messages ORDER BY _id LIMIT $BATCH_SIZE OFFSET $read")
+                .use { it.count }
+            read += batch
+        } while (batch == BATCH_SIZE)
+        return read
+    }
+
+    private suspend fun readWithKeyset(): Int {
+        var read = 0
+        var lastKey = FIRST_BATCH_KEY
+        while (true) {
+            val endKey = messagesDao.nextBatchEndKey(lastKey, BATCH_SIZE) ?: return read
+            read += messagesDao.nextBatchAfter(lastKey, endKey)?.size ?: 0
+            lastKey = endKey
+        }
+    }
+
+    private fun messagesEntity(messageKey: String): MessagesEntity {
+        val data = MessagesTestDataProvider.provideDummyTestData()
+        return MessagesEntity(
+            id = messageKey,
+            conversationId = data.conversationId,
+            messageType = data.messageType,
+            userId = data.userId,
+            clientId = null,
+            errorCode = null,
+            content = data.content,
+            protos = data.protos,
+            time = data.time,
+            firstMessage = data.firstMessage,
+            members = data.members,
+            recipient = data.recipient,
+            email = data.email,
+            name = data.name,
+            messageState = data.messageState,
+            editTime = data.editTime,
+            localTime = data.localTime,
+            expiryTime = data.expiryTime,
+            contentSize = data.contentSize,
+            ephemeral = data.ephemeral,
+            expired = data.expired,
+            duration = data.duration,
+            quote = data.quote,
+            quoteValidity = data.quoteValidity,
+            forceReadReceipts = data.forceReadReceipts,
+            assetId = data.assetId
+        )
+    }
+
+    companion object {
+        private const val TAG = "BatchReadBenchmark"
+        private const val BATCH_SIZE = 1000
+        private const val NANOS_PER_MILLI = 1_000_000
+        private val TABLE_SIZES = listOf(1_000, 10_000, 50_000)
+    }
+}
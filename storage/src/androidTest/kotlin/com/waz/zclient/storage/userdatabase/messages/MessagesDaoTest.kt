@@ -3,6 +3,7 @@ package com.waz.zclient.storage.userdatabase.messages
 import androidx.room.Room
 import com.waz.zclient.framework.data.messages.MessagesTestDataProvider
 import com.waz.zclient.storage.IntegrationTest
+import com.waz.zclient.storage.db.FIRST_BATCH_KEY
 import com.waz.zclient.storage.db.UserDatabase
 import com.waz.zclient.storage.db.messages.MessagesDao
 import com.waz.zclient.storage.db.messages.MessagesEntity
@@ -46,19 +47,20 @@ class MessagesDaoTest : IntegrationTest() {
     }
 
     @Test
-    fun givenAListOfEntries_whenGetBatchIsCalledAndOffsetIs0_thenAssert5ItemIsCollectedAndSizeIs5(): Unit = runBlocking {
+    fun givenAListOfEntries_whenGetBatchIsCalledForTheFirstBatch_thenAssert5ItemIsCollectedAndSizeIs5(): Unit = runBlocking {
         insertRandomItems(10)
-        val storedMessages = messagesDao.nextBatch(0, 5)
+        val storedMessages = messagesDao.nextBatchAfter(FIRST_BATCH_KEY, messagesDao.nextBatchEndKey(FIRST_BATCH_KEY, 5)!!)
 
         assertEquals(storedMessages?.size, 5)
         assertEquals(messagesDao.count(), 10)
     }
 
     @Test
-    fun givenAListOfEntries_whenGetBatchIsCalledAndOffsetIs5_thenAssert5ItemIsCollectedAndSizeIs10(): Unit = runBlocking {
+    fun givenAListOfEntries_whenGetBatchIsCalledAfterTheFirstBatch_thenAssert5ItemIsCollectedAndSizeIs10(): Unit = runBlocking {
         insertRandomItems(10)
 
-        val storedMessages = messagesDao.nextBatch(5, 5)
+        val lastKey = messagesDao.nextBatchEndKey(FIRST_BATCH_KEY, 5)!!
+        val storedMessages = messagesDao.nextBatchAfter(lastKey, messagesDao.nextBatchEndKey(lastKey, 5)!!)
         assertEquals(storedMessages?.size, 5)
         assertEquals(messagesDao.count(), 10)
     }
@@ -3,6 +3,7 @@ package com.waz.zclient.storage.userdatabase.property
 import androidx.room.Room
 import com.waz.zclient.framework.data.property.KeyValueTestDataProvider
 import com.waz.zclient.storage.IntegrationTest
+import com.waz.zclient.storage.db.FIRST_BATCH_KEY
 import com.waz.zclient.storage.db.UserDatabase
 import com.waz.zclient.storage.db.property.KeyValuesDao
 import com.waz.zclient.storage.db.property.KeyValuesEntity
@@ -48,20 +49,21 @@ class KeyValueDaoTest : IntegrationTest() {
 
 
     @Test
-    fun givenAListOfEntries_whenGetBatchIsCalledAndOffsetIs0_thenAssert5ItemIsCollectedAndSizeIs5(): Unit = runBlocking {
+    fun givenAListOfEntries_whenGetBatchIsCalledForTheFirstBatch_thenAssert5ItemIsCollectedAndSizeIs5(): Unit = runBlocking {
         insertRandomItems(10)
 
-        val storedValues = keyValueDao.nextBatch(0, 5)
+        val storedValues = keyValueDao.nextBatchAfter(FIRST_BATCH_KEY, keyValueDao.nextBatchEndKey(FIRST_BATCH_KEY, 5)!!)
 
         assertEquals(storedValues?.size, 5)
         assertEquals(keyValueDao.count(), 10)
     }
 
     @Test
-    fun givenAListOfEntries_whenGetBatchIsCalledAndOffsetIs5_thenAssert5ItemIsCollectedAndSizeIs10(): Unit = runBlocking {
+    fun givenAListOfEntries_whenGetBatchIsCalledAfterTheFirstBatch_thenAssert5ItemIsCollectedAndSizeIs10(): Unit = runBlocking {
         insertRandomItems(10)
 
-        val storedValues = keyValueDao.nextBatch(5, 5)
+        val lastKey = keyValueDao.nextBatchEndKey(FIRST_BATCH_KEY, 5)!!
+        val storedValues = keyValueDao.nextBatchAfter(lastKey, keyValueDao.nextBatchEndKey(lastKey, 5)!!)
         assertEquals(storedValues?.size, 5)
         assertEquals(keyValueDao.count(), 10)
     }
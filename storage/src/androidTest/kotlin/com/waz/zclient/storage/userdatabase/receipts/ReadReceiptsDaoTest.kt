@@ -3,6 +3,7 @@ package com.waz.zclient.storage.userdatabase.receipts
 import androidx.room.Room
 import com.waz.zclient.framework.data.receipts.ReadReceiptsTestDataProvider
 import com.waz.zclient.storage.IntegrationTest
+import com.waz.zclient.storage.db.FIRST_BATCH_KEY
 import com.waz.zclient.storage.db.UserDatabase
 import com.waz.zclient.storage.db.receipts.ReadReceiptsDao
 import com.waz.zclient.storage.db.receipts.ReadReceiptsEntity
@@ -51,20 +52,21 @@ class ReadReceiptsDaoTest : IntegrationTest() {
     }
 
     @Test
-    fun givenAListOfEntries_whenGetBatchIsCalledAndOffsetIs0_thenAssert5ItemIsCollectedAndSizeIs5(): Unit = runBlocking {
+    fun givenAListOfEntries_whenGetBatchIsCalledForTheFirstBatch_thenAssert5ItemIsCollectedAndSizeIs5(): Unit = runBlocking {
         insertRandomItems(10)
 
-        val storedValues = readReceiptsDao.nextBatch(0, 5)
+        val storedValues = readReceiptsDao.nextBatchAfter(FIRST_BATCH_KEY, readReceiptsDao.nextBatchEndKey(FIRST_BATCH_KEY, 5)!!)
 
         assertEquals(storedValues?.size, 5)
         assertEquals(readReceiptsDao.count(), 10)
     }
 
     @Test
-    fun givenAListOfEntries_whenGetBatchIsCalledAndOffsetIs5_thenAssert5ItemIsCollectedAndSizeIs10(): Unit = runBlocking {
+    fun givenAListOfEntries_whenGetBatchIsCalledAfterTheFirstBatch_thenAssert5ItemIsCollectedAndSizeIs10(): Unit = runBlocking {
         insertRandomItems(10)
 
-        val storedValues = readReceiptsDao.nextBatch(5, 5)
+        val lastKey = readReceiptsDao.nextBatchEndKey(FIRST_BATCH_KEY, 5)!!
+        val storedValues = readReceiptsDao.nextBatchAfter(lastKey, readReceiptsDao.nextBatchEndKey(lastKey, 5)!!)
         assertEquals(storedValues?.size, 5)
         assertEquals(readReceiptsDao.count(), 10)
     }
@@ -3,6 +3,7 @@ package com.waz.zclient.storage.userdatabase.users
 import androidx.room.Room
 import com.waz.zclient.framework.data.users.UsersTestDataProvider
 import com.waz.zclient.storage.IntegrationTest
+import com.waz.zclient.storage.db.FIRST_BATCH_KEY
 import com.waz.zclient.storage.db.UserDatabase
 import com.waz.zclient.storage.db.users.model.UsersEntity
 import com.waz.zclient.storage.db.users.service.UsersDao
@@ -46,19 +47,20 @@ class UsersDaoTest : IntegrationTest() {
     }
 
     @Test
-    fun givenAListOfEntries_whenGetBatchIsCalledAndOffsetIs0_thenAssert5ItemIsCollectedAndSizeIs5(): Unit = runBlocking {
+    fun givenAListOfEntries_whenGetBatchIsCalledForTheFirstBatch_thenAssert5ItemIsCollectedAndSizeIs5(): Unit = runBlocking {
         insertRandomItems(10)
-        val storedUsers = usersDao.nextBatch(0, 5)
+        val storedUsers = usersDao.nextBatchAfter(FIRST_BATCH_KEY, usersDao.nextBatchEndKey(FIRST_BATCH_KEY, 5)!!)
 
         assertEquals(storedUsers?.size, 5)
         assertEquals(usersDao.count(), 10)
     }
 
     @Test
-    fun givenAListOfEntries_whenGetBatchIsCalledAndOffsetIs5_thenAssert5ItemIsCollectedAndSizeIs10(): Unit = runBlocking {
+    fun givenAListOfEntries_whenGetBatchIsCalledAfterTheFirstBatch_thenAssert5ItemIsCollectedAndSizeIs10(): Unit = runBlocking {
         insertRandomItems(10)
 
-        val storedUsers = usersDao.nextBatch(5, 5)
+        val lastKey = usersDao.nextBatchEndKey(FIRST_BATCH_KEY, 5)!!
+        val storedUsers = usersDao.nextBatchAfter(lastKey, usersDao.nextBatchEndKey(lastKey, 5)!!)
         assertEquals(storedUsers?.size, 5)
         assertEquals(usersDao.count(), 10)
     }
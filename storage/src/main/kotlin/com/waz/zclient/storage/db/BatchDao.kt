@@ -3,11 +3,27 @@ package com.waz.zclient.storage.db
 import androidx.room.Insert
 import androidx.room.OnConflictStrategy
 
+const val FIRST_BATCH_KEY = Long.MIN_VALUE
+
+/**
+ * Reads a table in batches ordered by `rowid`. A batch is addressed by the key of the last row read
+ * before it ([FIRST_BATCH_KEY] for the first one), so each read seeks the rowid b-tree instead of
+ * skipping all the rows before it, and the rows inserted or deleted in the meantime don't shift it.
+ */
 interface BatchDao<E> {
 
     suspend fun count(): Int
 
-    suspend fun nextBatch(start: Int, batchSize: Int): List<@JvmSuppressWildcards E>?
+    /**
+     * Returns the key of the last row of the batch of at most [batchSize] rows following [lastKey],
+     * or null if there are no rows after it.
+     */
+    suspend fun nextBatchEndKey(lastKey: Long, batchSize: Int): Long?
+
+    /**
+     * Returns the rows after [lastKey] up to and including [endKey].
+     */
+    suspend fun nextBatchAfter(lastKey: Long, endKey: Long): List<@JvmSuppressWildcards E>?
 
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     suspend fun insert(item: E)
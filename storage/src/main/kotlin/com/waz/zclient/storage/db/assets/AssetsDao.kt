@@ -10,8 +10,11 @@ interface AssetsDao : BatchDao<AssetsEntity> {
     @Query("SELECT * FROM Assets2")
     suspend fun allAssets(): List<AssetsEntity>
 
-    @Query("SELECT * FROM Assets2 ORDER BY _id LIMIT :batchSize OFFSET :start")
-    override suspend fun nextBatch(start: Int, batchSize: Int): List<AssetsEntity>?
+    @Query("SELECT MAX(rowid) FROM (SELECT rowid FROM Assets2 WHERE rowid > :lastKey ORDER BY rowid LIMIT :batchSize)")
+    override suspend fun nextBatchEndKey(lastKey: Long, batchSize: Int): Long?
+
+    @Query("SELECT * FROM Assets2 WHERE rowid > :lastKey AND rowid <= :endKey ORDER BY rowid")
+    override suspend fun nextBatchAfter(lastKey: Long, endKey: Long): List<AssetsEntity>?
 
     @Query("SELECT COUNT(*) FROM Assets2")
     override suspend fun count(): Int
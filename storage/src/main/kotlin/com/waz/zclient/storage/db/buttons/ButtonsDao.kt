@@ -10,8 +10,11 @@ interface ButtonsDao : BatchDao<ButtonsEntity> {
     @Query("SELECT * FROM Buttons")
     suspend fun allButtons(): List<ButtonsEntity>
 
-    @Query("SELECT * FROM Buttons ORDER BY message_id, button_id LIMIT :batchSize OFFSET :start")
-    override suspend fun nextBatch(start: Int, batchSize: Int): List<ButtonsEntity>?
+    @Query("SELECT MAX(rowid) FROM (SELECT rowid FROM Buttons WHERE rowid > :lastKey ORDER BY rowid LIMIT :batchSize)")
+    override suspend fun nextBatchEndKey(lastKey: Long, batchSize: Int): Long?
+
+    @Query("SELECT * FROM Buttons WHERE rowid > :lastKey AND rowid <= :endKey ORDER BY rowid")
+    override suspend fun nextBatchAfter(lastKey: Long, endKey: Long): List<ButtonsEntity>?
 
     @Query("SELECT COUNT(*) FROM Buttons")
     override suspend fun count(): Int
@@ -10,8 +10,11 @@ interface ConversationFoldersDao : BatchDao<ConversationFoldersEntity> {
     @Query("SELECT * FROM ConversationFolders")
     suspend fun allConversationFolders(): List<ConversationFoldersEntity>
 
-    @Query("SELECT * FROM ConversationFolders ORDER BY conv_id LIMIT :batchSize OFFSET :start")
-    override suspend fun nextBatch(start: Int, batchSize: Int): List<ConversationFoldersEntity>?
+    @Query("SELECT MAX(rowid) FROM (SELECT rowid FROM ConversationFolders WHERE rowid > :lastKey ORDER BY rowid LIMIT :batchSize)")
+    override suspend fun nextBatchEndKey(lastKey: Long, batchSize: Int): Long?
+
+    @Query("SELECT * FROM ConversationFolders WHERE rowid > :lastKey AND rowid <= :endKey ORDER BY rowid")
+    override suspend fun nextBatchAfter(lastKey: Long, endKey: Long): List<ConversationFoldersEntity>?
 
     @Query("SELECT COUNT(*) FROM ConversationFolders")
     override suspend fun count(): Int
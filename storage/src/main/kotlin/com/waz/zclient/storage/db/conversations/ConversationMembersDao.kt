@@ -14,8 +14,11 @@ interface ConversationMembersDao : BatchDao<ConversationMembersEntity> {
     @Insert
     suspend fun insertConversationMemeber(conversationMember: ConversationMembersEntity)
 
-    @Query("SELECT * FROM ConversationMembers ORDER BY user_id, conv_id LIMIT :batchSize OFFSET :start")
-    override suspend fun nextBatch(start: Int, batchSize: Int): List<ConversationMembersEntity>?
+    @Query("SELECT MAX(rowid) FROM (SELECT rowid FROM ConversationMembers WHERE rowid > :lastKey ORDER BY rowid LIMIT :batchSize)")
+    override suspend fun nextBatchEndKey(lastKey: Long, batchSize: Int): Long?
+
+    @Query("SELECT * FROM ConversationMembers WHERE rowid > :lastKey AND rowid <= :endKey ORDER BY rowid")
+    override suspend fun nextBatchAfter(lastKey: Long, endKey: Long): List<ConversationMembersEntity>?
 
     @Query("SELECT COUNT(*) FROM ConversationMembers")
     override suspend fun count(): Int
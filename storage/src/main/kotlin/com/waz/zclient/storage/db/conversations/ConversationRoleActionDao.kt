@@ -10,8 +10,11 @@ interface ConversationRoleActionDao : BatchDao<ConversationRoleActionEntity> {
     @Query("SELECT * FROM ConversationRoleAction")
     suspend fun allConversationRoleActions(): List<ConversationRoleActionEntity>
 
-    @Query("SELECT * FROM ConversationRoleAction ORDER BY conv_id LIMIT :batchSize OFFSET :start")
-    override suspend fun nextBatch(start: Int, batchSize: Int): List<ConversationRoleActionEntity>?
+    @Query("SELECT MAX(rowid) FROM (SELECT rowid FROM ConversationRoleAction WHERE rowid > :lastKey ORDER BY rowid LIMIT :batchSize)")
+    override suspend fun nextBatchEndKey(lastKey: Long, batchSize: Int): Long?
+
+    @Query("SELECT * FROM ConversationRoleAction WHERE rowid > :lastKey AND rowid <= :endKey ORDER BY rowid")
+    override suspend fun nextBatchAfter(lastKey: Long, endKey: Long): List<ConversationRoleActionEntity>?
 
     @Query("SELECT COUNT(*) FROM ConversationRoleAction")
     override suspend fun count(): Int
@@ -14,8 +14,11 @@ interface ConversationsDao : BatchDao<ConversationsEntity> {
     @Insert
     suspend fun insertConversation(conversation: ConversationsEntity)
 
-    @Query("SELECT * FROM Conversations ORDER BY _id LIMIT :batchSize OFFSET :start")
-    override suspend fun nextBatch(start: Int, batchSize: Int): List<ConversationsEntity>?
+    @Query("SELECT MAX(rowid) FROM (SELECT rowid FROM Conversations WHERE rowid > :lastKey ORDER BY rowid LIMIT :batchSize)")
+    override suspend fun nextBatchEndKey(lastKey: Long, batchSize: Int): Long?
+
+    @Query("SELECT * FROM Conversations WHERE rowid > :lastKey AND rowid <= :endKey ORDER BY rowid")
+    override suspend fun nextBatchAfter(lastKey: Long, endKey: Long): List<ConversationsEntity>?
 
     @Query("SELECT COUNT(*) FROM Conversations")
     override suspend fun count(): Int
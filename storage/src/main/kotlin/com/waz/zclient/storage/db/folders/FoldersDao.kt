@@ -10,8 +10,11 @@ interface FoldersDao : BatchDao<FoldersEntity> {
     @Query("SELECT * FROM Folders")
     suspend fun allFolders(): List<FoldersEntity>
 
-    @Query("SELECT * FROM Folders ORDER BY _id LIMIT :batchSize OFFSET :start")
-    override suspend fun nextBatch(start: Int, batchSize: Int): List<FoldersEntity>?
+    @Query("SELECT MAX(rowid) FROM (SELECT rowid FROM Folders WHERE rowid > :lastKey ORDER BY rowid LIMIT :batchSize)")
+    override suspend fun nextBatchEndKey(lastKey: Long, batchSize: Int): Long?
+
+    @Query("SELECT * FROM Folders WHERE rowid > :lastKey AND rowid <= :endKey ORDER BY rowid")
+    override suspend fun nextBatchAfter(lastKey: Long, endKey: Long): List<FoldersEntity>?
 
     @Query("SELECT COUNT(*) FROM Folders")
     override suspend fun count(): Int
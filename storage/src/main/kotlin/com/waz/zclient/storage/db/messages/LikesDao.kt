@@ -9,8 +9,11 @@ interface LikesDao : BatchDao<LikesEntity> {
     @Query("SELECT * FROM Likings")
     suspend fun allLikes(): List<LikesEntity>
 
-    @Query("SELECT * FROM Likings ORDER BY message_id, user_id LIMIT :batchSize OFFSET :start")
-    override suspend fun nextBatch(start: Int, batchSize: Int): List<LikesEntity>?
+    @Query("SELECT MAX(rowid) FROM (SELECT rowid FROM Likings WHERE rowid > :lastKey ORDER BY rowid LIMIT :batchSize)")
+    override suspend fun nextBatchEndKey(lastKey: Long, batchSize: Int): Long?
+
+    @Query("SELECT * FROM Likings WHERE rowid > :lastKey AND rowid <= :endKey ORDER BY rowid")
+    override suspend fun nextBatchAfter(lastKey: Long, endKey: Long): List<LikesEntity>?
 
     @Query("SELECT COUNT(*) FROM Likings")
     override suspend fun count(): Int
@@ -10,8 +10,11 @@ interface MessagesDao : BatchDao<MessagesEntity> {
     @Query("SELECT * FROM Messages")
     suspend fun allMessages(): List<MessagesEntity>
 
-    @Query("SELECT * FROM Messages ORDER BY _id LIMIT :batchSize OFFSET :start")
-    override suspend fun nextBatch(start: Int, batchSize: Int): List<MessagesEntity>?
+    @Query("SELECT MAX(rowid) FROM (SELECT rowid FROM Messages WHERE rowid > :lastKey ORDER BY rowid LIMIT :batchSize)")
+    override suspend fun nextBatchEndKey(lastKey: Long, batchSize: Int): Long?
+
+    @Query("SELECT * FROM Messages WHERE rowid > :lastKey AND rowid <= :endKey ORDER BY rowid")
+    override suspend fun nextBatchAfter(lastKey: Long, endKey: Long): List<MessagesEntity>?
 
     @Query("SELECT COUNT(*) FROM Messages")
     override suspend fun count(): Int
@@ -10,8 +10,11 @@ interface KeyValuesDao : BatchDao<KeyValuesEntity> {
     @Query("SELECT * FROM KeyValues")
     suspend fun allKeyValues(): List<KeyValuesEntity>
 
-    @Query("SELECT * FROM KeyValues ORDER BY `key` LIMIT :batchSize OFFSET :start")
-    override suspend fun nextBatch(start: Int, batchSize: Int): List<KeyValuesEntity>?
+    @Query("SELECT MAX(rowid) FROM (SELECT rowid FROM KeyValues WHERE rowid > :lastKey ORDER BY rowid LIMIT :batchSize)")
+    override suspend fun nextBatchEndKey(lastKey: Long, batchSize: Int): Long?
+
+    @Query("SELECT * FROM KeyValues WHERE rowid > :lastKey AND rowid <= :endKey ORDER BY rowid")
+    override suspend fun nextBatchAfter(lastKey: Long, endKey: Long): List<KeyValuesEntity>?
 
     @Query("SELECT COUNT(*) FROM KeyValues")
     override suspend fun count(): Int
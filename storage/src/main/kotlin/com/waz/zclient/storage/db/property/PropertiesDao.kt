@@ -9,8 +9,11 @@ interface PropertiesDao : BatchDao<PropertiesEntity> {
     @Query("SELECT * FROM Properties")
     suspend fun allProperties(): List<PropertiesEntity>
 
-    @Query("SELECT * FROM Properties ORDER BY `key` LIMIT :batchSize OFFSET :start")
-    override suspend fun nextBatch(start: Int, batchSize: Int): List<PropertiesEntity>?
+    @Query("SELECT MAX(rowid) FROM (SELECT rowid FROM Properties WHERE rowid > :lastKey ORDER BY rowid LIMIT :batchSize)")
+    override suspend fun nextBatchEndKey(lastKey: Long, batchSize: Int): Long?
+
+    @Query("SELECT * FROM Properties WHERE rowid > :lastKey AND rowid <= :endKey ORDER BY rowid")
+    override suspend fun nextBatchAfter(lastKey: Long, endKey: Long): List<PropertiesEntity>?
 
     @Query("SELECT COUNT(*) FROM Properties")
     override suspend fun count(): Int
@@ -9,8 +9,11 @@ interface ReadReceiptsDao : BatchDao<ReadReceiptsEntity> {
     @Query("SELECT * FROM ReadReceipts")
     suspend fun allReceipts(): List<ReadReceiptsEntity>
 
-    @Query("SELECT * FROM ReadReceipts ORDER BY message_id, user_id LIMIT :batchSize OFFSET :start")
-    override suspend fun nextBatch(start: Int, batchSize: Int): List<ReadReceiptsEntity>?
+    @Query("SELECT MAX(rowid) FROM (SELECT rowid FROM ReadReceipts WHERE rowid > :lastKey ORDER BY rowid LIMIT :batchSize)")
+    override suspend fun nextBatchEndKey(lastKey: Long, batchSize: Int): Long?
+
+    @Query("SELECT * FROM ReadReceipts WHERE rowid > :lastKey AND rowid <= :endKey ORDER BY rowid")
+    override suspend fun nextBatchAfter(lastKey: Long, endKey: Long): List<ReadReceiptsEntity>?
 
     @Query("SELECT COUNT(*) FROM ReadReceipts")
     override suspend fun count(): Int
@@ -31,8 +31,11 @@ interface UsersDao : BatchDao<UsersEntity> {
     @Query("UPDATE Users SET phone=:phone WHERE _id = :userId")
     suspend fun updatePhone(userId: String, phone: String)
 
-    @Query("SELECT * FROM Users ORDER BY _id LIMIT :batchSize OFFSET :start")
-    override suspend fun nextBatch(start: Int, batchSize: Int): List<UsersEntity>?
+    @Query("SELECT MAX(rowid) FROM (SELECT rowid FROM Users WHERE rowid > :lastKey ORDER BY rowid LIMIT :batchSize)")
+    override suspend fun nextBatchEndKey(lastKey: Long, batchSize: Int): Long?
+
+    @Query("SELECT * FROM Users WHERE rowid > :lastKey AND rowid <= :endKey ORDER BY rowid")
+    override suspend fun nextBatchAfter(lastKey: Long, endKey: Long): List<UsersEntity>?
 
     @Query("SELECT COUNT(*) FROM Users")
     override suspend fun count(): Int
@@ -17,7 +17,7 @@
  */
 package com.waz.api
 
-import com.waz.utils.Locales
+import com.waz.utils.{Locales, Transliteration}
 
 case class ContentSearchQuery(originalString: String) {
   import ContentSearchQuery._
@@ -39,11 +39,13 @@ case class ContentSearchQuery(originalString: String) {
 
 object ContentSearchQuery {
 
-  private lazy val transliteration = Locales.transliteration("Latin-ASCII; Lower")
+  private lazy val transliteration = Locales.transliteration(Transliteration.LatinToLowerAsciiId)
 
   val empty = ContentSearchQuery("")
 
   def transliterated(s: String): String = transliteration.transliterate(s).trim
 
+  def transliteratedAll(ss: Seq[String]): Seq[String] = transliteration.transliterateAll(ss).map(_.trim)
+
   def preloadTransliteration() = transliteration
 }
@@ -25,6 +25,7 @@ import com.waz.model.errors.{FailedExpectationsError, FileSystemError, NotFoundL
 import com.waz.utils.IoUtils
 import com.wire.signals._
 
+import scala.annotation.tailrec
 import scala.concurrent.duration.FiniteDuration
 import scala.concurrent.{ExecutionContext, Future}
 
@@ -66,6 +67,7 @@ abstract class BaseFileCache[K] extends FileCache[K] with DerivedLogTag {
 
   protected def getOperationHook(key: K, targetFile: File): Unit = ()
   protected def putOperationHook(key: K, targetFile: File): Unit = ()
+  protected def removeOperationHook(key: K, targetFile: File): Unit = ()
 
   override def exists(key: K): Future[Boolean] =
     Future { createFile(key).exists() }
@@ -129,7 +131,11 @@ abstract class BaseFileCache[K] extends FileCache[K] with DerivedLogTag {
     failedIfEmpty(key, findBytes(key))
 
   override def remove(key: K): Future[Unit] =
-    Future { createFile(key).delete() }
+    Future {
+      val targetFile = createFile(key)
+      targetFile.delete()
+      removeOperationHook(key, targetFile)
+    }
 
   override def getFileSize(key: K): Future[Long] =
     Future { createFile(key).length() }
@@ -138,7 +144,7 @@ abstract class BaseFileCache[K] extends FileCache[K] with DerivedLogTag {
     for {
       targetFile <- Future(createFile(key))
       _ <- if (targetFile.exists()) Future.failed(keyAlreadyExistError(createFileName(key)))
-           else Future.successful(targetFile.createNewFile())
+           else Future { targetFile.createNewFile(); putOperationHook(key, targetFile) }
     } yield targetFile
 
   override def changeKey(oldKey: K, newKey: K): Future[Unit] =
@@ -149,6 +155,8 @@ abstract class BaseFileCache[K] extends FileCache[K] with DerivedLogTag {
       _ <- if (newFile.exists()) Future.failed(keyAlreadyExistError(createFileName(newKey))) else Future.successful(())
       renamingResult = oldFile.renameTo(newFile)
       _ <- if (renamingResult) Future.successful(()) else Future.failed(FileSystemError(s"Can not rename $oldFile to $newFile"))
+      _ = removeOperationHook(oldKey, oldFile)
+      _ = putOperationHook(newKey, newFile)
     } yield ()
 
 }
@@ -166,6 +174,11 @@ object BaseFileCache {
 
 }
 
+/**
+  * A file cache which removes the least recently used files when the size of its directory exceeds
+  * `directorySizeThreshold`. The sizes and the access order of the files are tracked by a [[FileCacheIndex]], so
+  * neither puts nor cleanups have to list and stat the directory.
+  */
 abstract class LruFileCache[K] extends BaseFileCache[K] {
 
   protected def cacheDirectory: File
@@ -174,6 +187,8 @@ abstract class LruFileCache[K] extends BaseFileCache[K] {
 
   protected implicit def ev: EventContext
 
+  private lazy val index = new FileCacheIndex(cacheDirectory)
+
   private val directorySize: SourceSignal[Long] = Signal()
   directorySize
     .throttle(sizeCheckingInterval)
@@ -181,36 +196,41 @@ abstract class LruFileCache[K] extends BaseFileCache[K] {
       verbose(l"Current cache size: ${asSize(size)}")
       size > directorySizeThreshold
     }.foreach { size =>
-      var shouldBeCleared = size - directorySizeThreshold
+      val shouldBeCleared = size - directorySizeThreshold
       verbose(l"Cache directory size threshold reached. Current size: ${asSize(size)}. Should be cleared: ${asSize(shouldBeCleared)}")
-      cacheDirectory
-        .listFiles()
-        .sortBy(_.lastModified())
-        .takeWhile { file =>
-          val fileSize = file.length()
-          if (file.delete()) {
-            verbose(l"File '$file' removed. Cleared ${asSize(fileSize)}.")
-            shouldBeCleared -= fileSize
-          } else {
-            verbose(l"File '$file' can not be removed. Not cleared ${asSize(fileSize)}.")
-          }
-          shouldBeCleared > 0
-        }
+      clear(shouldBeCleared)
     }
 
-  updateDirectorySize()
-
-  private def updateDirectorySize(): Unit =
-    Future(cacheDirectory.listFiles().foldLeft(0L)(_ + _.length())).foreach(size => directorySize ! size)
+  Future(index.bytes).foreach(size => directorySize ! size)
+
+  def stats: Future[FileCacheStats] = Future(index.stats)
+
+  @tailrec
+  private def clear(shouldBeCleared: Long): Unit =
+    if (shouldBeCleared > 0) index.evictEldest() match {
+      case Some((name, fileSize)) =>
+        val file = new File(cacheDirectory, name)
+        if (file.delete()) {
+          verbose(l"File '$file' removed. Cleared ${asSize(fileSize)}.")
+          clear(shouldBeCleared - fileSize)
+        } else {
+          verbose(l"File '$file' can not be removed. Not cleared ${asSize(fileSize)}.")
+          clear(shouldBeCleared)
+        }
+      case None =>
+    }
 
   override protected def createFile(key: K): File =
     new File(cacheDirectory, createFileName(key))
 
   override protected def getOperationHook(key: K, targetFile: File): Unit =
-    if (targetFile.exists()) targetFile.setLastModified(System.currentTimeMillis())
+    index.touch(targetFile.getName)
 
   override protected def putOperationHook(key: K, targetFile: File): Unit =
-    updateDirectorySize()
+    directorySize ! index.put(targetFile.getName, targetFile.length())
+
+  override protected def removeOperationHook(key: K, targetFile: File): Unit =
+    index.remove(targetFile.getName)
 
 }
 
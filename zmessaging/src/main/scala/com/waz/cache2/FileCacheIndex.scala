@@ -0,0 +1,194 @@
+/*
+ * Wire
+ * Copyright (C) 2016 Wire Swiss GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.waz.cache2
+
+import java.io._
+import java.nio.charset.StandardCharsets
+
+import com.waz.cache2.FileCacheIndex._
+import com.waz.log.BasicLogging.LogTag.DerivedLogTag
+import com.waz.log.LogSE._
+import com.waz.utils.IoUtils
+
+import scala.collection.JavaConverters._
+import scala.util.Try
+
+/**
+  * Keeps the sizes and the access order of the files of a cache directory in memory, so that the total size is known
+  * and the least recently used file is found without listing the directory.
+  *
+  * Every change is appended to a journal in the directory. On startup the journal is replayed against the names of the
+  * files which are actually there, so only the files missing from it (e.g. written before a crash) have to be stat-ed.
+  * They are treated as the least recently used ones, in the order of their modification time. The journal is then
+  * rewritten with one record per file, and again whenever it grows too long.
+  */
+private[cache2] final class FileCacheIndex(directory: File) extends DerivedLogTag {
+
+  private val entries = new java.util.LinkedHashMap[String, java.lang.Long](16, .75f, true)
+  private var totalBytes = 0L
+  private var hits = 0L
+  private var misses = 0L
+  private var evictions = 0L
+  private var evictedBytes = 0L
+
+  private val journalFile = new File(directory, JournalName)
+  private var journal = Option.empty[Writer]
+  private var journalRecords = 0
+
+  load()
+
+  def bytes: Long = synchronized(totalBytes)
+
+  def stats: FileCacheStats = synchronized {
+    FileCacheStats(hits, misses, entries.size, totalBytes, evictions, evictedBytes)
+  }
+
+  /**
+    * Marks the file as used and returns true if it is in the index.
+    */
+  def touch(name: String): Boolean = synchronized {
+    if (entries.get(name) ne null) {
+      hits += 1
+      append(s"$Access $name")
+      true
+    } else {
+      misses += 1
+      false
+    }
+  }
+
+  /**
+    * Adds or replaces the file and returns the new total size.
+    */
+  def put(name: String, size: Long): Long = synchronized {
+    add(name, size)
+    append(s"$Put $size $name")
+    totalBytes
+  }
+
+  def remove(name: String): Unit = synchronized {
+    if (drop(name)) append(s"$Remove $name")
+  }
+
+  /**
+    * Removes the least recently used file from the index and returns its name and size.
+    * The file itself should be deleted by the caller.
+    */
+  def evictEldest(): Option[(String, Long)] = synchronized {
+    val it = entries.entrySet().iterator()
+    if (!it.hasNext) None
+    else {
+      val eldest = it.next()
+      val (name, size) = (eldest.getKey, eldest.getValue.longValue())
+      it.remove()
+      totalBytes -= size
+      evictions += 1
+      evictedBytes += size
+      append(s"$Remove $name")
+      Some((name, size))
+    }
+  }
+
+  private def add(name: String, size: Long): Unit = {
+    val previous = entries.put(name, size)
+    totalBytes += size - (if (previous eq null) 0L else previous.longValue())
+  }
+
+  private def drop(name: String): Boolean = {
+    val previous = entries.remove(name)
+    if (previous ne null) totalBytes -= previous.longValue()
+    previous ne null
+  }
+
+  private def append(record: String): Unit = journal.foreach { writer =>
+    try {
+      writer.write(record)
+      writer.write('\n')
+      writer.flush()
+      journalRecords += 1
+      if (journalRecords > entries.size * 2 + CompactionSlack) compact()
+    } catch {
+      case e: IOException =>
+        warn(l"Writing the cache journal failed, continuing without it", e)
+        closeJournal()
+    }
+  }
+
+  private def load(): Unit = synchronized {
+    val names = Option(directory.list()).fold(Set.empty[String])(_.toSet) -- Set(JournalName, JournalTempName)
+
+    val journaled = new java.util.LinkedHashMap[String, java.lang.Long](16, .75f, true)
+    if (journalFile.exists()) Try {
+      IoUtils.withResource(new BufferedReader(new InputStreamReader(new FileInputStream(journalFile), StandardCharsets.UTF_8))) { reader =>
+        Iterator.continually(reader.readLine()).takeWhile(_ != null).foreach(replay(journaled, _))
+      }
+    }.failed.foreach(e => warn(l"Reading the cache journal failed", e))
+
+    val untracked = (names -- journaled.keySet().asScala).toSeq.map(new File(directory, _)).sortBy(_.lastModified())
+    untracked.foreach(file => add(file.getName, file.length()))
+    journaled.asScala.foreach { case (name, size) => if (names.contains(name)) add(name, size.longValue()) }
+
+    verbose(l"Cache index loaded: ${entries.size} files, ${asSize(totalBytes)}, ${untracked.size} not journaled")
+    compact()
+  }
+
+  private def replay(journaled: java.util.Map[String, java.lang.Long], line: String): Unit =
+    line.split(" ", 3) match {
+      case Array(Put, size, name) => Try(size.toLong).foreach(s => journaled.put(name, s))
+      case Array(Access, name)    => journaled.get(name)
+      case Array(Remove, name)    => journaled.remove(name)
+      case _                      => // a record cut off by a crash
+    }
+
+  private def compact(): Unit = {
+    closeJournal()
+    val temp = new File(directory, JournalTempName)
+    try {
+      IoUtils.withResource(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8))) { writer =>
+        entries.asScala.foreach { case (name, size) => writer.write(s"$Put $size $name\n") }
+      }
+      if (!temp.renameTo(journalFile)) throw new IOException(s"Can not rename $temp to $journalFile")
+      journal = Some(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(journalFile, true), StandardCharsets.UTF_8)))
+      journalRecords = entries.size
+    } catch {
+      case e: IOException =>
+        warn(l"Compacting the cache journal failed, continuing without it", e)
+        temp.delete()
+    }
+  }
+
+  private def closeJournal(): Unit = {
+    journal.foreach(w => Try(w.close()))
+    journal = None
+  }
+}
+
+private[cache2] object FileCacheIndex {
+  val JournalName = ".journal"
+  val JournalTempName = ".journal.tmp"
+
+  private val Put = "P"
+  private val Access = "A"
+  private val Remove = "R"
+
+  private val CompactionSlack = 1000
+}
+
+case class FileCacheStats(hits: Long, misses: Long, files: Int, bytes: Long, evictions: Long, evictedBytes: Long) {
+  def hitRate: Double = if (hits + misses == 0) 0.0 else hits.toDouble / (hits + misses)
+}
@@ -17,21 +17,27 @@
  */
 package com.waz.content
 
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicBoolean
+
 import com.waz.api.Message.Status
 import com.waz.api.{Message, MessageFilter}
 import com.waz.content.ConvMessagesIndex._
 import com.waz.log.BasicLogging.LogTag
+import com.waz.log.BasicLogging.LogTag.DerivedLogTag
 import com.waz.log.LogSE._
+import com.waz.model.ConversationData.UnreadCount
 import com.waz.model.MessageData.{MessageDataDao, isUserContent}
 import com.waz.model._
 import com.wire.signals.CancellableFuture
 import com.waz.utils._
-import com.wire.signals.{EventStream, RefreshingSignal, Signal, SourceSignal}
+import com.wire.signals.{DispatchQueue, EventStream, RefreshingSignal, SerialDispatchQueue, Serialized, Signal, SourceSignal}
 
-import scala.concurrent.Future
+import scala.concurrent.{Future, Promise}
 import scala.concurrent.duration._
+import scala.util.{Failure, Success}
 
-class ConvMessagesIndex(convId: ConvId, messages: MessagesStorageImpl, selfUserId: UserId,
+class ConvMessagesIndex(convId: ConvId, messages: ConvMessagesIndex.Source, selfUserId: UserId,
                         users: UsersStorage, convs: ConversationStorage,
                         msgAndLikes: MessageAndLikesStorage, storage: ZmsDatabase,
                         filter: Option[MessageFilter] = None) { self =>
@@ -49,6 +55,7 @@ class ConvMessagesIndex(convId: ConvId, messages: MessagesStorageImpl, selfUserI
     val lastSentMessage = Signal(Option.empty[MessageData])
     val lastReadTime = returning(Signal[RemoteInstant]())(_.disableAutowiring())
     val lastMessageFromSelf = Signal(Option.empty[MessageData])
+    val unreadMessages = Signal(Map.empty[MessageId, UnreadMessage])
   }
 
   object signals {
@@ -66,30 +73,33 @@ class ConvMessagesIndex(convId: ConvId, messages: MessagesStorageImpl, selfUserI
     val lastSentMessage: Signal[Option[MessageData]] = returning(sources.lastSentMessage)(_.disableAutowiring())
     val lastMessageFromSelf: Signal[Option[MessageData]] = returning(sources.lastMessageFromSelf)(_.disableAutowiring())
 
-    val unreadCount = for {
-      time   <- sources.lastReadTime
-      _      <- Signal.from(LocalInstant.Epoch, indexChanged.map(_.time)).throttle(500.millis)
-      unread <- Signal.from(messages.countUnread(convId, time))
-    } yield unread
+    val unreadCount: Signal[UnreadCount] = Signal.zip(sources.lastReadTime, sources.unreadMessages).map {
+      case (time, unread) => UnreadMessage.count(unread.valuesIterator.filter(_.time.isAfter(time)))
+    }
 
     val messagesCursor: Signal[MessagesCursor] = new RefreshingSignal(() => loadCursor, indexChanged.filter(_.orderChanged))
   }
 
   import sources._
 
+  // Failed count, missed call and incoming knock are persisted with the conversation by the subscription below
+  // and kept up to date from the index changes, the conversations are all loaded in one query, and the messages
+  // of the indexes created together are loaded in one query too.
   private val init = convs.get(convId).flatMap { c =>
     c foreach updateLastRead
-
-    storage.read { implicit db =>
-      logTime(l"Initial load conversation entries for: $convId") {
-        missedCall ! MessageDataDao.lastMissedCall(convId)
-        incomingKnock ! MessageDataDao.lastIncomingKnock(convId, selfUserId)
-        failedCount ! MessageDataDao.countFailed(convId).toInt
-        firstMessage = MessageDataDao.first(convId)
-        lastMessage ! MessageDataDao.last(convId)
-        lastSentMessage ! MessageDataDao.lastSent(convId)
-        lastMessageFromSelf ! MessageDataDao.lastFromSelf(convId, selfUserId)
-      }
+    val lastRead = c.fold(RemoteInstant.Epoch)(_.lastRead)
+    val missedCallId = c.flatMap(_.missedCallMessage)
+    val knockId = c.flatMap(_.incomingKnockMessage)
+
+    messages.loadIndexEntries(convId, lastRead, missedCallId.toSet ++ knockId).flatMap { entries =>
+      missedCall ! missedCallId.flatMap(entries.byId.get)
+      incomingKnock ! knockId.flatMap(entries.byId.get)
+      failedCount ! c.fold(0)(_.failedCount)
+      firstMessage = entries.first
+      lastMessage ! entries.last
+      lastSentMessage ! entries.lastSent
+      lastMessageFromSelf ! entries.lastFromSelf
+      messages.unreadMessages(convId, lastRead, entries.unread).map(unread => unreadMessages.mutate(_ ++ unread))
     }.map { _ =>
       Signal.zip(signals.unreadCount, signals.failedCount, signals.lastMissedCall, signals.incomingKnock).throttle(500.millis).foreach {
         case (unread, failed, missed, knock) =>
@@ -100,7 +110,19 @@ class ConvMessagesIndex(convId: ConvId, messages: MessagesStorageImpl, selfUserI
       Future.failed(exception)
     }
   }.recoverWithLog()
-  def updateLastRead(c: ConversationData) = lastReadTime.mutateOrDefault(_ max c.lastRead, c.lastRead)
+
+  // the changes are applied one after another, in the order they came, after the initial load
+  private val changesKey = s"ConvMessagesIndex_${convId}_${System.identityHashCode(this)}"
+
+  private def serialized(change: => Future[Unit]): Future[Unit] =
+    Serialized.future(changesKey)(init.flatMap(_ => change))
+
+  def updateLastRead(c: ConversationData) = {
+    lastReadTime.mutateOrDefault(_ max c.lastRead, c.lastRead)
+    unreadMessages.mutate(_.filter { case (_, m) => m.time.isAfter(c.lastRead) })
+  }
+
+  private def lastRead = lastReadTime.currentValue.getOrElse(RemoteInstant.Epoch)
 
   private[waz] def loadCursor = CancellableFuture.lift(init.flatMap { _ =>
     verbose(l"loadCursor for $convId")
@@ -126,23 +148,27 @@ class ConvMessagesIndex(convId: ConvId, messages: MessagesStorageImpl, selfUserI
 
   def firstMessageId = init.map { _ => firstMessage.map(_.id) }
 
-  private[content] def delete(msg: MessageData): Future[Unit] = init map { _ =>
+  private[content] def delete(msg: MessageData): Future[Unit] = serialized {
     if (msg.state.isFailed) failedCount.mutate(c => math.max(c - 1, 0))
+    unreadMessages.mutate(_ - msg.id)
 
     removeLast(_.id == msg.id)
 
     indexChanged ! Removed(msg)
+    Future.successful(())
   }
 
-  private[content] def delete(upTo: RemoteInstant = RemoteInstant.Max): Future[Unit] = init map { _ =>
+  private[content] def delete(upTo: RemoteInstant = RemoteInstant.Max): Future[Unit] = serialized {
     failedCount ! 0 // XXX: this might be wrong, hopefully not too often
 
     firstMessage = firstMessage.filter(_.time.isAfter(upTo))
     incomingKnock.mutate(_.filter(_.time.isAfter(upTo)))
+    unreadMessages.mutate(_.filter { case (_, m) => m.time.isAfter(upTo) })
 
     removeLast(!_.time.isAfter(upTo))
 
     indexChanged ! RemovedOlder(upTo)
+    Future.successful(())
   }
 
   private def removeLast(f: MessageData => Boolean) = {
@@ -152,15 +178,21 @@ class ConvMessagesIndex(convId: ConvId, messages: MessagesStorageImpl, selfUserI
 
     if (lastRemoved || lastSentRemoved || lastFromSelfRemoved) {
       verbose(l"last message was removed, need to fetch it from db")
-      storage.read { implicit db =>
-        MessageDataDao.last(convId) foreach updateSignal(lastMessage)
-        MessageDataDao.lastSent(convId) foreach updateSignal(lastSentMessage)
-        MessageDataDao.lastFromSelf(convId, selfUserId) foreach updateSignal(lastMessageFromSelf)
+      messages.loadIndexEntries(convId, RemoteInstant.Max, Set.empty).foreach { entries =>
+        entries.last foreach updateSignal(lastMessage)
+        entries.lastSent foreach updateSignal(lastSentMessage)
+        entries.lastFromSelf foreach updateSignal(lastMessageFromSelf)
       }
     }
   }
 
-  private[content] def add(msgs: Seq[MessageData]): Future[Unit] = init map { _ =>
+  private[content] def add(msgs: Seq[MessageData]): Future[Unit] = serialized {
+    messages.unreadMessages(convId, lastRead, msgs).map(added(msgs, _))
+  }
+
+  private def added(msgs: Seq[MessageData], unread: Map[MessageId, UnreadMessage]): Unit = {
+    if (unread.nonEmpty) unreadMessages.mutate(_ ++ unread)
+
     msgs foreach { msg =>
       if (!msg.isLocal) {
         if (msg.msgType == Message.Type.MISSED_CALL) missedCall.mutate(_.filter(_.time.isAfter(msg.time)).orElse(Some(msg)))
@@ -185,8 +217,14 @@ class ConvMessagesIndex(convId: ConvId, messages: MessagesStorageImpl, selfUserI
     }
   }
 
-  private[content] def update(updates: Seq[(MessageData, MessageData)]): Future[Unit] = init map { _ =>
+  private[content] def update(updates: Seq[(MessageData, MessageData)]): Future[Unit] = serialized {
+    messages.unreadMessages(convId, lastRead, updates.map(_._2)).map(updated(updates, _))
+  }
+
+  private def updated(updates: Seq[(MessageData, MessageData)], unread: Map[MessageId, UnreadMessage]): Unit = {
     if (updates.nonEmpty) {
+      unreadMessages.mutate(_ -- updates.map(_._1.id) ++ unread)
+
       val failed = updates.foldLeft(0) { case (count, (p, u)) =>
         if (p.state.isFailed == u.state.isFailed) count
         else if (u.state.isFailed) count + 1 else count - 1
@@ -215,6 +253,105 @@ class ConvMessagesIndex(convId: ConvId, messages: MessagesStorageImpl, selfUserI
 
 object ConvMessagesIndex {
 
+  /**
+    * What the index needs from the messages storage, implemented by [[MessagesStorageImpl]].
+    */
+  trait Source {
+    def loadIndexEntries(conv: ConvId, lastRead: RemoteInstant, ids: Set[MessageId]): Future[IndexEntries]
+    def unreadMessages(conv: ConvId, lastReadTime: RemoteInstant, msgs: Seq[MessageData]): Future[Map[MessageId, UnreadMessage]]
+  }
+
+  /**
+    * The messages an index starts with: `unread` are the messages since the last read time, `byId` the requested ones.
+    */
+  final case class IndexEntries(first:        Option[MessageData],
+                                last:         Option[MessageData],
+                                lastSent:     Option[MessageData],
+                                lastFromSelf: Option[MessageData],
+                                byId:         Map[MessageId, MessageData],
+                                unread:       Vector[MessageData])
+
+  /**
+    * Loads the entries of the indexes which are created together, e.g. for all the conversations of the list on start,
+    * with one query per batch of conversations instead of a few queries per conversation. The requests which come
+    * while a batch is loaded go in the next one.
+    */
+  final class EntriesLoader(storage: Database, selfUserId: UserId) extends DerivedLogTag {
+    import EntriesLoader._
+
+    private implicit val dispatcher: DispatchQueue = SerialDispatchQueue(name = "ConvMessagesIndexLoader")
+
+    private val pending = new ConcurrentLinkedQueue[Request]()
+    private val loading = new AtomicBoolean(false)
+
+    def load(conv: ConvId, lastRead: RemoteInstant, ids: Set[MessageId]): Future[IndexEntries] = {
+      val request = Request(conv, lastRead, ids, Promise[IndexEntries]())
+      pending.add(request)
+      if (loading.compareAndSet(false, true)) dispatcher(loadPending())
+      request.promise.future
+    }
+
+    private def loadPending(): Unit = {
+      val batch = Iterator.continually(pending.poll()).takeWhile(_ != null).toVector
+      if (batch.isEmpty) {
+        loading.set(false)
+        // a request might have come in between
+        if (!pending.isEmpty && loading.compareAndSet(false, true)) loadPending()
+      } else {
+        storage.read { implicit db =>
+          batch.groupBy(_.conv).grouped(MaxConvsPerQuery).flatMap { requests =>
+            MessageDataDao.findIndexEntries(
+              requests.map { case (conv, rs) => conv -> rs.map(_.lastRead).min },
+              requests.values.flatten.flatMap(_.ids).toSet,
+              selfUserId
+            )
+          }.toVector
+        }.onComplete { result =>
+          result match {
+            case Success(rows) =>
+              val byConv = rows.groupBy(_._2.convId)
+              batch.foreach(r => r.promise.success(r.entries(byConv.getOrElse(r.conv, Vector.empty))))
+            case Failure(e) =>
+              error(l"Failed to load the index entries of ${batch.size} conversations", e)
+              batch.foreach(_.promise.failure(e))
+          }
+          loadPending()
+        }
+      }
+    }
+  }
+
+  object EntriesLoader {
+    // keeps the queries well under the SQLite limits on the expression depth and on the number of bound arguments
+    val MaxConvsPerQuery = 50
+
+    private case class Request(conv: ConvId, lastRead: RemoteInstant, ids: Set[MessageId], promise: Promise[IndexEntries]) {
+      import MessageDataDao.IndexEntry
+
+      def entries(rows: Vector[(String, MessageData)]): IndexEntries = {
+        def entry(tpe: String) = rows.collectFirst { case (`tpe`, m) => m }
+        IndexEntries(
+          first        = entry(IndexEntry.First),
+          last         = entry(IndexEntry.Last),
+          lastSent     = entry(IndexEntry.LastSent),
+          lastFromSelf = entry(IndexEntry.FromSelf),
+          byId         = rows.collect { case (IndexEntry.ById, m) if ids(m.id) => m.id -> m }.toMap,
+          unread       = rows.collect { case (IndexEntry.Unread, m) if !m.time.isBefore(lastRead) => m }.sortBy(_.time)
+        )
+      }
+    }
+  }
+
+  /**
+    * @param count the contribution of one unread message to the unread count of its conversation
+    */
+  final case class UnreadMessage(time: RemoteInstant, count: UnreadCount)
+
+  object UnreadMessage {
+    def count(unread: TraversableOnce[UnreadMessage]): UnreadCount =
+      unread.foldLeft(UnreadCount(0, 0, 0, 0, 0))(_ + _.count)
+  }
+
   sealed trait Change {
     val time: LocalInstant = LocalInstant.Now
     val orderChanged = true
@@ -33,11 +33,30 @@ trait Database {
   protected lazy val readExecutionContext: DispatchQueue =
     DispatchQueue(DispatchQueue.Unlimited, Threading.IO, name = "Database_readQueue_" + hashCode().toHexString)
 
+  /**
+    * If defined, the writes requested with `grouped` are committed in groups, see [[GroupCommit]].
+    */
+  protected def groupCommitConfig: Option[GroupCommit.Config] = None
+
+  private lazy val groupCommit = groupCommitConfig.map(new GroupCommit(_, () => dbHelper.getWritableDatabase))
+
+  def groupCommitStats: Option[GroupCommitStats] = groupCommit.map(_.stats)
+
   def apply[A](f: DB => A)(implicit logTag: LogTag = LogTag("")): CancellableFuture[A] = dispatcher {
+    groupCommit.foreach(_.commitPending()) // the grouped writes requested before this one are committed first
     implicit val db:DB = dbHelper.getWritableDatabase
     inTransaction(f(db))
   }
 
+  /**
+    * Like `apply`, but the write may be committed in one transaction with the other grouped writes. After a failure
+    * of the group it is run again, so it should only change the database, e.g. save or delete rows through a DAO.
+    */
+  def grouped[A](f: DB => A)(implicit logTag: LogTag = LogTag("")): CancellableFuture[A] = groupCommit match {
+    case Some(group) => group.write(f)
+    case None        => apply(f)
+  }
+
   def withTransaction[A](f: DB => A)(implicit logTag: LogTag = LogTag("")): CancellableFuture[A] = apply(f)
 
   def read[A](f: DB => A): Future[A] = Future {
@@ -46,9 +65,13 @@ trait Database {
   } (readExecutionContext)
 
   def close(): CancellableFuture[Unit] = dispatcher {
+    groupCommit.foreach(_.commitPending())
     dbHelper.close()
   }
 
   def flushWALToDatabase(): Future[Unit] =
-    dispatcher(dbHelper.flushWALFile())
+    dispatcher {
+      groupCommit.foreach(_.commitPending())
+      dbHelper.flushWALFile()
+    }
 }
@@ -0,0 +1,156 @@
+/*
+ * Wire
+ * Copyright (C) 2016 Wire Swiss GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.waz.content
+
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.{AtomicBoolean, AtomicInteger}
+
+import com.waz.content.GroupCommit._
+import com.waz.db.inTransaction
+import com.waz.log.BasicLogging.LogTag.DerivedLogTag
+import com.waz.log.LogSE._
+import com.waz.utils.wrappers.DB
+import com.wire.signals.{CancellableFuture, DispatchQueue}
+
+import scala.annotation.tailrec
+import scala.concurrent.Promise
+import scala.concurrent.duration.FiniteDuration
+import scala.util.{Failure, Success, Try}
+import scala.util.control.NonFatal
+
+/**
+  * Commits the writes which queue up within `config.window`, or up to `config.maxWrites` of them, in one transaction,
+  * so that a burst of writes pays for one commit instead of one each. The writes run on the (serial) dispatcher in the
+  * order they were requested, and the future of each completes only after its transaction is committed.
+  *
+  * If a write fails, the whole transaction is rolled back: the failing write fails with its exception and the others
+  * are run again, each in its own transaction, so that they succeed or fail independently, as without grouping.
+  * A write may therefore run twice, so it should only change the database, which is rolled back in between.
+  * That is why only the writes requested with `Database.grouped` go through here.
+  */
+final class GroupCommit(config: Config, getDatabase: () => DB)(implicit dispatcher: DispatchQueue) extends DerivedLogTag {
+
+  private val pending   = new ConcurrentLinkedQueue[Write[_]]()
+  private val queued    = new AtomicInteger(0)
+  private val scheduled = new AtomicBoolean(false)
+
+  @volatile private var _stats = GroupCommitStats.Empty
+
+  def stats: GroupCommitStats = _stats
+
+  def write[A](f: DB => A): CancellableFuture[A] = {
+    val write = new Write(f)
+    pending.add(write)
+    if (queued.incrementAndGet() >= config.maxWrites) dispatcher(commitPending())
+    else if (scheduled.compareAndSet(false, true)) CancellableFuture.delayed(config.window)(commitPending())
+    CancellableFuture.from(write.promise)
+  }
+
+  /**
+    * Commits all the queued writes. Has to be called on the dispatcher.
+    */
+  @tailrec
+  def commitPending(): Unit = {
+    scheduled.set(false)
+    val batch = drain(config.maxWrites)
+    if (batch.nonEmpty) {
+      commit(batch)
+      commitPending()
+    }
+  }
+
+  private def drain(max: Int): Vector[Write[_]] = {
+    val batch = Vector.newBuilder[Write[_]]
+    var count = 0
+    var write = pending.poll()
+    while (write != null) {
+      queued.decrementAndGet()
+      if (!write.promise.isCompleted) { // not cancelled
+        batch += write
+        count += 1
+      }
+      write = if (count < max) pending.poll() else null
+    }
+    batch.result()
+  }
+
+  private def commit(batch: Vector[Write[_]]): Unit = {
+    implicit val db: DB = getDatabase()
+    var failed = Option.empty[(Write[_], Throwable)]
+    val start = System.nanoTime()
+
+    val committed = Try {
+      inTransaction {
+        batch.map { write =>
+          try write.run(db)
+          catch {
+            case NonFatal(e) =>
+              failed = Some((write, e))
+              throw e
+          }
+        }
+      }
+    }
+    val time = System.nanoTime() - start
+
+    committed match {
+      case Success(completions) =>
+        completions.foreach(_.apply())
+        verbose(l"Committed ${batch.size} writes in ${time / 1000} us")
+        _stats = _stats.withBatch(batch.size, time)
+      case Failure(e) =>
+        warn(l"Group commit of ${batch.size} writes failed, running them one by one", e)
+        failed.foreach { case (write, cause) => write.promise.tryFailure(cause) }
+        batch.filterNot(w => failed.exists(_._1 eq w)).foreach(_.runAlone(db))
+        _stats = _stats.withFallback()
+    }
+  }
+}
+
+object GroupCommit {
+  case class Config(window: FiniteDuration, maxWrites: Int)
+
+  private final class Write[A](f: DB => A) {
+    val promise = Promise[A]()
+
+    /**
+      * Runs the write in the current transaction and returns the completion of its future,
+      * to be called once the transaction is committed.
+      */
+    def run(db: DB): () => Unit = {
+      val result = f(db)
+      () => promise.trySuccess(result)
+    }
+
+    def runAlone(implicit db: DB): Unit = promise.tryComplete(Try(inTransaction(f(db))))
+  }
+}
+
+case class GroupCommitStats(batches: Long, writes: Long, maxBatchSize: Int, commitNanos: Long, maxCommitNanos: Long, fallbacks: Long) {
+  def averageBatchSize: Double = if (batches == 0) 0.0 else writes.toDouble / batches
+  def averageCommitMillis: Double = if (batches == 0) 0.0 else commitNanos / 1e6 / batches
+
+  def withBatch(size: Int, nanos: Long): GroupCommitStats =
+    copy(batches + 1, writes + size, maxBatchSize max size, commitNanos + nanos, maxCommitNanos max nanos)
+
+  def withFallback(): GroupCommitStats = copy(fallbacks = fallbacks + 1)
+}
+
+object GroupCommitStats {
+  val Empty = GroupCommitStats(0, 0, 0, 0, 0, 0)
+}
@@ -24,7 +24,7 @@ import com.waz.model.ConversationMemberData.ConversationMemberDataDao
 import com.waz.model._
 import com.waz.utils.TrimmingLruCache.Fixed
 import com.wire.signals.{AggregatingSignal, Signal}
-import com.waz.utils.{CachedStorage, CachedStorageImpl, TrimmingLruCache}
+import com.waz.utils.{CachedStorage, CachedStorageImpl, KeyedEventStreams, TrimmingLruCache}
 
 import scala.concurrent.Future
 
@@ -54,25 +54,29 @@ final class MembersStorageImpl(context: Context, storage: ZmsDatabase)
   ) with MembersStorage with DerivedLogTag {
   import com.waz.threading.Threading.Implicits.Background
 
+  private val byConv = index(_.convId)
+  private val byUser = index(_.userId)
+
   override def getByConv(conv: ConvId): Future[IndexedSeq[ConversationMemberData]] =
-    find(_.convId == conv, ConversationMemberDataDao.findForConv(conv)(_), identity)
+    findByIndex(byConv, Set(conv), ConversationMemberDataDao.findForConv(conv)(_), identity)
 
   def getByUser(user: UserId): Future[IndexedSeq[ConversationMemberData]] =
-    find(_.userId == user, ConversationMemberDataDao.findForUser(user)(_), identity)
+    findByIndex(byUser, Set(user), ConversationMemberDataDao.findForUser(user)(_), identity)
+
+  // the added (true) and removed (false) members, by conversation
+  private val memberChanges = new KeyedEventStreams[ConvId, Seq[(UserId, Boolean)]]
 
-  override def activeMembers(conv: ConvId): Signal[Set[UserId]] = {
-    def onConvMemberChanged(conv: ConvId) =
-      onAdded.map(_.filter(_.convId == conv).map(_.userId -> true))
-        .zip(onDeleted.map(_.filter(_._2 == conv).map(_._1 -> false)))
+  onAdded.foreach(added => memberChanges.publishAll(added)(_.convId)(_.map(_.userId -> true)))
+  onDeleted.foreach(deleted => memberChanges.publishAll(deleted)(_._2)(_.map(_._1 -> false)))
 
+  override def activeMembers(conv: ConvId): Signal[Set[UserId]] =
     new AggregatingSignal[Seq[(UserId, Boolean)], Set[UserId]](
       () => getActiveUsers(conv).map(_.toSet),
-      onConvMemberChanged(conv),
+      memberChanges(conv),
       { (current, changes) =>
         val (active, inactive) = changes.partition(_._2)
         current -- inactive.map(_._1) ++ active.map(_._1)
       })
-  }
 
   override def getActiveUsers(conv: ConvId): Future[Seq[UserId]] = getByConv(conv).map { _.map(_.userId) }
 
@@ -148,8 +152,8 @@ final class MembersStorageImpl(context: Context, storage: ZmsDatabase)
   override def delete(conv: ConvId): Future[Unit] = getByConv(conv) flatMap { users => removeAll(users.map(_.userId -> conv)) }
 
   override def getByUsers(users: Set[UserId]): Future[IndexedSeq[ConversationMemberData]] =
-    find(mem => users.contains(mem.userId), ConversationMemberDataDao.findForUsers(users)(_), identity)
+    findByIndex(byUser, users, ConversationMemberDataDao.findForUsers(users)(_), identity)
 
   override def getByConvs(convs: Set[ConvId]): Future[IndexedSeq[ConversationMemberData]] =
-    find(mem => convs.contains(mem.convId), ConversationMemberDataDao.findForConvs(convs)(_), identity)
+    findByIndex(byConv, convs, ConversationMemberDataDao.findForConvs(convs)(_), identity)
 }
@@ -26,9 +26,11 @@ import com.waz.log.BasicLogging.LogTag
 import com.waz.log.BasicLogging.LogTag.DerivedLogTag
 import com.waz.model._
 import com.waz.utils.TrimmingLruCache.Fixed
+import com.waz.utils.WeightedLruCache.{EmptyEntryWeight, optionWeigher, stringWeight}
 import com.waz.utils.wrappers.DBCursor
-import com.waz.utils.{CachedStorageImpl, TrimmingLruCache}
+import com.waz.utils.{CachedStorageImpl, WeightedLruCache}
 import com.waz.utils._
+import com.wire.signals.{DispatchQueue, SerialDispatchQueue}
 
 import scala.concurrent.Future
 import scala.concurrent.duration.FiniteDuration
@@ -39,7 +41,7 @@ final class MessageIndexStorage(context:             Context,
                                 loader:              MessageAndLikesStorage,
                                 conversationStorage: ConversationStorage)
   extends CachedStorageImpl[MessageId, MessageContentIndexEntry](
-    new TrimmingLruCache(context, Fixed(MessageContentIndex.MaxSearchResults)), storage)(MessageContentIndexDao, LogTag("MessageIndexStorage_Cached")
+    new WeightedLruCache[MessageId, Option[MessageContentIndexEntry]](context, MessageIndexStorage.cacheBytes)(optionWeigher(MessageIndexStorage.weight)), storage)(MessageContentIndexDao, LogTag("MessageIndexStorage_Cached")
   ) with DerivedLogTag {
 
   import MessageIndexStorage._
@@ -47,22 +49,31 @@ final class MessageIndexStorage(context:             Context,
 
   import com.waz.threading.Threading.Implicits.Background
 
-  private def entry(m: MessageData) =
-    MessageContentIndexEntry(m.id, m.convId, ContentSearchQuery.transliterated(m.contentString), m.time)
+  // the messages are transliterated here, in batches, instead of on the thread which adds them;
+  // a serial queue keeps the index changes in the order of the message changes
+  private val indexQueue: DispatchQueue = SerialDispatchQueue(name = "MessageIndexer")
+
+  private def entries(ms: Seq[MessageData]) = {
+    val indexed = ms.filter(m => TextMessageTypes.contains(m.msgType) && !m.isEphemeral)
+    val contents = ContentSearchQuery.transliteratedAll(indexed.map(_.contentString))
+    indexed.zip(contents).map { case (m, content) => MessageContentIndexEntry(m.id, m.convId, content, m.time) }
+  }
 
   messagesStorage.onAdded.foreach { added =>
-    insertAll(added.filter(m => TextMessageTypes.contains(m.msgType) && !m.isEphemeral).map(entry))
+    indexQueue(insertAll(entries(added)))
   }
 
   messagesStorage.onUpdated.foreach { updated =>
-    val entries = updated.collect { case (_, m) if TextMessageTypes.contains(m.msgType) && !m.isEphemeral => entry(m) }
-    //FTS tables ignore UNIQUE or PKEY constraints so we have to force the replace
-    removeAll(entries.map(_.messageId))
-    insertAll(entries)
+    indexQueue {
+      val es = entries(updated.map(_._2))
+      //FTS tables ignore UNIQUE or PKEY constraints so we have to force the replace
+      removeAll(es.map(_.messageId))
+      insertAll(es)
+    }
   }
 
   messagesStorage.onDeleted.foreach { removed =>
-    if (removed.nonEmpty) removeAll(removed)
+    if (removed.nonEmpty) indexQueue(removeAll(removed))
   }
 
   def searchText(contentSearchQuery: ContentSearchQuery, convId: Option[ConvId]): Future[MessagesCursor] =
@@ -84,6 +95,14 @@ final class MessageIndexStorage(context:             Context,
 object MessageIndexStorage {
   val UpdateOldMessagesThrottle = FiniteDuration(1, TimeUnit.SECONDS)
 
+  val cacheBytes = Fixed(1024 * 1024)
+
+  /**
+    * A rough estimate of the memory taken by a cached index entry: the ids and the indexed content.
+    */
+  def weight(entry: MessageContentIndexEntry): Int =
+    EmptyEntryWeight + stringWeight(entry.messageId.str) + stringWeight(entry.convId.str) + stringWeight(entry.content)
+
   implicit object MsgIdReader extends Reader[MessageId] {
     override def apply(implicit c: DBCursor): MessageId = MessageId(c.getString(0))
   }
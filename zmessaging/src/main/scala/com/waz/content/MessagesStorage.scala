@@ -22,6 +22,7 @@ import java.util.concurrent.ConcurrentHashMap
 import android.content.Context
 import com.waz.api.impl.ErrorResponse
 import com.waz.api.{Message, MessageFilter}
+import com.waz.content.ConvMessagesIndex.UnreadMessage
 import com.waz.log.BasicLogging.LogTag
 import com.waz.log.BasicLogging.LogTag.DerivedLogTag
 import com.waz.log.LogSE._
@@ -32,7 +33,8 @@ import com.waz.model.otr.ClientId
 import com.waz.service.Timeouts
 import com.waz.service.messages.MessageAndLikes
 import com.waz.service.tracking.TrackingService
-import com.waz.utils.TrimmingLruCache.Fixed
+import com.waz.utils.TrimmingLruCache.{Fixed, Relative}
+import com.waz.utils.WeightedLruCache.{optionWeigher, stringWeight}
 import com.waz.utils._
 import com.wire.signals.{EventStream, Signal, SourceStream}
 import com.waz.utils.wrappers.DB
@@ -89,9 +91,9 @@ final class MessagesStorageImpl(context:     Context,
                                 users:       UsersStorage,
                                 msgAndLikes: => MessageAndLikesStorage)
   extends CachedStorageImpl[MessageId, MessageData](
-    new TrimmingLruCache[MessageId, Option[MessageData]](context, Fixed(MessagesStorage.cacheSize)),
+    new WeightedLruCache[MessageId, Option[MessageData]](context, MessagesStorage.cacheBytes)(optionWeigher(MessagesStorage.weight)),
     storage
-  )(MessageDataDao, LogTag("MessagesStorage_Cached")) with MessagesStorage with DerivedLogTag {
+  )(MessageDataDao, LogTag("MessagesStorage_Cached")) with MessagesStorage with ConvMessagesIndex.Source with DerivedLogTag {
 
   import com.waz.threading.Threading.Implicits.Background
 
@@ -102,6 +104,7 @@ final class MessagesStorageImpl(context:     Context,
   val onMessagesDeletedInConversation = EventStream[Set[ConvId]]()
 
   private val indexes = new ConcurrentHashMap[ConvId, ConvMessagesIndex]
+  private val indexEntries = new ConvMessagesIndex.EntriesLoader(storage, selfUserId)
   private val filteredIndexes = new MultiKeyLruCache[ConvId, MessageFilter, ConvMessagesIndex](MessagesStorage.filteredMessagesCacheSize)
 
   def msgsIndex(conv: ConvId): Future[ConvMessagesIndex] =
@@ -156,32 +159,40 @@ final class MessagesStorageImpl(context:     Context,
 
   override def addMessage(msg: MessageData) = put(msg.id, msg)
 
-  override def countUnread(conv: ConvId, lastReadTime: RemoteInstant): Future[UnreadCount] = {
-    // if a message is both a mention and a quote, we count it as a mention
-    storage {
-      MessageDataDao.findMessagesFrom(conv, lastReadTime)(_)
+  override def countUnread(conv: ConvId, lastReadTime: RemoteInstant): Future[UnreadCount] =
+    storage { implicit db =>
+      MessageDataDao.findMessagesFrom(conv, lastReadTime).acquire(_.toVector)
     }.future.flatMap { msgs =>
-      msgs.acquire { msgs =>
-        val unread = msgs.filter { m => !m.isLocal && m.convId == conv && m.time.isAfter(lastReadTime) && !m.isDeleted && m.userId != selfUserId && m.msgType != Message.Type.UNKNOWN }.toVector
-
-        val repliesNotMentionsCount = getAll(unread.filter(!_.hasMentionOf(selfUserId)).flatMap(_.quote.map(_.message))).map(_.flatten)
-          .map { quotes =>
-            unread.count { m =>
-              val quote = quotes.find(q => m.quote.map(_.message).contains(q.id))
-              quote.exists(_.userId == selfUserId)
-            }
-          }
-
-        repliesNotMentionsCount.map { unreadReplies =>
+      unreadMessages(conv, lastReadTime, msgs)
+    }.map(unread => UnreadMessage.count(unread.values))
+
+  override def loadIndexEntries(conv: ConvId, lastRead: RemoteInstant, ids: Set[MessageId]): Future[ConvMessagesIndex.IndexEntries] =
+    indexEntries.load(conv, lastRead, ids)
+
+  /**
+    * Returns the contribution of each unread message from `msgs` to the unread count of the conversation.
+    * If a message is both a mention and a quote, we count it as a mention.
+    */
+  override def unreadMessages(conv: ConvId, lastReadTime: RemoteInstant, msgs: Seq[MessageData]): Future[immutable.Map[MessageId, UnreadMessage]] = {
+    val unread = msgs.filter { m => !m.isLocal && m.convId == conv && m.time.isAfter(lastReadTime) && !m.isDeleted && m.userId != selfUserId && m.msgType != Message.Type.UNKNOWN }
+    val quoted = unread.filter(!_.hasMentionOf(selfUserId)).flatMap(_.quote.map(_.message))
+
+    (if (quoted.isEmpty) Future.successful(Seq.empty[Option[MessageData]]) else getAll(quoted)).map { quotes =>
+      val quotesOfSelf = quotes.flatten.filter(_.userId == selfUserId).map(_.id).toSet
+      unread.map { m =>
+        val mention = m.hasMentionOf(selfUserId)
+        val reply   = !mention && m.quote.exists(q => quotesOfSelf.contains(q.message))
+        m.id -> UnreadMessage(
+          m.time,
           UnreadCount(
-            normal   = unread.count(m => !m.isSystemMessage && m.msgType != Message.Type.KNOCK && !m.hasMentionOf(selfUserId)) - unreadReplies,
-            call     = unread.count(_.msgType == Message.Type.MISSED_CALL),
-            ping     = unread.count(_.msgType == Message.Type.KNOCK),
-            mentions = unread.count(_.hasMentionOf(selfUserId)),
-            quotes   = unreadReplies
+            normal   = if (!m.isSystemMessage && m.msgType != Message.Type.KNOCK && !mention && !reply) 1 else 0,
+            call     = if (m.msgType == Message.Type.MISSED_CALL) 1 else 0,
+            ping     = if (m.msgType == Message.Type.KNOCK) 1 else 0,
+            mentions = if (mention) 1 else 0,
+            quotes   = if (reply) 1 else 0
           )
-        }
-      }
+        )
+      }.toMap
     }
   }
 
@@ -307,6 +318,23 @@ final class MessagesStorageImpl(context:     Context,
 
 object MessagesStorage {
   val cacheSize = 12048
+  val cacheBytes = Fixed(8 * 1024 * 1024) min Relative(.05f)
+
+  private val MessageWeight = 512
+  private val IdWeight = 128
+  private val MentionWeight = 64
+
+  /**
+    * A rough estimate of the memory taken by a cached message: its fields, the text and mentions of its content,
+    * and the parsed generic messages, which take about twice their serialized size.
+    */
+  def weight(msg: MessageData): Int =
+    MessageWeight +
+      msg.content.iterator.map(c => stringWeight(c.content) + c.mentions.size * MentionWeight).sum +
+      msg.genericMsgs.iterator.map(m => 2 * m.proto.getSerializedSize).sum +
+      msg.members.size * IdWeight +
+      msg.name.fold(0)(n => stringWeight(n.str)) +
+      msg.email.fold(0)(stringWeight)
   val filteredMessagesCacheSize = 32
   val FirstMessageTypes = {
     import Message.Type._
@@ -62,6 +62,16 @@ trait Preferences {
   protected def getValue[A: PrefCodec](key: PrefKey[A]): Future[A]
 
   def setValue[A: PrefCodec](key: PrefKey[A], value: A): Future[Unit]
+
+  /**
+    * Sets the value of the key to the result of `f` applied to the current value, and returns the new value.
+    * Implementations which can should do it atomically; this one doesn't.
+    */
+  def mutateValue[A: PrefCodec](key: PrefKey[A], f: A => A): Future[A] =
+    getValue(key).flatMap { cur =>
+      val value = f(cur)
+      setValue(key, value).map(_ => value)
+    }
 }
 
 object Preferences {
@@ -73,7 +83,7 @@ object Preferences {
     def apply(): Future[A] = prefs.getValue(key)
 
     def update(value: A): Future[Unit] = prefs.setValue(key, value)
-      .map { _ => signal.publish(value, Threading.Background) }
+      .map { _ => publish(value) }
       .recoverWith { case exception =>
         error(l"Error while updating signal preference $key to value $value. Exception is: $exception")
         Future.failed(exception)
@@ -81,10 +91,17 @@ object Preferences {
 
     def :=(value: A): Future[Unit] = update(value)
 
-    def mutate(f: A => A): Future[Unit] = apply().flatMap(cur => update(f(cur)))
+    def mutate(f: A => A): Future[Unit] = prefs.mutateValue(key, f)
+      .map(publish)
+      .recoverWith { case exception =>
+        error(l"Error while mutating signal preference $key. Exception is: $exception")
+        Future.failed(exception)
+      }
 
     def flatMutate(f: A => Future[A]) = apply().flatMap(cur => f(cur).flatMap(n => update(n)))
 
+    protected def publish(value: A): Unit = signal.publish(value, Threading.Background)
+
     lazy val signal: SourceSignal[A] = {
       returning(Signal[A]()) { s =>
         apply().map { v =>
@@ -237,6 +254,8 @@ class GlobalPreferences(context: Context, val prefs: SharedPreferences) extends
         setValue[A](key, value)
       }
 
+      override protected def publish(value: A): Unit = ()
+
       private def load = getFromPref(key)
 
       override lazy val signal = new SourceSignal[A](Some(load)) {
@@ -259,22 +278,28 @@ class GlobalPreferences(context: Context, val prefs: SharedPreferences) extends
     dispatcher(getFromPref[A](key))
 
   override def setValue[A: PrefCodec](key: PrefKey[A], value: A): Future[Unit] =
-    dispatcher {
-      import PrefCodec._
-      val codec = implicitly[PrefCodec[A]]
-      val editor = prefs.edit()
-      codec match {
-        case IntCodec => editor.putInt(key.str, value.asInstanceOf[Int])
-        case BooleanCodec => editor.putBoolean(key.str, value.asInstanceOf[Boolean])
-        case LongCodec => editor.putLong(key.str, value.asInstanceOf[Long])
-        case _ => editor.putString(key.str, codec.encode(value))
-      }
-      editor.apply()
+    dispatcher(putToPref(key, value))
+
+  override def mutateValue[A: PrefCodec](key: PrefKey[A], f: A => A): Future[A] =
+    dispatcher(returning(f(getFromPref(key)))(putToPref(key, _)))
+
+  private def putToPref[A: PrefCodec](key: PrefKey[A], value: A): Unit = {
+    import PrefCodec._
+    val codec = implicitly[PrefCodec[A]]
+    val editor = prefs.edit()
+    codec match {
+      case IntCodec => editor.putInt(key.str, value.asInstanceOf[Int])
+      case BooleanCodec => editor.putBoolean(key.str, value.asInstanceOf[Boolean])
+      case LongCodec => editor.putLong(key.str, value.asInstanceOf[Long])
+      case _ => editor.putString(key.str, codec.encode(value))
     }
+    editor.apply()
+  }
 }
 
 /**
-  * Per-user preference storage in user db.
+  * Per-user preference storage in user db. The values are kept in memory and written behind, in batches,
+  * see [[WriteBehindValues]].
   */
 class UserPreferences(context: Context, storage: ZmsDatabase)
   extends CachedStorageImpl[String, KeyValueData](
@@ -284,12 +309,30 @@ class UserPreferences(context: Context, storage: ZmsDatabase)
   override protected implicit val dispatcher: DispatchQueue = Threading.Background
   override protected implicit val logTag: LogTag = LogTag[UserPreferences]
 
-  override protected def getValue[A: PrefCodec](key: PrefKey[A]) = {
-    get(key.str).map(_.map(_.value)).map(_.map(implicitly[PrefCodec[A]].decode).getOrElse(key.default))
-  }
+  private lazy val writeBehind = new WriteBehindValues(
+    UserPreferences.WriteBehindWindow,
+    () => storage.read(KeyValueDataDao.list(_)).map(_.map(kv => kv.key -> kv.value).toMap),
+    batch => insertAll(batch.map { case (k, v) => KeyValueData(k, v) }).map(_ => ())
+  )(SerialDispatchQueue(name = "UserPreferencesWriter"))
+
+  override protected def getValue[A: PrefCodec](key: PrefKey[A]) =
+    writeBehind.get(key.str).map(_.map(implicitly[PrefCodec[A]].decode).getOrElse(key.default))
 
   override def setValue[A: PrefCodec](key: PrefKey[A], value: A) =
-    put(key.str, KeyValueData(key.str, implicitly[PrefCodec[A]].encode(value))).map(_ => {})
+    writeBehind.set(key.str, implicitly[PrefCodec[A]].encode(value))
+
+  override def mutateValue[A: PrefCodec](key: PrefKey[A], f: A => A) = {
+    val codec = implicitly[PrefCodec[A]]
+    writeBehind.update(key.str) { cur =>
+      val value = f(cur.map(codec.decode).getOrElse(key.default))
+      (value, codec.encode(value))
+    }
+  }
+
+  /**
+    * Writes the pending preference changes now.
+    */
+  def flush(): Future[Unit] = writeBehind.flush()
 }
 
 object GlobalPreferences {
@@ -355,6 +398,8 @@ object UserPreferences {
   def apply(context: Context, storage: ZmsDatabase, globalPreferences: GlobalPreferences): UserPreferences =
     new UserPreferences(context, storage)
 
+  val WriteBehindWindow: FiniteDuration = 100.millis
+
   lazy val IsLogin = PrefKey[Boolean]("is_login")
   lazy val IsNewClient = PrefKey[Boolean]("is_new_client")
 
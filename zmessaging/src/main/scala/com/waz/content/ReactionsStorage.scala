@@ -47,6 +47,8 @@ final class ReactionsStorageImpl(context: Context, storage: Database)
 
   import com.waz.threading.Threading.Implicits.Background
 
+  private val byMessage = index(_.message)
+
   private val likesCache = new TrimmingLruCache[MessageId, Map[UserId, RemoteInstant]](context, Fixed(1024))
   private val maxTime = returning(
     new AggregatingSignal[RemoteInstant, RemoteInstant](
@@ -56,6 +58,9 @@ final class ReactionsStorageImpl(context: Context, storage: Database)
     )
   )(_.disableAutowiring())
 
+  // the changed likings, by message
+  private val likingChanges = new KeyedEventStreams[MessageId, Seq[Liking]]
+
   onChanged.foreach { likes =>
     likes.groupBy(_.message) foreach { case (msg, ls) =>
       Option(likesCache.get(msg)) foreach { current =>
@@ -63,6 +68,7 @@ final class ReactionsStorageImpl(context: Context, storage: Database)
         likesCache.put(msg, current -- toRemove.map(_.user) ++ toAdd.map(l => l.user -> l.timestamp))
       }
     }
+    likingChanges.publishAll(likes)(_.message)(identity)
   }
 
   private def updateCache(msg: MessageId, likings: Iterable[Liking]) = {
@@ -84,13 +90,13 @@ final class ReactionsStorageImpl(context: Context, storage: Database)
     Option(likesCache.get(msg))
   } flatMap {
     case Some(users) => Future.successful(Likes(msg, users))
-    case None => find(_.message == msg, LikingDao.findForMessage(msg)(_), identity) map { updateCache(msg, _) }
+    case None => findByIndex(byMessage, Set(msg), LikingDao.findForMessage(msg)(_), identity) map { updateCache(msg, _) }
   }
 
   override def likes(msg: MessageId): Signal[Likes] =
     new RefreshingSignal[Likes](
       () => CancellableFuture.lift(getLikes(msg)),
-      onChanged.map(_.filter(_.message == msg))
+      likingChanges(msg)
     )
 
   override def addOrUpdate(liking: Liking): Future[Likes] = {
@@ -102,7 +108,7 @@ final class ReactionsStorageImpl(context: Context, storage: Database)
     msgs.map(m => m -> Option(likesCache.get(m))).toMap
   } flatMap { cached =>
     val toLoad: Set[MessageId] = cached.collect { case (id, None) => id } (breakOut)
-    find(l => toLoad(l.message), LikingDao.findForMessages(toLoad)(_), identity) map { likings =>
+    findByIndex(byMessage, toLoad, LikingDao.findForMessages(toLoad)(_), identity) map { likings =>
       val usersMap = cached.mapValues(_.getOrElse(Map.empty)) ++ likings.groupBy(_.message).map { case (msg, ls) => msg -> likers(ls) }
       msgs.map { msg =>
         val users = usersMap(msg)
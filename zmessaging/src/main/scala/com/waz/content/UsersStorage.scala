@@ -22,7 +22,8 @@ import com.waz.log.BasicLogging.LogTag
 import com.waz.log.BasicLogging.LogTag.DerivedLogTag
 import com.waz.model.UserData.{ConnectionStatus, UserDataDao}
 import com.waz.model._
-import com.waz.service.{SearchKey, SearchQuery}
+import com.waz.service.{SearchKey, SearchQuery, UserSearchIndex}
+import com.waz.utils.ContentChange.{Added, Removed, Updated}
 import com.waz.utils._
 import com.wire.signals._
 
@@ -40,6 +41,8 @@ trait UsersStorage extends CachedStorage[UserId, UserData] {
   def findUsersForService(id: IntegrationId): Future[Set[UserData]]
 
   def findByPicture(assetId: GeneralAssetId): Future[Option[UserData]]
+
+  def searchIndex: Signal[UserSearchIndex]
 }
 
 final class UsersStorageImpl(context: Context, storage: ZmsDatabase)
@@ -78,4 +81,18 @@ final class UsersStorageImpl(context: Context, storage: ZmsDatabase)
 
   override def findByPicture(assetId: GeneralAssetId): Future[Option[UserData]] =
     values.map(_.find(_.picture.exists(_.id == assetId)))
+
+  override lazy val searchIndex: Signal[UserSearchIndex] = {
+    val changesStream = EventStream.zip[Seq[ContentChange[UserId, UserData]]](
+      onAdded.map(_.map(d => Added(d.id, d))),
+      onUpdated.map(_.map { case (prv, curr) => Updated(prv.id, prv, curr) }),
+      onDeleted.map(_.map(Removed(_)))
+    )
+
+    new AggregatingSignal[Seq[ContentChange[UserId, UserData]], UserSearchIndex](
+      () => storage.read(implicit db => UserDataDao.list).map(UserSearchIndex(_)),
+      changesStream,
+      _ applied _
+    ).disableAutowiring()
+  }
 }
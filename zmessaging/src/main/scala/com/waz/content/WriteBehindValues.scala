@@ -0,0 +1,127 @@
+/*
+ * Wire
+ * Copyright (C) 2016 Wire Swiss GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.waz.content
+
+import com.waz.log.BasicLogging.LogTag.DerivedLogTag
+import com.waz.log.LogSE._
+import com.wire.signals.{CancellableFuture, DispatchQueue}
+
+import scala.concurrent.duration.FiniteDuration
+import scala.concurrent.{Future, Promise}
+import scala.util.{Failure, Success}
+
+/**
+  * Keeps the values of a key-value store in memory and writes them behind: the values changed within `window` are
+  * persisted together, in the background, and only the last value of a key changed several times is written.
+  *
+  * The in-memory values are authoritative, so they are read without waiting for the pending writes. All the changes
+  * run on the (serial) dispatcher, which makes `update` an atomic read-modify-write. The future of a change completes
+  * once the in-memory value is changed; `flush` tells when the changes are persisted. If persisting fails, the values
+  * which weren't changed since are written again with the next batch, up to `maxAttempts` times.
+  */
+final class WriteBehindValues(window:      FiniteDuration,
+                              load:        () => Future[Map[String, String]],
+                              persist:     Map[String, String] => Future[Unit],
+                              maxAttempts: Int = WriteBehindValues.DefaultMaxAttempts)
+                             (implicit dispatcher: DispatchQueue) extends DerivedLogTag {
+
+  @volatile private var values = Map.empty[String, String]
+  private var dirty            = Map.empty[String, String]
+  private var attempts         = Map.empty[String, Int]
+  private var flushed          = Promise[Unit]()
+  private var lastFlush        = Future.successful(())
+  private var scheduled        = false
+
+  private lazy val loaded: Future[Unit] = load().flatMap(vs => dispatcher { values = vs }.future)
+
+  def get(key: String): Future[Option[String]] = loaded.map(_ => values.get(key))
+
+  def set(key: String, value: String): Future[Unit] = update(key)(_ => ((), value))
+
+  /**
+    * Changes the value of the key to the one returned by `f` from the current value, atomically.
+    * @return the result of `f`, once the in-memory value is changed
+    */
+  def update[A](key: String)(f: Option[String] => (A, String)): Future[A] =
+    loaded.flatMap { _ =>
+      dispatcher {
+        val current = values.get(key)
+        val (result, value) = f(current)
+        if (!current.contains(value)) {
+          values += key -> value
+          attempts -= key
+          markDirty(key, value)
+        }
+        result
+      }.future
+    }
+
+  /**
+    * Persists the pending changes now, without waiting for the window to pass.
+    * @return a future which completes once the changes made so far are persisted, or fails if persisting them fails
+    */
+  def flush(): Future[Unit] = dispatcher {
+    scheduled = false
+    if (dirty.isEmpty) lastFlush
+    else {
+      val batch = dirty
+      val promise = flushed
+      dirty = Map.empty
+      flushed = Promise[Unit]()
+      lastFlush = promise.future
+
+      persist(batch).onComplete {
+        case Success(_) =>
+          verbose(l"Persisted ${batch.size} values")
+          dispatcher { attempts --= batch.keys }
+          promise.success(())
+        case Failure(e) =>
+          error(l"Failed to persist ${batch.size} values", e)
+          dispatcher(retry(batch))
+          promise.failure(e)
+      }
+      lastFlush
+    }
+  }.future.flatMap(identity)
+
+  private def markDirty(key: String, value: String): Unit = {
+    dirty += key -> value
+    if (!scheduled) {
+      scheduled = true
+      CancellableFuture.delayed(window)(flush())
+    }
+  }
+
+  private def retry(batch: Map[String, String]): Unit =
+    batch.foreach { case (key, value) =>
+      if (!dirty.contains(key) && values.get(key).contains(value)) {
+        val attempt = attempts.getOrElse(key, 1)
+        if (attempt < maxAttempts) {
+          attempts += key -> (attempt + 1)
+          markDirty(key, value)
+        } else {
+          warn(l"Giving up persisting a value after $attempt attempts")
+          attempts -= key
+        }
+      }
+    }
+}
+
+object WriteBehindValues {
+  val DefaultMaxAttempts = 3
+}
@@ -25,6 +25,8 @@ import com.waz.threading.Threading
 import com.waz.zclient.storage.db.UserDatabase
 import com.waz.zclient.storage.di.StorageModule
 
+import scala.concurrent.duration._
+
 /**
   * Single user storage. Keeps data specific to used user account.
   */
@@ -37,4 +39,7 @@ class ZmsDatabase(user: UserId, context: Context) extends Database {
       context, user.str,
       ZMessagingDB.migrations.map(_.toRoomMigration).toArray ++ UserDatabase.getMigrations)
     )
+
+  override protected val groupCommitConfig: Option[GroupCommit.Config] =
+    Some(GroupCommit.Config(window = 5.millis, maxWrites = 64))
 }
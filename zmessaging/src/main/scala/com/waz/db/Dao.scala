@@ -42,7 +42,7 @@ abstract class Dao[T, A] extends DaoIdOps[T] {
 
   override def getAll(ids: Set[A])(implicit db: DB): Vector[T] =
     if (ids.isEmpty) Vector.empty
-    else list(db.query(table.name, null, s"${idCol.name} IN (${ids.map(idCol.col.sqlLiteral).mkString("'", "','", "'")})", null, null, null, null))
+    else findInSet(idCol, ids).flatMap(c => list(c))(breakOut)
 }
 
 abstract class Dao2[T, A, B] extends DaoIdOps[T] {
@@ -73,11 +73,19 @@ abstract class DaoIdOps[T] extends BaseDao[T] {
   private lazy val builtIdCols = idColumnsQueryBuilder(idCol)
   protected def idColumnsQueryBuilder(id: IdCols): String = idColumns(id).map(c => s"${c.name} = ?").mkString(" AND ")
 
-  def getAll(ids: Set[IdVals])(implicit db: DB): Vector[T] = {
-    val builder = Vector.newBuilder[T]
-    ids foreach { getById(_) foreach { builder += _ } }
-    builder.result()
-  }
+  /**
+    * Loads the rows with the given ids with as few queries as possible. Row values (`(a, b) IN ((?, ?), ...)`)
+    * are not supported by SQLite before Android 8, so for composite ids we OR the conditions for each id instead.
+    * Both forms use the primary key index. The number of ids per query is limited so that we never bind more
+    * than `MaxQueryVariables` arguments.
+    */
+  def getAll(ids: Set[IdVals])(implicit db: DB): Vector[T] =
+    if (ids.isEmpty) Vector.empty
+    else ids.grouped(idsPerQuery).flatMap { chunk =>
+      list(db.query(table.name, null, Vector.fill(chunk.size)(s"($builtIdCols)").mkString(" OR "), chunk.iterator.flatMap(idValueSplitter(_).iterator).toArray, null, null, null))
+    }.toVector
+
+  private lazy val idsPerQuery = math.max(1, BaseDao.MaxQueryVariables / idColumns(idCol).size)
 
   def getById(id: IdVals)(implicit db: DB) = single(findById(id))
 
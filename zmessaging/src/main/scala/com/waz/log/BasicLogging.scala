@@ -17,9 +17,9 @@
  */
 package com.waz.log
 
-import com.waz.log.InternalLog.LogLevel.{Debug, Error, Info, Verbose, Warn}
 import com.waz.log.LogShow.{RedactedString, ShowString, Size}
 
+import scala.language.experimental.macros
 import scala.language.implicitConversions
 import scala.annotation.tailrec
 import scala.reflect.ClassTag
@@ -30,13 +30,14 @@ trait BasicLogging {
   implicit def toCanBeShown[T: LogShow](value: T): CanBeShownImpl[T] = new CanBeShownImpl[T](value)
   implicit def toLogHelper(sc: StringContext): LogHelper = new LogHelper(sc)
 
-  def error(log: Log, cause: Throwable)(implicit tag: LogTag): Unit = InternalLog.log(log, cause, Error, tag)
-  def error(log: Log)(implicit tag: LogTag): Unit                   = InternalLog.log(log, Error, tag)
-  def warn(log: Log, cause: Throwable)(implicit tag: LogTag): Unit  = InternalLog.log(log, cause, Warn, tag)
-  def warn(log: Log)(implicit tag: LogTag): Unit                    = InternalLog.log(log, Warn, tag)
-  def info(log: Log)(implicit tag: LogTag): Unit                    = InternalLog.log(log, Info, tag)
-  def debug(log: Log)(implicit tag: LogTag): Unit                   = InternalLog.log(log, Debug, tag)
-  def verbose(log: Log)(implicit tag: LogTag): Unit                 = InternalLog.log(log, Verbose, tag)
+  // macros, so that the log is only built when its level is enabled, see LogMacros
+  def error(log: Log, cause: Throwable)(implicit tag: LogTag): Unit = macro LogMacros.errorCause
+  def error(log: Log)(implicit tag: LogTag): Unit                   = macro LogMacros.error
+  def warn(log: Log, cause: Throwable)(implicit tag: LogTag): Unit  = macro LogMacros.warnCause
+  def warn(log: Log)(implicit tag: LogTag): Unit                    = macro LogMacros.warn
+  def info(log: Log)(implicit tag: LogTag): Unit                    = macro LogMacros.info
+  def debug(log: Log)(implicit tag: LogTag): Unit                   = macro LogMacros.debug
+  def verbose(log: Log)(implicit tag: LogTag): Unit                 = macro LogMacros.verbose
 
   def showString(str: String): ShowString = new ShowString(str)
   def redactedString(str: String): RedactedString = new RedactedString(str)
@@ -17,104 +17,214 @@
  */
 package com.waz.log
 
-import java.io.{BufferedWriter, File, FileWriter, IOException}
+import java.io._
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.charset.StandardCharsets.UTF_8
+import java.util.concurrent.locks.LockSupport
+import java.util.concurrent.{ConcurrentLinkedQueue, CountDownLatch, TimeUnit}
 
 import com.waz.log.BasicLogging.LogTag
-import com.waz.log.InternalLog.{LogLevel, dateTag, stackTrace}
-import com.wire.signals.{DispatchQueue, SerialDispatchQueue}
-import com.waz.threading.Threading
+import com.waz.log.BufferedLogOutput._
+import com.waz.log.InternalLog.{LogLevel, stackTrace}
+import com.waz.service.ZMessaging.clock
 import com.waz.utils.crypto.ZSecureRandom
-import com.waz.utils.returning
+import com.waz.utils.{IoUtils, returning}
+import org.threeten.bp.Instant
 
 import scala.annotation.tailrec
-import scala.collection.JavaConversions._
+import scala.concurrent.duration._
+import scala.util.control.NonFatal
 
+/**
+  * Writes the logs to rolling files in `baseDir`, without making the logging threads wait for the disk: `log` only
+  * puts a record into a lock-free ring buffer, and a dedicated writer thread formats the records and appends them
+  * to the current file, through a file channel kept open until the file is rotated. If the writer falls behind by
+  * more than `capacity` records, the oldest ones are dropped, and their number is written to the log.
+  *
+  * With `binary`, the records are written in a compact binary format instead, which is only turned into text
+  * when the logs are exported, see `writeTo`.
+  */
 class BufferedLogOutput(baseDir: String,
                         override val showSafeOnly: Boolean = false,
                         maxBufferSize: Long = BufferedLogOutput.DefMaxBufferSize,
                         maxFileSize: Long = BufferedLogOutput.DefMaxFileSize,
-                        maxRollFiles: Int = BufferedLogOutput.DefMaxRollFiles) extends LogOutput {
+                        maxRollFiles: Int = BufferedLogOutput.DefMaxRollFiles,
+                        capacity: Int = BufferedLogOutput.DefCapacity,
+                        binary: Boolean = false) extends LogOutput {
 
   assert(maxBufferSize < maxFileSize)
   assert(maxRollFiles > 0)
 
   override val id: String = "BufferedLogOutput" + ZSecureRandom.nextInt().toHexString
 
-  private implicit val dispatcher: DispatchQueue = DispatchQueue(DispatchQueue.Serial, Threading.IO, id)
+  private val records  = new LogRingBuffer[Record](capacity)
+  private val requests = new ConcurrentLinkedQueue[Request]()
+  private val fileName = if (binary) DefBinaryFileName else DefFileName
 
-  private val buffer = StringBuilder.newBuilder
-  private val pathRegex = s"$baseDir/${BufferedLogOutput.DefFileName}([0-9]+).log".r
-  private var paths = this.synchronized {
-    asScalaIterator(new File(baseDir).listFiles().iterator)
+  private val pathRegex = s"$baseDir/$fileName([0-9]+).log".r
+  @volatile private var paths =
+    Option(new File(baseDir).listFiles()).fold(List.empty[File])(_.toList)
       .map(_.getAbsolutePath)
       .collect { case path @ pathRegex(index) => (path, -index.toInt) }
-      .toList
       .sortBy(_._2)
       .map(_._1)
-  }
 
-  private def newPath = s"$baseDir/${BufferedLogOutput.DefFileName}${paths.size}.log"
+  // accessed by the writer thread only
+  private val bytes = ByteBuffer.allocate(maxBufferSize.toInt)
+  private var channel = Option.empty[FileChannel]
+  private var reportedDrops = 0L
+
+  @volatile private var closed = false
 
-  def currentPath: String = {
-    if (paths.isEmpty) paths = List(newPath)
-    while (new File(paths.head).length > maxFileSize) paths = newPath :: paths
-    paths.head
+  private val writer = returning(new Thread(new Runnable {
+    override def run(): Unit = writeLoop()
+  }, id)) { t =>
+    t.setDaemon(true)
+    t.setPriority(Thread.MIN_PRIORITY)
+    t.start()
   }
 
+  private def newPath = s"$baseDir/$fileName${paths.size}.log"
+
+  def currentPath: String = paths.headOption.getOrElse(newPath)
+
   //for tests
   def getMaxBufferSize: Long = maxBufferSize
 
   // internally the first path is the youngest one, but to the outside we want to show paths from the oldest to the youngest
   def getPaths: List[String] = paths.reverse
 
-  override def log(str: String, level: LogLevel, tag: LogTag, ex: Option[Throwable] = None): Unit = this.synchronized {
-    buffer.append(s"$dateTag/$level/${tag.value}: $str\n${ex.map(e => s"${stackTrace(e)}\n").getOrElse("")}")
-    if (size > maxBufferSize) flush()
-  }
+  def dropped: Long = records.dropped
+
+  override def log(str: String, level: LogLevel, tag: LogTag, ex: Option[Throwable] = None): Unit =
+    if (!closed) {
+      records.offer(new Record(clock.millis(), Thread.currentThread().getId, level, tag.value, str, ex.map(stackTrace).orNull))
+      if (records.size >= capacity / 2) LockSupport.unpark(writer)
+    }
 
-  override def close(): Unit = flush()
+  def empty: Boolean = records.isEmpty
 
-  def empty: Boolean = buffer.isEmpty
+  def size: Int = records.size
 
-  def size: Int = buffer.length
+  /**
+    * Asks the writer to write the pending records now, without waiting for it.
+    */
+  override def flush(): Unit = LockSupport.unpark(writer)
 
-  // TODO: In this implementation we risk that writing to the file fails and we lose the contents.
-  // But if we wait for the result of writeToFile, we risk that meanwhile someone will add something
-  // to the buffer and we will lose that.
-  override def flush(): Unit = this.synchronized {
-    if (!empty) {
-      val path = currentPath
-      val contents = buffer.toString
-      buffer.clear()
-      writeToFile(path, contents)
-      while (paths.size > maxRollFiles)
-        paths = BufferedLogOutput.roll(paths.reverse)
-    }
+  /**
+    * Waits (up to the timeout) until the records logged before the call are written.
+    */
+  def flushAndWait(timeout: FiniteDuration = DefFlushTimeout): Boolean = request(timeout)(())
+
+  override def close(): Unit = {
+    request(DefFlushTimeout)(closeChannel())
+    closed = true
+    LockSupport.unpark(writer)
   }
 
-  override def clear(): Unit = {
-    flush()
-    paths foreach { path => new File(path).delete() }
+  override def clear(): Unit = request(DefFlushTimeout) {
+    closeChannel()
+    paths.foreach(path => new File(path).delete())
   }
 
-  private def writeToFile(fileName: String, contents: String): Unit = this.synchronized {
-    try {
-      val file = new File(fileName)
-      if (!file.exists) {
-        file.getParentFile.mkdirs()
-        file.createNewFile()
-        file.setReadable(true)
-        file.setWritable(true)
+  /**
+    * Writes the logs in the files, as text, from the oldest to the youngest.
+    */
+  def writeTo(out: PrintWriter): Unit = {
+    flushAndWait()
+    getPaths.map(new File(_)).filter(_.exists).foreach { file =>
+      if (binary) readRecords(file)(r => out.print(r.text))
+      else IoUtils.withResource(new BufferedReader(new InputStreamReader(new FileInputStream(file)))) { reader =>
+        Iterator.continually(reader.readLine()).takeWhile(_ != null).foreach(out.println)
       }
+    }
+  }
 
-      returning(new BufferedWriter(new FileWriter(file, true))) { writer =>
-        writer.write(contents)
-        writer.flush()
-        writer.close()
+  private def request(timeout: FiniteDuration)(action: => Unit): Boolean =
+    if (closed) false
+    else {
+      val req = new Request(() => action)
+      requests.add(req)
+      LockSupport.unpark(writer)
+      req.done.await(timeout.toMillis, TimeUnit.MILLISECONDS)
+    }
+
+  private def writeLoop(): Unit =
+    while (!closed) {
+      try {
+        drain()
+        Iterator.continually(requests.poll()).takeWhile(_ != null).foreach { req =>
+          try req.action()
+          finally req.done.countDown()
+        }
+      } catch {
+        case NonFatal(e) => e.printStackTrace()
       }
+      if (records.isEmpty && requests.isEmpty) LockSupport.parkNanos(DefWriteInterval.toNanos)
+    }
+
+  private def drain(): Unit = {
+    val drops = records.dropped
+    if (drops > reportedDrops) {
+      append(new Record(clock.millis(), writer.getId, LogLevel.Warn, "BufferedLogOutput", s"dropped ${drops - reportedDrops} log records", null))
+      reportedDrops = drops
+    }
+    Iterator.continually(records.poll()).takeWhile(_ != null).foreach(append)
+    writeBytes()
+  }
+
+  private def append(record: Record): Unit = {
+    val encoded = if (binary) record.binary else record.text.getBytes(UTF_8)
+    if (encoded.length > bytes.remaining()) writeBytes()
+    if (encoded.length > bytes.remaining()) write(ByteBuffer.wrap(encoded))
+    else bytes.put(encoded)
+  }
+
+  private def writeBytes(): Unit = {
+    bytes.flip()
+    if (bytes.hasRemaining) write(bytes)
+    bytes.clear()
+  }
+
+  private def write(buffer: ByteBuffer): Unit =
+    try {
+      val ch = currentChannel
+      while (buffer.hasRemaining) ch.write(buffer)
     } catch {
-      case ex: IOException => ex.printStackTrace()
+      case ex: IOException =>
+        ex.printStackTrace()
+        closeChannel()
     }
+
+  private def currentChannel: FileChannel = channel match {
+    case Some(ch) if ch.size <= maxFileSize => ch
+    case Some(_) =>
+      closeChannel()
+      paths = newPath :: paths
+      while (paths.size > maxRollFiles) paths = roll(paths.reverse)
+      openChannel()
+    case None =>
+      if (paths.isEmpty) paths = List(newPath)
+      openChannel()
+  }
+
+  private def openChannel(): FileChannel = {
+    val file = new File(paths.head)
+    file.getParentFile.mkdirs()
+    returning(new FileOutputStream(file, true).getChannel) { ch =>
+      file.setReadable(true)
+      file.setWritable(true)
+      channel = Some(ch)
+    }
+  }
+
+  private def closeChannel(): Unit = {
+    channel.foreach { ch =>
+      try ch.close()
+      catch { case ex: IOException => ex.printStackTrace() }
+    }
+    channel = None
   }
 
   // delete the old "internalLog.log" file, from before rolling was introduced - this code can be deleted after some time
@@ -130,7 +240,79 @@ object BufferedLogOutput {
   val DefMaxBufferSize = 256L * 1024L
   val DefMaxFileSize = 4L * DefMaxBufferSize
   val DefMaxRollFiles = 10
+  val DefCapacity = 4096
   val DefFileName = "internalLog"
+  val DefBinaryFileName = "internalLogBin"
+  val DefWriteInterval: FiniteDuration = 1.second
+  val DefFlushTimeout: FiniteDuration = 5.seconds
+
+  private final class Request(val action: () => Unit) {
+    val done = new CountDownLatch(1)
+  }
+
+  private[log] final class Record(val time:       Long,
+                                  val threadId:   Long,
+                                  val level:      LogLevel,
+                                  val tag:        String,
+                                  val message:    String,
+                                  val stackTrace: String) {
+
+    def text: String = {
+      val sb = new StringBuilder
+      sb.append(Instant.ofEpochMilli(time)).append("-TID:").append(threadId)
+        .append('/').append(level).append('/').append(tag).append(": ").append(message).append('\n')
+      if (stackTrace != null) sb.append(stackTrace).append('\n')
+      sb.toString
+    }
+
+    // time, thread id, level weight, then the strings, each as its length followed by its UTF-8 bytes (-1 for null)
+    def binary: Array[Byte] = {
+      val out = new ByteArrayOutputStream(64 + message.length)
+      val data = new DataOutputStream(out)
+      data.writeLong(time)
+      data.writeLong(threadId)
+      data.writeByte(LogLevel.weight(level))
+      Seq(tag, message, stackTrace).foreach { str =>
+        if (str == null) data.writeInt(-1)
+        else {
+          val b = str.getBytes(UTF_8)
+          data.writeInt(b.length)
+          data.write(b)
+        }
+      }
+      out.toByteArray
+    }
+  }
+
+  private[log] def readRecords(file: File)(f: Record => Unit): Unit =
+    IoUtils.withResource(new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) { data =>
+      def readString(): String = data.readInt() match {
+        case -1 => null
+        case length =>
+          val b = new Array[Byte](length)
+          data.readFully(b)
+          new String(b, UTF_8)
+      }
+
+      try {
+        while (true) {
+          val time = data.readLong()
+          val threadId = data.readLong()
+          val level = levelOf(data.readByte())
+          f(new Record(time, threadId, level, readString(), readString(), readString()))
+        }
+      } catch {
+        case _: EOFException => // done, or the last record was cut off
+      }
+    }
+
+  private def levelOf(weight: Int): LogLevel = weight match {
+    case 1 => LogLevel.Verbose
+    case 2 => LogLevel.Debug
+    case 3 => LogLevel.Info
+    case 4 => LogLevel.Warn
+    case _ => LogLevel.Error
+  }
 
   @tailrec
   private def roll(pathsSorted: List[String], newPaths: List[String] = Nil): List[String] = pathsSorted match {
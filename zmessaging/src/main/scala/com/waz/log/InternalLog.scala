@@ -22,6 +22,7 @@ import java.io._
 import com.waz.log.BasicLogging.LogTag.DerivedLogTag
 import com.waz.log.BasicLogging.{Log, LogTag}
 import com.waz.service.ZMessaging.clock
+import com.waz.utils.returning
 import com.wire.signals.Signal
 
 import scala.Ordered._
@@ -56,11 +57,24 @@ object InternalLog extends DerivedLogTag {
 
   private val outputs = mutable.HashMap[String, LogOutput]()
 
+  // the weight of the lowest level written by any output, so that the lower levels are rejected with one comparison
+  @volatile private var minWeight = Int.MaxValue
+
+  private def updateMinWeight(): Unit =
+    minWeight = if (outputs.isEmpty) Int.MaxValue else outputs.valuesIterator.map(o => LogLevel.weight(o.level)).min
+
+  /**
+    * True if a log of this level would be written. The logging macros check it before building the log.
+    */
+  def isEnabled(level: LogLevel): Boolean =
+    LogLevel.weight(level) >= minWeight && logsEnabled.currentValue.contains(true)
+
   def getOutputs: List[LogOutput] = outputs.values.toList
 
   def reset(): Unit = this.synchronized {
     outputs.values.foreach(_.close())
     outputs.clear
+    updateMinWeight()
   }
 
   def flush(): Unit = outputs.values.foreach(_.flush())
@@ -68,13 +82,16 @@ object InternalLog extends DerivedLogTag {
   def apply(id: String): Option[LogOutput] = outputs.get(id)
 
   def add(output: LogOutput): LogOutput = this.synchronized {
-    outputs.getOrElseUpdate(output.id, output)
+    returning(outputs.getOrElseUpdate(output.id, output))(_ => updateMinWeight())
   }
 
-  def remove(output: LogOutput): Unit = this.synchronized { outputs.remove(output.id) match {
-    case Some(o) => o.close()
-    case _ =>
-  } }
+  def remove(output: LogOutput): Unit = this.synchronized {
+    outputs.remove(output.id) match {
+      case Some(o) => o.close()
+      case _ =>
+    }
+    updateMinWeight()
+  }
 
   def stackTrace(cause: Throwable): String = Option(cause) match {
     case Some(c) => val result = new StringWriter()
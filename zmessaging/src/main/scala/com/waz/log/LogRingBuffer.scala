@@ -0,0 +1,90 @@
+/*
+ * Wire
+ * Copyright (C) 2016 Wire Swiss GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.waz.log
+
+import java.util.concurrent.atomic.{AtomicLong, AtomicLongArray, AtomicReferenceArray}
+
+import com.waz.utils.returning
+
+import scala.annotation.tailrec
+
+/**
+  * A bounded, lock-free queue for many producers, used to hand the log records over to the writer thread.
+  * Each slot has a sequence number telling whether it's free for the producer of a position or filled for the
+  * consumer of it, so that producers only race for the position with a CAS and never wait for each other.
+  *
+  * When the buffer is full, `offer` drops the oldest element to make room, and counts it in `dropped`:
+  * a logging thread never waits for the writer.
+  */
+final class LogRingBuffer[A <: AnyRef](capacity: Int) {
+  require(capacity > 1 && Integer.bitCount(capacity) == 1, s"capacity has to be a power of two: $capacity")
+
+  private val mask      = capacity - 1
+  private val slots     = new AtomicReferenceArray[A](capacity)
+  private val sequences = returning(new AtomicLongArray(capacity))(seqs => (0 until capacity).foreach(i => seqs.set(i, i)))
+  private val head      = new AtomicLong(0) // the next position to take
+  private val tail      = new AtomicLong(0) // the next position to fill
+  private val _dropped  = new AtomicLong(0)
+
+  def dropped: Long = _dropped.get
+
+  def size: Int = math.min(math.max(tail.get - head.get, 0L), capacity).toInt
+
+  def isEmpty: Boolean = size == 0
+
+  def offer(a: A): Unit =
+    while (!tryOffer(a)) {
+      if (poll() != null) _dropped.incrementAndGet()
+    }
+
+  @tailrec
+  private def tryOffer(a: A): Boolean = {
+    val pos = tail.get
+    val index = (pos & mask).toInt
+    val diff = sequences.get(index) - pos
+    if (diff == 0) {
+      if (tail.compareAndSet(pos, pos + 1)) {
+        slots.set(index, a)
+        sequences.set(index, pos + 1)
+        true
+      } else tryOffer(a)
+    }
+    else if (diff < 0) false // full
+    else tryOffer(a)         // another producer took the position meanwhile
+  }
+
+  /**
+    * @return the oldest element, or null if there is none
+    */
+  @tailrec
+  def poll(): A = {
+    val pos = head.get
+    val index = (pos & mask).toInt
+    val diff = sequences.get(index) - (pos + 1)
+    if (diff == 0) {
+      if (head.compareAndSet(pos, pos + 1)) {
+        val a = slots.get(index)
+        slots.set(index, null.asInstanceOf[A])
+        sequences.set(index, pos + capacity)
+        a
+      } else poll()
+    }
+    else if (diff < 0) null.asInstanceOf[A] // empty, or the producer of this position didn't fill it yet
+    else poll()                            // another consumer took the position meanwhile
+  }
+}
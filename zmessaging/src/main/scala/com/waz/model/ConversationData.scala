@@ -167,6 +167,9 @@ object ConversationData {
   case class UnreadCount(normal: Int, call: Int, ping: Int, mentions: Int, quotes: Int) extends SafeToLog {
     def total = normal + call + ping + mentions + quotes
     def messages = normal + ping
+
+    def +(other: UnreadCount): UnreadCount =
+      UnreadCount(normal + other.normal, call + other.call, ping + other.ping, mentions + other.mentions, quotes + other.quotes)
   }
 
   // total (!) ordering for use in ordered sets; handwritten (instead of e.g. derived from tuples) to avoid allocations
@@ -0,0 +1,61 @@
+/*
+ * Wire
+ * Copyright (C) 2016 Wire Swiss GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.waz.model
+
+import com.waz.model.otr.ClientId
+import com.waz.utils.JsonDecoder
+import org.json.JSONObject
+
+import scala.util.Try
+
+/**
+  * The fields of a push event which the push pipeline looks at before the event is decoded (or decrypted):
+  * they are read once from the parsed event and reused by every later stage.
+  */
+final case class EventEnvelope(eventType: String,
+                               convId:    Option[RConvId],
+                               from:      Option[UserId],
+                               sender:    Option[ClientId],
+                               recipient: Option[ClientId]) {
+  import EventEnvelope._
+
+  def isOtr: Boolean = eventType.startsWith(OtrPrefix)
+  def isOtrMessageAdd: Boolean = eventType == OtrMessageAdd
+}
+
+object EventEnvelope {
+  val OtrPrefix     = "conversation.otr"
+  val OtrMessageAdd = "conversation.otr-message-add"
+
+  val Unknown = EventEnvelope("", None, None, None, None)
+
+  implicit lazy val Decoder: JsonDecoder[EventEnvelope] = new JsonDecoder[EventEnvelope] {
+    import JsonDecoder._
+
+    override def apply(implicit js: JSONObject): EventEnvelope = {
+      val data = Option(js.optJSONObject("data"))
+      EventEnvelope(
+        js.optString("type"),
+        Try(Event.decodeRConvId._1).toOption,
+        Try(Event.decodeQUserId('from, 'qualified_from)._1).toOption,
+        data.flatMap(decodeOptClientId('sender)(_)),
+        data.flatMap(decodeOptClientId('recipient)(_))
+      )
+    }
+  }
+}
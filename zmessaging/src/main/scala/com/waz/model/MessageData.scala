@@ -439,6 +439,52 @@ object MessageData extends DerivedLogTag {
 
     private val userContentPredicate = isUserContent.map(t => s"${Type.name} = '${Type(t)}'").mkString("(", " OR ", ")")
 
+    object IndexEntry {
+      val First    = "first"
+      val Last     = "last"
+      val LastSent = "last_sent"
+      val FromSelf = "from_self"
+      val Unread   = "unread"
+      val ById     = "by_id"
+    }
+
+    /**
+      * What the message indexes of the given conversations load on start, in one query: the first, last, last sent
+      * and last from self message of each conversation, its messages since the given time, and the messages with
+      * the given ids. Each message comes with the `IndexEntry` it was selected as. A conversation asked for since
+      * `RemoteInstant.Max` gets no messages since the time, only the other entries.
+      */
+    def findIndexEntries(convs: Map[ConvId, RemoteInstant], ids: Set[MessageId], selfUserId: UserId)(implicit db: DB): Vector[(String, MessageData)] =
+      if (convs.isEmpty) Vector.empty
+      else {
+        val convArgs = convs.keys.map(Conv(_)).toVector
+        val inConvs = s"${Conv.name} IN (${convArgs.map(_ => "?").mkString(", ")})"
+        // the other columns of a MIN or MAX aggregate come from the row with the min or max value
+        def latest(entry: String, aggregate: String, where: String) =
+          s"SELECT '$entry' AS index_entry, *, $aggregate(${Time.name}) FROM ${table.name} WHERE $inConvs$where GROUP BY ${Conv.name}"
+        val since = convs.toVector.collect { case (c, time) if time != RemoteInstant.Max => (Conv(c), Time(time)) }
+
+        val selects = Seq(
+          latest(IndexEntry.First, "MIN", "") -> convArgs,
+          latest(IndexEntry.Last, "MAX", "") -> convArgs,
+          latest(IndexEntry.LastSent, "MAX", s" AND ${State.name} IN ('${Message.Status.SENT.name}', '${Message.Status.DELIVERED.name}')") -> convArgs,
+          latest(IndexEntry.FromSelf, "MAX", s" AND ${User.name} = ? AND $userContentPredicate") -> (convArgs :+ User(selfUserId))
+        ) ++ (if (since.isEmpty) Nil else Seq(
+          s"SELECT '${IndexEntry.Unread}', *, ${Time.name} FROM ${table.name} WHERE ${since.map(_ => s"(${Conv.name} = ? AND ${Time.name} >= ?)").mkString(" OR ")}" ->
+            since.flatMap { case (c, time) => Seq(c, time) }
+        )) ++ (if (ids.isEmpty) Nil else Seq(
+          s"SELECT '${IndexEntry.ById}', *, ${Time.name} FROM ${table.name} WHERE ${Id.name} IN (${ids.map(_ => "?").mkString(", ")})" ->
+            ids.toVector.map(Id(_))
+        ))
+
+        val cursor = db.rawQuery(selects.map(_._1).mkString(" UNION ALL "), selects.flatMap(_._2).toArray)
+        try {
+          val entries = Vector.newBuilder[(String, MessageData)]
+          while (cursor.moveToNext()) entries += cursor.getString(0) -> apply(cursor)
+          entries.result()
+        } finally cursor.close()
+      }
+
     def lastIncomingKnock(convId: ConvId, selfUser: UserId)(implicit db: DB): Option[MessageData] = single(
       db.query(table.name, null, s"${Conv.name} = ? AND ${Type.name} = ? AND ${User.name} <> ?", Array(convId.toString, Type(Message.Type.KNOCK), selfUser.str), null, null, s"${Time.name} DESC", "1")
     )
@@ -0,0 +1,131 @@
+/*
+ * Wire
+ * Copyright (C) 2016 Wire Swiss GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.waz.model
+
+/**
+  * A UUID-based id packed into two longs: 32 bytes of heap instead of ~130 for an id over a 36-character string,
+  * with a hash of two longs and an equality of two long comparisons, for the sets and maps with many ids.
+  *
+  * It's an in-memory form only, for the keys of large user and member collections: the ids keep their string form
+  * at the wire, JSON and DB boundaries. `PackedId(id)` packs an id when it's a UUID (it isn't always, e.g. the
+  * client ids), and `as[A]` turns it back into the id, with the same string.
+  */
+final class PackedId(val mostSigBits: Long, val leastSigBits: Long) extends Ordered[PackedId] {
+
+  def as[A](implicit id: Id[A]): A = id.decode(toString)
+
+  // unsigned, like the strings
+  override def compare(that: PackedId): Int = {
+    val c = java.lang.Long.compare(mostSigBits + Long.MinValue, that.mostSigBits + Long.MinValue)
+    if (c != 0) c else java.lang.Long.compare(leastSigBits + Long.MinValue, that.leastSigBits + Long.MinValue)
+  }
+
+  override def equals(o: Any): Boolean = o match {
+    case that: PackedId => mostSigBits == that.mostSigBits && leastSigBits == that.leastSigBits
+    case _ => false
+  }
+
+  override def hashCode: Int = {
+    val h = mostSigBits * 0x9E3779B97F4A7C15L ^ leastSigBits
+    (h ^ (h >>> 32)).toInt
+  }
+
+  // the lowercase UUID form, as the backend sends it
+  override def toString: String = {
+    val chars = new Array[Char](36)
+    PackedId.writeHex(mostSigBits >>> 32, 8, chars, 0)
+    chars(8) = '-'
+    PackedId.writeHex(mostSigBits >>> 16, 4, chars, 9)
+    chars(13) = '-'
+    PackedId.writeHex(mostSigBits, 4, chars, 14)
+    chars(18) = '-'
+    PackedId.writeHex(leastSigBits >>> 48, 4, chars, 19)
+    chars(23) = '-'
+    PackedId.writeHex(leastSigBits, 12, chars, 24)
+    new String(chars)
+  }
+}
+
+object PackedId {
+  private val HexDigits = "0123456789abcdef".toCharArray
+
+  def apply(mostSigBits: Long, leastSigBits: Long): PackedId = new PackedId(mostSigBits, leastSigBits)
+
+  def apply[A](id: A)(implicit idOps: Id[A]): Option[PackedId] = parse(idOps.encode(id))
+
+  /**
+    * Packs the canonical UUID form: 8-4-4-4-12 lowercase hex digits. Unlike `UUID.fromString`, it doesn't accept
+    * other forms (e.g. uppercase), so that `toString` always gives the same string back.
+    */
+  def parse(str: String): Option[PackedId] =
+    if (!isCanonical(str)) None
+    else Some(new PackedId(
+      (readHex(str, 0, 8) << 32) | (readHex(str, 9, 4) << 16) | readHex(str, 14, 4),
+      (readHex(str, 19, 4) << 48) | readHex(str, 24, 12)
+    ))
+
+  private def isCanonical(str: String): Boolean = str.length == 36 && {
+    var i = 0
+    var valid = true
+    while (valid && i < 36) {
+      val c = str.charAt(i)
+      valid =
+        if (i == 8 || i == 13 || i == 18 || i == 23) c == '-'
+        else (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f')
+      i += 1
+    }
+    valid
+  }
+
+  private def hexValue(c: Char): Int = if (c <= '9') c - '0' else c - 'a' + 10
+
+  private def readHex(str: String, from: Int, digits: Int): Long = {
+    var value = 0L
+    var i = from
+    while (i < from + digits) {
+      value = (value << 4) | hexValue(str.charAt(i))
+      i += 1
+    }
+    value
+  }
+
+  private def writeHex(value: Long, digits: Int, chars: Array[Char], at: Int): Unit = {
+    var v = value
+    var i = at + digits - 1
+    while (i >= at) {
+      chars(i) = HexDigits((v & 0xF).toInt)
+      v >>>= 4
+      i -= 1
+    }
+  }
+}
+
+/**
+  * The key of a conversation member, `(UserId, ConvId)`, with both ids packed.
+  */
+final case class PackedMemberKey(user: PackedId, conv: PackedId) {
+  def toKey: (UserId, ConvId) = (user.as[UserId], conv.as[ConvId])
+}
+
+object PackedMemberKey {
+  def apply(key: (UserId, ConvId)): Option[PackedMemberKey] =
+    for {
+      user <- PackedId(key._1)
+      conv <- PackedId(key._2)
+    } yield PackedMemberKey(user, conv)
+}
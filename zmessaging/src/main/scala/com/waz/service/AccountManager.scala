@@ -61,6 +61,14 @@ class AccountManager(val userId:  UserId,
   lazy val storage   = global.factory.baseStorage(userId)
   lazy val userPrefs = storage.userPrefs
 
+  /**
+    * Writes the pending changes of the user preferences, which are written behind, before the account goes away.
+    */
+  def flushPreferences(): Future[Unit] =
+    userPrefs.flush().recover { case e: Throwable =>
+      error(l"Failed to write the user preferences", e)
+    }
+
   lazy val clientState = userPrefs(SelfClient).signal
 
   lazy val clientId                                       = clientState.map(_.clientId)
@@ -263,6 +263,8 @@ class AccountsServiceImpl(global: GlobalModule, kotlinLogoutEnabled: Boolean = f
       current       <- activeAccountId.head
       otherAccounts <- accountsWithManagers.head.map(_.filter(userId != _))
       _             <- if (current.contains(userId)) setAccount(otherAccounts.headOption) else Future.successful(())
+      manager       <- accountManagers.head.map(_.find(_.userId == userId))
+      _             <- manager.fold(Future.successful(()))(_.flushPreferences())
       _             <- storage.remove(userId)
     } yield {
       verbose(l"user logged out: $userId. Reason: $reason")
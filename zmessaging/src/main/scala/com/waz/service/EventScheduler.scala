@@ -32,7 +32,19 @@ import scala.reflect.ClassTag
 class EventScheduler(layout: EventScheduler.Stage) extends DerivedLogTag {
   import EventScheduler._
 
-  private val queue = new GroupedEventProcessingQueue[Event, RConvId](RConvEvent, (c, e) => executeSchedule(c, createSchedule(e)), "EventScheduler")
+  private val timings = new StageTimings
+
+  private val queue = new GroupedEventProcessingQueue[Event, RConvId](RConvEvent, (c, e) => executeSchedule(c, createSchedule(e), timings), "EventScheduler")
+
+  /**
+    * How often and for how long the atomic stages ran, by stage, since the scheduler was created.
+    */
+  def stageTimings: Map[Stage.Atomic, StageTiming] = timings.snapshot
+
+  /**
+    * The number of conversation queues in use and idle, the events waiting by conversation, and the queue latency.
+    */
+  def queueStats: Future[GroupedEventProcessingQueue.Stats[RConvId]] = queue.stats
 
   def enqueue(events: Traversable[Event]): Future[Unit] = queue.enqueue(events.to[Vector]).recoverWithLog()
 
@@ -70,8 +82,28 @@ class EventScheduler(layout: EventScheduler.Stage) extends DerivedLogTag {
         }
 
         Branch(Sequential, compact(interleave(eligible)))
+
+      case Stage.Composite(Concurrent, stages) =>
+        val waves = inWaves(stages.filter(s => eligible.exists(s.isEligible)))
+        Branch(Sequential, waves.toStream.map {
+          case Vector(single) => schedule(single, eligible)
+          case wave           => Branch(Parallel, wave.toStream.map(s => schedule(s, eligible)))
+        })
     }
   }
+
+  /**
+    * Splits the stages into waves which run one after another, where the stages of a wave run in parallel.
+    * Each stage goes into the wave after the last one with a stage it conflicts with, so that conflicting stages
+    * keep their order and the others start as early as possible.
+    */
+  private def inWaves(stages: Vector[Stage]): Vector[Vector[Stage]] = {
+    val waveOf = stages.indices.foldLeft(Vector.empty[Int]) { (waveOf, i) =>
+      val after = (0 until i).filter(j => conflicting(stages(j), stages(i))).map(waveOf)
+      waveOf :+ (if (after.isEmpty) 0 else after.max + 1)
+    }
+    stages.zip(waveOf).groupBy(_._2).toVector.sortBy(_._1).map(_._2.map(_._1))
+  }
 }
 
 object EventScheduler {
@@ -83,20 +115,91 @@ object EventScheduler {
   case object Parallel extends SchedulingStrategy with ExecutionStrategy
   case object Interleaved extends SchedulingStrategy
 
+  /**
+    * Runs the stages in parallel, except those whose access conflicts, which run in the given order.
+    */
+  case object Concurrent extends SchedulingStrategy
+
+  /**
+    * A storage, or another kind of state, which the stages read or write.
+    */
+  final case class Resource(name: String) {
+    override def toString: String = name
+  }
+
+  object Resource {
+    val Users          = Resource("Users")
+    val Conversations  = Resource("Conversations")
+    val Members        = Resource("Members")
+    val Messages       = Resource("Messages")
+    val Clients        = Resource("Clients")
+    val Teams          = Resource("Teams")
+    val Folders        = Resource("Folders")
+    val Preferences    = Resource("Preferences")
+    val Calls          = Resource("Calls")
+    val Typing         = Resource("Typing")
+    val PushToken      = Resource("PushToken")
+    val Notifications  = Resource("Notifications")
+    val Accounts       = Resource("Accounts")
+  }
+
+  final case class Access(reads: Set[Resource], writes: Set[Resource]) {
+    def uses(r: Resource): Boolean = reads(r) || writes(r)
+
+    def conflictsWith(other: Access): Boolean = writes.exists(other.uses) || other.writes.exists(uses)
+
+    def ++(other: Access): Access = Access(reads ++ other.reads, writes ++ other.writes)
+  }
+
+  object Access {
+    val Empty = Access(Set.empty, Set.empty)
+  }
+
+  /**
+    * Stages which don't declare their access conflict with all others.
+    */
+  def conflicting(a: Stage, b: Stage): Boolean = (a.access, b.access) match {
+    case (Some(x), Some(y)) => x.conflictsWith(y)
+    case _                  => true
+  }
+
   sealed trait Stage {
     def isEligible(e: Event): Boolean
+
+    /**
+      * The resources the stage reads and writes, or None if it doesn't say.
+      */
+    def access: Option[Access] = None
   }
 
   object Stage {
     case class Composite(strategy: SchedulingStrategy, stages: Vector[Stage]) extends Stage {
       def isEligible(e: Event): Boolean = stages.exists(_.isEligible(e))
+
+      override def access: Option[Access] =
+        stages.foldLeft(Option(Access.Empty)) { (acc, s) => for (a <- acc; b <- s.access) yield a ++ b }
     }
 
-    trait Atomic extends Stage {
+    trait Atomic extends Stage { self =>
 
       val eventTag: LogTag = LogTag("Event")
 
       def apply(conv: RConvId, es: Traversable[Event]): Future[Any]
+
+      /**
+        * The same stage, declaring the resources it reads and writes, so that a `Concurrent` stage
+        * can run it in parallel with the stages it doesn't conflict with.
+        */
+      def accessing(reads: Set[Resource] = Set.empty, writes: Set[Resource] = Set.empty): Atomic = new Atomic {
+        override val eventTag: LogTag = self.eventTag
+        override val access: Option[Access] = Some(Access(reads, writes))
+
+        def isEligible(e: Event): Boolean = self.isEligible(e)
+
+        def apply(conv: RConvId, es: Traversable[Event]): Future[Any] = self.apply(conv, es)
+
+        override def toString: String = self.toString
+      }
     }
 
     def apply(strategy: SchedulingStrategy)(stages: Stage*): Composite = Composite(strategy, stages.toVector)
@@ -123,7 +226,28 @@ object EventScheduler {
   case class Leaf(stage: Stage.Atomic, events: Vector[Event]) extends Schedule
   val NOP = Leaf(Stage[Event]((s, e) => successful(()), _ => false), Vector.empty)
 
-  def executeSchedule(conv: RConvId, schedule: Schedule): Future[Unit] = {
+  final case class StageTiming(runs: Long, events: Long, nanos: Long, maxNanos: Long) {
+    def averageMillis: Double = if (runs == 0) 0.0 else nanos / 1e6 / runs
+
+    def withRun(events: Int, nanos: Long): StageTiming =
+      StageTiming(runs + 1, this.events + events, this.nanos + nanos, maxNanos max nanos)
+  }
+
+  /**
+    * The timings are kept by stage, as several stages may handle the same event class (and so have the same tag).
+    */
+  final class StageTimings extends DerivedLogTag {
+    private var timings = Map.empty[Stage.Atomic, StageTiming].withDefaultValue(StageTiming(0, 0, 0, 0))
+
+    def record(stage: Stage.Atomic, events: Int, nanos: Long): Unit = {
+      verbose(l"processed $events events in ${nanos / 1000} us")(LogTag(s"${LogTag[Stage].value}[${stage.eventTag.value}]"))
+      synchronized { timings += stage -> timings(stage).withRun(events, nanos) }
+    }
+
+    def snapshot: Map[Stage.Atomic, StageTiming] = synchronized(timings)
+  }
+
+  def executeSchedule(conv: RConvId, schedule: Schedule, timings: StageTimings = new StageTimings): Future[Unit] = {
     import Threading.Implicits.Background
 
     def dfs(s: Stream[Schedule]): Future[Unit] = s match {
@@ -135,8 +259,10 @@ object EventScheduler {
 
       case Leaf(stage, events) #:: remaining =>
         val p = Promise[Unit]()
-        stage(conv, events).onComplete {
-          case _ => p.completeWith(dfs(remaining))
+        val start = System.nanoTime()
+        stage(conv, events).onComplete { _ =>
+          timings.record(stage, events.size, System.nanoTime() - start)
+          p.completeWith(dfs(remaining))
         }
         p.future
 
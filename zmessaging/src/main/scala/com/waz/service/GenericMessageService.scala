@@ -118,7 +118,7 @@ class GenericMessageService(selfUserId: UserId,
 
   private var processing = Future.successful(())
 
-  val eventProcessingStage: Stage = EventScheduler.Stage[GenericMessageEvent] { (_, events) =>
+  val eventProcessingStage: Stage.Atomic = EventScheduler.Stage[GenericMessageEvent] { (_, events) =>
     synchronized {
       processing = if (processing.isCompleted) process(events) else processing.flatMap(_ => process(events))
       processing
@@ -141,15 +141,7 @@ class GlobalReportingService(context: Context, cache: CacheService, metadata: Me
         case _ => None
       }
 
-      outputs.foreach(_.flush())
-      outputs.flatMap(_.getPaths) // paths should be sorted from the oldest to the youngest
-        .map(new File(_))
-        .filter(_.exists)
-        .foreach { file =>
-          IoUtils.withResource(new BufferedReader(new InputStreamReader(new FileInputStream(file)))) {
-            reader => Iterator.continually(reader.readLine()).takeWhile(_ != null).foreach(writer.println)
-          }
-        }
+      outputs.foreach(_.writeTo(writer))
     }
   })
 }
@@ -0,0 +1,134 @@
+/*
+ * Wire
+ * Copyright (C) 2016 Wire Swiss GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.waz.service
+
+import com.waz.model.{Handle, UserData, UserId}
+import com.waz.service.UserSearchIndex._
+import com.waz.utils.ContentChange.{Added, Removed, Updated}
+import com.waz.utils.{ContentChange, Locales}
+
+import scala.collection.immutable.TreeMap
+
+/**
+  * An immutable index of users, used to find the ones matching a search query without checking each of them.
+  * Every word of the users' search keys and their handles are kept in sorted maps, so all the users with a word
+  * starting with the given prefix can be found with a range lookup. The results are the same as of `UserData.matchesQuery`.
+  */
+final class UserSearchIndex private (entries: Map[UserId, Entry],
+                                     words:   TreeMap[String, Set[UserId]],
+                                     handles: TreeMap[String, Set[UserId]],
+                                     emails:  Map[String, Set[UserId]]) {
+
+  def size: Int = entries.size
+
+  def contains(id: UserId): Boolean = entries.contains(id)
+
+  /**
+    * The transliterated, lower case name of the user, to be used for sorting the search results.
+    */
+  def sortName(id: UserId): Option[String] = entries.get(id).map(_.sortName)
+
+  def search(query: SearchQuery): Set[UserId] =
+    if (query.isEmpty) entries.keySet
+    else {
+      val byHandle = withPrefix(handles, Handle.stripSymbol(query.query).toLowerCase)
+      if (query.handleOnly) byHandle
+      else byHandle ++ byKey(SearchKey(query.query).asciiRepresentation.toLowerCase) ++ emails.getOrElse(query.query.trim.toLowerCase, Set.empty)
+    }
+
+  /**
+    * The users with a word of their search key starting with the given prefix.
+    */
+  def byWordPrefix(prefix: String): Set[UserId] = withPrefix(words, prefix.toLowerCase)
+
+  private def byKey(key: String): Set[UserId] = {
+    val firstWord = key.takeWhile(_ != ' ')
+    if (key.isEmpty) entries.keySet
+    else if (firstWord.isEmpty) entries.collect { case (id, e) if isAtTheStartOfAnyWord(key, e.key) => id }.toSet
+    else withPrefix(words, firstWord).filter(id => isAtTheStartOfAnyWord(key, entries(id).key))
+  }
+
+  def updated(users: Iterable[UserData]): UserSearchIndex =
+    users.foldLeft(removed(users.map(_.id))) { (index, user) => index.add(user.id, entry(user)) }
+
+  def removed(ids: Iterable[UserId]): UserSearchIndex =
+    ids.foldLeft(this) { (index, id) => index.remove(id) }
+
+  def applied(changes: Seq[ContentChange[UserId, UserData]]): UserSearchIndex =
+    changes.foldLeft(this) {
+      case (index, Added(_, user))      => index.updated(Seq(user))
+      case (index, Updated(_, _, user)) => index.updated(Seq(user))
+      case (index, Removed(id))         => index.remove(id)
+    }
+
+  private def add(id: UserId, e: Entry): UserSearchIndex =
+    new UserSearchIndex(
+      entries.updated(id, e),
+      e.words.foldLeft(words)(withId(_, _, id)),
+      e.handle.fold(handles)(withId(handles, _, id)),
+      e.email.fold(emails)(email => emails.updated(email, emails.getOrElse(email, Set.empty) + id))
+    )
+
+  private def remove(id: UserId): UserSearchIndex = entries.get(id).fold(this) { e =>
+    new UserSearchIndex(
+      entries - id,
+      e.words.foldLeft(words)(withoutId(_, _, id)),
+      e.handle.fold(handles)(withoutId(handles, _, id)),
+      e.email.fold(emails) { email =>
+        val ids = emails.getOrElse(email, Set.empty) - id
+        if (ids.isEmpty) emails - email else emails.updated(email, ids)
+      }
+    )
+  }
+}
+
+object UserSearchIndex {
+  val Empty = new UserSearchIndex(Map.empty, TreeMap.empty, TreeMap.empty, Map.empty)
+
+  def apply(users: Iterable[UserData]): UserSearchIndex = Empty.updated(users)
+
+  private[service] final case class Entry(key: String, words: Seq[String], handle: Option[String], email: Option[String], sortName: String)
+
+  private def entry(user: UserData): Entry = {
+    val key = user.searchKey.asciiRepresentation.toLowerCase
+    Entry(
+      key,
+      key.split(" ").filter(_.nonEmpty).distinct.toVector,
+      user.handle.map(_.toString),
+      user.email.map(_.str.toLowerCase),
+      Locales.transliterate(user.name.str).toLowerCase
+    )
+  }
+
+  // the same as `SearchKey.isAtTheStartOfAnyWordIn`, but without the regex
+  private def isAtTheStartOfAnyWord(key: String, in: String): Boolean =
+    in.startsWith(key) || in.indexOf(" " + key, 1) >= 0
+
+  private def withPrefix(map: TreeMap[String, Set[UserId]], prefix: String): Set[UserId] =
+    map.from(prefix).iterator.takeWhile(_._1.startsWith(prefix)).flatMap(_._2).toSet
+
+  private def withId(map: TreeMap[String, Set[UserId]], word: String, id: UserId): TreeMap[String, Set[UserId]] =
+    map.updated(word, map.getOrElse(word, Set.empty[UserId]) + id)
+
+  private def withoutId(map: TreeMap[String, Set[UserId]], word: String, id: UserId): TreeMap[String, Set[UserId]] =
+    map.get(word) match {
+      case Some(ids) if ids.size > 1 => map.updated(word, ids - id)
+      case Some(_)                   => map - word
+      case None                      => map
+    }
+}
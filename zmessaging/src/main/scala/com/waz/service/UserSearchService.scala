@@ -132,53 +132,45 @@ final class UserSearchServiceImpl(selfUserId:           UserId,
     for {
       curr     <- membersStorage.activeMembers(convId)
       currData <- usersStorage.listSignal(curr)
+      index    <- usersStorage.searchIndex
     } yield {
-      val included = currData.filter { user =>
+      // the name and handle prefixes are covered by the substring checks, the words of the search keys by the index
+      val byWord = index.byWordPrefix(filter)
+      currData.filter { user =>
         (includeSelf || selfUserId != user.id) &&
           !user.isWireBot &&
           user.expiresAt.isEmpty &&
-          !user.isBlocked
-      }
-
-      def cmpHandle(u: UserData, fn: String => Boolean) = u.handle match {
-        case None => false
-        case Some(h) => fn(h.toString)
-      }
-
-      val rules: Seq[UserData => Boolean] = Seq(
-        _.name.toLowerCase.startsWith(filter),
-        _.searchKey.asciiRepresentation.split(" ").exists(_.startsWith(filter)),
-        cmpHandle(_, _.startsWith(filter)),
-        _.name.toLowerCase.contains(filter),
-        cmpHandle(_, _.contains(filter))
-      )
-
-      rules.foldLeft((Set.empty[UserId], IndexedSeq.empty[UserData])){ case ((found, results), rule) =>
-        val matches = included.filter(rule).filter(u => !found.contains(u.id)).sortBy(_.name.toLowerCase)
-        (found ++ matches.map(_.id).toSet, results ++ matches)
-      }._2.sortBy(_.name.toLowerCase)
+          !user.isBlocked &&
+          (byWord.contains(user.id) || user.name.toLowerCase.contains(filter) || user.handle.exists(_.toString.contains(filter)))
+      }.sortBy(_.name.toLowerCase)
     }
 
   private def searchLocal(query: SearchQuery, excluded: Set[UserId] = Set.empty, showBlockedUsers: Boolean = false): Signal[IndexedSeq[UserData]] =
     for {
+      index     <- usersStorage.searchIndex
       connected <- userService.acceptedOrBlockedUsers.map(_.values)
       fake1To1s <- conversationsService.onlyFake1To1ConvUsers
       members   <- teamId.fold(Signal.const(Set.empty[UserData]))(_ => teamsService.searchTeamMembers(query))
     } yield {
-      val included = (connected.toSet ++ fake1To1s.toSet ++ members).filter { user =>
+      val candidates = (connected ++ fake1To1s).map(u => u.id -> u).toMap
+      // the team members are already the results of a search
+      val found =
+        if (query.isEmpty) candidates.values.toSet ++ members
+        else index.search(query).flatMap(candidates.get) ++ members
+
+      val included = found.filter { user =>
         !excluded.contains(user.id) &&
           selfUserId != user.id &&
           !user.isWireBot &&
           !user.deleted &&
           user.expiresAt.isEmpty &&
-          (query.isEmpty || user.matchesQuery(query)) &&
           (showBlockedUsers || !user.isBlocked)
       }.toIndexedSeq
 
-      sortUsers(included, query)
+      sortUsers(included, query, index)
     }
 
-  private def sortUsers(results: IndexedSeq[UserData], query: SearchQuery): IndexedSeq[UserData] = {
+  private def sortUsers(results: IndexedSeq[UserData], query: SearchQuery, index: UserSearchIndex = UserSearchIndex.Empty): IndexedSeq[UserData] = {
     def toLower(str: String) = Locales.transliterate(str).toLowerCase
 
     lazy val toLowerSymbolStripped = toLower(query.query)
@@ -188,13 +180,15 @@ final class UserSearchServiceImpl(selfUserId:           UserId,
       else if (query.handleOnly) {
         if (u.handle.exists(_.exactMatchQuery(query.query))) 0 else 1
       } else {
-        val userName = toLower(u.name)
+        val userName = index.sortName(u.id).getOrElse(toLower(u.name))
         if (userName == toLowerSymbolStripped) 0 else if (userName.startsWith(toLowerSymbolStripped)) 1 else 2
       }
 
+    val buckets = results.map(u => u.id -> bucket(u)).toMap
+
     results.sortWith { case (u1, u2) =>
-        val b1 = bucket(u1)
-        val b2 = bucket(u2)
+        val b1 = buckets(u1.id)
+        val b2 = buckets(u2.id)
         if (b1 == b2)
           u1.name.compareTo(u2.name) < 0
         else
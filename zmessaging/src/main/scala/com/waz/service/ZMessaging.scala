@@ -28,7 +28,7 @@ import com.waz.log.BasicLogging.LogTag.DerivedLogTag
 import com.waz.model._
 import com.waz.model.otr.ClientId
 import com.waz.service.BackendConfig.FederationSupport
-import com.waz.service.EventScheduler.{Sequential, Stage}
+import com.waz.service.EventScheduler.{Concurrent, Stage}
 import com.waz.service.assets._
 import com.waz.service.call._
 import com.waz.service.conversation._
@@ -317,27 +317,30 @@ class ZMessaging(val teamId:    Option[TeamId],
   }
 
   lazy val eventScheduler = {
+    import EventScheduler.Resource._
 
+    // the stages run in this order, except that the ones which don't conflict in what they read and write run in parallel
     new EventScheduler(
-      Stage(Sequential)(
-        connection.connectionEventsStage,
-        users.userUpdateEventsStage,
-        users.userDeleteEventsStage,
-        calling.callMessagesStage,
-        teams.eventsProcessingStage,
-        typing.typingEventStage,
-        otrClientsService.otrClientsProcessingStage,
-        pushToken.eventProcessingStage,
-        convOrder.conversationOrderEventsStage,
-        conversations.convStateEventProcessingStage,
-        msgEvents.messageEventProcessingStage,
-        wsNotifications.eventsProcessingStage,
-        genericMsgs.eventProcessingStage,
-        foldersService.eventProcessingStage,
-        propertiesService.eventProcessor,
-        legalHold.legalHoldEventStage,
-        legalHold.messageEventStage,
-        featureConfigs.eventProcessingStage
+      Stage(Concurrent)(
+        connection.connectionEventsStage.accessing(reads = Set(Messages), writes = Set(Users, Conversations, Members)),
+        users.userUpdateEventsStage.accessing(writes = Set(Users)),
+        users.userDeleteEventsStage.accessing(writes = Set(Accounts, Users, Members, Messages)),
+        calling.callMessagesStage.accessing(reads = Set(Conversations, Users, Members), writes = Set(Calls, Messages)),
+        teams.eventsProcessingStage.accessing(writes = Set(Teams, Users, Conversations, Members, Messages)),
+        typing.typingEventStage.accessing(reads = Set(Conversations, Preferences), writes = Set(Typing)),
+        otrClientsService.otrClientsProcessingStage.accessing(reads = Set(Users), writes = Set(Clients)),
+        pushToken.eventProcessingStage.accessing(writes = Set(PushToken)),
+        convOrder.conversationOrderEventsStage.accessing(reads = Set(Messages), writes = Set(Conversations)),
+        // the system messages of conversation changes, and the users of new members
+        conversations.convStateEventProcessingStage.accessing(writes = Set(Conversations, Members, Messages, Users)),
+        msgEvents.messageEventProcessingStage.accessing(reads = Set(Users, Members, Clients), writes = Set(Messages, Conversations)),
+        wsNotifications.eventsProcessingStage.accessing(reads = Set(Users, Conversations, Members, Messages, Preferences, Accounts), writes = Set(Notifications)),
+        genericMsgs.eventProcessingStage.accessing(reads = Set(Users, Members), writes = Set(Messages, Conversations)),
+        foldersService.eventProcessingStage.accessing(reads = Set(Conversations), writes = Set(Folders)),
+        propertiesService.eventProcessor.accessing(writes = Set(Preferences)),
+        legalHold.legalHoldEventStage.accessing(reads = Set(Conversations, Members), writes = Set(Preferences, Clients, Users)),
+        legalHold.messageEventStage.accessing(reads = Set(Members, Clients), writes = Set(Conversations, Messages)),
+        featureConfigs.eventProcessingStage.accessing(writes = Set(Preferences))
       )
     )
   }
@@ -45,10 +45,24 @@ class AssetContentCacheImpl(val cacheDirectory: File, val directorySizeThreshold
   * Cache by itself should not contain any auto cleanup logic.
   * So remove cache entries as soon as you can.
   */
-trait UploadAssetContentCache extends FileCache[UploadAssetId]
+trait UploadAssetContentCache extends FileCache[UploadAssetId] {
+  /**
+    * Encrypted content of the upload assets, written while their hashes are computed.
+    * It is sent to the backend and then moved to the asset content cache as it is, so it is not encrypted again.
+    */
+  def staged: FileCache[UploadAssetId]
+}
 
 class UploadAssetContentCacheImpl(val cacheDirectory: File)
                                  (implicit val ec: ExecutionContext) extends SimpleFileCache[UploadAssetId] with UploadAssetContentCache {
 
   override protected def createFileName(key: UploadAssetId): String = key.str
+
+  override val staged: FileCache[UploadAssetId] = new StagedUploadContentCache(cacheDirectory)
+}
+
+class StagedUploadContentCache(val cacheDirectory: File)
+                              (implicit val ec: ExecutionContext) extends SimpleFileCache[UploadAssetId] {
+
+  override protected def createFileName(key: UploadAssetId): String = s"${key.str}.staged"
 }
\ No newline at end of file
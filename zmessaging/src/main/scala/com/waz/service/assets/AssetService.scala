@@ -43,7 +43,6 @@ import com.waz.znet2.http.ResponseCode
 
 import scala.collection.mutable
 import scala.concurrent.{ExecutionContext, Future}
-import scala.util.Try
 
 trait AssetService {
   def assetSignal(id: GeneralAssetId): Signal[GeneralAsset]
@@ -130,6 +129,7 @@ final class AssetServiceImpl(currentDomain:        Domain,
         if (asset.status == AssetStatus.Done) asset
         else asset.copy(status = UploadAssetStatus.Cancelled)
       })
+      _ <- uploadContentCache.staged.remove(id)
       _ <- sync.postAssetStatus(message.id, message.convId, message.ephemeral, UploadAssetStatus.Cancelled)
     } yield ()
   }
@@ -277,6 +277,14 @@ final class AssetServiceImpl(currentDomain:        Domain,
       case None => uploadContentCache.getStream(asset.id)
     }
 
+    // the encrypted content is staged when the upload asset is created, but the assets created
+    // before staging was introduced still have to be encrypted on the fly
+    def getEncryptedUploadAssetContent(asset: UploadAsset): Future[InputStream] =
+      uploadContentCache.staged.findStream(asset.id).flatMap {
+        case Some(stream) => Future.successful(stream)
+        case None         => getUploadAssetContent(asset).map(asset.encryption.encrypt(_, asset.encryptionSalt))
+      }
+
     def actionsOnCancellation(): Unit = {
       info(l"Asset uploading cancelled: $assetId")
       uploadAssetStorage.update(assetId, _.copy(status = UploadAssetStatus.Cancelled))
@@ -296,7 +304,7 @@ final class AssetServiceImpl(currentDomain:        Domain,
       val content = AssetContent(
         asset.mime,
         asset.md5,
-        () => getUploadAssetContent(asset).map(asset.encryption.encrypt(_, asset.encryptionSalt)),
+        () => getEncryptedUploadAssetContent(asset),
         Some(asset.size)
       )
       val uploadCallback: ProgressCallback = new FilteredProgressCallback(
@@ -323,13 +331,24 @@ final class AssetServiceImpl(currentDomain:        Domain,
           } yield asset
       }
 
-    def encryptAssetContentAndMoveToCache(asset: Asset): Future[Unit] =
-      if (asset.localSource.nonEmpty) Future.successful(())
-      else for {
-        contentStream <- uploadContentCache.getStream(assetId)
-        _             <- contentCache.putStream(asset.id, asset.encryption.encrypt(contentStream))
-        _             <- uploadContentCache.remove(assetId)
-      } yield ()
+    def moveContentToCache(asset: Asset): Future[Unit] =
+      uploadContentCache.staged.find(assetId).flatMap {
+        case Some(_) if asset.localSource.nonEmpty =>
+          uploadContentCache.staged.remove(assetId)
+        case Some(stagedFile) =>
+          for {
+            _ <- contentCache.put(asset.id, stagedFile, removeOriginal = true)
+            _ <- uploadContentCache.remove(assetId)
+          } yield ()
+        case None if asset.localSource.nonEmpty =>
+          Future.successful(())
+        case None =>
+          for {
+            contentStream <- uploadContentCache.getStream(assetId)
+            _             <- contentCache.putStream(asset.id, asset.encryption.encrypt(contentStream))
+            _             <- uploadContentCache.remove(assetId)
+          } yield ()
+      }
 
     val cancellable = for {
       _                      <- CancellableFuture.lift(Future.successful(()))
@@ -337,7 +356,7 @@ final class AssetServiceImpl(currentDomain:        Domain,
       Some((_, uploadAsset)) <- uploadAssetStorage.update(uploadAsset.id, _.copy(uploaded = 0, status = UploadAssetStatus.InProgress)).lift
       uploadResult           <- doUpload(uploadAsset)
       asset                  <- handleUploadResult(uploadResult, uploadAsset).lift
-      _                      <- encryptAssetContentAndMoveToCache(asset).lift
+      _                      <- moveContentToCache(asset).lift
     } yield asset
 
     cancellable.onCancel(actionsOnCancellation())
@@ -410,7 +429,11 @@ final class AssetServiceImpl(currentDomain:        Domain,
         } yield Content.File(mime, file)
     }
 
-    def extractLocalSourceAndEncryptedHashesAndSize(content: PreparedContent): Try[(Option[LocalSource], Sha256, MD5, Long)] = {
+    /**
+      * Encrypts the content once, computing its hashes and writing the encrypted bytes to the staging cache,
+      * from which they are later uploaded and moved to the asset content cache.
+      */
+    def stageEncryptedContent(content: PreparedContent): Future[(Option[LocalSource], Sha256, MD5, Long)] = {
       val sha256DigestWithUri = content match {
         case Content.Uri(uri) => Some(MessageDigest.getInstance("SHA-256") -> uri)
         case _ => None
@@ -418,19 +441,21 @@ final class AssetServiceImpl(currentDomain:        Domain,
       val sha256EncryptedDigest = MessageDigest.getInstance("SHA-256")
       val md5EncryptedDigest = MessageDigest.getInstance("MD5")
 
-      for {
-        source        <- content.openInputStream(uriHelper)
+      (for {
+        source        <- Future.fromTry(content.openInputStream(uriHelper))
         stream1       =  sha256DigestWithUri.fold(source) { case (digest, _) => new DigestInputStream(source, digest) }
         stream2       =  targetEncryption.encrypt(stream1, encryptionSalt)
         stream3       =  new DigestInputStream(stream2, sha256EncryptedDigest)
         stream4       =  new DigestInputStream(stream3, md5EncryptedDigest)
         stream5       =  new CountInputStream(stream4)
-        _             =  IoUtils.readFully(stream5)
+        _             <- uploadContentCache.staged.putStream(assetId, stream5)
         localSource   =  sha256DigestWithUri.map { case (digest, uri) => LocalSource(uri, Sha256(digest.digest())) }
         encryptedSha  =  Sha256(sha256EncryptedDigest.digest())
         encryptedMd5  =  MD5(md5EncryptedDigest.digest())
         encryptedSize =  stream5.getBytesRead
-      } yield (localSource, encryptedSha, encryptedMd5, encryptedSize)
+      } yield (localSource, encryptedSha, encryptedMd5, encryptedSize)).recoverWith { case err =>
+        uploadContentCache.staged.remove(assetId).flatMap(_ => Future.failed(err))
+      }
     }
 
     for {
@@ -443,7 +468,7 @@ final class AssetServiceImpl(currentDomain:        Domain,
           Future.successful((initialContent, (initialDetails, initialMime)))
       }
       _                                                         <- Future.fromTry(restrictions.validate(transformedContent))
-      (localSource, encryptedSha, encryptedMd5, encryptedSize)  <- Future.fromTry(extractLocalSourceAndEncryptedHashesAndSize(transformedContent))
+      (localSource, encryptedSha, encryptedMd5, encryptedSize)  <- stageEncryptedContent(transformedContent)
     } yield UploadAsset(
       id             = assetId,
       localSource    = localSource,
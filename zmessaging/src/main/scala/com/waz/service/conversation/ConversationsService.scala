@@ -58,6 +58,7 @@ trait ConversationsService {
   def onUpdateRoleFailed(conv: ConvId, user: UserId, newRole: ConversationRole, origRole: ConversationRole, resp: ErrorResponse): Future[Unit]
   def groupConversation(convId: ConvId): Signal[Boolean]
   def isGroupConversation(convId: ConvId): Future[Boolean]
+  def areGroupConversations(convIds: Set[ConvId]): Future[Map[ConvId, Boolean]]
   def isWithService(convId: ConvId): Future[Boolean]
 
   def setToTeamOnly(convId: ConvId, teamOnly: Boolean): ErrorOr[Unit]
@@ -656,15 +657,40 @@ class ConversationsServiceImpl(teamId:          Option[TeamId],
   }
 
   private def groupConversation(conv: ConversationData) =
+    isGroup(conv).fold(membersStorage.activeMembers(conv.id).map(isGroupOf))(Signal.const(_))
+
+  /**
+    * Tells from the conversation data if the conversation is a group, or `None` if it takes its members to tell:
+    * a team conversation without a name is a group unless it's the self user and one other member, see `isGroupOf`.
+    */
+  private def isGroup(conv: ConversationData): Option[Boolean] =
     (conv.convType, conv.name, conv.team) match {
-      case (convType, _, _) if convType != ConversationType.Group => Signal.const(false)
-      case (_, Some(_), _) | (_, _, None)                         => Signal.const(true)
-      case _ =>
-        membersStorage.activeMembers(conv.id).map(ms => !(ms.contains(selfUserId) && ms.size <= 2))
+      case (convType, _, _) if convType != ConversationType.Group => Some(false)
+      case (_, Some(_), _) | (_, _, None)                         => Some(true)
+      case _                                                      => None
     }
 
+  private def isGroupOf(activeMembers: Set[UserId]): Boolean =
+    !(activeMembers.contains(selfUserId) && activeMembers.size <= 2)
+
   override def isGroupConversation(convId: ConvId): Future[Boolean] = groupConversation(convId).head
 
+  /**
+    * `isGroupConversation` for many conversations, with one lookup of the conversations and one of the members
+    * of those which need them.
+    */
+  override def areGroupConversations(convIds: Set[ConvId]): Future[Map[ConvId, Boolean]] =
+    if (convIds.isEmpty) Future.successful(Map.empty)
+    else for {
+      convs   <- convsStorage.getAll(convIds.toSeq)
+      byId    =  convs.flatten.map(c => c.id -> c).toMap
+      byTeam  =  byId.values.filter(isGroup(_).isEmpty).map(_.id).toSet
+      members <- if (byTeam.isEmpty) Future.successful(Map.empty[ConvId, Set[UserId]]) else membersStorage.getActiveUsers2(byTeam)
+    } yield convIds.map { id =>
+      // a conversation which isn't there might have been deleted - only group conversations can be deleted
+      id -> byId.get(id).fold(true)(conv => isGroup(conv).getOrElse(isGroupOf(members.getOrElse(id, Set.empty))))
+    }.toMap
+
   def isWithService(convId: ConvId): Future[Boolean] =
     membersStorage.getActiveUsers(convId)
       .flatMap(usersStorage.getAll)
@@ -32,7 +32,7 @@ import org.json.JSONObject
 import scala.concurrent.Future
 
 trait FoldersService {
-  def eventProcessingStage: EventScheduler.Stage
+  def eventProcessingStage: EventScheduler.Stage.Atomic
   def processFolders(folders: Seq[RemoteFolderData]): Future[Unit]
 
   def addConversationTo(convId: ConvId, folderId: FolderId, uploadAllChanges: Boolean): Future[Unit]
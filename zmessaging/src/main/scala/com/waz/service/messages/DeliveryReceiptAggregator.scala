@@ -0,0 +1,80 @@
+/*
+ * Wire
+ * Copyright (C) 2016 Wire Swiss GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.waz.service.messages
+
+import com.waz.log.BasicLogging.LogTag.DerivedLogTag
+import com.waz.log.LogSE._
+import com.waz.model.sync.ReceiptType
+import com.waz.model.{ConvId, MessageId, UserId}
+import com.waz.service.conversation.ConversationsService
+import com.waz.sync.SyncServiceHandle
+import com.wire.signals.{DispatchQueue, SerialDispatchQueue, Signal}
+
+import scala.collection.mutable
+import scala.concurrent.Future
+
+/**
+  * Collects the delivery receipts to send while a push is being processed, and sends them once the processing is over:
+  * the conversations are checked in one lookup, and all the receipts for the same conversation and sender go in one
+  * sync job, instead of a lookup and a job for every batch of added messages.
+  * Outside of the push processing, the receipts are sent right away.
+  */
+class DeliveryReceiptAggregator(processing: Signal[Boolean],
+                                convsService: ConversationsService,
+                                sync: SyncServiceHandle) extends DerivedLogTag {
+  private implicit val dispatcher: DispatchQueue = SerialDispatchQueue(name = "DeliveryReceiptAggregator")
+
+  // accessed only on the dispatcher
+  private val pending = mutable.LinkedHashMap.empty[(ConvId, UserId), mutable.LinkedHashSet[MessageId]]
+  private var sending = Future.successful(())
+
+  processing.onChanged.filter(_ == false).foreach(_ => flush())
+
+  def add(receipts: Seq[(ConvId, UserId, MessageId)]): Future[Unit] =
+    if (receipts.isEmpty) Future.successful(())
+    else Future {
+      receipts.foreach { case (conv, user, msg) =>
+        pending.getOrElseUpdate((conv, user), mutable.LinkedHashSet.empty[MessageId]) += msg
+      }
+      if (processing.currentValue.contains(true)) Future.successful(()) else sendPending()
+    }.flatMap(identity)
+
+  /**
+    * Sends the pending receipts now, without waiting for the push processing to end.
+    * @return a future which completes once all the receipts added so far are sent
+    */
+  def flush(): Future[Unit] = Future(sendPending()).flatMap(identity)
+
+  private def sendPending(): Future[Unit] = {
+    if (pending.nonEmpty) {
+      val receipts = pending.toVector.map { case (target, msgs) => target -> msgs.toVector }
+      pending.clear()
+      val sent = for {
+        groups <- convsService.areGroupConversations(receipts.map(_._1._1).toSet)
+        toSend =  receipts.filterNot { case ((conv, _), _) => groups.getOrElse(conv, true) }
+        _      =  verbose(l"sending ${toSend.size} delivery receipt jobs for ${receipts.size} senders")
+        _      <- Future.traverse(toSend) { case ((conv, user), msgs) =>
+                    sync.postReceipt(conv, msgs, user, ReceiptType.Delivery)
+                  }
+      } yield ()
+      val previous = sending.recover { case _ => () }
+      sending = sent.flatMap(_ => previous)
+    }
+    sending
+  }
+}
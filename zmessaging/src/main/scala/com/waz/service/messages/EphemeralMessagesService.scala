@@ -30,9 +30,8 @@ import com.waz.model.sync.ReceiptType
 import com.waz.service.assets.AssetService
 import com.waz.service.push.PushService
 import com.waz.sync.SyncServiceHandle
-import com.wire.signals.{CancellableFuture, Serialized}
+import com.wire.signals.{CancellableFuture, DispatchQueue, SerialDispatchQueue, Serialized}
 import com.waz.utils.crypto.ZSecureRandom
-import com.wire.signals.Signal
 import com.waz.utils._
 
 import scala.concurrent.Future
@@ -49,46 +48,83 @@ class EphemeralMessagesService(selfUserId: UserId,
   import EphemeralMessagesService._
   import com.waz.threading.Threading.Implicits.Background
 
-  private val nextExpiryTime = Signal[LocalInstant](LocalInstant.Max)
+  private val expiryQueue: DispatchQueue = SerialDispatchQueue(name = "EphemeralMessagesService")
 
-  private val init = removeExpired()
+  // the expiry times of the messages to expire, accessed only on the expiry queue
+  private val expiries = new TimerWheel[MessageId](startMillis = LocalInstant.Now.toEpochMilli)
+  private var timer = Option.empty[(Long, CancellableFuture[Unit])]
 
-  nextExpiryTime.foreach {
-    case LocalInstant.Max => // nothing to expire
-    case time => CancellableFuture.delayed((time.toEpochMilli - LocalInstant.Now.toEpochMilli).millis) { removeExpired() }
+  private val init = db.read { implicit db =>
+    MessageDataDao.findExpiring() acquire { msgs => msgs.flatMap(m => m.expiryTime.map(m.id -> _)).toVector }
+  }.map { expiring =>
+    // the messages added or updated meanwhile are already there, with their latest expiry times
+    expiring.foreach { case (id, time) => if (!expiries.contains(id)) expiries.schedule(id, time.toEpochMilli) }
+    expire()
+  }(expiryQueue)
+
+  storage.onAdded.foreach { msgs => expiryQueue(update(msgs)) }
+
+  storage.onUpdated.foreach { updates => expiryQueue(update(updates.map(_._2))) }
+
+  storage.onDeleted.foreach { ids =>
+    expiryQueue {
+      ids.foreach(expiries.cancel)
+      scheduleTimer()
+    }
+  }
+
+  private def update(msgs: Seq[MessageData]): Unit = {
+    msgs.foreach { m =>
+      m.expiryTime match {
+        case Some(time) if !m.expired => expiries.schedule(m.id, time.toEpochMilli)
+        case _                        => expiries.cancel(m.id)
+      }
+    }
+    scheduleTimer()
   }
 
-  storage.onAdded.foreach { msgs =>
-    updateNextExpiryTime(msgs.flatMap(_.expiryTime))
+  private def scheduleTimer(): Unit = expiries.nextAdvance match {
+    case next if next == timer.map(_._1) => // already scheduled
+    case next =>
+      timer.foreach(_._2.cancel())
+      timer = next.map { time =>
+        time -> CancellableFuture.delayed(math.max(0L, time - LocalInstant.Now.toEpochMilli).millis) {
+          timer = None
+          expire()
+        }(expiryQueue)
+      }
   }
 
-  storage.onUpdated.foreach { updates =>
-    updateNextExpiryTime(updates.flatMap(_._2.expiryTime))
+  private def expire(): Unit = {
+    val expired = expiries.advance(LocalInstant.Now.toEpochMilli)
+    if (expired.nonEmpty) removeExpired(expired).failed.foreach { e =>
+      warn(l"Failed to remove ${expired.size} expired messages, they will be retried", e)
+      expiryQueue(retry(expired))
+    }
+    scheduleTimer()
   }
 
-  private def updateNextExpiryTime(times: Seq[LocalInstant]) = if (times.nonEmpty) {
-    val time = times.min
-    nextExpiryTime.mutate(_ min time)
+  // the expired messages are off the wheel, so they're put back, unless they were scheduled again meanwhile
+  private def retry(ids: Seq[MessageId]): Unit = {
+    val time = LocalInstant.Now.toEpochMilli + RetryDelay.toMillis
+    ids.foreach { id => if (!expiries.contains(id)) expiries.schedule(id, time) }
+    scheduleTimer()
   }
 
-  private def removeExpired() = Serialized.future(s"removeExpired $selfUserId") {
-    verbose(l"removeExpired")
-    nextExpiryTime ! LocalInstant.Max
-    db.read { implicit db =>
+  private def removeExpired(ids: Seq[MessageId]) = Serialized.future(s"removeExpired $selfUserId") {
+    verbose(l"removeExpired(${ids.size})")
+    storage.getMessages(ids: _*).flatMap { msgs =>
       val time = LocalInstant.Now
-      MessageDataDao.findExpiring() acquire { msgs =>
-        val (expired, rest) = msgs.toStream.span(_.expiryTime.exists(_ <= time))
-        rest.headOption.flatMap(_.expiryTime) foreach { time =>
-          nextExpiryTime.mutate(_ min time)
-        }
-        expired.toVector
-      }
-    } flatMap { expired =>
+      // the messages deleted or changed since their expiry was scheduled
+      val expired = msgs.flatten.filter(m => !m.expired && m.expiryTime.exists(_ <= time))
       val (toObfuscate, toRemove) = expired.partition(_.userId == selfUserId)
+      // the receipts go before the deletion: if it fails, the retry still finds the messages to post them for
       for {
-        _ <- messages.deleteOnUserRequest(toRemove.map(_.id))
         // recalling message, this informs the sender that message is already expired
-        _ <- Future.traverse(toRemove) { m => sync.postReceipt(m.convId, Seq(m.id), m.userId, ReceiptType.EphemeralExpired) }
+        _ <- Future.traverse(toRemove.groupBy(m => (m.convId, m.userId)).toSeq) { case ((conv, user), ms) =>
+               sync.postReceipt(conv, ms.map(_.id), user, ReceiptType.EphemeralExpired)
+             }
+        _ <- messages.deleteOnUserRequest(toRemove.map(_.id))
         _ <- storage.updateAll2(toObfuscate.map(_.id), obfuscate)
       } yield ()
     }
@@ -163,6 +199,7 @@ class EphemeralMessagesService(selfUserId: UserId,
 }
 
 object EphemeralMessagesService {
+  val RetryDelay: FiniteDuration = 30.seconds
 
   val randomChars: Iterator[Char] = {
     val cs = ('a' to 'z') ++ ('A' to 'Z')
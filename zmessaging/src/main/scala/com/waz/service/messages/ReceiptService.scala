@@ -22,9 +22,9 @@ import com.waz.api.Message.Type._
 import com.waz.content.{MessagesStorage, ReadReceiptsStorage}
 import com.waz.log.BasicLogging.LogTag.DerivedLogTag
 import com.waz.log.LogSE._
-import com.waz.model.sync.ReceiptType
 import com.waz.model.{MessageData, MessageId, ReadReceipt, UserId}
 import com.waz.service.conversation.ConversationsService
+import com.waz.service.push.PushService
 import com.waz.sync.SyncServiceHandle
 import com.waz.threading.Threading
 import com.wire.signals.EventContext
@@ -36,17 +36,16 @@ class ReceiptService(messages: MessagesStorage,
                      sync: SyncServiceHandle,
                      selfUserId: UserId,
                      convsService: ConversationsService,
-                     readReceiptsStorage: ReadReceiptsStorage) extends DerivedLogTag {
+                     readReceiptsStorage: ReadReceiptsStorage,
+                     push: PushService) extends DerivedLogTag {
   import Threading.Implicits.Background
 
+  private val deliveryReceipts = new DeliveryReceiptAggregator(push.processing, convsService, sync)
+
   messages.onAdded.foreach { msgs =>
-    val filteredMessages = msgs.filter(msg => msg.userId != selfUserId && confirmable(msg.msgType)).groupBy(m => (m.convId, m.userId))
-    Future.traverse(filteredMessages) { case ((convId, userId), groupMessages) =>
-      for {
-        false <- convsService.isGroupConversation(convId)
-        _     <- sync.postReceipt(convId, groupMessages.map(_.id), userId, ReceiptType.Delivery)
-      } yield ()
-    }
+    deliveryReceipts.add(msgs.collect {
+      case msg if msg.userId != selfUserId && confirmable(msg.msgType) => (msg.convId, msg.userId, msg.id)
+    })
   }
 
   val confirmable = Set(TEXT, TEXT_EMOJI_ONLY, IMAGE_ASSET, ANY_ASSET, VIDEO_ASSET, AUDIO_ASSET, KNOCK,
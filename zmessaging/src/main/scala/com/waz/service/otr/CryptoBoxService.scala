@@ -83,15 +83,19 @@ class CryptoBoxServiceImpl(context: Context,
   }
 
   override def deleteCryptoBox(): Future[Unit] = Future {
+    sessions.clearCache()
     _cryptoBox.foreach(_.close())
     _cryptoBox = None
     IoUtils.deleteRecursively(cryptoBoxDir)
     verbose(l"cryptobox directory deleted")
   }
 
-  override def close(): Future[Unit] = Future {
-    _cryptoBox.foreach(_.close())
-    _cryptoBox = None
+  override def close(): Future[Unit] = sessions.flush().flatMap { _ =>
+    Future {
+      sessions.clearCache()
+      _cryptoBox.foreach(_.close())
+      _cryptoBox = None
+    }
   }
 
   override def createClient(id: ClientId = ClientId()): Future[Option[(Client, PreKey, Seq[PreKey])]] = apply { cb =>
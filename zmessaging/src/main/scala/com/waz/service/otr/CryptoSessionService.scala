@@ -22,11 +22,13 @@ import com.waz.log.LogSE._
 import com.waz.service.otr.OtrService.SessionId
 import com.waz.service.push.PushNotificationEventsStorage.PlainWriter
 import com.waz.threading.Threading
-import com.wire.signals.{AggregatingSignal, DispatchQueue, EventStream, Serialized, Signal}
+import com.wire.signals.{AggregatingSignal, CancellableFuture, DispatchQueue, EventStream, Serialized, Signal}
 import com.waz.utils.returning
 import com.wire.cryptobox.{CryptoBox, CryptoSession, PreKey}
 
+import scala.collection.mutable
 import scala.concurrent.Future
+import scala.concurrent.duration._
 import scala.util.Try
 
 trait CryptoSessionService {
@@ -37,9 +39,34 @@ trait CryptoSessionService {
   def withSession[A](id: SessionId)(f: CryptoSession => A): Future[Option[A]]
   def decryptMessage(sessionId: SessionId, msg: Array[Byte], eventsWriter: PlainWriter): Future[Unit]
   def remoteFingerprint(sid: SessionId): Signal[Option[Array[Byte]]]
+
+  /**
+    * Saves all sessions changed since the last save. Sessions are kept in memory and saved with a delay,
+    * so this should be called before we rely on their state being on the disk (e.g. before we acknowledge
+    * decrypted events, send an encrypted message, or close the crypto box).
+    */
+  def flush(): Future[Unit]
+
+  /**
+    * Drops all cached sessions without saving them. To be called when the crypto box is deleted.
+    */
+  def clearCache(): Unit
+}
+
+object CryptoSessionService {
+  val MaxCachedSessions = 256
+  val SaveDelay: FiniteDuration = 1.second
 }
 
-class CryptoSessionServiceImpl(cryptoBox: CryptoBoxService)
+/**
+  * Keeps up to `cacheSize` recently used sessions in memory, so that we don't have to load them from the disk
+  * for every encrypted or decrypted message. Changed sessions are saved with a delay of `saveDelay` - subsequent
+  * changes to the same session in the meantime are saved together. A session evicted from the cache before
+  * it's saved is kept among the dirty ones, so that the next access to it doesn't read a stale version from the disk.
+  */
+class CryptoSessionServiceImpl(cryptoBox: CryptoBoxService,
+                               cacheSize: Int = CryptoSessionService.MaxCachedSessions,
+                               saveDelay: FiniteDuration = CryptoSessionService.SaveDelay)
   extends CryptoSessionService with DerivedLogTag {
 
   private implicit val dis: DispatchQueue = Threading.Background
@@ -47,6 +74,11 @@ class CryptoSessionServiceImpl(cryptoBox: CryptoBoxService)
   private val onCreate = EventStream[SessionId]()
   val onCreateFromMessage = EventStream[SessionId]()
 
+  private val cache = new java.util.LinkedHashMap[SessionId, CryptoSession](16, 0.75f, true) {
+    override def removeEldestEntry(eldest: java.util.Map.Entry[SessionId, CryptoSession]): Boolean = size() > cacheSize
+  }
+  private val dirty = mutable.HashMap[SessionId, CryptoSession]()
+
   private def dispatch[A](id: SessionId)(f: Option[CryptoBox] => A) =
     Serialized.future(id.toString){cryptoBox.cryptoBox.map(f)}
 
@@ -57,20 +89,62 @@ class CryptoSessionServiceImpl(cryptoBox: CryptoBoxService)
     case None => None
     case Some(cb) =>
       verbose(l"getOrCreateSession($id)")
-      def createSession() = returning(cb.initSessionFromPreKey(id.toString, key))(_ => onCreate ! id)
+      def createSession() = returning(cb.initSessionFromPreKey(id.toString, key)) { session =>
+        cached(id, session)
+        onCreate ! id
+      }
 
       loadSession(cb, id).orElse(Option(createSession()))
   }
 
   private def loadSession(cb: CryptoBox, id: SessionId): Option[CryptoSession] =
-    Try(Option(cb.tryGetSession(id.toString))).getOrElse {
-      error(l"session loading failed unexpectedly, will delete session file")
-      cb.deleteSession(id.toString)
-      None
+    cache.synchronized(Option(cache.get(id)).orElse(dirty.get(id))).orElse {
+      Try(Option(cb.tryGetSession(id.toString))).getOrElse {
+        error(l"session loading failed unexpectedly, will delete session file")
+        cb.deleteSession(id.toString)
+        None
+      }.map(cached(id, _))
+    }
+
+  private def cached(id: SessionId, session: CryptoSession): CryptoSession = {
+    cache.synchronized(cache.put(id, session))
+    session
+  }
+
+  private def markDirty(id: SessionId, session: CryptoSession): Unit = {
+    val scheduleSave = cache.synchronized {
+      cache.put(id, session)
+      dirty.put(id, session).isEmpty
+    }
+    if (scheduleSave) CancellableFuture.delay(saveDelay).future.flatMap(_ => save(id))
+  }
+
+  private def save(id: SessionId): Future[Unit] = Serialized.future(id.toString) {
+    Future(saveNow(id))
+  }
+
+  private def saveNow(id: SessionId): Unit =
+    cache.synchronized(dirty.remove(id)).foreach { session =>
+      Try(session.save()).failed.foreach(e => error(l"saving session $id failed", e))
     }
 
+  override def flush(): Future[Unit] = {
+    val ids = cache.synchronized(dirty.keySet.toSet)
+    if (ids.nonEmpty) verbose(l"flush(${ids.size} sessions)")
+    Future.traverse(ids)(save).map(_ => ())
+  }
+
+  override def clearCache(): Unit = cache.synchronized {
+    cache.clear()
+    dirty.clear()
+  }
+
   def deleteSession(id: SessionId): Future[Unit] = dispatch(id) { cb =>
     verbose(l"deleteSession($id)")
+    cache.synchronized {
+      cache.remove(id)
+      dirty.remove(id)
+    }
     cb.foreach(_.deleteSession(id.toString))
   }
 
@@ -81,7 +155,7 @@ class CryptoSessionServiceImpl(cryptoBox: CryptoBoxService)
 
   def withSession[A](id: SessionId)(f: CryptoSession => A): Future[Option[A]] = dispatch(id) { cb =>
     cb.flatMap(loadSession(_, id)) map { session =>
-      returning(f(session)) { _ => session.save() }
+      returning(f(session)) { _ => markDirty(id, session) }
     }
   }
 
@@ -103,7 +177,7 @@ class CryptoSessionServiceImpl(cryptoBox: CryptoBoxService)
     dispatchFut(sessionId) { opt =>
       val (session, plain) = decrypt(opt)
       eventsWriter(plain).map { _ =>
-        session.save()
+        markDirty(sessionId, session)
         verbose(l"decrypted data len: ${plain.length}")
       }
     }
@@ -2,7 +2,7 @@ package com.waz.service.otr
 
 import com.waz.log.BasicLogging.LogTag.DerivedLogTag
 import com.waz.log.LogSE._
-import com.waz.model.{ConversationEvent, DecryptionError, Domain, Duplicate, IdentityChangedError, OtrError, OtrErrorEvent, OtrEvent, PushNotificationEvent, Uid, UserId}
+import com.waz.model.{DecryptionError, Domain, Duplicate, IdentityChangedError, OtrError, OtrErrorEvent, OtrEvent, PushNotificationEvent, Uid, UserId}
 import com.waz.service.otr.OtrService.SessionId
 import com.waz.service.push.PushNotificationEventsStorage
 import com.waz.service.push.PushNotificationEventsStorage.PlainWriter
@@ -28,7 +28,7 @@ class EventDecrypterImpl(selfId:        UserId,
     Future.traverse(events) {
       case event @ GetOtrEvent(otrEvent) => decrypt(event.id, otrEvent)
       case event                         => storage.setAsDecrypted(event.id)
-    }.map(_ => ())
+    }.flatMap(_ => sessions.flush())
 
   private def decrypt(id: (Uid, Int), otrEvent: OtrEvent): Future[Unit] =
     decryptStoredOtrEvent(otrEvent, storage.writeClosure(id)).flatMap {
@@ -71,7 +71,7 @@ object EventDecrypter {
   object GetOtrEvent extends DerivedLogTag {
     def unapply(event: PushNotificationEvent): Option[OtrEvent] =
       if (!event.event.isOtrMessageAdd) None
-      else ConversationEvent.ConversationEventDecoder(event.event.toJson) match {
+      else event.event.decoded match {
         case otrEvent: OtrEvent => Some(otrEvent)
         case _                  => error(l"Unrecognized event: ${event.event}"); None
       }
@@ -2,12 +2,11 @@ package com.waz.service.otr
 
 import com.waz.log.BasicLogging.LogTag.DerivedLogTag
 import com.waz.log.LogSE._
-import com.waz.model.Event.EventDecoder
 import com.waz.model.GenericContent.{Calling, ClientAction, External}
 import com.waz.model._
 import com.waz.utils.crypto.AESUtils
 
-import scala.util.{Failure, Try}
+import scala.util.Try
 
 trait OtrEventDecoder {
   def decode(event: PushNotificationEvent): Option[Event]
@@ -26,7 +25,7 @@ final class OtrEventDecoderImpl(selfUserId: UserId, currentDomain: Domain)
           result <- parseGenericMessage(ev, gm)
         } yield result
       case _ =>
-        Some(EventDecoder(event.event.toJson))
+        Some(event.event.decoded)
     }
 
   private def parseGenericMessage(otrMsg: OtrMessageEvent, genericMsg: GenericMessage): Option[MessageEvent] = {
@@ -83,11 +82,10 @@ object OtrEventDecoder extends DerivedLogTag {
     new OtrEventDecoderImpl(selfUserId, currentDomain)
 
   def decodeOtrMessageAdd(event: PushNotificationEvent): Option[OtrMessageEvent] =
-    Try(ConversationEvent.ConversationEventDecoder(event.event.toJson).asInstanceOf[OtrMessageEvent])
-      .recoverWith {
-        case err: Throwable =>
-          error(l"Unable to decode an OtrMessageAdd event: $event", err)
-          Failure(err)
-      }
-      .toOption
+    event.event.decoded match {
+      case otrEvent: OtrMessageEvent => Some(otrEvent)
+      case _ =>
+        error(l"Unable to decode an OtrMessageAdd event: $event")
+        None
+    }
 }
@@ -129,12 +129,12 @@ class OtrServiceImpl(selfUserId:     UserId,
       sessions.withSession(SessionId(qId, clientId, currentDomain)) { session =>
         EncryptedContent(Map(userId -> Map(clientId -> session.encrypt(msg.toByteArray))))
       }
-    }
+    }.flatMap(content => sessions.flush().map(_ => content))
 
   override def encryptTargetedMessage(qId: QualifiedId, clientId: ClientId, msg: GenericMessage): Future[Option[OtrClient.QEncryptedContent]] =
     sessions.withSession(SessionId(qId, clientId, currentDomain)) { session =>
       QEncryptedContent(Map(qId -> Map(clientId -> session.encrypt(msg.toByteArray))))
-    }
+    }.flatMap(content => sessions.flush().map(_ => content))
 
   /**
     * @param message the message to be encrypted
@@ -183,6 +183,7 @@ class OtrServiceImpl(selfUserId:     UserId,
                     val partialResultForUser = partialResult.content.getOrElse(userId, Map.empty)
                     encryptForClients(userId, clientIds, msgData, useFakeOnError, partialResultForUser)
                   }
+      _        <- sessions.flush()
       content   = payloads.filter(_._2.nonEmpty).toMap
     } yield EncryptedContent(content)
   }
@@ -204,6 +205,7 @@ class OtrServiceImpl(selfUserId:     UserId,
                     val partialResultForUser = partialResult.content.getOrElse(qId, Map.empty)
                     encryptForClients(qId, clientIds, msgData, useFakeOnError, partialResultForUser).map(qId -> _)
                   }
+      _        <- sessions.flush()
       content   = payloads.filter(_._2.nonEmpty).toMap
     } yield QEncryptedContent(content)
   }
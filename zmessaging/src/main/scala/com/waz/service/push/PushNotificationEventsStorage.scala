@@ -25,12 +25,13 @@ import com.waz.log.LogSE._
 import com.waz.model.PushNotificationEvents.{DecryptedPushNotificationEventsDao, EncryptedPushNotificationEventsDao}
 import com.waz.model._
 import com.waz.model.otr.ClientId
-import com.waz.service.push.PushNotificationEventsStorage.{EventHandler, EventIndex, PlainWriter}
+import com.waz.service.push.PushNotificationEventsStorage.{EventHandler, EventIndex, PlainWriter, cacheBytes, weight}
 import com.waz.sync.client.PushNotificationEncoded
-import com.waz.utils.TrimmingLruCache.Fixed
+import com.waz.utils.TrimmingLruCache.{Fixed, Relative}
+import com.waz.utils.WeightedLruCache.{EmptyEntryWeight, optionWeigher, stringWeight}
 import com.waz.utils.crypto.AESUtils
 import com.wire.signals.EventContext
-import com.waz.utils.{CachedStorage, CachedStorageImpl, TrimmingLruCache, returning}
+import com.waz.utils.{CachedStorage, CachedStorageImpl, WeightedLruCache, returning}
 
 import scala.concurrent.Future
 
@@ -39,6 +40,15 @@ object PushNotificationEventsStorage {
   type EventIndex = (Uid, Int)
 
   type EventHandler = () => Future[Unit]
+
+  val cacheBytes = Fixed(2 * 1024 * 1024) min Relative(.02f)
+
+  /**
+    * A rough estimate of the memory taken by a cached event: the encoded event, its parsed form (about as big again)
+    * and the decrypted payload.
+    */
+  def weight(event: PushNotificationEvent): Int =
+    EmptyEntryWeight + 2 * stringWeight(event.event.str) + event.plain.fold(0)(_.length)
 }
 
 trait PushNotificationEventsStorage {
@@ -59,11 +69,11 @@ final class PushNotificationEventsStorageImpl(context: Context, storage: Databas
   import com.waz.threading.Threading.Implicits.Background
 
   val encryptedStorage = new CachedStorageImpl[EventIndex, PushNotificationEvent](
-    new TrimmingLruCache(context, Fixed(1024*1024)), storage)(EncryptedPushNotificationEventsDao, LogTag("EncryptedPushNotificationEvents_Cached")
+    new WeightedLruCache[EventIndex, Option[PushNotificationEvent]](context, cacheBytes)(optionWeigher(weight)), storage)(EncryptedPushNotificationEventsDao, LogTag("EncryptedPushNotificationEvents_Cached")
   )
 
   val decryptedStorage = new CachedStorageImpl[EventIndex, PushNotificationEvent](
-    new TrimmingLruCache(context, Fixed(1024*1024)), storage)(DecryptedPushNotificationEventsDao, LogTag("DecryptedPushNotificationEvents_Cached")
+    new WeightedLruCache[EventIndex, Option[PushNotificationEvent]](context, cacheBytes)(optionWeigher(weight)), storage)(DecryptedPushNotificationEventsDao, LogTag("DecryptedPushNotificationEvents_Cached")
   )
 
   private def insertDecryptedVersion(event: PushNotificationEvent, plain: Option[Array[Byte]]): Future[Unit] = {
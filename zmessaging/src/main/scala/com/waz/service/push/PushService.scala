@@ -31,7 +31,7 @@ import com.waz.model.otr.ClientId
 import com.waz.service.ZMessaging.{accountTag, clock}
 import com.waz.service._
 import com.waz.service.otr.{EventDecrypter, OtrEventDecoder}
-import com.waz.service.push.PushService.SyncMode
+import com.waz.service.push.PushService.{CatchUpProgress, SyncMode}
 import com.waz.sync.SyncServiceHandle
 import com.waz.sync.client.PushNotificationsClient.LoadNotificationsResult
 import com.waz.sync.client.{PushNotificationEncoded, PushNotificationsClient}
@@ -40,6 +40,7 @@ import com.waz.znet2.http.ResponseCode
 import com.wire.signals._
 import org.threeten.bp.{Duration, Instant}
 
+import scala.collection.immutable.Queue
 import scala.concurrent.duration._
 import scala.concurrent.{Future, Promise}
 
@@ -62,6 +63,11 @@ trait PushService {
   def processing: Signal[Boolean]
   def waitProcessing: Future[Unit]
 
+  /**
+    * Progress of fetching the notification history. Empty when no fetch is in progress.
+    */
+  def catchUpProgress: Signal[Option[CatchUpProgress]]
+
   /**
     * Drift to the BE time at the moment we fetch notifications
     * Used for calling (time critical) messages that can't always rely on local time, since the drift can be
@@ -91,6 +97,7 @@ final class PushServiceImpl(selfUserId:        UserId,
 
   override val onHistoryLost: SourceSignal[Instant] = SourceSignal[Instant]()
   override val processing: SourceSignal[Boolean] = Signal(false)
+  override val catchUpProgress: SourceSignal[Option[CatchUpProgress]] = Signal(Option.empty[CatchUpProgress])
 
   override def syncNotifications(syncMode: SyncMode): Future[Unit] = Serialized.future("fetchInProgress") {
     verbose(l"I'm syncing notifications")
@@ -154,32 +161,13 @@ final class PushServiceImpl(selfUserId:        UserId,
     } else
       Future.successful(())
 
-  private def futureHistoryResults(notifications: Vector[PushNotificationEncoded] = Vector.empty,
-                                   time:          Option[Instant] = None,
-                                   firstSync:     Boolean = false,
-                                   historyLost:   Boolean = false): Future[Option[Results]] =
-    Future.successful(Some(Results(notifications, time, firstSync, historyLost)))
-
-  private def load(lastId: Option[Uid], firstSync: Boolean = false, attempts: Int = 0, withRetries: Boolean = true): Future[Option[Results]] =
+  private def loadPage(lastId: Option[Uid], firstSync: Boolean = false, attempts: Int = 0, withRetries: Boolean = true): Future[LoadNotificationsResult] =
     (lastId match {
       case None if firstSync => client.loadLastNotification(clientId)
       case id                => client.loadNotifications(id, clientId)
     }).future.flatMap {
-      case Right(LoadNotificationsResult(response, historyLost)) if !response.hasMore && !historyLost =>
-        futureHistoryResults(response.notifications, response.beTime, firstSync = firstSync)
-      case Right(LoadNotificationsResult(response, historyLost)) if response.hasMore && !historyLost =>
-        load(response.notifications.lastOption.map(_.id)).flatMap {
-          case Some(results) =>
-            futureHistoryResults(
-              response.notifications ++ results.notifications,
-              if (results.time.isDefined) results.time else response.beTime,
-              historyLost = results.historyLost
-            )
-          case None => Future.successful(None)
-        }
-      case Right(LoadNotificationsResult(response, historyLost)) if lastId.isDefined && historyLost =>
-        warn(l"/notifications failed with 404, history lost")
-        futureHistoryResults(response.notifications, response.beTime, historyLost)
+      case Right(result) =>
+        Future.successful(result)
       case Left(e@ErrorResponse(ResponseCode.Unauthorized, _, _)) =>
         warn(l"Logged out, failing sync request")
         Future.failed(FetchFailedException(e))
@@ -200,31 +188,60 @@ final class PushServiceImpl(selfUserId:        UserId,
             _ <- network.isOnline.onTrue
           } yield retry.trySuccess({})
 
-          retry.future.flatMap { _ => load(lastId, firstSync, attempts + 1) }
+          retry.future.flatMap { _ => loadPage(lastId, firstSync, attempts + 1) }
         }
     }
 
   private def syncHistory(source: SyncSource, withRetries: Boolean = true): Future[Unit] = {
     verbose(l"Sync history in response to $source ($timePassed)")
-    idPref().flatMap(lastId =>
-      load(lastId, firstSync = lastId.isEmpty, withRetries = withRetries)
-    ).flatMap {
-      case Some(Results(nots, _, true, _)) =>
-        idPref.update(nots.headOption.map(_.id)).map(_ => None)
-      case Some(Results(_, time, _, true)) =>
-        sync.performFullSync()
-          .map(_ => onHistoryLost ! clock.instant())
-          .map(_ => updateDrift(time))
-          .map(_ => None)
-      case Some(Results(nots, time, _, _)) if nots.nonEmpty =>
-        updateDrift(time)
-          .flatMap(_ => storeNotifications(nots))
-          .flatMap(_ => syncHistory(source, withRetries = withRetries))
-      case Some(Results(_, time, _, _)) =>
-        updateDrift(time).map(_ => None)
-      case None => Future.successful(None)
+    idPref().flatMap {
+      case None =>
+        loadPage(None, firstSync = true, withRetries = withRetries).flatMap { result =>
+          idPref.update(result.response.notifications.headOption.map(_.id))
+        }
+      case lastId =>
+        catchUpProgress ! Some(CatchUpProgress.Empty)
+        streamHistory(lastId, withRetries, Queue.empty).andThen { case _ => catchUpProgress ! None }
     }
   }
+
+  /**
+    * Downloads the notification history one page at a time. Each page is persisted and handed over to the
+    * pipeline right away, while the next page is already being downloaded. At most `CatchUpPagesAhead` pages
+    * can wait for the pipeline - if there are more, the download stops until the oldest of them is processed.
+    */
+  private def streamHistory(lastId: Option[Uid], withRetries: Boolean, inFlight: Queue[Future[Unit]]): Future[Unit] =
+    loadPage(lastId, withRetries = withRetries).flatMap {
+      case LoadNotificationsResult(response, true) =>
+        warn(l"/notifications failed with 404, history lost")
+        for {
+          _ <- Future.sequence(inFlight)
+          _ <- sync.performFullSync()
+          _ =  onHistoryLost ! clock.instant()
+          _ <- updateDrift(response.beTime)
+        } yield ()
+      case LoadNotificationsResult(response, false) =>
+        val nots = response.notifications
+        val (waitFor, pending) =
+          if (inFlight.size >= CatchUpPagesAhead) inFlight.dequeue
+          else (Future.successful(()), inFlight)
+
+        for {
+          _         <- waitFor
+          _         <- updateDrift(response.beTime)
+          _         <- storeNotifications(nots)
+          processed =  if (nots.nonEmpty) process() else Future.successful(())
+          _         =  updateProgress(nots.size, pending.size + 1)
+          _         <- if (nots.nonEmpty) streamHistory(nots.lastOption.map(_.id), withRetries, pending.enqueue(processed))
+                       else Future.sequence(pending.enqueue(processed))
+        } yield ()
+    }
+
+  private def updateProgress(events: Int, pagesInFlight: Int): Unit =
+    catchUpProgress.mutate {
+      case Some(p) => Some(CatchUpProgress(p.pages + 1, p.events + events, pagesInFlight))
+      case None    => Some(CatchUpProgress(1, events, pagesInFlight))
+    }
 }
 
 object PushService {
@@ -261,8 +278,17 @@ object PushService {
   //set withRetries to false if the caller is to handle their own retry logic
   final case class SyncHistory(source: SyncSource, withRetries: Boolean = true) extends SyncMode
 
-  final case class Results(notifications: Vector[PushNotificationEncoded],
-                           time: Option[Instant],
-                           firstSync: Boolean,
-                           historyLost: Boolean)
+  //the number of downloaded pages which may wait for the pipeline before we stop fetching the next one
+  val CatchUpPagesAhead: Int = 1
+
+  /**
+    * @param pages the number of pages downloaded and stored so far
+    * @param events the number of notifications in those pages
+    * @param pagesInFlight the number of stored pages not yet processed by the pipeline
+    */
+  final case class CatchUpProgress(pages: Int, events: Int, pagesInFlight: Int)
+
+  object CatchUpProgress {
+    val Empty: CatchUpProgress = CatchUpProgress(0, 0, 0)
+  }
 }
@@ -31,6 +31,7 @@ import com.waz.znet2.http.{HttpClient, RawBodyDeserializer, Request, ResponseCod
 import org.json.{JSONArray, JSONObject}
 import org.threeten.bp.Instant
 
+import scala.util.Try
 import scala.util.control.NonFatal
 
 //TODO Think about returning models.
@@ -134,11 +135,41 @@ object PushNotificationsClient {
   }
 }
 
-final case class EncodedEvent(str: String) extends AnyVal {
+/**
+  * A push event as received from the backend. The JSON is parsed at most once, when the event is received
+  * (or, if it was loaded from the database, when it is first needed), and so are its envelope and the decoded event,
+  * so that the stages of the push pipeline don't parse it again each.
+  *
+  * The parsed JSON is shared, so it must not be modified.
+  */
+final class EncodedEvent private (val str: String, parsed: Option[JSONObject]) {
+  lazy val toJson: JSONObject = parsed.getOrElse(new JSONObject(str))
+
+  lazy val envelope: EventEnvelope = Try(EventEnvelope.Decoder(toJson)).getOrElse(EventEnvelope.Unknown)
+
+  lazy val decoded: Event = Event.EventDecoder(toJson)
+
   def isForUs(clientId: ClientId): Boolean =
-    !str.contains("conversation.otr") || str.contains(clientId.str)
-  def isOtrMessageAdd: Boolean = str.contains("conversation.otr-message-add")
-  def toJson: JSONObject = new JSONObject(str)
+    !envelope.isOtr || envelope.recipient.fold(str.contains(clientId.str))(_ == clientId)
+
+  def isOtrMessageAdd: Boolean = envelope.isOtrMessageAdd
+
+  override def equals(other: Any): Boolean = other match {
+    case that: EncodedEvent => str == that.str
+    case _                  => false
+  }
+
+  override def hashCode(): Int = str.hashCode
+
+  override def toString: String = s"EncodedEvent($str)"
+}
+
+object EncodedEvent {
+  def apply(str: String): EncodedEvent = new EncodedEvent(str, None)
+
+  def apply(json: JSONObject): EncodedEvent = new EncodedEvent(json.toString, Some(json))
+
+  def unapply(event: EncodedEvent): Option[String] = Some(event.str)
 }
 
 final case class PushNotificationEncoded(id: Uid, events: Vector[EncodedEvent], transient: Boolean = false)
@@ -150,7 +181,7 @@ object PushNotificationEncoded extends DerivedLogTag {
 
     override def apply(implicit js: JSONObject): PushNotificationEncoded = {
       val arr = js.getJSONArray("payload")
-      val vector = (0 until arr.length).map { i => EncodedEvent(arr.getJSONObject(i).toString) }.toVector
+      val vector = (0 until arr.length).map { i => EncodedEvent(arr.getJSONObject(i)) }.toVector
       PushNotificationEncoded('id, vector, 'transient)
     }
   }
@@ -0,0 +1,85 @@
+/*
+ * Wire
+ * Copyright (C) 2016 Wire Swiss GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.waz.utils
+
+import scala.collection.mutable
+
+/**
+  * A secondary index of the values cached by a storage, from a field of the values (given by `extract`) to their keys,
+  * so that the cached values with some field values can be found without going through the whole cache.
+  *
+  * The LRU cache doesn't tell when it evicts a value, so the index may still have keys whose values are gone, or
+  * were changed: it never misses a cached value, and `lookup` checks the keys against the cache, dropping those which
+  * don't match any more. Once the index gets twice as big as it was after the last rebuild, it asks to be rebuilt
+  * from the cache, to drop the keys of the values evicted meanwhile.
+  */
+final class CacheIndex[K, V, I](val extract: V => I) {
+
+  private val keys = new mutable.HashMap[I, mutable.Set[K]]
+  private var entries = 0
+  private var rebuildAt = CacheIndex.MinRebuildSize
+
+  def size: Int = synchronized(entries)
+
+  /**
+    * @return true if the index should be rebuilt
+    */
+  def add(key: K, value: V): Boolean = synchronized {
+    if (keys.getOrElseUpdate(extract(value), mutable.HashSet.empty[K]).add(key)) entries += 1
+    entries >= rebuildAt
+  }
+
+  /**
+    * Rebuilds the index from `cached`, which is only evaluated under the lock of the index: the keys added meanwhile
+    * wait for the rebuild to be done, instead of being dropped by it.
+    */
+  def rebuild(cached: => TraversableOnce[(K, V)]): Unit = synchronized {
+    keys.clear()
+    entries = 0
+    cached.foreach { case (k, v) =>
+      if (keys.getOrElseUpdate(extract(v), mutable.HashSet.empty[K]).add(k)) entries += 1
+    }
+    rebuildAt = math.max(CacheIndex.MinRebuildSize, entries * 2)
+  }
+
+  /**
+    * The cached values with one of the given field values, where `cached` gets the current cached value of a key.
+    */
+  def lookup(values: Set[I])(cached: K => Option[V]): Vector[(K, V)] = {
+    val candidates = synchronized {
+      values.iterator.flatMap(i => keys.get(i).fold(Iterator.empty[(I, K)])(_.iterator.map(i -> _))).toVector
+    }
+    val (matching, stale) = candidates.map { case (i, k) => (i, k, cached(k)) }.partition {
+      case (i, _, Some(v)) => extract(v) == i
+      case _               => false
+    }
+    if (stale.nonEmpty) synchronized {
+      stale.foreach { case (i, k, _) =>
+        keys.get(i).foreach { ks =>
+          if (ks.remove(k)) entries -= 1
+          if (ks.isEmpty) keys.remove(i)
+        }
+      }
+    }
+    matching.collect { case (_, k, Some(v)) => k -> v }
+  }
+}
+
+object CacheIndex {
+  val MinRebuildSize = 1024
+}
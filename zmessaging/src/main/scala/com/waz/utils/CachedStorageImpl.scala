@@ -164,6 +164,13 @@ class ReactiveStorageImpl2[K, V <: Identifiable[K]](storage: Storage2[K,V]) exte
   override val onUpdated: SourceStream[Seq[(V, V)]] = EventStream()
   override val onDeleted: SourceStream[Set[K]] = EventStream()
 
+  private val updatesByKey  = new KeyedEventStreams[K, V]
+  private val removalsByKey = new KeyedEventStreams[K, K]
+
+  override def onChanged(key: K): EventStream[V] = updatesByKey(key)
+
+  override def onRemoved(key: K): EventStream[K] = removalsByKey(key)
+
   override implicit def ec: ExecutionContext = storage.ec
 
   override def loadAll(keys: Set[K]): Future[Seq[V]] = storage.loadAll(keys)
@@ -194,11 +201,17 @@ class ReactiveStorageImpl2[K, V <: Identifiable[K]](storage: Storage2[K,V]) exte
       val addedResult = added.result
       val updatedResult = updated.result
       if (addedResult.nonEmpty) onAdded ! addedResult
-      if (updatedResult.nonEmpty) onUpdated ! updatedResult
+      if (updatedResult.nonEmpty) {
+        onUpdated ! updatedResult
+        updatesByKey.publishAll(updatedResult.map(_._2))(_.id)(_.head)
+      }
     }
   }
 
-  override def deleteAllByKey(keys: Set[K]): Future[Unit] = storage.deleteAllByKey(keys).map(_ => onDeleted ! keys)
+  override def deleteAllByKey(keys: Set[K]): Future[Unit] = storage.deleteAllByKey(keys).map { _ =>
+    onDeleted ! keys
+    removalsByKey.publishAll(keys)(identity)(_.head)
+  }
 }
 
 trait CachedStorage[K, V <: Identifiable[K]] {
@@ -258,7 +271,7 @@ trait CachedStorage[K, V <: Identifiable[K]] {
   def contents: Signal[Map[K, V]]
 }
 
-class CachedStorageImpl[K, V <: Identifiable[K]](cache: LruCache[K, Option[V]], db: Database)
+class CachedStorageImpl[K, V <: Identifiable[K]](cache: Cache[K, Option[V]], db: Database)
                                                 (implicit
                                                  val dao: StorageDao[K, V],
                                                  tag: LogTag = LogTag("CachedStorage")
@@ -274,23 +287,42 @@ class CachedStorageImpl[K, V <: Identifiable[K]](cache: LruCache[K, Option[V]],
   private val onDeletedQueue: BlockingQueue[Seq[K]]     = new LinkedBlockingQueue[Seq[K]]
   private var streamsBlocked = false
 
+  // the changes by key, for `onChanged(key)` and `onRemoved(key)`
+  private val changesByKey  = new KeyedEventStreams[K, V]
+  private val removalsByKey = new KeyedEventStreams[K, K]
+
   override def blockStreams(block: Boolean): Unit = if (block != streamsBlocked) {
     if (!block) {
-      while(!onAddedQueue.isEmpty) onAdded ! onAddedQueue.take()
-      while(!onUpdatedQueue.isEmpty) onUpdated ! onUpdatedQueue.take()
-      while(!onDeletedQueue.isEmpty) onDeleted ! onDeletedQueue.take()
+      while(!onAddedQueue.isEmpty) publishAdded(onAddedQueue.take())
+      while(!onUpdatedQueue.isEmpty) publishUpdated(onUpdatedQueue.take())
+      while(!onDeletedQueue.isEmpty) publishDeleted(onDeletedQueue.take())
     }
     streamsBlocked = block
   }
 
+  private def publishAdded(events: Seq[V]): Unit = {
+    onAdded ! events
+    changesByKey.publishAll(events)(_.id)(_.last)
+  }
+
+  private def publishUpdated(events: Seq[(V, V)]): Unit = {
+    onUpdated ! events
+    changesByKey.publishAll(events.map(_._2))(_.id)(_.last)
+  }
+
+  private def publishDeleted(events: Seq[K]): Unit = {
+    onDeleted ! events
+    removalsByKey.publishAll(events)(identity)(_.last)
+  }
+
   private def tellAdded(events: Seq[V]): Unit =
-    if (!streamsBlocked) onAdded ! events else onAddedQueue.put(events)
+    if (!streamsBlocked) publishAdded(events) else onAddedQueue.put(events)
 
   private def tellUpdated(events: Seq[(V,V)]): Unit =
-    if (!streamsBlocked) onUpdated ! events else onUpdatedQueue.put(events)
+    if (!streamsBlocked) publishUpdated(events) else onUpdatedQueue.put(events)
 
   private def tellDeleted(events: Seq[K]): Unit =
-    if (!streamsBlocked) onDeleted ! events else onDeletedQueue.put(events)
+    if (!streamsBlocked) publishDeleted(events) else onDeletedQueue.put(events)
 
   val onChanged = onAdded.zip(onUpdated.map(_.map(_._2)))
 
@@ -305,12 +337,35 @@ class CachedStorageImpl[K, V <: Identifiable[K]](cache: LruCache[K, Option[V]],
   protected def delete(keys: Iterable[K])(implicit db: DB): Unit =
     if (keys.nonEmpty) dao.deleteEvery(keys)
 
+  @volatile private var indexes = Vector.empty[CacheIndex[K, V, _]]
+
+  /**
+    * Declares a secondary index of the cached values, by the field given by `extract`, for `findByIndex`.
+    */
+  protected def index[I](extract: V => I): CacheIndex[K, V, I] =
+    returning(new CacheIndex[K, V, I](extract)) { index =>
+      synchronized { indexes :+= index } // before the rebuild, so that the values put meanwhile are added to it
+      index.rebuild(cachedValues)
+    }
+
+  private def cachedValues: Iterator[(K, V)] =
+    cache.snapshot.asScala.iterator.collect { case (k, Some(v)) => k -> v }
+
+  private def cachePut(key: K, value: Option[V]): Unit = {
+    cache.put(key, value)
+    value.foreach { v =>
+      indexes.foreach { index =>
+        if (index.add(key, v)) index.rebuild(cachedValues)
+      }
+    }
+  }
+
   private def cachedOrElse(key: K, default: => Future[Option[V]]): Future[Option[V]] =
     Option(cache.get(key)).fold(default)(Future.successful)
 
   private def loadFromDb(key: K) = db.read { load(key)(_) } map { value =>
     Option(cache.get(key)).getOrElse {
-      cache.put(key, value)
+      cachePut(key, value)
       value
     }
   }
@@ -341,7 +396,42 @@ class CachedStorageImpl[K, V <: Identifiable[K]](cache: LruCache[K, Option[V]],
   } map { case (results, uncached) =>
 
     uncached.foreach { case (k, v) =>
-      if (cache.get(k) eq null) cache.put(k, Some(v))
+      if (cache.get(k) eq null) cachePut(k, Some(v))
+    }
+
+    results
+  }
+
+  /**
+    * Like `find`, for the values with one of the given values of an indexed field: the cached values are looked up
+    * in the index, instead of going through the whole cache.
+    */
+  def findByIndex[I, A, B](index: CacheIndex[K, V, I], values: Set[I], search: DB => Managed[TraversableOnce[V]], mapping: V => A)(implicit cb: CanBuild[A, B]): Future[B] = Future {
+    val matches = cb.apply()
+    val found = index.lookup(values)(k => Option(cache.get(k)).flatten)
+    found.foreach { case (_, v) => matches += mapping(v) }
+    (found.iterator.map(_._1).toSet, matches)
+  } flatMap { case (found, matches) =>
+    db.read { database =>
+      val uncached = Map.newBuilder[K, V]
+      search(database).acquire { rows =>
+        rows.foreach { v =>
+          if (!found(v.id)) Option(cache.get(v.id)) match {
+            case None =>
+              matches += mapping(v)
+              uncached += v.id -> v
+            case Some(Some(cached)) if values(index.extract(cached)) => matches += mapping(cached)
+            case _ => // removed, or changed, in the cache
+          }
+        }
+
+        (matches.result, uncached.result)
+      }
+    }
+  } map { case (results, uncached) =>
+
+    uncached.foreach { case (k, v) =>
+      if (cache.get(k) eq null) cachePut(k, Some(v))
     }
 
     results
@@ -360,9 +450,9 @@ class CachedStorageImpl[K, V <: Identifiable[K]](cache: LruCache[K, Option[V]],
     cache.snapshot.asScala.collect { case (k, Some(v)) if predicate(v) => k } foreach { cache.remove }
   }
 
-  def onChanged(key: K): EventStream[V] = onChanged.map(_.view.filter(_.id == key).lastOption).collect { case Some(v) => v }
+  def onChanged(key: K): EventStream[V] = changesByKey(key)
 
-  def onRemoved(key: K): EventStream[K] = onDeleted.map(_.view.filter(_ == key).lastOption).collect { case Some(k) => k }
+  def onRemoved(key: K): EventStream[K] = removalsByKey(key)
 
   def optSignal(key: K): Signal[Option[V]] = {
     val changeOrDelete = onChanged(key).map(Option(_)).zip(onRemoved(key).map(_ => Option.empty[V]))
@@ -398,13 +488,13 @@ class CachedStorageImpl[K, V <: Identifiable[K]](cache: LruCache[K, Option[V]],
       val loadedMap: Map[K, Option[V]] = loadedEntries.map { value =>
         val key = value.id
         Option(cache.get(key)).map(m => (key, m)).getOrElse {
-          cache.put(key, Some(value))
+          cachePut(key, Some(value))
           (key, Some(value))
         }
       }(breakOut)
 
       keys.map { key =>
-        returning(Option(cache.get(key)).orElse(loadedMap.get(key).orElse(cachedEntries.get(key))).flatten) { cache.put(key, _) }
+        returning(Option(cache.get(key)).orElse(loadedMap.get(key).orElse(cachedEntries.get(key))).flatten) { cachePut(key, _) }
       } (breakOut) : Vector[Option[V]]
     }
   }
@@ -425,7 +515,7 @@ class CachedStorageImpl[K, V <: Identifiable[K]](cache: LruCache[K, Option[V]],
           Option(cache.get(k)).flatten.orElse(v).flatMap { value =>
             val updated = updater(value)
             if (updated != value) {
-              cache.put(k, Some(updated))
+              cachePut(k, Some(updated))
               Some(value -> updated)
             } else None
           }
@@ -433,7 +523,7 @@ class CachedStorageImpl[K, V <: Identifiable[K]](cache: LruCache[K, Option[V]],
 
         if (updated.isEmpty) Future.successful(Vector.empty)
         else
-          db(save(updated.map(_._2))(_)).future.map { _ =>
+          db.grouped(save(updated.map(_._2))(_)).future.map { _ =>
             tellUpdated(updated)
             updated
           }
@@ -461,11 +551,11 @@ class CachedStorageImpl[K, V <: Identifiable[K]](cache: LruCache[K, Option[V]],
           val next = updater(key, current)
           current match {
             case Some(c) if c != next =>
-              cache.put(key, Some(next))
+              cachePut(key, Some(next))
               toSave += next
               updated += (c -> next)
             case None =>
-              cache.put(key, Some(next))
+              cachePut(key, Some(next))
               toSave += next
               added += next
             case Some(_) => // unchanged, ignore
@@ -476,7 +566,7 @@ class CachedStorageImpl[K, V <: Identifiable[K]](cache: LruCache[K, Option[V]],
         val addedResult = added.result
         val updatedResult = updated.result
 
-        db(save(toSave.result)(_)).future.map { _ =>
+        db.grouped(save(toSave.result)(_)).future.map { _ =>
           if (addedResult.nonEmpty) tellAdded(addedResult)
           if (updatedResult.nonEmpty) tellUpdated(updatedResult)
           result
@@ -485,8 +575,8 @@ class CachedStorageImpl[K, V <: Identifiable[K]](cache: LruCache[K, Option[V]],
     }
 
   private def addInternal(key: K, value: V): Future[V] = {
-    cache.put(key, Some(value))
-    db(save(Seq(value))(_)).future.map { _ =>
+    cachePut(key, Some(value))
+    db.grouped(save(Seq(value))(_)).future.map { _ =>
       tellAdded(Seq(value))
       value
     }
@@ -496,8 +586,8 @@ class CachedStorageImpl[K, V <: Identifiable[K]](cache: LruCache[K, Option[V]],
     val updated = updater(current)
     if (updated == current) Future.successful(Some((current, updated)))
     else {
-      cache.put(key, Some(updated))
-      db(save(Seq(updated))(_)).future.map { _ =>
+      cachePut(key, Some(updated))
+      db.grouped(save(Seq(updated))(_)).future.map { _ =>
         tellUpdated(Seq((current, updated)))
         Some((current, updated))
       }
@@ -509,8 +599,8 @@ class CachedStorageImpl[K, V <: Identifiable[K]](cache: LruCache[K, Option[V]],
   def getRawCached(key: K): Option[V] = cache.get(key)
 
   def remove(key: K): Future[Unit] = Future {
-    cache.put(key, None)
-    db(delete(Seq(key))(_)).future.map { _ =>
+    cachePut(key, None)
+    db.grouped(delete(Seq(key))(_)).future.map { _ =>
       tellDeleted(Seq(key))
     }
   } .flatten
@@ -519,12 +609,12 @@ class CachedStorageImpl[K, V <: Identifiable[K]](cache: LruCache[K, Option[V]],
     if (keys.isEmpty) Future.successful(())
     else
       Future {
-        keys.foreach { key => cache.put(key, None) }
-        db(delete(keys)(_)).future.map { _ => tellDeleted(keys.toVector) }
+        keys.foreach { key => cachePut(key, None) }
+        db.grouped(delete(keys)(_)).future.map { _ => tellDeleted(keys.toVector) }
       } .flatten
 
   def cacheIfNotPresent(key: K, value: V): Unit = cachedOrElse(key, Future {
-    Option(cache.get(key)).getOrElse { returning(Some(value))(cache.put(key, _)) }
+    Option(cache.get(key)).getOrElse { returning(Some(value))(cachePut(key, _)) }
   })
 
   // signal with all data
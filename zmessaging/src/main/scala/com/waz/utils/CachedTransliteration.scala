@@ -0,0 +1,96 @@
+/*
+ * Wire
+ * Copyright (C) 2016 Wire Swiss GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.waz.utils
+
+import java.util
+
+/**
+  * Wraps an (ICU) transliteration, which is slow even for the strings it doesn't change, with:
+  *  - a bypass for pure-ASCII strings, given as `ascii`, which has to produce what the transliteration would,
+  *  - a bounded LRU memo of the results for the other strings, up to `maxCachedLength` characters long - those are the
+  *    names, which are transliterated over and over when searching; long texts are rarely transliterated twice.
+  */
+final class CachedTransliteration(delegate:        Transliteration,
+                                  ascii:           String => String,
+                                  cacheSize:       Int = CachedTransliteration.DefCacheSize,
+                                  maxCachedLength: Int = CachedTransliteration.DefMaxCachedLength) extends Transliteration {
+
+  private val cache = new util.LinkedHashMap[String, String](16, 0.75f, true) {
+    override def removeEldestEntry(eldest: util.Map.Entry[String, String]): Boolean = size > cacheSize
+  }
+
+  override def transliterate(s: String): String =
+    if (CachedTransliteration.isAscii(s)) ascii(s)
+    else if (s.length > maxCachedLength) delegate.transliterate(s)
+    else cache.synchronized(Option(cache.get(s))).getOrElse {
+      returning(delegate.transliterate(s))(res => cache.synchronized(cache.put(s, res)))
+    }
+
+  /**
+    * Transliterates the strings together, each distinct one once, e.g. for indexing a batch of messages off the hot path.
+    */
+  override def transliterateAll(ss: Seq[String]): Seq[String] = {
+    val results = ss.distinct.map(s => s -> transliterate(s)).toMap
+    ss.map(results)
+  }
+
+  def cached: Int = cache.synchronized(cache.size)
+}
+
+object CachedTransliteration {
+  val DefCacheSize = 1024
+  val DefMaxCachedLength = 128
+
+  def isAscii(s: String): Boolean = {
+    var i = 0
+    while (i < s.length) {
+      if (s.charAt(i) >= 0x80) return false
+      i += 1
+    }
+    true
+  }
+
+  /**
+    * What "Lower" does to an ASCII string.
+    */
+  def lowerAscii(s: String): String = {
+    val chars = s.toCharArray
+    var i = 0
+    while (i < chars.length) {
+      val c = chars(i)
+      if (c >= 'A' && c <= 'Z') chars(i) = (c + 32).toChar
+      i += 1
+    }
+    new String(chars)
+  }
+
+  /**
+    * What "Lower; [^\\ 0-9a-z] Remove" does to an ASCII string.
+    */
+  def lowerAlphanumericAscii(s: String): String = {
+    val sb = new java.lang.StringBuilder(s.length)
+    var i = 0
+    while (i < s.length) {
+      val c = s.charAt(i)
+      if (c >= 'A' && c <= 'Z') sb.append((c + 32).toChar)
+      else if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == ' ') sb.append(c)
+      i += 1
+    }
+    sb.toString
+  }
+}
@@ -23,12 +23,15 @@ import java.util.concurrent.atomic.AtomicBoolean
 import com.waz.log.BasicLogging.LogTag
 import com.waz.log.LogSE._
 import com.waz.model.Event
+import com.waz.service.ZMessaging.clock
 import com.wire.signals.{CancellableFuture, SerialDispatchQueue, Serialized}
+import org.threeten.bp.Instant
 
 import scala.collection.mutable
 import scala.concurrent.Future
 import scala.concurrent.duration._
 import scala.reflect.ClassTag
+import scala.util.control.NonFatal
 import scala.util.{Failure, Success, Try}
 
 trait EventProcessingQueue[A <: Event] {
@@ -65,27 +68,138 @@ object EventProcessingQueue {
 class SerialEventProcessingQueue[A <: Event](processor: Seq[A] => Future[Any], name: String = "")(implicit val evClassTag: ClassTag[A])
   extends SerialProcessingQueue[A](processor, name) with EventProcessingQueue[A]
 
+/**
+  * Processes the events of each key (e.g. conversation) in order, on a serial queue of its own, while the events of
+  * different keys are processed concurrently.
+  *
+  * The queue of a key is only kept while it's in use: once all the events and tasks given to it are done, it's idle,
+  * and it's evicted when it has been idle for `idleTimeout`, or straight away when there are more than
+  * `maxIdleQueues` idle queues. The evicted queues are pooled (up to `poolSize`) and handed over to new keys -
+  * a queue is never evicted while it's draining, so it's empty when it gets a new key.
+  */
 class GroupedEventProcessingQueue[A <: Event, Key]
-  (groupBy: A => Key, processor: (Key, Seq[A]) => Future[Any], name: String = "")(implicit val evClassTag: ClassTag[A])
+  (groupBy:       A => Key,
+   processor:     (Key, Seq[A]) => Future[Any],
+   name:          String = "",
+   idleTimeout:   FiniteDuration = GroupedEventProcessingQueue.DefIdleTimeout,
+   maxIdleQueues: Int = GroupedEventProcessingQueue.DefMaxIdleQueues,
+   poolSize:      Int = GroupedEventProcessingQueue.DefPoolSize)(implicit val evClassTag: ClassTag[A])
   extends EventProcessingQueue[A] {
+  import GroupedEventProcessingQueue._
 
   private implicit val dispatcher = SerialDispatchQueue(name = s"GroupedEventProcessingQueue[${evClassTag.runtimeClass.getSimpleName}]")
 
-  private val queues = new mutable.HashMap[Key, SerialProcessingQueue[A]]
+  // all the state below is only accessed on the dispatcher
+  private val lanes = new mutable.HashMap[Key, Lane]
+  private val idle  = new mutable.LinkedHashMap[Key, Lane] // the least recently used first
+  private var pool  = List.empty[Lane]
+  private var laneCount = 0
+  private var latency = Latency(0, 0, 0)
+  private var sweep = Option.empty[CancellableFuture[Unit]]
+
+  private final class Lane(id: Int) {
+    @volatile var key: Key = _
+    var pending  = 0 // the enqueue and post calls which aren't done yet
+    var events   = 0 // the events of those calls
+    var lastUsed = Instant.EPOCH
+    val queue = new SerialProcessingQueue[A](processor(key, _), s"${name}_$id")
+  }
+
+  private def acquire(key: Key, events: Int): Lane = {
+    val lane = lanes.getOrElseUpdate(key, returning(pool match {
+      case pooled :: rest =>
+        pool = rest
+        pooled
+      case Nil =>
+        laneCount += 1
+        new Lane(laneCount)
+    })(_.key = key))
+    idle.remove(key)
+    lane.pending += 1
+    lane.events += events
+    lane
+  }
 
-  private def queue(key: Key) =
-    queues.getOrElseUpdate(key, new SerialProcessingQueue[A](processor(key, _), s"${name}_$key"))
+  private def release(key: Key, lane: Lane, events: Int, start: Long): Unit = {
+    val now = System.nanoTime()
+    lane.pending -= 1
+    lane.events -= events
+    lane.lastUsed = clock.instant()
+    latency = latency.withBatch(now - start)
+    if (lane.pending == 0) {
+      idle.put(key, lane)
+      while (idle.size > maxIdleQueues) evict(idle.head._1)
+      scheduleSweep()
+    }
+  }
 
-  override def enqueue(event: A): Future[Any] = Future(queue(groupBy(event))).flatMap(_.enqueue(event))
+  private def evict(key: Key): Unit = idle.remove(key).foreach { lane =>
+    lanes.remove(key)
+    if (pool.size < poolSize) pool = lane :: pool
+  }
+
+  private def scheduleSweep(): Unit = if (sweep.isEmpty && idle.nonEmpty) {
+    sweep = Some(CancellableFuture.delayed(idleTimeout) {
+      sweep = None
+      evictIdleNow()
+      scheduleSweep()
+    })
+  }
+
+  private def evictIdleNow(): Unit = {
+    val idleSince = clock.instant() - idleTimeout
+    while (idle.headOption.exists(_._2.lastUsed <= idleSince)) evict(idle.head._1)
+  }
+
+  private def withLane[T](key: Key, events: Int)(f: SerialProcessingQueue[A] => Future[T]): Future[T] = {
+    val start = System.nanoTime()
+    Future(acquire(key, events)).flatMap { lane =>
+      val result = try f(lane.queue) catch { case NonFatal(e) => Future.failed[T](e) }
+      result.andThen { case _ => release(key, lane, events, start) } // so that the lane is released when the caller sees the result
+    }
+  }
+
+  override def enqueue(event: A): Future[Any] = withLane(groupBy(event), 1)(_.enqueue(event))
 
   override def enqueue(events: Seq[A]): Future[Vector[Any]] =
     Future.traverse(events.groupBy(groupBy).toVector) {
-      case (key, es) => Future(queue(key)).flatMap(_.enqueue(es))
+      case (key, es) => withLane(key, es.size)(_.enqueue(es))
     }
 
-  def post[T](k: Key)(task: => Future[T]): Future[T] = Future {
-    queue(k).post(task)
-  }.flatMap(identity)
+  def post[T](k: Key)(task: => Future[T]): Future[T] = withLane(k, 0)(_.post(task))
+
+  /**
+    * Evicts the queues which have been idle for `idleTimeout` now, instead of at the next sweep.
+    */
+  def evictIdle(): Future[Unit] = Future(evictIdleNow())
+
+  /**
+    * The number of queues in use, idle and pooled, the events waiting or being processed by key, and how long it
+    * took to process the enqueued events (and posted tasks), since the queue was created.
+    */
+  def stats: Future[Stats[Key]] = Future {
+    Stats(
+      activeQueues = lanes.size - idle.size,
+      idleQueues   = idle.size,
+      pooledQueues = pool.size,
+      queuedEvents = lanes.collect { case (key, lane) if lane.events > 0 => key -> lane.events }.toMap,
+      latency      = latency
+    )
+  }
+}
+
+object GroupedEventProcessingQueue {
+  val DefIdleTimeout: FiniteDuration = 30.seconds
+  val DefMaxIdleQueues = 64
+  val DefPoolSize = 16
+
+  final case class Latency(batches: Long, nanos: Long, maxNanos: Long) {
+    def meanNanos: Long = if (batches == 0) 0 else nanos / batches
+
+    def withBatch(nanos: Long): Latency = Latency(batches + 1, this.nanos + nanos, maxNanos max nanos)
+  }
+
+  final case class Stats[Key](activeQueues: Int, idleQueues: Int, pooledQueues: Int, queuedEvents: Map[Key, Int], latency: Latency)
 }
 
 class SerialProcessingQueue[A](processor: Seq[A] => Future[Any], name: String = "") {
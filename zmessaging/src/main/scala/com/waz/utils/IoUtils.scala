@@ -70,7 +70,15 @@ object IoUtils {
 
   def copy(in: File, out: File): Long = {
     out.getParentFile.mkdirs()
-    copy(new FileInputStream(in), new BufferedOutputStream(new FileOutputStream(out)))
+    withResources(new FileInputStream(in).getChannel, new FileOutputStream(out).getChannel) { (src, dst) =>
+      // lets the kernel copy the content, without moving it through a buffer on the heap
+      @tailrec
+      def transfer(position: Long): Long = {
+        val transferred = src.transferTo(position, src.size() - position, dst)
+        if (transferred > 0) transfer(position + transferred) else position
+      }
+      transfer(0L)
+    }
   }
 
   def copyAsync(in: => InputStream, out: File)(implicit ec: ExecutionContext): CancellableFuture[Long] =
@@ -0,0 +1,72 @@
+/*
+ * Wire
+ * Copyright (C) 2016 Wire Swiss GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.waz.utils
+
+import java.util.concurrent.ConcurrentHashMap
+
+import com.wire.signals.EventStream
+
+import scala.collection.mutable
+
+/**
+  * A registry of event streams by key, which routes each change of a storage to the subscribers of its key only.
+  * Filtering one storage-wide stream by key instead makes each subscriber go through every change batch, which adds
+  * up to subscribers × rows comparisons per batch, while here a batch costs one lookup per row.
+  *
+  * A stream is only registered while it has subscribers (i.e. while it's wired), so the keys nobody listens to
+  * any more don't stay in the registry.
+  */
+final class KeyedEventStreams[K, E] {
+
+  private val streams = new ConcurrentHashMap[K, Set[KeyStream]]()
+
+  private final class KeyStream(key: K) extends EventStream[E] {
+    override protected def onWire(): Unit = register(key, this)
+    override protected def onUnwire(): Unit = unregister(key, this)
+
+    def dispatch(event: E): Unit = publish(event)
+  }
+
+  def apply(key: K): EventStream[E] = new KeyStream(key)
+
+  def subscribedKeys: Int = streams.size
+
+  def publish(key: K, event: E): Unit = Option(streams.get(key)).foreach(_.foreach(_.dispatch(event)))
+
+  /**
+    * Publishes one event for each subscribed key of the items, made of the items of that key, in their order.
+    */
+  def publishAll[A](items: Iterable[A])(key: A => K)(event: Seq[A] => E): Unit =
+    if (!streams.isEmpty) {
+      val byKey = new mutable.LinkedHashMap[K, Vector[A]]
+      items.foreach { item =>
+        val k = key(item)
+        if (streams.containsKey(k)) byKey.put(k, byKey.getOrElse(k, Vector.empty) :+ item)
+      }
+      byKey.foreach { case (k, as) => publish(k, event(as)) }
+    }
+
+  private def register(key: K, stream: KeyStream): Unit = synchronized {
+    streams.put(key, Option(streams.get(key)).getOrElse(Set.empty[KeyStream]) + stream)
+  }
+
+  private def unregister(key: K, stream: KeyStream): Unit = synchronized {
+    val rest = Option(streams.get(key)).getOrElse(Set.empty[KeyStream]) - stream
+    if (rest.isEmpty) streams.remove(key) else streams.put(key, rest)
+  }
+}
@@ -70,6 +70,10 @@ object Locales extends DerivedLogTag {
     if(utils.isTest) str
     else transliteration.transliterate(str).trim
 
+  def transliterateAll(strs: Seq[String]): Seq[String] =
+    if(utils.isTest) strs
+    else transliteration.transliterateAll(strs).map(_.trim)
+
   def indexing(locale: Locale = currentLocale): Indexing = FallbackIndexing.instance
 }
 
@@ -93,13 +97,23 @@ object AndroidLanguageTags {
 
 trait Transliteration {
   def transliterate(s: String): String
+  def transliterateAll(ss: Seq[String]): Seq[String] = ss.map(transliterate)
 }
 
 object Transliteration extends DerivedLogTag {
   private val id = "Any-Latin; Latin-ASCII; Lower; [^\\ 0-9a-z] Remove"
+  val LatinToLowerAsciiId = "Latin-ASCII; Lower"
+
+  // the transliterations with a known result for ASCII strings skip ICU for those, and memoize the others
+  private val asciiBypasses = Map[String, String => String](
+    id                  -> CachedTransliteration.lowerAlphanumericAscii,
+    LatinToLowerAsciiId -> CachedTransliteration.lowerAscii
+  )
+
   def chooseImplementation(id: String = id): Transliteration = {
     verbose(l"chooseImplementation: ${showString(id)}")
-    ICU4JTransliteration.create(id)
+    val icu = ICU4JTransliteration.create(id)
+    asciiBypasses.get(id).fold(icu)(new CachedTransliteration(icu, _))
   }
 }
 
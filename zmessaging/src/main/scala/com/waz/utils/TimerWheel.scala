@@ -0,0 +1,135 @@
+/*
+ * Wire
+ * Copyright (C) 2016 Wire Swiss GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.waz.utils
+
+import scala.collection.mutable
+
+/**
+  * A hierarchical timer wheel: schedules keys at deadlines (in millis), and gives the keys whose deadlines passed as
+  * time advances, with constant-time scheduling and without going through all the scheduled keys.
+  *
+  * Time goes in ticks of `tickMillis`. Each level has `wheelSize` slots, and each slot of a level spans a whole
+  * turn of the level below it. A key goes to the lowest level which reaches its deadline, and moves down to
+  * the lower levels as time reaches its slot, until it expires at the tick of its deadline (never before it).
+  * The deadlines beyond the top level wait in its last slot, and get placed again when it comes around.
+  *
+  * Not thread safe: the callers should use it on a serial dispatcher.
+  */
+final class TimerWheel[K](tickMillis:  Long = TimerWheel.DefTickMillis,
+                          wheelSize:   Int  = TimerWheel.DefWheelSize,
+                          levels:      Int  = TimerWheel.DefLevels,
+                          startMillis: Long = System.currentTimeMillis()) {
+
+  // the ticks spanned by a slot of each level
+  private val spans = Vector.iterate(1L, levels)(_ * wheelSize)
+  private val slots = Array.fill(levels, wheelSize)(mutable.HashMap.empty[K, Long])
+  // the current deadline tick of every scheduled key, the entries of the slots which don't match it are stale
+  private val deadlines = mutable.HashMap.empty[K, Long]
+  private val due = mutable.LinkedHashSet.empty[K]
+  private var current = startMillis / tickMillis
+
+  def size: Int = deadlines.size
+
+  def contains(key: K): Boolean = deadlines.contains(key)
+
+  /**
+    * Schedules the key at the deadline, replacing the deadline it had.
+    */
+  def schedule(key: K, deadlineMillis: Long): Unit = {
+    // rounded up, so that it doesn't expire before its deadline
+    val tick = (deadlineMillis + tickMillis - 1) / tickMillis
+    deadlines.put(key, tick) match {
+      case Some(`tick`) => // already there
+      case old =>
+        old.foreach(remove(key, _))
+        place(key, tick)
+    }
+  }
+
+  def cancel(key: K): Unit = deadlines.remove(key).foreach(remove(key, _))
+
+  /**
+    * Advances the time to `nowMillis`, and gives the keys whose deadlines passed, which are no longer scheduled.
+    */
+  def advance(nowMillis: Long): Vector[K] = {
+    val target = nowMillis / tickMillis
+    if (deadlines.isEmpty) current = math.max(current, target)
+    while (current < target) {
+      current += 1
+      (levels - 1 to 1 by -1).foreach { level =>
+        if (current % spans(level) == 0) {
+          val slot = slots(level)(index(current, level))
+          val entries = slot.toVector
+          slot.clear()
+          entries.foreach { case (k, tick) => if (deadlines.get(k).contains(tick)) place(k, tick) }
+        }
+      }
+      val slot = slots(0)(index(current, 0))
+      slot.foreach { case (k, tick) => if (deadlines.get(k).contains(tick)) due += k }
+      slot.clear()
+    }
+    returning(due.toVector) { expired =>
+      due.clear()
+      deadlines --= expired
+    }
+  }
+
+  /**
+    * The time at which `advance` should be called next: the deadline of the next keys to expire, or the time
+    * at which the next keys of the higher levels move down, if that comes first.
+    */
+  def nextAdvance: Option[Long] =
+    if (deadlines.isEmpty) None
+    else if (due.nonEmpty) Some(current * tickMillis)
+    else (0 until levels).iterator.flatMap { level =>
+      val span = spans(level)
+      (1 until wheelSize).iterator
+        .map(i => (current / span + i) * span)
+        .find(tick => slots(level)(index(tick, level)).nonEmpty)
+    }.reduceOption(_ min _).map(_ * tickMillis)
+
+  private def index(tick: Long, level: Int): Int = ((tick / spans(level)) % wheelSize).toInt
+
+  private def place(key: K, tick: Long): Unit =
+    if (tick <= current) due += key
+    else {
+      val level = (0 until levels).find(l => tick / spans(l) - current / spans(l) < wheelSize)
+      level match {
+        case Some(l) => slots(l)(index(tick, l)).put(key, tick)
+        case None    =>
+          // beyond the top level, waits in its last slot
+          val top = levels - 1
+          slots(top)(index((current / spans(top) + wheelSize - 1) * spans(top), top)).put(key, tick)
+      }
+    }
+
+  // the entries which aren't found here (beyond the top level) are dropped when their slot comes around
+  private def remove(key: K, tick: Long): Unit = {
+    due -= key
+    (0 until levels).foreach { level =>
+      val slot = slots(level)(index(tick, level))
+      if (slot.get(key).contains(tick)) slot.remove(key)
+    }
+  }
+}
+
+object TimerWheel {
+  val DefTickMillis = 100L
+  val DefWheelSize  = 64
+  val DefLevels     = 4
+}
@@ -30,6 +30,7 @@ trait Cache[K, V] {
   def get(key: K): V
   def remove(key: K): V
   def evictAll(): Unit
+  def snapshot(): java.util.Map[K, V]
 }
 
 class TrimmingLruCache[K, V](val context: Context, size: CacheSize) extends LruCache[K, V](size.bytes(context)) with AutoTrimming with Cache[K, V]
@@ -68,10 +69,12 @@ object TrimmingLruCache {
   }
 }
 
-trait AutoTrimming extends ComponentCallbacks2 with DerivedLogTag { self: LruCache[_, _] =>
+trait AutoTrimming extends ComponentCallbacks2 with DerivedLogTag {
   import com.waz.utils.AutoTrimming._
 
   def context: Context
+  def maxSize(): Int
+  def trimToSize(maxSize: Int): Unit
 
   override def onTrimMemory(level: Int): Unit =
     TrimFactors.collectFirst { case (l, factor) if l >= level =>
@@ -0,0 +1,153 @@
+/*
+ * Wire
+ * Copyright (C) 2016 Wire Swiss GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.waz.utils
+
+import android.content.Context
+import com.waz.utils.TrimmingLruCache.CacheSize
+import com.waz.utils.WeightedLruCache._
+
+import scala.annotation.tailrec
+
+/**
+  * An LRU cache bounded by the total weight of its entries, as given by `weigh`, rather than by their count.
+  *
+  * The cache is split into `stripes` segments, each with its own lock and an equal share of the maximum weight,
+  * so that concurrent readers and writers of different keys don't contend on a single monitor. The eviction order
+  * is therefore least-recently-used per segment, not across the whole cache.
+  *
+  * As with `LruCache`, null keys and values are not allowed, and an entry heavier than the share of its segment is
+  * evicted right away.
+  */
+class WeightedLruCache[K, V](val context: Context, size: CacheSize, stripes: Int = DefaultStripes)(weigh: (K, V) => Int)
+  extends Cache[K, V] with AutoTrimming {
+
+  private val segments = {
+    val count = Integer.highestOneBit(math.max(1, stripes))
+    val max = size.bytes(context)
+    Array.fill(count)(new Segment(max / count))
+  }
+
+  private def segmentFor(key: K): Segment = {
+    val h = key.hashCode
+    segments((h ^ (h >>> 16)) & (segments.length - 1))
+  }
+
+  override def get(key: K): V = segmentFor(key).get(key)
+
+  override def put(key: K, value: V): V = {
+    if (key == null || value == null) throw new NullPointerException("key == null || value == null")
+    segmentFor(key).put(key, value, weigh(key, value))
+  }
+
+  override def remove(key: K): V = segmentFor(key).remove(key)
+
+  override def evictAll(): Unit = trimToSize(-1)
+
+  override def snapshot(): java.util.Map[K, V] = {
+    val result = new java.util.LinkedHashMap[K, V]()
+    segments.foreach(_.copyTo(result))
+    result
+  }
+
+  /**
+    * The maximum total weight of the entries.
+    */
+  override def maxSize(): Int = segments.map(_.maxWeight).sum
+
+  /**
+    * The current total weight of the entries.
+    */
+  def totalWeight: Int = segments.map(_.weight).sum
+
+  override def trimToSize(maxSize: Int): Unit = {
+    val perSegment = if (maxSize < 0) -1 else maxSize / segments.length
+    segments.foreach(_.trimTo(perSegment))
+  }
+
+  private final class Segment(val maxWeight: Int) {
+    private val entries = new java.util.LinkedHashMap[K, Entry[V]](16, .75f, true)
+    private var currentWeight = 0
+
+    def weight: Int = synchronized(currentWeight)
+
+    def get(key: K): V = synchronized {
+      val entry = entries.get(key)
+      if (entry eq null) null.asInstanceOf[V] else entry.value
+    }
+
+    def put(key: K, value: V, weight: Int): V = synchronized {
+      val previous = entries.put(key, Entry(value, weight))
+      currentWeight += weight
+      if (previous ne null) currentWeight -= previous.weight
+      trimTo(maxWeight)
+      if (previous eq null) null.asInstanceOf[V] else previous.value
+    }
+
+    def remove(key: K): V = synchronized {
+      val previous = entries.remove(key)
+      if (previous eq null) null.asInstanceOf[V]
+      else {
+        currentWeight -= previous.weight
+        previous.value
+      }
+    }
+
+    def copyTo(map: java.util.Map[K, V]): Unit = synchronized {
+      val it = entries.entrySet().iterator()
+      while (it.hasNext) {
+        val e = it.next()
+        map.put(e.getKey, e.getValue.value)
+      }
+    }
+
+    def trimTo(max: Int): Unit = synchronized {
+      val it = entries.values().iterator()
+
+      @tailrec
+      def evict(): Unit =
+        if (currentWeight > max && it.hasNext) {
+          currentWeight -= it.next().weight
+          it.remove()
+          evict()
+        }
+
+      evict()
+    }
+  }
+}
+
+object WeightedLruCache {
+  val DefaultStripes = 8
+
+  private final case class Entry[V](value: V, weight: Int)
+
+  /**
+    * A rough size of the key, the entry and the map node which hold a value, so that small values weigh something.
+    */
+  val EmptyEntryWeight = 64
+
+  /**
+    * Weighs the entries of a `CachedStorageImpl` cache, where `None` marks a key known to be missing.
+    */
+  def optionWeigher[K, V](weigh: V => Int): (K, Option[V]) => Int = {
+    case (_, Some(v)) => weigh(v)
+    case (_, None)    => EmptyEntryWeight
+  }
+
+  def stringWeight(str: String): Int = 40 + 2 * str.length
+}
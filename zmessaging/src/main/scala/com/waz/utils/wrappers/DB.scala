@@ -59,6 +59,8 @@ trait DB extends Closeable {
 
   def rawQuery(sql: String): DBCursor
 
+  def rawQuery(sql: String, selectionArgs: Array[String]): DBCursor
+
   def delete(table: String, whereClause: String, whereArgs: Array[String]): Int
 
   def update(table: String, values: DBContentValues, whereClause: String, whereArgs: Array[String]): Int
@@ -162,6 +164,13 @@ class SQLiteDBWrapper(val db: SupportSQLiteDatabase) extends DB with DerivedLogT
       throw ex
     }
 
+  override def rawQuery(sql: String, selectionArgs: Array[String]): DBCursor =
+    try{ db.query(sql, selectionArgs.asInstanceOf[Array[AnyRef]]) }
+    catch { case ex: Throwable =>
+      error(l"Error in query $sql ", ex)
+      throw ex
+    }
+
   override def delete(table: String, whereClause: String, whereArgs: Array[String]): Int =
     try { db.delete(table, whereClause, whereArgs.asInstanceOf[Array[AnyRef]]) }
     catch { case ex: Throwable =>
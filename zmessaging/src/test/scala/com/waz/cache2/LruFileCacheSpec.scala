@@ -34,7 +34,7 @@ class LruFileCacheSpec extends ZIntegrationSpec {
 
   private def createLruFileCache(cacheDirectory: File = FilesystemUtils.createDirectoryForTest(),
                                  directorySizeThreshold: Long = 1024,
-                                 sizeCheckingInterval: FiniteDuration = 0.seconds): FileCache[String] = {
+                                 sizeCheckingInterval: FiniteDuration = 0.seconds): LruFileCache[String] = {
     val (dir, threshold, interval) = (cacheDirectory, directorySizeThreshold, sizeCheckingInterval)
     new LruFileCache[String] {
       override protected def cacheDirectory: File                 = dir
@@ -170,6 +170,63 @@ class LruFileCacheSpec extends ZIntegrationSpec {
       }
     }
 
+    scenario("Restoring the access order from the journal") {
+      val cacheDirectory = FilesystemUtils.createDirectoryForTest()
+      val contentLength  = 200
+      val keys           = (0 until 3).map(i => s"key$i")
+
+      val cache = createLruFileCache(cacheDirectory, directorySizeThreshold = contentLength * 3)
+      for {
+        _            <- Future.sequence(keys.map(key => cache.putBytes(key, TestData.bytes(contentLength))))
+        _            <- cache.findBytes(keys(0))
+        _            <- cache.findBytes(keys(2))
+        restarted    =  createLruFileCache(cacheDirectory, directorySizeThreshold = contentLength * 3)
+        _            <- restarted.putBytes("overflow", TestData.bytes(contentLength))
+        _            <- CancellableFuture.delay(1.second).future //make sure that cache service has enough time to finish cleanup
+        stats        <- restarted.stats
+      } yield {
+        new File(cacheDirectory, keys(1)).exists() shouldBe false
+        new File(cacheDirectory, keys(0)).exists() shouldBe true
+        new File(cacheDirectory, keys(2)).exists() shouldBe true
+        stats.files shouldBe 3
+        stats.bytes shouldBe contentLength * 3
+        stats.evictions shouldBe 1
+      }
+    }
+
+    scenario("Tracking files which are not in the journal") {
+      val cacheDirectory = FilesystemUtils.createDirectoryForTest()
+      IoUtils.copy(new ByteArrayInputStream(TestData.bytes(300)), new File(cacheDirectory, "untracked"))
+
+      val cache = createLruFileCache(cacheDirectory)
+      for {
+        _     <- cache.putBytes("key", TestData.bytes(200))
+        _     <- cache.remove("missing")
+        stats <- cache.stats
+      } yield {
+        stats.files shouldBe 2
+        stats.bytes shouldBe 500
+      }
+    }
+
+    scenario("Counting hits and misses") {
+      val cache = createLruFileCache()
+      for {
+        _     <- cache.putBytes("key", TestData.bytes(200))
+        _     <- cache.findBytes("key")
+        _     <- cache.findBytes("key")
+        _     <- cache.findBytes("missing")
+        _     <- cache.remove("key")
+        stats <- cache.stats
+      } yield {
+        stats.hits shouldBe 2
+        stats.misses shouldBe 1
+        stats.hitRate shouldBe 2.0 / 3
+        stats.files shouldBe 0
+        stats.bytes shouldBe 0
+      }
+    }
+
   }
 
 }
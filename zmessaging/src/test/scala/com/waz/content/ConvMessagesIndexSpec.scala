@@ -0,0 +1,78 @@
+/*
+ * Wire
+ * Copyright (C) 2016 Wire Swiss GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.waz.content
+
+import com.waz.content.ConvMessagesIndex.{IndexEntries, UnreadMessage}
+import com.waz.model.ConversationData.UnreadCount
+import com.waz.model._
+import com.waz.specs.AndroidFreeSpec
+
+import scala.concurrent.{Future, Promise}
+
+class ConvMessagesIndexSpec extends AndroidFreeSpec {
+
+  private val selfUserId = UserId()
+  private val convId     = ConvId()
+
+  private val source      = mock[ConvMessagesIndex.Source]
+  private val convs       = mock[ConversationStorage]
+  private val msgAndLikes = mock[MessageAndLikesStorage]
+
+  private val noEntries = IndexEntries(None, None, None, None, Map.empty, Vector.empty)
+
+  private def unread(msgs: Seq[MessageData]) =
+    msgs.map(m => m.id -> UnreadMessage(m.time, UnreadCount(1, 0, 0, 0, 0))).toMap
+
+  private def index(entries: IndexEntries) = {
+    (convs.get _).expects(convId).anyNumberOfTimes().returning(Future.successful(Some(ConversationData(convId, RConvId()))))
+    (convs.update _).expects(convId, *).anyNumberOfTimes().returning(Future.successful(None))
+    (source.loadIndexEntries _).expects(convId, RemoteInstant.Epoch, Set.empty[MessageId]).once().returning(Future.successful(entries))
+    new ConvMessagesIndex(convId, source, selfUserId, null, convs, msgAndLikes, null)
+  }
+
+  scenario("Start from the entries loaded for the conversation") {
+    val Seq(first, last) = Seq.fill(2)(MessageData(convId = convId))
+    (source.unreadMessages _).expects(convId, RemoteInstant.Epoch, Vector(first, last)).once().returning(Future.successful(unread(Seq(first, last))))
+
+    val idx = index(noEntries.copy(first = Some(first), last = Some(last), unread = Vector(first, last)))
+
+    result(idx.getLastMessage) shouldEqual Some(last)
+    result(idx.firstMessageId) shouldEqual Some(first.id)
+    result(idx.signals.unreadCount.head) shouldEqual UnreadCount(2, 0, 0, 0, 0)
+  }
+
+  scenario("Apply a delete after the add which came before it") {
+    val msg = MessageData(convId = convId)
+    val unreadOfAdded = Promise[Map[MessageId, UnreadMessage]]()
+    (source.unreadMessages _).expects(convId, *, *).anyNumberOfTimes().onCall { (_, _, msgs: Seq[MessageData]) =>
+      if (msgs.isEmpty) Future.successful(Map.empty[MessageId, UnreadMessage]) else unreadOfAdded.future
+    }
+    // the deleted message was the last one, the index loads the new last messages
+    (source.loadIndexEntries _).expects(convId, RemoteInstant.Max, Set.empty[MessageId]).anyNumberOfTimes().returning(Future.successful(noEntries))
+
+    val idx = index(noEntries)
+    val added = idx.add(Seq(msg))
+    val deleted = idx.delete(msg)
+    unreadOfAdded.success(unread(Seq(msg)))
+    result(added)
+    result(deleted)
+
+    result(idx.signals.unreadCount.head) shouldEqual UnreadCount(0, 0, 0, 0, 0)
+    result(idx.getLastMessage) shouldEqual None
+  }
+}
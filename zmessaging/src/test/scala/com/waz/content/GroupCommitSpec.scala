@@ -0,0 +1,100 @@
+/*
+ * Wire
+ * Copyright (C) 2016 Wire Swiss GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.waz.content
+
+import java.util.concurrent.atomic.AtomicInteger
+
+import com.waz.specs.AndroidFreeSpec
+import com.waz.utils.wrappers.DB
+import com.wire.signals.{DispatchQueue, SerialDispatchQueue}
+
+import scala.concurrent.Future
+import scala.concurrent.duration._
+import scala.util.Try
+
+class GroupCommitSpec extends AndroidFreeSpec {
+
+  private implicit val dispatcher: DispatchQueue = SerialDispatchQueue(name = "GroupCommitSpec")
+
+  private val db = mock[DB]
+  private val commits = new AtomicInteger(0)
+  private val rollbacks = new AtomicInteger(0)
+
+  private var inTransaction = false
+  private var successful = false
+
+  (db.inTransaction _).expects().anyNumberOfTimes().onCall(() => inTransaction)
+  (db.beginTransactionNonExclusive _).expects().anyNumberOfTimes().onCall { () =>
+    inTransaction = true
+    successful = false
+  }
+  (db.setTransactionSuccessful _).expects().anyNumberOfTimes().onCall(() => successful = true)
+  (db.endTransaction _).expects().anyNumberOfTimes().onCall { () =>
+    if (successful) commits.incrementAndGet() else rollbacks.incrementAndGet()
+    inTransaction = false
+  }
+
+  private def groupCommit(window: FiniteDuration = 50.millis, maxWrites: Int = 100) =
+    new GroupCommit(GroupCommit.Config(window, maxWrites), () => db)
+
+  scenario("Commit the writes requested within the window in one transaction") {
+    val group = groupCommit()
+    val results = (1 to 10).map(i => group.write(_ => i).future)
+
+    result(Future.sequence(results)) shouldEqual (1 to 10)
+    commits.get shouldEqual 1
+    group.stats.batches shouldEqual 1
+    group.stats.maxBatchSize shouldEqual 10
+  }
+
+  scenario("Commit without waiting for the window when the maximum count is reached") {
+    val group = groupCommit(window = 1.minute, maxWrites = 5)
+    val results = (1 to 5).map(i => group.write(_ => i).future)
+
+    result(Future.sequence(results)) shouldEqual (1 to 5)
+    commits.get shouldEqual 1
+  }
+
+  scenario("Fail only the failing write and commit the others separately") {
+    val group = groupCommit()
+    val runs = new AtomicInteger(0)
+    val failure = new IllegalStateException("write failed")
+
+    val first = group.write { _ => runs.incrementAndGet(); 1 }.future
+    val failing = group.write[Int](_ => throw failure).future
+    val third = group.write { _ => runs.incrementAndGet(); 3 }.future
+
+    result(first) shouldEqual 1
+    result(third) shouldEqual 3
+    Try(result(failing)).failed.get shouldEqual failure
+
+    rollbacks.get shouldEqual 1
+    commits.get shouldEqual 2
+    runs.get shouldEqual 3 // the first write ran again after the rollback
+    group.stats.fallbacks shouldEqual 1
+  }
+
+  scenario("Commit the pending writes on demand") {
+    val group = groupCommit(window = 1.minute)
+    val results = (1 to 3).map(i => group.write(_ => i).future)
+
+    result(dispatcher(group.commitPending()).future)
+    results.forall(_.isCompleted) shouldEqual true
+    commits.get shouldEqual 1
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Wire
+ * Copyright (C) 2016 Wire Swiss GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.waz.content
+
+import com.waz.specs.AndroidFreeSpec
+import com.wire.signals.{DispatchQueue, SerialDispatchQueue}
+
+import scala.concurrent.Future
+import scala.concurrent.duration._
+import scala.util.Try
+
+class WriteBehindValuesSpec extends AndroidFreeSpec {
+
+  private implicit val dispatcher: DispatchQueue = SerialDispatchQueue(name = "WriteBehindValuesSpec")
+
+  @volatile private var persisted = Map.empty[String, String]
+  @volatile private var batches = Vector.empty[Map[String, String]]
+  @volatile private var failures = 0
+
+  private def writeBehind(initial: Map[String, String] = Map.empty, window: FiniteDuration = 50.millis) = {
+    persisted = initial
+    batches = Vector.empty
+    failures = 0
+    new WriteBehindValues(window, () => Future.successful(initial), { batch =>
+      if (failures > 0) {
+        failures -= 1
+        Future.failed(new IllegalStateException("write failed"))
+      } else {
+        batches :+= batch
+        persisted ++= batch
+        Future.successful(())
+      }
+    })
+  }
+
+  scenario("Read the loaded values and the changed ones before they are persisted") {
+    val values = writeBehind(Map("a" -> "1"), window = 1.minute)
+    values.set("b", "2")
+
+    result(values.get("a")) shouldEqual Some("1")
+    result(values.get("b")) shouldEqual Some("2")
+    persisted.get("b") shouldEqual None
+  }
+
+  scenario("Persist only the last of several changes of a key, in one batch") {
+    val values = writeBehind()
+    val results = (1 to 10).map(i => values.set("a", i.toString)) :+ values.set("b", "x")
+
+    result(Future.sequence(results))
+    result(values.flush())
+    batches shouldEqual Vector(Map("a" -> "10", "b" -> "x"))
+  }
+
+  scenario("Don't write a value which didn't change") {
+    val values = writeBehind(Map("a" -> "1"))
+
+    result(values.set("a", "1"))
+    result(values.flush())
+    batches shouldEqual Vector.empty
+  }
+
+  scenario("Update a value atomically") {
+    val values = writeBehind(Map("counter" -> "0"))
+    val increments = (1 to 100).map { _ =>
+      Future(()).flatMap(_ => values.update("counter")(cur => ((), (cur.fold(0)(_.toInt) + 1).toString)))
+    }
+
+    result(Future.sequence(increments))
+    result(values.get("counter")) shouldEqual Some("100")
+    result(values.flush())
+    persisted("counter") shouldEqual "100"
+  }
+
+  scenario("Complete a change once the value is changed in memory, before it is persisted") {
+    val values = writeBehind(window = 1.minute)
+
+    result(values.set("a", "1"))
+    persisted.get("a") shouldEqual None
+    result(values.get("a")) shouldEqual Some("1")
+  }
+
+  scenario("Persist the pending values on flush") {
+    val values = writeBehind(window = 1.minute)
+    values.set("a", "1")
+    result(values.get("a")) shouldEqual Some("1")
+
+    result(values.flush())
+    persisted("a") shouldEqual "1"
+  }
+
+  scenario("Write the values again with the next batch if persisting them fails") {
+    val values = writeBehind(window = 1.minute)
+    failures = 1
+    result(values.set("a", "1"))
+
+    Try(result(values.flush())).isFailure shouldEqual true
+
+    result(values.set("b", "2"))
+    result(values.flush())
+    persisted shouldEqual Map("a" -> "1", "b" -> "2")
+  }
+
+  scenario("Give up writing a value after the maximum number of attempts") {
+    val values = writeBehind(window = 1.minute)
+    failures = WriteBehindValues.DefaultMaxAttempts
+    result(values.set("a", "1"))
+
+    (1 to WriteBehindValues.DefaultMaxAttempts).foreach { _ =>
+      Try(result(values.flush())).isFailure shouldEqual true
+    }
+
+    Try(result(values.flush())) // nothing is left to persist, it would succeed now
+    batches shouldEqual Vector.empty
+    persisted shouldEqual Map.empty
+    result(values.get("a")) shouldEqual Some("1")
+  }
+}
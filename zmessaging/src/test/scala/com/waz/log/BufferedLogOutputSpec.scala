@@ -0,0 +1,117 @@
+/*
+ * Wire
+ * Copyright (C) 2016 Wire Swiss GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.waz.log
+
+import java.io.{File, PrintWriter, StringWriter}
+import java.util.concurrent.CountDownLatch
+
+import com.waz.log.BasicLogging.LogTag
+import com.waz.log.InternalLog.LogLevel
+import com.waz.specs.AndroidFreeSpec
+import com.waz.utils.returning
+
+class BufferedLogOutputSpec extends AndroidFreeSpec {
+
+  private val tag = LogTag("BufferedLogOutputSpec")
+  private val dir = returning(new File(System.getProperty("java.io.tmpdir"), s"logs${System.nanoTime()}"))(_.mkdirs())
+
+  override protected def afterEach(): Unit = {
+    Option(dir.listFiles()).foreach(_.foreach(_.delete()))
+    dir.delete()
+    super.afterEach()
+  }
+
+  private def exported(output: BufferedLogOutput) = {
+    val str = new StringWriter()
+    output.writeTo(new PrintWriter(str, true))
+    str.toString.split("\n").toVector.filter(_.nonEmpty)
+  }
+
+  feature("Ring buffer") {
+
+    scenario("Take the elements of many producers in the order of each producer") {
+      val buffer = new LogRingBuffer[(Int, Int)](1 << 16)
+      val start = new CountDownLatch(1)
+      val producers = (0 until 4).map { p =>
+        new Thread(new Runnable {
+          override def run(): Unit = {
+            start.await()
+            (0 until 10000).foreach(i => buffer.offer((p, i)))
+          }
+        })
+      }
+      producers.foreach(_.start())
+      start.countDown()
+      producers.foreach(_.join())
+
+      val taken = Iterator.continually(buffer.poll()).takeWhile(_ != null).toVector
+      taken.size shouldEqual 40000
+      taken.groupBy(_._1).values.foreach(_.map(_._2) shouldEqual (0 until 10000))
+      buffer.dropped shouldEqual 0
+    }
+
+    scenario("Drop the oldest elements when full") {
+      val buffer = new LogRingBuffer[Integer](4)
+      (1 to 6).foreach(i => buffer.offer(i))
+
+      buffer.dropped shouldEqual 2
+      Iterator.continually(buffer.poll()).takeWhile(_ != null).toList shouldEqual List(3, 4, 5, 6)
+    }
+  }
+
+  feature("Writing") {
+
+    scenario("Write the logs to the file in the text format") {
+      val output = new BufferedLogOutput(dir.getAbsolutePath)
+      output.log("first", LogLevel.Info, tag)
+      output.log("second", LogLevel.Debug, tag, Some(new IllegalStateException("failed")))
+
+      output.flushAndWait() shouldEqual true
+      val lines = exported(output)
+      lines.head should endWith("/I/BufferedLogOutputSpec: first")
+      lines(1) should endWith("/D/BufferedLogOutputSpec: second")
+      lines(2) should include("IllegalStateException: failed")
+      output.close()
+    }
+
+    scenario("Decode the binary format when exporting the logs") {
+      val text = new BufferedLogOutput(dir.getAbsolutePath)
+      val binary = new BufferedLogOutput(dir.getAbsolutePath, binary = true)
+      Seq(text, binary).foreach { output =>
+        (1 to 100).foreach(i => output.log(s"message $i ünïcode", LogLevel.Verbose, tag))
+      }
+
+      exported(binary).map(_.dropWhile(_ != '/')) shouldEqual exported(text).map(_.dropWhile(_ != '/'))
+      Seq(text, binary).foreach(_.close())
+    }
+
+    scenario("Rotate the files when they get too big") {
+      val output = new BufferedLogOutput(dir.getAbsolutePath, maxBufferSize = 128, maxFileSize = 1024, maxRollFiles = 3)
+      (1 to 200).foreach { i =>
+        output.log(s"message $i", LogLevel.Info, tag)
+        if (i % 10 == 0) output.flushAndWait()
+      }
+      output.flushAndWait()
+
+      output.getPaths.size shouldEqual 3
+      output.getPaths.foreach(path => new File(path).length() should be <= 1024L + 128L)
+      exported(output).last should endWith("message 200")
+      output.close()
+    }
+  }
+}
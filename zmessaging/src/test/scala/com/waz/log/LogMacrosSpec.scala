@@ -0,0 +1,94 @@
+/*
+ * Wire
+ * Copyright (C) 2016 Wire Swiss GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.waz.log
+
+import com.waz.SystemLogOutput
+import com.waz.log.BasicLogging.LogTag
+import com.waz.log.BasicLogging.LogTag.DerivedLogTag
+import com.waz.log.InternalLog.LogLevel
+import com.waz.log.LogSE._
+import com.waz.specs.AndroidFreeSpec
+
+class LogMacrosSpec extends AndroidFreeSpec with DerivedLogTag {
+
+  private class CollectingOutput(override val level: LogLevel) extends LogOutput {
+    override val id: String = "collecting"
+    override val showSafeOnly: Boolean = true
+    @volatile var messages = Vector.empty[String]
+
+    override def log(str: String, level: LogLevel, tag: LogTag, ex: Option[Throwable]): Unit = messages :+= str
+  }
+
+  private def withOutput(level: LogLevel)(body: CollectingOutput => Unit): Unit = {
+    val output = new CollectingOutput(level)
+    InternalLog.reset()
+    InternalLog.add(output)
+    try body(output)
+    finally {
+      InternalLog.reset()
+      InternalLog.add(new SystemLogOutput)
+    }
+  }
+
+  scenario("Write the logs of the enabled levels") {
+    withOutput(LogLevel.Info) { output =>
+      LogSE.info(l"info ${1}")
+      warn(l"warn ${2}", new IllegalStateException)
+      debug(l"debug ${3}")
+
+      output.messages shouldEqual Vector("info 1", "warn 2")
+    }
+  }
+
+  scenario("Don't build the log of a disabled level") {
+    withOutput(LogLevel.Info) { output =>
+      var built = 0
+      def arg() = { built += 1; built }
+
+      verbose(l"verbose ${arg()}")
+      debug(l"debug ${arg()}")
+      LogSE.info(l"info ${arg()}")
+
+      built shouldEqual 1
+      output.messages shouldEqual Vector("info 1")
+    }
+  }
+
+  // a benchmark, run by hand: it only prints the timings
+  ignore("Compare the cost of a disabled log call with building the log first") {
+    withOutput(LogLevel.Info) { _ =>
+      val events = (1 to 10).toVector
+      val calls = 1000000
+
+      // what `verbose` did before: build the log, then let InternalLog drop it
+      def buildingTheLog(): Unit = InternalLog.log(l"processing events: $events, first: ${events.head}", LogLevel.Verbose, logTag)
+      def levelGated(): Unit = verbose(l"processing events: $events, first: ${events.head}")
+
+      def nanosPerCall(call: () => Unit): Double = {
+        (1 to calls).foreach(_ => call()) // warm up
+        val start = System.nanoTime()
+        (1 to calls).foreach(_ => call())
+        (System.nanoTime() - start).toDouble / calls
+      }
+
+      val before = nanosPerCall(buildingTheLog)
+      val after = nanosPerCall(levelGated)
+      println(f"disabled verbose call, building the log: $before%.1f ns, level-gated: $after%.1f ns")
+    }
+  }
+}
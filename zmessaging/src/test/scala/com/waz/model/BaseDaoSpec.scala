@@ -19,7 +19,7 @@ package com.waz.model
 
 import java.util.UUID.randomUUID
 
-import com.waz.db.{BaseDao, Dao, DaoDB, Table}
+import com.waz.db.{BaseDao, Dao, Dao2, DaoDB, Table}
 import com.waz.utils.wrappers.{DB, DBCursor}
 import org.junit.runner.RunWith
 import org.robolectric.RuntimeEnvironment
@@ -41,10 +41,23 @@ class BaseDaoSpec extends FeatureSpec with Matchers with RobolectricTests {
     override def apply(implicit c: DBCursor): TestModel = TestModel(Id)
   }
 
+  case class TestModel2(id: Uid, index: Int)
+
+  object TestDao2 extends Dao2[TestModel2, Uid, Int] {
+    import com.waz.db.Col._
+    val Id = id[Uid]('_id).apply(_.id)
+    val Index = int('index)(_.index)
+    override val idCol = (Id, Index)
+    override val table: Table[TestModel2] = Table("TestTable2", Id, Index)
+    override def apply(implicit c: DBCursor): TestModel2 = TestModel2(Id, Index)
+  }
+
   def dummyData(size: Int): Seq[TestModel] = (0 until size).map(_ => TestModel(Uid()))
 
+  def dummyData2(size: Int): Seq[TestModel2] = (0 until size).map(i => TestModel2(Uid(), i))
+
   def withDB(f: DB => Unit): Unit = {
-    val dbHelper = new DaoDB(RuntimeEnvironment.application, s"testDB-$randomUUID", 1, List(TestDao), List.empty)
+    val dbHelper = new DaoDB(RuntimeEnvironment.application, s"testDB-$randomUUID", 1, List(TestDao, TestDao2), List.empty)
     try f(dbHelper.getWritableDatabase) finally dbHelper.close()
   }
 
@@ -80,4 +93,48 @@ class BaseDaoSpec extends FeatureSpec with Matchers with RobolectricTests {
     // Then
     result shouldEqual ids
   })
+
+  scenario("getAll with single column ids queries in batches") (withDB { implicit db =>
+    // Given
+    val data = dummyData(1200)
+    TestDao insertOrReplace data
+
+    // When
+    val result = TestDao.getAll(data.take(1100).map(_.id).toSet)
+
+    // Then
+    result.toSet shouldEqual data.take(1100).toSet
+  })
+
+  scenario("getAll with composite ids returns only the requested rows") (withDB { implicit db =>
+    // Given
+    val data = dummyData2(1200)
+    TestDao2 insertOrReplace data
+    val requested = data.filter(_.index % 2 == 0)
+    val notExisting = Set((Uid(), 0), (requested.head.id, 1))
+
+    // When
+    val result = TestDao2.getAll(requested.map(r => (r.id, r.index)).toSet ++ notExisting)
+
+    // Then
+    result.toSet shouldEqual requested.toSet
+  })
+
+  scenario("getAll with composite ids returns the same rows as loading them one by one") (withDB { implicit db =>
+    // Given
+    val data = dummyData2(1000)
+    TestDao2 insertOrReplace data
+
+    Seq(10, 100, 1000).foreach { n =>
+      val ids = data.take(n).map(r => (r.id, r.index)).toSet
+
+      // When
+      val oneByOne = ids.toVector.flatMap(TestDao2.getById(_))
+      val batched  = TestDao2.getAll(ids)
+
+      // Then
+      batched.size shouldEqual n
+      batched.toSet shouldEqual oneByOne.toSet
+    }
+  })
 }
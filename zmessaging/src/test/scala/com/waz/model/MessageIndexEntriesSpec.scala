@@ -0,0 +1,132 @@
+/*
+ * Wire
+ * Copyright (C) 2016 Wire Swiss GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.waz.model
+
+import java.util.UUID.randomUUID
+
+import com.waz.api.Message
+import com.waz.content.ConvMessagesIndex.EntriesLoader
+import com.waz.content.Database
+import com.waz.db.{BaseDaoDB, DaoDB}
+import com.waz.model.MessageData.MessageDataDao
+import com.waz.model.MessageData.MessageDataDao.IndexEntry
+import com.waz.utils.wrappers.DB
+import com.wire.signals.{DispatchQueue, SerialDispatchQueue}
+import org.junit.runner.RunWith
+import org.robolectric.RuntimeEnvironment
+import org.robolectric.annotation.Config
+import org.scalatest.junit.JUnitRunner
+import org.scalatest.{FeatureSpec, Matchers, RobolectricTests}
+
+import scala.concurrent.Await
+import scala.concurrent.duration._
+
+@RunWith(classOf[JUnitRunner])
+@Config(sdk=Array(21))
+class MessageIndexEntriesSpec extends FeatureSpec with Matchers with RobolectricTests {
+
+  private val selfUserId = UserId()
+
+  def withDB(f: DB => Unit): Unit = withDatabase(database => f(database.dbHelper.getWritableDatabase))
+
+  def withDatabase(f: Database => Unit): Unit = {
+    val helper = new DaoDB(RuntimeEnvironment.application, s"testDB-$randomUUID", 1, List(MessageDataDao), List.empty)
+    val database = new Database {
+      override implicit val dispatcher: DispatchQueue = SerialDispatchQueue(name = "MessageIndexEntriesSpec")
+      override val dbHelper: BaseDaoDB = helper
+    }
+    try f(database) finally helper.close()
+  }
+
+  private def msg(conv: ConvId, time: Long, user: UserId = UserId(), state: Message.Status = Message.Status.SENT) =
+    MessageData(convId = conv, userId = user, state = state, time = RemoteInstant.ofEpochMilli(time))
+
+  scenario("Load the index entries of several conversations in one query") (withDB { implicit db =>
+    // Given
+    val (conv1, conv2, other) = (ConvId(), ConvId(), ConvId())
+    val first1    = msg(conv1, 100)
+    val fromSelf1 = msg(conv1, 200, user = selfUserId)
+    val sent1     = msg(conv1, 300)
+    val last1     = msg(conv1, 400, state = Message.Status.PENDING)
+    val only2     = msg(conv2, 100)
+    val missed    = msg(conv2, 50).copy(msgType = Message.Type.MISSED_CALL)
+    MessageDataDao.insertOrReplace(Seq(first1, fromSelf1, sent1, last1, only2, missed, msg(other, 500)))
+
+    // When
+    val entries = MessageDataDao.findIndexEntries(
+      Map(conv1 -> RemoteInstant.ofEpochMilli(300), conv2 -> RemoteInstant.ofEpochMilli(1000)),
+      Set(missed.id),
+      selfUserId
+    ).groupBy(_._1).mapValues(_.map(_._2.id).toSet)
+
+    // Then
+    entries(IndexEntry.First) shouldEqual Set(first1.id, missed.id)
+    entries(IndexEntry.Last) shouldEqual Set(last1.id, only2.id)
+    entries(IndexEntry.LastSent) shouldEqual Set(sent1.id, only2.id)
+    entries(IndexEntry.FromSelf) shouldEqual Set(fromSelf1.id)
+    entries(IndexEntry.Unread) shouldEqual Set(sent1.id, last1.id)
+    entries(IndexEntry.ById) shouldEqual Set(missed.id)
+  })
+
+  scenario("Load no entries for no conversations") (withDB { implicit db =>
+    MessageDataDao.insertOrReplace(Seq(msg(ConvId(), 100)))
+    MessageDataDao.findIndexEntries(Map.empty, Set.empty, selfUserId) shouldBe empty
+  })
+
+  scenario("Load no messages since the time for a conversation asked for since RemoteInstant.Max") (withDB { implicit db =>
+    // Given
+    val (conv1, conv2) = (ConvId(), ConvId())
+    val last1   = msg(conv1, 200)
+    val unread2 = msg(conv2, 300)
+    MessageDataDao.insertOrReplace(Seq(msg(conv1, 100), last1, msg(conv2, 100), unread2))
+
+    // When
+    val entries = MessageDataDao.findIndexEntries(
+      Map(conv1 -> RemoteInstant.Max, conv2 -> RemoteInstant.ofEpochMilli(200)),
+      Set.empty,
+      selfUserId
+    ).groupBy(_._1).mapValues(_.map(_._2.id).toSet)
+
+    // Then
+    entries(IndexEntry.Last) shouldEqual Set(last1.id, unread2.id)
+    entries(IndexEntry.Unread) shouldEqual Set(unread2.id)
+  })
+
+  scenario("Reload the last messages of an index which removed its last one, batched with another conversation") (withDatabase { database =>
+    // Given
+    implicit val db: DB = database.dbHelper.getWritableDatabase
+    val (conv1, conv2) = (ConvId(), ConvId())
+    val last1   = msg(conv1, 200, user = selfUserId)
+    val unread2 = msg(conv2, 300)
+    MessageDataDao.insertOrReplace(Seq(msg(conv1, 100), last1, msg(conv2, 100), unread2))
+    val loader = new EntriesLoader(database, selfUserId)
+
+    // When
+    // this is what `ConvMessagesIndex.removeLast` asks for
+    val removedLast = loader.load(conv1, RemoteInstant.Max, Set.empty)
+    val opened      = loader.load(conv2, RemoteInstant.ofEpochMilli(200), Set.empty)
+
+    // Then
+    val entries1 = Await.result(removedLast, 5.seconds)
+    entries1.last.map(_.id) shouldEqual Some(last1.id)
+    entries1.lastSent.map(_.id) shouldEqual Some(last1.id)
+    entries1.lastFromSelf.map(_.id) shouldEqual Some(last1.id)
+    entries1.unread shouldBe empty
+    Await.result(opened, 5.seconds).unread.map(_.id) shouldEqual Vector(unread2.id)
+  })
+}
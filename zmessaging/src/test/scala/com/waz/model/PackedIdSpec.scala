@@ -0,0 +1,98 @@
+/*
+ * Wire
+ * Copyright (C) 2016 Wire Swiss GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.waz.model
+
+import java.util.UUID
+
+import com.waz.specs.AndroidFreeSpec
+
+class PackedIdSpec extends AndroidFreeSpec {
+
+  feature("Packing") {
+
+    scenario("Give the same id back") {
+      (1 to 1000).foreach { _ =>
+        val id = UserId()
+        PackedId(id).map(_.as[UserId]) shouldEqual Some(id)
+      }
+    }
+
+    scenario("Pack the canonical UUID form only") {
+      val uuid = UUID.randomUUID()
+      PackedId.parse(uuid.toString) shouldEqual Some(PackedId(uuid.getMostSignificantBits, uuid.getLeastSignificantBits))
+      PackedId.parse(uuid.toString.toUpperCase) shouldEqual None
+      PackedId.parse(uuid.toString.replace("-", "")) shouldEqual None
+      PackedId.parse("1a2b3c4d5e6f7a8b") shouldEqual None
+      PackedId.parse("") shouldEqual None
+      PackedId.parse("g" + uuid.toString.drop(1)) shouldEqual None
+    }
+
+    scenario("Order the packed ids like their strings") {
+      val ids = Vector.fill(1000)(UserId())
+      ids.flatMap(PackedId(_)).sorted.map(_.as[UserId]) shouldEqual ids.sortBy(_.str)
+    }
+
+    scenario("Give the same member key back") {
+      val key = (UserId(), ConvId())
+      PackedMemberKey(key).map(_.toKey) shouldEqual Some(key)
+      PackedMemberKey((UserId("not-a-uuid"), ConvId())) shouldEqual None
+    }
+  }
+
+  // a benchmark, run by hand: it only prints the heap and the timings
+  ignore("Compare the heap and the lookups of sets of string and packed keys") {
+    def usedHeap(): Long = {
+      (1 to 3).foreach(_ => System.gc())
+      val rt = Runtime.getRuntime
+      rt.totalMemory() - rt.freeMemory()
+    }
+
+    def nanosPerLookup[A](set: Set[A], queries: Vector[A]): Double = {
+      (1 to 3).foreach(_ => queries.foreach(set.contains)) // warm up
+      val start = System.nanoTime()
+      queries.foreach(set.contains)
+      (System.nanoTime() - start).toDouble / queries.size
+    }
+
+    // `keys` creates the string keys, `copy` another instance of a key, as when it's decoded from an event
+    def compare[K, P](name: String, size: Int)(keys: => K, copy: K => K, pack: K => P, copyPacked: P => P): Unit = {
+      val before = usedHeap()
+      val strings = Vector.fill(size)(keys)
+      val afterStrings = usedHeap()
+      val packed = strings.map(pack)
+      val afterPacked = usedHeap()
+
+      val stringLookup = nanosPerLookup(strings.toSet, strings.map(copy))
+      val packedLookup = nanosPerLookup(packed.toSet, packed.map(copyPacked))
+      println(f"$size%d $name: heap per key, string: ${(afterStrings - before) / size}%d B, packed: ${(afterPacked - afterStrings) / size}%d B, " +
+        f"lookup, string: $stringLookup%.1f ns, packed: $packedLookup%.1f ns")
+    }
+
+    def copyPacked(p: PackedId) = PackedId(p.mostSigBits, p.leastSigBits)
+
+    // a large team's users, and the members of all their conversations
+    compare[UserId, PackedId]("users", 10000)(UserId(), id => UserId(new String(id.str)), PackedId(_).get, copyPacked)
+    val convs = Vector.fill(2000)(ConvId())
+    compare[(UserId, ConvId), PackedMemberKey]("members", 100000)(
+      (UserId(), convs(scala.util.Random.nextInt(convs.size))),
+      { case (u, c) => (UserId(new String(u.str)), ConvId(new String(c.str))) },
+      PackedMemberKey(_).get,
+      k => PackedMemberKey(copyPacked(k.user), copyPacked(k.conv))
+    )
+  }
+}
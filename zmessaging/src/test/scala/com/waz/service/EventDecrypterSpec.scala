@@ -65,6 +65,7 @@ class EventDecrypterSpec extends AndroidFreeSpec {
       }
 
     (storage.setAsDecrypted _).expects((encryptedEvent.pushId, encryptedEvent.index)).once().returning(Future.successful(()))
+    (sessions.flush _).expects().once().returning(Future.successful(()))
 
     result(decrypter.processEncryptedEvents(Seq(encryptedEvent)))
   }
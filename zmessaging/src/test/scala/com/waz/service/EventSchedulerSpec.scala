@@ -32,8 +32,8 @@ import org.scalatest.junit.JUnitRunner
 
 import scala.annotation.tailrec
 import scala.collection.breakOut
-import scala.concurrent.Future
 import scala.concurrent.duration._
+import scala.concurrent.{Await, Future}
 import scala.util.Random.nextInt
 
 @RunWith(classOf[JUnitRunner])
@@ -107,6 +107,62 @@ class EventSchedulerSpec extends FeatureSpec with Matchers with OptionValues wit
     })
   }
 
+  feature("Scheduling by access") {
+    import EventScheduler.{Access, Resource, StageTimings, executeSchedule}
+
+    val (x, y) = (Resource("x"), Resource("y"))
+
+    scenario("Run stages which don't conflict in parallel")(withFixture { env => import env._
+      val events = E('ab, 'a, 'b, 'ab)
+
+      events scheduledBy conc(_A.accessing(writes = Set(x)), _B.accessing(writes = Set(y)))                  shouldEqual "seq(par(A013,B023))"
+      events scheduledBy conc(_A.accessing(reads = Set(x)), _B.accessing(reads = Set(x)))                    shouldEqual "seq(par(A013,B023))"
+      events scheduledBy conc(_A.accessing(writes = Set(x)), _C.accessing(writes = Set(x)), _B.accessing(reads = Set(y))) shouldEqual "seq(par(A013,B023))"
+    })
+
+    scenario("Keep the order of stages which conflict")(withFixture { env => import env._
+      val events = E('ab, 'a, 'b, 'ab)
+
+      events scheduledBy conc(_A.accessing(writes = Set(x)), _B.accessing(reads = Set(x)))  shouldEqual "seq(A013,B023)"
+      events scheduledBy conc(_B.accessing(reads = Set(x)), _A.accessing(writes = Set(x)))  shouldEqual "seq(B023,A013)"
+      events scheduledBy conc(_A.accessing(writes = Set(x)), _B)                            shouldEqual "seq(A013,B023)"
+    })
+
+    scenario("Start each stage after the last one it conflicts with")(withFixture { env => import env._
+      //               0      1   2   3
+      val events = E('abd, 'a, 'b, 'd)
+
+      events scheduledBy conc(_A.accessing(writes = Set(x)), _B.accessing(reads = Set(x)), _D.accessing(writes = Set(y))) shouldEqual "seq(par(A01,D03),B02)"
+      events scheduledBy conc(_A.accessing(writes = Set(x)), seq(_B.accessing(reads = Set(x)), _D.accessing(writes = Set(y))), _E) shouldEqual "seq(A01,seq(B02,D03))"
+    })
+
+    scenario("Combine the access of composite stages") {
+      val a = Access(Set(x), Set.empty)
+      val b = Access(Set.empty, Set(y))
+
+      (a ++ b) shouldEqual Access(Set(x), Set(y))
+      a.conflictsWith(a) shouldBe false
+      a.conflictsWith(Access(Set.empty, Set(x))) shouldBe true
+    }
+
+    scenario("Record the time spent in each stage, even of the same event class")(withFixture { env => import env._
+      val events = E('ab, 'a, 'bc, 'ab)
+      val timings = new StageTimings
+      val (a, b, c) = (_A.accessing(), _B.accessing(), _C.accessing())
+      a.eventTag shouldEqual b.eventTag
+
+      Await.result(executeSchedule(conv, new EventScheduler(conc(a, b, c)).createSchedule(events), timings), 5.seconds)
+
+      val snapshot = timings.snapshot
+      snapshot.keySet shouldEqual Set(a, b, c)
+      snapshot(a).runs shouldEqual 1
+      snapshot(a).events shouldEqual 3
+      snapshot(b).events shouldEqual 3
+      snapshot(c).events shouldEqual 1
+      snapshot(a).maxNanos should be > 0L
+    })
+  }
+
   feature("Defining event processing stages") {
     lazy val e1 = RenameConversationEvent(RConvId("R"), Domain.Empty, RemoteInstant(Instant.now()), UserId("u1"), Domain.Empty, Name("meep 1"))
     lazy val e2 = UnknownPropertyEvent("e2", "u1")
@@ -187,6 +243,7 @@ class EventSchedulerSpec extends FeatureSpec with Matchers with OptionValues wit
     def seq(stages: Stage*) = Stage(Sequential)(stages:_*)
     def par(stages: Stage*) = Stage(Parallel)(stages:_*)
     def intr(stages: Stage*) = Stage(Interleaved)(stages:_*)
+    def conc(stages: Stage*) = Stage(Concurrent)(stages:_*)
 
     def numberOfScheduledEvents(schedule: Schedule): Int = {
       @tailrec def dfs(s: Stream[Schedule], accu: Int = 0): Int = s match {
@@ -0,0 +1,119 @@
+/*
+ * Wire
+ * Copyright (C) 2016 Wire Swiss GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.waz.service
+
+import com.waz.log.BasicLogging.LogTag.DerivedLogTag
+import com.waz.model.{EmailAddress, Handle, Name, UserData, UserId}
+import com.waz.specs.AndroidFreeSpec
+import com.waz.utils.ContentChange.{Added, Removed, Updated}
+
+class UserSearchIndexSpec extends AndroidFreeSpec with DerivedLogTag {
+
+  private val users = Seq(
+    UserData("Bjorn-Rodrigo Smith"),
+    UserData("John Smith"),
+    UserData("Jason-John Mercier"),
+    UserData("Captain Crunch").copy(handle = Some(Handle.from("john"))),
+    UserData("James gjohnjones"),
+    UserData("Liv Boeree").copy(handle = Some(Handle.from("testjohntest"))),
+    UserData("blah").copy(handle = Some(Handle.from("mores"))),
+    UserData("test handle").copy(handle = Some(Handle.from("smoresare"))),
+    UserData("meep moop").copy(email = Some(EmailAddress("moop@meep.me"))),
+    UserData("Francois francois")
+  )
+
+  private val queries = Seq("", "j", "jo", "john", "John Smith", "smith", "ohn", "@john", "@mores", "mores", "moop@meep.me", "francois f", "xyz")
+
+  private def matching(users: Seq[UserData], query: SearchQuery): Set[UserId] =
+    users.filter(_.matchesQuery(query)).map(_.id).toSet
+
+  private def ids(names: String*): Set[UserId] =
+    users.filter(u => names.contains(u.name.str)).map(_.id).toSet
+
+  scenario("find the same users as matchesQuery") {
+    val index = UserSearchIndex(users)
+    index.size shouldEqual users.size
+
+    queries.map(SearchQuery(_)).filterNot(_.isEmpty).foreach { query =>
+      index.search(query) shouldEqual matching(users, query)
+    }
+  }
+
+  scenario("find users by word prefixes") {
+    val index = UserSearchIndex(users)
+    index.search(SearchQuery("john")) shouldEqual ids("John Smith", "Jason-John Mercier", "Captain Crunch")
+    index.search(SearchQuery("smi")) shouldEqual ids("Bjorn-Rodrigo Smith", "John Smith")
+  }
+
+  scenario("find users only by handles when the query is handle-only") {
+    val index = UserSearchIndex(users)
+    index.search(SearchQuery("@john")) shouldEqual ids("Captain Crunch")
+    index.search(SearchQuery("@smi")) shouldEqual Set.empty
+  }
+
+  scenario("keep the index up to date with changes") {
+    val john = users(1)
+    val renamed = john.copy(name = Name("Johnny Walker"), searchKey = SearchKey("Johnny Walker"))
+    val index = UserSearchIndex(users).applied(Seq(Updated(john.id, john, renamed), Removed(users.head.id)))
+
+    index.size shouldEqual users.size - 1
+    index.contains(users.head.id) shouldEqual false
+    index.search(SearchQuery("smith")) shouldEqual Set.empty
+    index.search(SearchQuery("walker")) shouldEqual Set(john.id)
+    index.sortName(john.id) shouldEqual Some("johnny walker")
+
+    val added = UserData("Smith Again")
+    index.applied(Seq(Added(added.id, added))).search(SearchQuery("smith")) shouldEqual Set(added.id)
+  }
+
+  scenario("find the same users as matchesQuery among many users") {
+    val many = (1 to 5000).map(i => UserData(s"User$i Name${i % 100}").copy(handle = Some(Handle.from(s"handle$i"))))
+    val index = UserSearchIndex(many)
+
+    Seq("name12", "user1", "@handle12", "handle4999", "name").map(SearchQuery(_)).foreach { query =>
+      index.search(query) shouldEqual matching(many, query)
+    }
+  }
+
+  scenario("find users by the prefixes of the words of their search keys") {
+    val index = UserSearchIndex(users)
+    index.byWordPrefix("rod") shouldEqual ids("Bjorn-Rodrigo Smith")
+    index.byWordPrefix("Smi") shouldEqual ids("Bjorn-Rodrigo Smith", "John Smith")
+    index.byWordPrefix("ohn") shouldEqual Set.empty
+  }
+
+  // a benchmark, run by hand: it only prints the timings
+  ignore("Compare querying the index of 50k users with filtering them by matchesQuery") {
+    val many = (1 to 50000).map(i => UserData(s"User$i Name${i % 1000}").copy(handle = Some(Handle.from(s"handle$i"))))
+    val index = UserSearchIndex(many)
+    val searches = Seq("name12", "user4", "@handle123", "handle49999", "name", "xyz").map(SearchQuery(_))
+    val rounds = 20
+
+    def microsPerQuery(search: SearchQuery => Set[UserId]): Double = {
+      (1 to rounds).foreach(_ => searches.foreach(search)) // warm up
+      val start = System.nanoTime()
+      (1 to rounds).foreach(_ => searches.foreach(search))
+      (System.nanoTime() - start).toDouble / (rounds * searches.size) / 1000
+    }
+
+    // what the local search did before: go through all the users
+    val filtering = microsPerQuery(matching(many, _))
+    val indexed = microsPerQuery(index.search)
+    println(f"a query among 50k users, filtering: $filtering%.1f us, indexed: $indexed%.1f us")
+  }
+}
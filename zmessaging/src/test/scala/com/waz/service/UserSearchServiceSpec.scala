@@ -153,6 +153,8 @@ class UserSearchServiceSpec extends AndroidFreeSpec with DerivedLogTag {
     )
   }
 
+  (usersStorage.searchIndex _).expects().anyNumberOfTimes().returning(Signal.const(UserSearchIndex(users.values)))
+
   scenario("search conversation with token starting with query") {
 
     val convMembers = Set(id('l), id('b))
@@ -32,9 +32,10 @@ import com.waz.service.{AccountsService, UserService}
 import com.waz.service.assets._
 import com.waz.sync.SyncServiceHandle
 import com.waz.sync.client.AssetClient
-import com.waz.sync.client.AssetClient.{FileWithSha, Retention, UploadResponse2}
+import com.waz.sync.client.AssetClient.{AssetContent, FileWithSha, Metadata, Retention, UploadResponse2}
 import com.waz.utils.{IoUtils, ReactiveStorageImpl2, UnlimitedInMemoryStorage, returning}
 import com.waz.zms.BuildConfig
+import com.waz.znet2.http.HttpClient.ProgressCallback
 import com.waz.{AuthenticationConfig, FilesystemUtils, ZIntegrationMockSpec}
 import com.wire.signals.CancellableFuture
 import org.junit.runner.RunWith
@@ -264,24 +265,32 @@ class AssetServiceSpec extends ZIntegrationMockSpec with DerivedLogTag with Auth
       (restrictionsService.validate _).expects(*).anyNumberOfTimes().returns(Success(()))
 
       lazy val testDir = FilesystemUtils.createDirectoryForTest()
+      lazy val stagedCache = new StagedUploadContentCache(testDir)
+      (rawCache.staged _).expects().anyNumberOfTimes().returns(stagedCache)
       lazy val downloadAssetResult = {
         val file = new File(testDir, "asset_content")
         IoUtils.write(new ByteArrayInputStream(testAssetContent), new FileOutputStream(file))
         FileWithSha(file, Sha256.calculate(testAssetContent))
       }
 
+      var uploadedContent = Array.empty[Byte]
       lazy val client = mock[AssetClient]
-      (client.uploadAsset _).expects(*, *, *).anyNumberOfTimes().returns(
-        CancellableFuture.successful(Right(UploadResponse2(testAsset.id, None, None)))
-      )
+      (client.uploadAsset _).expects(*, *, *).anyNumberOfTimes().onCall { (_: Metadata, content: AssetContent, _: Option[ProgressCallback]) =>
+        CancellableFuture.lift(content.data().map { stream =>
+          uploadedContent = IoUtils.toByteArray(stream)
+          Right(UploadResponse2(testAsset.id, None, None)): Either[ErrorResponse, UploadResponse2]
+        })
+      }
       (client.loadAssetContent _).expects(*, *).returns(CancellableFuture.successful(Right(downloadAssetResult)))
 
       lazy val rawAssetStorage = new ReactiveStorageImpl2(new UnlimitedInMemoryStorage[UploadAssetId, UploadAsset]()) with UploadAssetStorage
       lazy val assetService = service(rawAssetStorage, client)
       for {
         rawAsset      <- assetService.createAndSaveUploadAsset(contentForUpload, encryption, public = false, Retention.Persistent, None)
+        staged        <- stagedCache.find(rawAsset.id)
         asset         <- assetService.uploadAsset(rawAsset.id)
         assetContent  <- client.loadAssetContent(asset, None)
+        stagedAfter   <- stagedCache.find(rawAsset.id)
       } yield {
         val encryptedContent = IoUtils.toByteArray(rawAsset.encryption.encrypt(new ByteArrayInputStream(testAssetContent), rawAsset.encryptionSalt))
         val encryptedSha = Sha256.calculate(new ByteArrayInputStream(encryptedContent)).get
@@ -301,6 +310,10 @@ class AssetServiceSpec extends ZIntegrationMockSpec with DerivedLogTag with Auth
 
         asset.sha shouldBe rawAsset.sha
         fileWithSha.sha256 shouldBe asset.sha
+
+        staged shouldBe defined
+        stagedAfter shouldBe empty
+        uploadedContent shouldBe encryptedContent
       }
     }
   }
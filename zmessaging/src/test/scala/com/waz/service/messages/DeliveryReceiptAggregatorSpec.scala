@@ -0,0 +1,63 @@
+/*
+ * Wire
+ * Copyright (C) 2016 Wire Swiss GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.waz.service.messages
+
+import com.waz.model.sync.ReceiptType
+import com.waz.model.{ConvId, MessageId, SyncId, UserId}
+import com.waz.service.conversation.ConversationsService
+import com.waz.specs.AndroidFreeSpec
+import com.waz.sync.SyncServiceHandle
+import com.wire.signals.Signal
+
+import scala.concurrent.Future
+
+class DeliveryReceiptAggregatorSpec extends AndroidFreeSpec {
+
+  private val convsService = mock[ConversationsService]
+  private val sync         = mock[SyncServiceHandle]
+
+  scenario("Send the receipts collected during the push processing in one job per conversation and sender") {
+    val processing = Signal(true)
+    val aggregator = new DeliveryReceiptAggregator(processing, convsService, sync)
+    val (conv1, conv2, group) = (ConvId(), ConvId(), ConvId())
+    val (user1, user2, user3) = (UserId(), UserId(), UserId())
+    val Seq(m1, m2, m3, m4, m5) = Seq.fill(5)(MessageId())
+
+    (convsService.areGroupConversations _).expects(Set(conv1, conv2, group)).once()
+      .returning(Future.successful(Map(conv1 -> false, conv2 -> false, group -> true)))
+    (sync.postReceipt _).expects(conv1, Seq(m1, m3), user1, ReceiptType.Delivery).once().returning(Future.successful(SyncId()))
+    (sync.postReceipt _).expects(conv2, Seq(m2), user2, ReceiptType.Delivery).once().returning(Future.successful(SyncId()))
+
+    result(aggregator.add(Seq((conv1, user1, m1), (conv2, user2, m2))))
+    result(aggregator.add(Seq((conv1, user1, m3), (group, user3, m4))))
+    result(aggregator.add(Seq((conv1, user1, m1), (group, user1, m5))))
+
+    processing ! false
+    result(aggregator.flush())
+  }
+
+  scenario("Send the receipts right away outside of the push processing") {
+    val aggregator = new DeliveryReceiptAggregator(Signal(false), convsService, sync)
+    val (conv, user, msg) = (ConvId(), UserId(), MessageId())
+
+    (convsService.areGroupConversations _).expects(Set(conv)).once().returning(Future.successful(Map(conv -> false)))
+    (sync.postReceipt _).expects(conv, Seq(msg), user, ReceiptType.Delivery).once().returning(Future.successful(SyncId()))
+
+    result(aggregator.add(Seq((conv, user, msg))))
+  }
+}
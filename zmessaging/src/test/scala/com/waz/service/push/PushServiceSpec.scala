@@ -0,0 +1,158 @@
+/*
+ * Wire
+ * Copyright (C) 2016 Wire Swiss GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.waz.service.push
+
+import com.waz.content.UserPreferences.LastStableNotification
+import com.waz.model.otr.ClientId
+import com.waz.model.{PushNotificationEvent, Uid, UserId}
+import com.waz.service.otr.{EventDecrypter, OtrEventDecoder}
+import com.waz.service.push.PushService.{CatchUpPagesAhead, CatchUpProgress, ForceSync, SyncHistory}
+import com.waz.service.{EventPipeline, NetworkModeService}
+import com.waz.specs.AndroidFreeSpec
+import com.waz.sync.SyncServiceHandle
+import com.waz.sync.client.PushNotificationsClient.{LoadNotificationsResponse, LoadNotificationsResult}
+import com.waz.sync.client.{ErrorOrResponse, PushNotificationEncoded, PushNotificationsClient}
+import com.waz.testutils.{TestGlobalPreferences, TestUserPreferences}
+import com.waz.threading.Threading
+import com.wire.signals.{CancellableFuture, EventStream, Signal}
+
+import scala.concurrent.duration._
+import scala.concurrent.{Future, Promise}
+
+class PushServiceSpec extends AndroidFreeSpec {
+  import Threading.Implicits.Background
+
+  private val userPrefs     = new TestUserPreferences
+  private val prefs         = new TestGlobalPreferences
+  private val eventsStorage = mock[PushNotificationEventsStorage]
+  private val client        = mock[PushNotificationsClient]
+  private val pipeline      = mock[EventPipeline]
+  private val decrypter     = mock[EventDecrypter]
+  private val decoder       = mock[OtrEventDecoder]
+  private val network       = mock[NetworkModeService]
+  private val sync          = mock[SyncServiceHandle]
+
+  private val wsPushService = new WSPushService {
+    override def activate(initialDelay: FiniteDuration): Unit = {}
+    override def deactivate(): Unit = {}
+    override val notifications: EventStream[Seq[PushNotificationEncoded]] = EventStream()
+    override val connected: Signal[Boolean] = Signal.const(false)
+  }
+
+  private val lastId = Uid("last")
+  private val ids = (1 to 5).map(i => Uid(s"notification$i"))
+
+  //the history after `lastId`: three pages of notifications and the empty page which ends it
+  private val pages = Map(
+    Some(lastId) -> ids.take(2),
+    Some(ids(1)) -> ids.slice(2, 4),
+    Some(ids(3)) -> ids.drop(4),
+    Some(ids(4)) -> Seq.empty[Uid]
+  )
+
+  private def page(notifications: Seq[Uid]): ErrorOrResponse[LoadNotificationsResult] =
+    CancellableFuture.successful(Right(LoadNotificationsResult(
+      LoadNotificationsResponse(notifications.map(PushNotificationEncoded(_, Vector.empty)).toVector, hasMore = notifications.nonEmpty, None),
+      historyLost = false
+    )))
+
+  @volatile private var stored = Vector.empty[Uid]
+
+  private def stubStorage(processEvents: Int => Future[Unit] = _ => Future.successful(())): Unit = {
+    stored = Vector.empty
+    var processed = 0
+    (eventsStorage.saveAll _).expects(*).anyNumberOfTimes().onCall { nots: Seq[PushNotificationEncoded] =>
+      stored ++= nots.map(_.id)
+      Future.successful(Seq.empty[PushNotificationEvent])
+    }
+    (eventsStorage.encryptedEvents _).expects().anyNumberOfTimes().returning(Future.successful(Seq.empty))
+    (decrypter.processEncryptedEvents _).expects(*).anyNumberOfTimes().onCall { _: Seq[PushNotificationEvent] =>
+      processed += 1
+      processEvents(processed)
+    }
+    (eventsStorage.getDecryptedRows _).expects().anyNumberOfTimes().returning(Future.successful(IndexedSeq.empty))
+    (eventsStorage.removeDecryptedEvents _).expects(*).anyNumberOfTimes().returning(Future.successful(()))
+  }
+
+  private def createService(): PushServiceImpl = {
+    result(userPrefs.preference(LastStableNotification) := Some(lastId))
+    new PushServiceImpl(
+      account1Id, null, userPrefs, prefs, eventsStorage, client, ClientId("client"),
+      pipeline, decrypter, decoder, wsPushService, network, sync
+    )
+  }
+
+  scenario("Fetch the notification history page by page, until an empty page is returned") {
+    stubStorage()
+    val lastPageRequested = Promise[Unit]()
+    val lastPage = Promise[Unit]()
+    (client.loadNotifications _).expects(*, *).repeat(pages.size).onCall { (since: Option[Uid], _: ClientId) =>
+      if (since == Some(ids.last)) {
+        lastPageRequested.success(())
+        CancellableFuture.lift(lastPage.future).flatMap(_ => page(pages(since)))
+      } else page(pages(since))
+    }
+
+    val service = createService()
+    val synced = service.syncNotifications(SyncHistory(ForceSync))
+
+    result(lastPageRequested.future)
+    stored shouldEqual ids
+    result(service.catchUpProgress.filter(_.contains(CatchUpProgress(3, ids.size, 1))).head)
+
+    lastPage.success(())
+    result(synced)
+    result(userPrefs.preference(LastStableNotification).apply()) shouldEqual Some(ids.last)
+    result(service.catchUpProgress.head) shouldEqual None
+  }
+
+  scenario("Stop fetching the next pages while the pipeline is busy with the ones fetched ahead") {
+    val firstPageProcessing = Promise[Unit]()
+    val firstPageProcessed = Promise[Unit]()
+    stubStorage(processEvents = { count =>
+      if (count == 1) {
+        firstPageProcessing.success(())
+        firstPageProcessed.future
+      } else Future.successful(())
+    })
+
+    @volatile var requested = Vector.empty[Option[Uid]]
+    val secondPageRequested = Promise[Unit]()
+    (client.loadNotifications _).expects(*, *).repeat(pages.size).onCall { (since: Option[Uid], _: ClientId) =>
+      requested :+= since
+      if (since == Some(ids(1))) secondPageRequested.success(())
+      page(pages(since))
+    }
+
+    val service = createService()
+    val synced = service.syncNotifications(SyncHistory(ForceSync))
+
+    result(firstPageProcessing.future)
+    result(secondPageRequested.future)
+    result(service.catchUpProgress.filter(_.contains(CatchUpProgress(1, 2, 1))).head)
+
+    //the first page is being processed, so only `CatchUpPagesAhead` more may be fetched (but not stored yet)
+    requested.size shouldEqual 1 + CatchUpPagesAhead
+    stored shouldEqual ids.take(2)
+
+    firstPageProcessed.success(())
+    result(synced)
+    requested shouldEqual Vector(Some(lastId), Some(ids(1)), Some(ids(3)), Some(ids(4)))
+    stored shouldEqual ids
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Wire
+ * Copyright (C) 2016 Wire Swiss GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.waz.sync.client
+
+import com.waz.model._
+import com.waz.model.otr.ClientId
+import com.waz.service.EventDecrypterSpec.{clientId, convId, eventJsonStr}
+import com.waz.specs.AndroidFreeSpec
+import org.json.JSONObject
+
+class EncodedEventSpec extends AndroidFreeSpec {
+
+  // an event whose text is valid base64, so that it decodes to an OtrMessageEvent
+  private def validEventJsonStr(tpe: String = EventEnvelope.OtrMessageAdd) =
+    eventJsonStr(tpe = tpe).replace("encoded_string", "ZW5jb2RlZA==")
+
+  feature("Envelope") {
+
+    scenario("Read the envelope of an otr event") {
+      val from = UserId()
+      val sender = ClientId()
+      val event = EncodedEvent(eventJsonStr(from = from, sender = sender))
+
+      event.envelope shouldEqual EventEnvelope(EventEnvelope.OtrMessageAdd, Some(RConvId(convId.str)), Some(from), Some(sender), Some(clientId))
+      event.isOtrMessageAdd shouldEqual true
+      event.isForUs(clientId) shouldEqual true
+      event.isForUs(ClientId()) shouldEqual false
+    }
+
+    scenario("Treat non-otr events as meant for every client") {
+      val event = EncodedEvent(eventJsonStr(tpe = "conversation.rename"))
+
+      event.isOtrMessageAdd shouldEqual false
+      event.isForUs(ClientId()) shouldEqual true
+    }
+
+    scenario("Don't fail on an event which is not valid JSON") {
+      val event = EncodedEvent("{ not json")
+
+      event.envelope shouldEqual EventEnvelope.Unknown
+      event.isForUs(clientId) shouldEqual true
+    }
+  }
+
+  feature("Parse once") {
+
+    scenario("Reuse the JSON an event was received with") {
+      val json = new JSONObject(eventJsonStr())
+      val event = EncodedEvent(json)
+
+      event.toJson shouldBe theSameInstanceAs(json)
+      event shouldEqual EncodedEvent(eventJsonStr())
+    }
+
+    scenario("Decode the event only once") {
+      val event = EncodedEvent(validEventJsonStr())
+
+      event.decoded shouldBe an[OtrMessageEvent]
+      event.decoded shouldBe theSameInstanceAs(event.decoded)
+    }
+
+    scenario("Decode the same events as parsing the JSON at every stage") {
+      val events = Seq(validEventJsonStr(), validEventJsonStr(tpe = "conversation.member-update"), eventJsonStr())
+
+      def parseAtEveryStage(str: String): Option[Event] =
+        if (str.contains("conversation.otr") && !str.contains(clientId.str)) None
+        else if (str.contains("conversation.otr-message-add")) Some(ConversationEvent.ConversationEventDecoder(new JSONObject(str)))
+        else Some(Event.EventDecoder(new JSONObject(str)))
+
+      def parseOnce(str: String): Option[Event] = {
+        val event = EncodedEvent(str)
+        if (event.isForUs(clientId)) Some(event.decoded) else None
+      }
+
+      events.map(parseOnce(_).map(_.getClass)) shouldEqual events.map(parseAtEveryStage(_).map(_.getClass))
+    }
+
+    // a benchmark, run by hand: it only prints the timings
+    ignore("Compare the events per second through decode with parsing at every stage") {
+      val events = (1 to 20000).map { i =>
+        validEventJsonStr(tpe = if (i % 4 == 0) "conversation.member-update" else EventEnvelope.OtrMessageAdd)
+      }
+
+      // what every stage used to do: scan the string, then parse it once for decryption and once for decoding
+      def parseAtEveryStage(str: String): Event = {
+        if (str.contains("conversation.otr") && !str.contains(clientId.str)) null
+        else if (str.contains("conversation.otr-message-add")) {
+          ConversationEvent.ConversationEventDecoder(new JSONObject(str))
+          ConversationEvent.ConversationEventDecoder(new JSONObject(str))
+        }
+        else Event.EventDecoder(new JSONObject(str))
+      }
+
+      def parseOnce(str: String): Event = {
+        val event = EncodedEvent(str)
+        if (!event.isForUs(clientId)) null
+        else if (event.isOtrMessageAdd) {
+          event.decoded
+          event.decoded
+        }
+        else event.decoded
+      }
+
+      def eventsPerSecond(decode: String => Event): Long = {
+        events.foreach(decode) // warm up
+        val start = System.nanoTime()
+        events.foreach(decode)
+        events.size * 1000000000L / (System.nanoTime() - start)
+      }
+
+      val before = eventsPerSecond(parseAtEveryStage)
+      val after = eventsPerSecond(parseOnce)
+
+      println(s"events: ${events.size}, parsed at every stage: $before events/s, parsed once: $after events/s")
+    }
+  }
+}
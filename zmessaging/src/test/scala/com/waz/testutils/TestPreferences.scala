@@ -39,6 +39,13 @@ class TestGlobalPreferences extends GlobalPreferences(null, null) {
   override def setValue[A: PrefCodec](key: PrefKey[A], value: A): Future[Unit] =
     dispatcher(values += (key.str -> implicitly[PrefCodec[A]].encode(value)))
 
+  override def mutateValue[A: PrefCodec](key: PrefKey[A], f: A => A): Future[A] = dispatcher {
+    val codec = implicitly[PrefCodec[A]]
+    val value = f(values.get(key.str).map(codec.decode).getOrElse(key.default))
+    values += (key.str -> codec.encode(value))
+    value
+  }
+
   def print(): CancellableFuture[Unit] = dispatcher(println(values))
 }
 
@@ -53,5 +60,12 @@ class TestUserPreferences extends UserPreferences(null, null) {
   override def setValue[A: PrefCodec](key: PrefKey[A], value: A): Future[Unit] =
     dispatcher(valuesMap += (key.str -> implicitly[PrefCodec[A]].encode(value)))
 
+  override def mutateValue[A: PrefCodec](key: PrefKey[A], f: A => A): Future[A] = dispatcher {
+    val codec = implicitly[PrefCodec[A]]
+    val value = f(valuesMap.get(key.str).map(codec.decode).getOrElse(key.default))
+    valuesMap += (key.str -> codec.encode(value))
+    value
+  }
+
   def print(): CancellableFuture[Unit] = dispatcher(println(valuesMap))
 }
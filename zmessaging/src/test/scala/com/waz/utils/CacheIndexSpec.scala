@@ -0,0 +1,121 @@
+/*
+ * Wire
+ * Copyright (C) 2016 Wire Swiss GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.waz.utils
+
+import com.waz.model.{ConvId, ConversationMemberData, UserId}
+import com.waz.specs.AndroidFreeSpec
+
+import scala.collection.JavaConverters._
+import scala.concurrent.Future
+
+class CacheIndexSpec extends AndroidFreeSpec {
+
+  private type Key = (UserId, ConvId)
+
+  private def member(conv: ConvId) = ConversationMemberData(UserId(), conv, "wire_member")
+
+  private class IndexedCache {
+    val cache = new UnlimitedLruCache[Key, Option[ConversationMemberData]]
+    val byConv = new CacheIndex[Key, ConversationMemberData, ConvId](_.convId)
+
+    def put(m: ConversationMemberData): Unit = {
+      cache.put(m.id, Some(m))
+      if (byConv.add(m.id, m)) byConv.rebuild(cache.snapshot.asScala.collect { case (k, Some(v)) => k -> v })
+    }
+
+    def lookup(convs: ConvId*): Set[ConversationMemberData] =
+      byConv.lookup(convs.toSet)(k => Option(cache.get(k)).flatten).map(_._2).toSet
+  }
+
+  scenario("Find the cached values by the indexed field") {
+    val c = new IndexedCache
+    val (conv1, conv2) = (ConvId(), ConvId())
+    val members = Seq(member(conv1), member(conv1), member(conv2))
+    members.foreach(c.put)
+
+    c.lookup(conv1) shouldEqual members.take(2).toSet
+    c.lookup(conv1, conv2) shouldEqual members.toSet
+    c.lookup(ConvId()) shouldBe empty
+  }
+
+  scenario("Drop the keys of the values which were changed, removed or evicted") {
+    val c = new IndexedCache
+    val conv = ConvId()
+    val Seq(changed, removed, evicted, kept) = Seq.fill(4)(member(conv))
+    Seq(changed, removed, evicted, kept).foreach(c.put)
+
+    c.put(changed.copy(role = "wire_admin"))
+    c.cache.put(removed.id, None)
+    c.cache.remove(evicted.id)
+
+    c.lookup(conv) shouldEqual Set(changed.copy(role = "wire_admin"), kept)
+    c.byConv.size shouldEqual 2
+  }
+
+  scenario("Rebuild the index when it grows with the keys of evicted values") {
+    val c = new IndexedCache
+    val conv = ConvId()
+    (1 to CacheIndex.MinRebuildSize * 3).foreach { _ =>
+      val m = member(conv)
+      c.put(m)
+      c.cache.remove(m.id)
+    }
+
+    c.byConv.size should be < CacheIndex.MinRebuildSize
+  }
+
+  scenario("Keep the keys added while the index is rebuilt") {
+    import com.waz.threading.Threading.Implicits.Background
+    val c = new IndexedCache
+    val conv = ConvId()
+    val (before, during) = (member(conv), member(conv))
+    c.put(before)
+
+    var adding = Future.successful(false)
+    c.byConv.rebuild {
+      val snapshot = c.cache.snapshot.asScala.collect { case (k, Some(v)) => k -> v }
+      adding = Future(c.byConv.add(during.id, during))
+      snapshot
+    }
+    c.cache.put(during.id, Some(during))
+    result(adding)
+
+    c.lookup(conv) shouldEqual Set(before, during)
+  }
+
+  // a benchmark, run by hand: it only prints the timings
+  ignore("Compare looking up the members of a conversation with scanning a cache of 100k members") {
+    val c = new IndexedCache
+    val convs = Vector.fill(2000)(ConvId())
+    (0 until 100000).foreach(i => c.put(member(convs(i % convs.size))))
+    val rounds = 200
+
+    def nanosPerLookup(lookup: ConvId => Int): Double = {
+      (0 until rounds).foreach(i => lookup(convs(i % convs.size))) // warm up
+      val start = System.nanoTime()
+      (0 until rounds).foreach(i => lookup(convs(i % convs.size)))
+      (System.nanoTime() - start).toDouble / rounds
+    }
+
+    // what `find` did before: go through a snapshot of the whole cache
+    val scanning = nanosPerLookup(conv => c.cache.snapshot.asScala.count { case (_, v) => v.exists(_.convId == conv) })
+    val indexed = nanosPerLookup(conv => c.lookup(conv).size)
+
+    println(f"members of a conversation in a cache of 100k, scanning: ${scanning / 1000}%.1f us, indexed: ${indexed / 1000}%.1f us")
+  }
+}
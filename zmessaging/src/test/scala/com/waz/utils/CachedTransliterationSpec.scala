@@ -0,0 +1,104 @@
+/*
+ * Wire
+ * Copyright (C) 2016 Wire Swiss GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.waz.utils
+
+import java.text.Normalizer
+
+import com.waz.specs.AndroidFreeSpec
+
+class CachedTransliterationSpec extends AndroidFreeSpec {
+
+  // ICU isn't there on the JVM: this strips the accents and drops what is left outside of ASCII
+  private class Delegate extends Transliteration {
+    @volatile var calls = 0
+    override def transliterate(s: String): String = {
+      calls += 1
+      CachedTransliteration.lowerAlphanumericAscii(Normalizer.normalize(s, Normalizer.Form.NFKD).replaceAll("[^\\p{ASCII}]", ""))
+    }
+  }
+
+  feature("ASCII bypass") {
+
+    scenario("Lowercase and strip the ASCII strings without the delegate") {
+      val delegate = new Delegate
+      val transliteration = new CachedTransliteration(delegate, CachedTransliteration.lowerAlphanumericAscii)
+
+      transliteration.transliterate("Bugs Bunny, 2nd!") shouldEqual "bugs bunny 2nd"
+      transliteration.transliterate("") shouldEqual ""
+      delegate.calls shouldEqual 0
+      transliteration.cached shouldEqual 0
+    }
+
+    scenario("Only lowercase for the Latin to ASCII transliteration") {
+      CachedTransliteration.lowerAscii("Elmer Fudd, 9-tail!") shouldEqual "elmer fudd, 9-tail!"
+    }
+  }
+
+  feature("Memo") {
+
+    scenario("Transliterate a non-ASCII string once") {
+      val delegate = new Delegate
+      val transliteration = new CachedTransliteration(delegate, CachedTransliteration.lowerAlphanumericAscii)
+
+      (1 to 3).foreach(_ => transliteration.transliterate("Äda Ölwit") shouldEqual "ada olwit")
+      delegate.calls shouldEqual 1
+    }
+
+    scenario("Keep the most recently used strings only") {
+      val delegate = new Delegate
+      val transliteration = new CachedTransliteration(delegate, CachedTransliteration.lowerAlphanumericAscii, cacheSize = 2)
+
+      Seq("Ä", "Ö", "Ä", "Ü", "Ä", "Ö").foreach(transliteration.transliterate)
+      transliteration.cached shouldEqual 2
+      delegate.calls shouldEqual 4 // Ä, Ö, Ü, and Ö again after it was evicted
+    }
+
+    scenario("Don't keep the long strings") {
+      val delegate = new Delegate
+      val transliteration = new CachedTransliteration(delegate, CachedTransliteration.lowerAlphanumericAscii, maxCachedLength = 4)
+
+      (1 to 2).foreach(_ => transliteration.transliterate("Ölwit"))
+      delegate.calls shouldEqual 2
+      transliteration.cached shouldEqual 0
+    }
+
+    scenario("Transliterate a batch with each distinct string once") {
+      val delegate = new Delegate
+      val transliteration = new CachedTransliteration(delegate, CachedTransliteration.lowerAlphanumericAscii)
+
+      transliteration.transliterateAll(Seq("Äda", "Bob", "Ölwit", "Äda")) shouldEqual Seq("ada", "bob", "olwit", "ada")
+      delegate.calls shouldEqual 2
+    }
+  }
+
+  scenario("Call the delegate once for each distinct non-ASCII name of repeated searches") {
+    val names = Seq(
+      "Bugs Bunny", "Elmer Fudd", "Daffy Duck", "Äda Ölwit", "Zoë Saldaña",
+      "Иван Иванович Иванов", "Пётр Ильич", "李淑蒙", "김민준", "Bugs 🐰🥕", "🎉 Party 🎉"
+    )
+    val nonAscii = names.filterNot(CachedTransliteration.isAscii)
+    val delegate = new Delegate
+    val transliteration = new CachedTransliteration(delegate, CachedTransliteration.lowerAlphanumericAscii)
+
+    val results = (1 to 100).map(_ => names.map(transliteration.transliterate))
+
+    results.distinct shouldEqual Seq(names.map(new Delegate().transliterate))
+    delegate.calls shouldEqual nonAscii.size
+    transliteration.cached shouldEqual nonAscii.size
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Wire
+ * Copyright (C) 2016 Wire Swiss GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.waz.utils
+
+import com.waz.specs.AndroidFreeSpec
+
+class KeyedEventStreamsSpec extends AndroidFreeSpec {
+
+  scenario("Route the changes to the subscribers of their key only") {
+    val streams = new KeyedEventStreams[Int, Seq[String]]
+    var ones = Vector.empty[Seq[String]]
+    var twos = Vector.empty[Seq[String]]
+    streams(1).foreach(e => ones :+= e)
+    streams(2).foreach(e => twos :+= e)
+
+    streams.publishAll(Seq(1 -> "a", 3 -> "b", 1 -> "c"))(_._1)(_.map(_._2))
+
+    ones shouldEqual Vector(Seq("a", "c"))
+    twos shouldBe empty
+  }
+
+  scenario("Give the same changes to all the subscribers of a key") {
+    val streams = new KeyedEventStreams[Int, String]
+    var received = Vector.empty[String]
+    streams(1).foreach(e => received :+= e)
+    streams(1).foreach(e => received :+= e)
+
+    streams.publish(1, "a")
+
+    received shouldEqual Vector("a", "a")
+    streams.subscribedKeys shouldEqual 1
+  }
+
+  scenario("Forget the keys without subscribers") {
+    val streams = new KeyedEventStreams[Int, String]
+    var received = Vector.empty[String]
+    val stream = streams(1)
+    val sub = stream.foreach(e => received :+= e)
+    streams.subscribedKeys shouldEqual 1
+
+    sub.destroy()
+    streams.subscribedKeys shouldEqual 0
+    streams.publish(1, "a")
+    received shouldBe empty
+
+    stream.foreach(e => received :+= e)
+    streams.publish(1, "b")
+    received shouldEqual Vector("b")
+  }
+}
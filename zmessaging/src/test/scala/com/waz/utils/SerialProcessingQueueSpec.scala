@@ -28,7 +28,7 @@ import org.scalatest.concurrent.ScalaFutures
 import org.threeten.bp.Instant
 
 import scala.concurrent.duration._
-import scala.concurrent.{Await, Future}
+import scala.concurrent.{Await, Future, Promise}
 import scala.util.Random
 
 class SerialProcessingQueueSpec extends AndroidFreeSpec with Matchers with ScalaFutures with DefaultPatienceConfig {
@@ -58,6 +58,66 @@ class SerialProcessingQueueSpec extends AndroidFreeSpec with Matchers with Scala
       Await.result(future, 1.second)
       processedCount.get() shouldEqual 3
     }
+
+    def typing(convId: RConvId) = {
+      val domain = if (federationSupported) Domain("chala.wire.link") else Domain.Empty
+      TypingEvent(convId, domain, RemoteInstant(Instant.now()), UserId(), domain, isTyping = true)
+    }
+
+    scenario("Evict the queues which have been idle for a while") {
+      val queue = new GroupedEventProcessingQueue[ConversationEvent, RConvId](_.convId, {
+        case (_, _) => Future.successful(())
+      }, idleTimeout = 200.millis)
+
+      Await.result(queue.enqueue(Seq(typing(RConvId()), typing(RConvId()))), 1.second)
+      Await.result(queue.evictIdle(), 1.second)
+      Await.result(queue.stats, 1.second).idleQueues shouldEqual 2
+
+      clock.advance(200.millis)
+      Await.result(queue.evictIdle(), 1.second)
+      val stats = Await.result(queue.stats, 1.second)
+      stats.activeQueues shouldEqual 0
+      stats.idleQueues shouldEqual 0
+      stats.pooledQueues shouldEqual 2
+    }
+
+    scenario("Keep a bounded number of idle queues and hand the evicted ones over to new keys") {
+      var processed = Map.empty[RConvId, Int].withDefaultValue(0)
+      val queue = new GroupedEventProcessingQueue[ConversationEvent, RConvId](_.convId, {
+        case (convId, events) => Future.successful(synchronized { processed += convId -> (processed(convId) + events.size) })
+      }, maxIdleQueues = 2, poolSize = 1)
+
+      val convs = Seq.fill(10)(RConvId())
+      convs.foreach(c => Await.result(queue.enqueue(typing(c)), 1.second))
+      convs.foreach(c => Await.result(queue.enqueue(Seq(typing(c), typing(c))), 1.second))
+
+      val stats = Await.result(queue.stats, 1.second)
+      stats.idleQueues shouldEqual 2
+      stats.pooledQueues shouldEqual 1
+      convs.foreach(c => processed(c) shouldEqual 3)
+    }
+
+    scenario("Don't evict a queue while it's processing events") {
+      val convId = RConvId()
+      val processing = Promise[Unit]()
+      val queue = new GroupedEventProcessingQueue[ConversationEvent, RConvId](_.convId, {
+        case (_, _) => processing.future
+      }, idleTimeout = 50.millis, maxIdleQueues = 0)
+
+      val future = queue.enqueue(Seq(typing(convId), typing(convId)))
+      clock.advance(100.millis)
+      Await.result(queue.evictIdle(), 1.second)
+      val stats = Await.result(queue.stats, 1.second)
+      stats.activeQueues shouldEqual 1
+      stats.queuedEvents shouldEqual Map(convId -> 2)
+
+      processing.success(())
+      Await.result(future, 1.second)
+      val after = Await.result(queue.stats, 1.second)
+      after.activeQueues shouldEqual 0
+      after.queuedEvents shouldEqual Map.empty
+      after.latency.batches shouldEqual 1
+    }
   }
 
   feature("Serialization") {
@@ -0,0 +1,83 @@
+/*
+ * Wire
+ * Copyright (C) 2016 Wire Swiss GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.waz.utils
+
+import com.waz.specs.AndroidFreeSpec
+
+import scala.util.Random
+
+class TimerWheelSpec extends AndroidFreeSpec {
+
+  private val Start = 1000000L
+
+  private def wheel() = new TimerWheel[Int](tickMillis = 10, wheelSize = 8, levels = 3, startMillis = Start)
+
+  scenario("Expire the keys at their deadlines, not before") {
+    val w = wheel()
+    w.schedule(1, Start + 25)
+    w.schedule(2, Start + 30)
+    w.schedule(3, Start - 5)
+
+    w.advance(Start) shouldEqual Vector(3)
+    w.advance(Start + 25) shouldBe empty
+    w.nextAdvance shouldEqual Some(Start + 30)
+    w.advance(Start + 35).toSet shouldEqual Set(1, 2)
+    w.size shouldEqual 0
+    w.nextAdvance shouldEqual None
+  }
+
+  scenario("Reschedule and cancel the keys") {
+    val w = wheel()
+    w.schedule(1, Start + 50)
+    w.schedule(2, Start + 50)
+    w.schedule(1, Start + 2000)
+    w.cancel(2)
+
+    w.advance(Start + 1000) shouldBe empty
+    w.advance(Start + 2000) shouldEqual Vector(1)
+  }
+
+  scenario("Move the far deadlines down the levels and past the top level") {
+    val w = wheel()
+    // the levels reach 8, 64 and 512 ticks
+    val deadlines = Seq(1 -> 70L, 2 -> 630L, 3 -> 5115L, 4 -> 60000L).toMap.mapValues(Start + _)
+    deadlines.foreach { case (k, d) => w.schedule(k, d) }
+
+    var expired = Map.empty[Int, Long]
+    var now = Start
+    while (w.size > 0) {
+      now = w.nextAdvance.get
+      w.advance(now).foreach(k => expired += k -> now)
+    }
+
+    expired shouldEqual deadlines.mapValues(d => (d + 9) / 10 * 10)
+  }
+
+  scenario("Expire the same keys as a scan of the deadlines") {
+    val w = new TimerWheel[Int](startMillis = Start)
+    val deadlines = (0 until 10000).map(k => k -> (Start + Random.nextInt(100000000).toLong)).toMap
+    deadlines.foreach { case (k, d) => w.schedule(k, d) }
+
+    (1 to 50).foldLeft(Set.empty[Int]) { (expired, i) =>
+      val now = Start + i * 2000000L
+      val all = expired ++ w.advance(now)
+      all shouldEqual deadlines.collect { case (k, d) if d <= now => k }.toSet
+      all
+    }
+  }
+}
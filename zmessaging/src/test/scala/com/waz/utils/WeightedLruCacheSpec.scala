@@ -0,0 +1,153 @@
+/*
+ * Wire
+ * Copyright (C) 2016 Wire Swiss GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.waz.utils
+
+import java.util.concurrent.{CountDownLatch, Executors, TimeUnit}
+
+import android.content.ComponentCallbacks2
+import com.waz.specs.AndroidFreeSpec
+import com.waz.utils.TrimmingLruCache.Fixed
+
+import scala.collection.JavaConverters._
+import scala.util.Random
+
+class WeightedLruCacheSpec extends AndroidFreeSpec {
+
+  private def cache(maxWeight: Int, stripes: Int = 1) =
+    new WeightedLruCache[Int, String](null, Fixed(maxWeight), stripes)((_, v) => v.length)
+
+  feature("Weight bounds") {
+
+    scenario("Evict the least recently used entries when the total weight exceeds the maximum") {
+      val c = cache(10)
+      c.put(1, "aaaa")
+      c.put(2, "bbbb")
+      c.get(1) shouldEqual "aaaa"
+      c.put(3, "cccc")
+
+      c.get(2) shouldEqual null
+      c.snapshot().asScala.keySet shouldEqual Set(1, 3)
+      c.totalWeight shouldEqual 8
+    }
+
+    scenario("Account for the new weight when a value is replaced") {
+      val c = cache(10)
+      c.put(1, "a")
+      c.put(2, "bb")
+      c.put(1, "aaaaaaaa") shouldEqual "a"
+
+      c.totalWeight shouldEqual 10
+      c.remove(2) shouldEqual "bb"
+      c.totalWeight shouldEqual 8
+    }
+
+    scenario("Don't keep an entry heavier than the maximum") {
+      val c = cache(10)
+      c.put(1, "a")
+      c.put(2, "a" * 11)
+
+      c.get(2) shouldEqual null
+      c.totalWeight shouldEqual 0
+    }
+
+    scenario("Bound each stripe by its share of the maximum weight") {
+      val c = cache(1000, stripes = 4)
+      (1 to 1000).foreach(i => c.put(i, "x" * 10))
+
+      c.maxSize() shouldEqual 1000
+      c.totalWeight should be <= 1000
+      c.snapshot().size shouldEqual c.totalWeight / 10
+    }
+  }
+
+  feature("Trimming") {
+
+    scenario("Trim the cache on memory pressure") {
+      val c = cache(100, stripes = 2)
+      (1 to 10).foreach(i => c.put(i, "x" * 10))
+
+      c.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW)
+      c.totalWeight should be <= 75
+
+      c.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_MODERATE)
+      c.totalWeight shouldEqual 0
+      c.maxSize() shouldEqual 100
+    }
+
+    scenario("Evict all entries") {
+      val c = cache(100, stripes = 2)
+      (1 to 10).foreach(i => c.put(i, "x"))
+      c.evictAll()
+
+      c.snapshot().isEmpty shouldEqual true
+      c.totalWeight shouldEqual 0
+    }
+  }
+
+  feature("Concurrency") {
+
+    def run(threads: Int, ops: Int)(op: Int => Unit): Unit = {
+      val executor = Executors.newFixedThreadPool(threads)
+      val start = new CountDownLatch(1)
+      val done = new CountDownLatch(threads)
+      (0 until threads).foreach { t =>
+        executor.execute(new Runnable {
+          override def run(): Unit = {
+            val random = new Random(t)
+            start.await()
+            (0 until ops).foreach(_ => op(random.nextInt(10000)))
+            done.countDown()
+          }
+        })
+      }
+      start.countDown()
+      done.await(1, TimeUnit.MINUTES) shouldEqual true
+      executor.shutdown()
+    }
+
+    scenario("Keep the weight consistent under concurrent access") {
+      val weighted = cache(50000, stripes = WeightedLruCache.DefaultStripes)
+
+      run(threads = 8, ops = 50000) { key =>
+        if (key % 4 == 0) weighted.put(key, "x" * 10) else weighted.get(key)
+      }
+
+      weighted.totalWeight shouldEqual weighted.snapshot().asScala.values.map(_.length).sum
+      weighted.totalWeight should be <= 50000
+    }
+
+    // a benchmark, run by hand: it only prints the timings
+    ignore("Compare the contention of WeightedLruCache with TrimmingLruCache") {
+      val threads = 8
+      val ops = 200000
+      val weighted = cache(50000, stripes = WeightedLruCache.DefaultStripes)
+      val lru = new TrimmingLruCache[Int, String](null, Fixed(5000))
+
+      def millis(c: Cache[Int, String]): Long = {
+        val start = System.nanoTime()
+        run(threads, ops) { key => if (key % 4 == 0) c.put(key, "x" * 10) else c.get(key) }
+        (System.nanoTime() - start) / 1000000
+      }
+
+      // warm up
+      millis(lru)
+      millis(weighted)
+      println(s"threads: $threads, operations per thread: $ops, TrimmingLruCache: ${millis(lru)} ms, WeightedLruCache: ${millis(weighted)} ms")
+    }
+  }
+}